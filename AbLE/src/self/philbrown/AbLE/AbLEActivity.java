@@ -18,9 +18,17 @@ package self.philbrown.AbLE;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import self.philbrown.AbLE.annotations.AnnotatedLayoutInflater;
+import self.philbrown.AbLE.annotations.InflationCallback;
+import self.philbrown.AbLE.annotations.InflationTask;
+import self.philbrown.AbLE.annotations.LayoutPlan;
+import self.philbrown.AbLE.annotations.LazyView;
+import self.philbrown.AbLE.annotations.ViewIndex;
+import self.philbrown.AbLE.annotations.ViewPool;
 import self.philbrown.AbLE.view.AbLE_Annotation;
 import android.app.Activity;
 import android.content.Context;
@@ -28,6 +36,8 @@ import android.content.pm.ActivityInfo;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.PackageManager.NameNotFoundException;
+import android.content.MutableContextWrapper;
+import android.content.res.Configuration;
 import android.graphics.Color;
 import android.graphics.Rect;
 import android.os.Bundle;
@@ -79,6 +89,47 @@ public class AbLEActivity extends Activity {
 	/** The view in which all content is displayed */
 	protected static View contentView;
 	
+	/** The asynchronous inflation of the layout, if it has not completed yet. */
+	private InflationTask inflationTask;
+	/** Indexes the views of {@link #contentView}, so that they can be found in constant time */
+	private ViewIndex viewIndex;
+	/** Listens for the keyboard on the current {@link #contentView} */
+	private OnGlobalLayoutListener keyboardListener;
+	
+	/** The layout class of the screen that is shown, or {@code null} */
+	private Class<?> currentScreen;
+	/** The layout classes of the screens to return to with {@link #goBack()} */
+	private final List<Class<?>> screenStack = new ArrayList<Class<?>>();
+	/** 
+	 * The configuration changes across which a retained layout is shown again. Other changes (such as of the 
+	 * locale, the font scale or the UI mode) change the resources that layout classes resolve, so the layout 
+	 * is inflated again instead. 0x400 and 0x800 are {@code CONFIG_SCREEN_SIZE} and 
+	 * {@code CONFIG_SMALLEST_SCREEN_SIZE}, which were added in API 13.
+	 */
+	private static final int RETAINED_CHANGES = ActivityInfo.CONFIG_ORIENTATION | ActivityInfo.CONFIG_SCREEN_LAYOUT 
+			| ActivityInfo.CONFIG_KEYBOARD | ActivityInfo.CONFIG_KEYBOARD_HIDDEN | ActivityInfo.CONFIG_NAVIGATION 
+			| ActivityInfo.CONFIG_TOUCHSCREEN | 0x400 | 0x800;
+	/** The screens that are not shown, which can be restored without inflating them again */
+	private final ScreenCache screenCache = new ScreenCache(ScreenCache.DEFAULT_MAX_WEIGHT) {
+		
+		@Override
+		protected void onEvicted(Class<?> layout, View root)
+		{
+			viewPool.release(root);
+		}
+	};
+	/** Views of discarded layouts, which inflaters reuse */
+	private final ViewPool viewPool = new ViewPool(ViewPool.DEFAULT_MAX_PER_CLASS);
+	/** Loads the layout classes again after {@link #resetLayouts()}, or {@code null} if they were never reset */
+	private static LayoutClassLoader layoutLoader;
+	/** {@code true} if the layout is kept when the Activity is recreated for a configuration change */
+	private boolean retainLayout;
+	/** 
+	 * The context of the views, if the layout is retained, or {@code null}. Its base context is the Activity
+	 * that shows the views.
+	 */
+	private MutableContextWrapper viewContext;
+	
 	/** Keeps track of the current visible state of the keyboard. True if it is visible. Otherwise false. */
 	private boolean isKeyboardVisible = false;
 	
@@ -155,57 +206,37 @@ public class AbLEActivity extends Activity {
 			Bundle metaData = app.metaData; 
 	        if (metaData != null)
 	        {
-	        	String layoutFile = metaData.getString("layout");
-	        	AbLEUtil.info("Inflating View at file %s", layoutFile);
-	        	Class<?> layout = Class.forName(layoutFile);
-	        	contentView = AnnotatedLayoutInflater.inflate(this, layout, null);
-	        	contentView.getViewTreeObserver().addOnGlobalLayoutListener(new OnGlobalLayoutListener() 
-	    		{
-	    			
-	    			public void onGlobalLayout() {
-	    			    Rect r = new Rect();
-	    			    //r will be populated with the coordinates of your view that area still visible.
-	    			    contentView.getWindowVisibleDisplayFrame(r);
-
-	    			    int heightDiff = contentView.getRootView().getHeight() - (r.bottom - r.top);
-	    			    if (heightDiff > 100) 
-	    			    { // if more than 100 pixels, its probably a keyboard...
-	    			    	keyboardHeight = heightDiff;
-	    			        if (!isKeyboardVisible)
-	    			        	setKeyboardVisible(true);
-	    			    }
-	    			    else
-	    			    {
-	    			    	if (isKeyboardVisible)
-	    			    		setKeyboardVisible(false);
-	    			    }
-	    			 }
-	    		});
-	        	
-	        	if (customContentSize)
+	        	final String layoutFile = metaData.getString("layout");
+	        	retainLayout = metaData.getBoolean("retainLayout", false);
+	        	if (retainLayout)
+	        		viewContext = new MutableContextWrapper(this);
+	        	if (retainLayout && restoreLayout(getLastNonConfigurationInstance()))
+	        	{
+	        		AbLEUtil.info("Restored the retained View of file %s", layoutFile);
+	        	}
+	        	else if (metaData.getBoolean("asyncLayout", false))
 	        	{
-	        		RelativeLayout rl = new RelativeLayout(this);
-	        		rl.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
-	        		
-	        		if (backgroundResource > 0)
-	        		{
-	        			rl.setBackgroundResource(backgroundResource);
-	        		}
-	        		else//use background color
-	        		{
-	        			rl.setBackgroundColor(backgroundColor);
-	        		}
-	        		
-	        		RelativeLayout.LayoutParams params = new RelativeLayout.LayoutParams(customContentWidth, customContentHeight);
-	        		params.addRule(RelativeLayout.CENTER_IN_PARENT);
-	        		contentView.setLayoutParams(params);
-	        		
-	        		rl.addView(contentView);
-	        		setContentView(rl);
+	        		AbLEUtil.info("Inflating View at file %s", layoutFile);
+	        		//load the class, but let the inflater initialize it off the main thread
+	        		Class<?> layout = Class.forName(layoutFile, false, getLayoutClassLoader());
+	        		currentScreen = layout;
+	        		inflationTask = AnnotatedLayoutInflater.inflateAsync(this, layout, new InflationCallback() {
+						
+						public void onInflated(View view) {
+							inflationTask = null;
+							if (view != null)
+								setContentLayout(view);
+							else
+								AbLEUtil.err("Could not inflate layout %s", layoutFile);
+						}
+					});
 	        	}
 	        	else
 	        	{
-	        		setContentView(contentView);
+	        		AbLEUtil.info("Inflating View at file %s", layoutFile);
+	        		Class<?> layout = Class.forName(layoutFile, true, getLayoutClassLoader());
+	        		currentScreen = layout;
+	        		setContentLayout(AnnotatedLayoutInflater.inflate(this, layout, null));
 	        	}
 	        }
 		} catch (NameNotFoundException e) {
@@ -222,6 +253,388 @@ public class AbLEActivity extends Activity {
 		}
 	}
 	
+	/**
+	 * Replaces the current layout with the given layout class. Instead of inflating the new layout from
+	 * scratch, it is reconciled with the current layout (see 
+	 * {@link AnnotatedLayoutInflater#reconcile(AbLEActivity, View, Class)}): views that match are reused
+	 * and updated, and only the views that differ are created or removed. This makes switching between
+	 * similar screens much cheaper. If the root cannot be reused, the previous layout is released to the 
+	 * {@link #getViewPool() view pool}, and its bindings are unsubscribed. {@link #onLayoutInflated(View)} 
+	 * is then notified.
+	 * @param layout the new layout class
+	 */
+	public void setContentLayout(Class<?> layout)
+	{
+		layout = getLayoutClass(layout);
+		View root = AnnotatedLayoutInflater.reconcile(this, contentView, layout);
+		currentScreen = layout;
+		screenCache.remove(layout);
+		if (root == null)
+		{
+			AbLEUtil.err("Could not inflate layout %s", layout.getName());
+		}
+		else if (root == contentView)
+		{
+			//the root was reused, so it is already the content view
+			viewIndex = ViewIndex.of(contentView);
+			onLayoutInflated(contentView);
+		}
+		else
+		{
+			//the root could not be reused, so the previous layout is discarded
+			View previous = contentView;
+			setContentLayout(root);
+			if (previous != null)
+				viewPool.release(previous);
+		}
+	}
+	
+	/**
+	 * Shows the screen declared by the given layout class, and remembers the current screen so that
+	 * {@link #goBack()} (or the back button) returns to it. The current screen is detached and kept in the 
+	 * {@link #getScreenCache() screen cache}, and the new screen is restored from the cache if it was shown
+	 * before. Otherwise it is inflated.
+	 * @param layout the layout class of the screen
+	 */
+	public void showScreen(Class<?> layout)
+	{
+		layout = getLayoutClass(layout);
+		if (layout == currentScreen)
+			return;
+		Class<?> previous = currentScreen;
+		if (switchScreen(layout) && previous != null)
+			screenStack.add(previous);
+	}
+	
+	/**
+	 * Returns to the screen that was shown before the current screen was shown by {@link #showScreen(Class)}.
+	 * Screens that are still in the {@link #getScreenCache() screen cache} are restored without being inflated.
+	 * @return {@code true} if a previous screen was shown, or {@code false} if there is none.
+	 */
+	public boolean goBack()
+	{
+		while (!screenStack.isEmpty())
+		{
+			if (switchScreen(screenStack.remove(screenStack.size() - 1)))
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Shows the screen of the given layout class, and caches the current screen.
+	 * @param layout the layout class of the screen
+	 * @return {@code true} if the screen is shown
+	 */
+	private boolean switchScreen(Class<?> layout)
+	{
+		View root = screenCache.take(layout);
+		if (root != null && !AnnotatedLayoutInflater.matchesConfiguration(this, root, layout))
+		{
+			//the screen was cached in another configuration, and a different variant matches now
+			viewPool.release(root);
+			root = null;
+		}
+		if (root == null)
+			root = AnnotatedLayoutInflater.inflate(this, layout, null);
+		if (root == null)
+		{
+			AbLEUtil.err("Could not inflate layout %s", layout.getName());
+			return false;
+		}
+		View previous = contentView;
+		Class<?> previousScreen = currentScreen;
+		currentScreen = layout;
+		setContentLayout(root);
+		if (previous != null && previousScreen != null && previous != root)
+		{
+			if (previous.getParent() instanceof ViewGroup)
+				((ViewGroup) previous.getParent()).removeView(previous);
+			screenCache.put(previousScreen, previous);
+		}
+		return true;
+	}
+	
+	/**
+	 * @return the cache of the screens that are not shown. Its size can be changed using
+	 * {@link ScreenCache#setMaxWeight(int)}.
+	 */
+	public ScreenCache getScreenCache()
+	{
+		return screenCache;
+	}
+	
+	/**
+	 * @return the pool of views that inflaters reuse instead of creating new views. Pass discarded layouts
+	 * to {@link ViewPool#release(View)} to fill it.
+	 */
+	public ViewPool getViewPool()
+	{
+		return viewPool;
+	}
+	
+	/**
+	 * Returns to the previous screen, if {@link #showScreen(Class)} was used. Otherwise the Activity is
+	 * finished, as usual.
+	 */
+	@Override
+	public void onBackPressed()
+	{
+		if (!goBack())
+			super.onBackPressed();
+	}
+	
+	/**
+	 * Keeps the layout for the Activity that replaces this one after a configuration change, if the 
+	 * {@code retainLayout} meta-data is {@code true}. The new Activity shows the same views, with their
+	 * bound state, instead of inflating the layout again.
+	 * <p>
+	 * The layout is not retained if it contains {@link self.philbrown.AbLE.annotations.LayoutAdapter 
+	 * LayoutAdapter} or {@link self.philbrown.AbLE.annotations.Invisible Invisible} classes, since their
+	 * Objects are created with this Activity and cannot be moved to the new one. Static {@code @Variable} 
+	 * fields of the layout classes that reference this Activity are not changed either, so layout classes 
+	 * should get the Activity from {@link #obtain()} when they need it, rather than keep it.
+	 * @return the retained layout, or {@code null}
+	 */
+	@Override
+	public Object onRetainNonConfigurationInstance()
+	{
+		if (!retainLayout || contentView == null || inflationTask != null)
+			return null;
+		if (!AnnotatedLayoutInflater.canReattach(contentView))
+		{
+			AbLEUtil.warn("Not retaining the layout, because it contains a LayoutAdapter or Invisible class, which references the Activity");
+			return null;
+		}
+		if (keyboardListener != null)
+			contentView.getViewTreeObserver().removeGlobalOnLayoutListener(keyboardListener);
+		//the new Activity adds the views to its own window
+		if (contentView.getParent() instanceof ViewGroup)
+			((ViewGroup) contentView.getParent()).removeView(contentView);
+		return new RetainedLayout(viewContext, contentView, currentScreen, screenStack, getResources().getConfiguration());
+	}
+	
+	/**
+	 * Shows a layout retained by the Activity that this one replaces. If another {@link 
+	 * self.philbrown.AbLE.annotations.Variant Variant} of its layout class matches the new configuration,
+	 * the layout is then reconciled with it.
+	 * <p>
+	 * The views keep the resources and dimensions that were resolved in the previous configuration. The 
+	 * layout is therefore only shown again if the configuration changed in ways listed in 
+	 * {@link #RETAINED_CHANGES}, such as the orientation. Otherwise the retained screen is inflated again.
+	 * @param retained the Object returned by {@link #getLastNonConfigurationInstance()}
+	 * @return {@code true} if a layout was restored
+	 */
+	private boolean restoreLayout(Object retained)
+	{
+		if (!(retained instanceof RetainedLayout))
+			return false;
+		RetainedLayout layout = (RetainedLayout) retained;
+		int changes = layout.configuration.diff(getResources().getConfiguration());
+		if ((changes & ~RETAINED_CHANGES) != 0 && layout.screen != null)
+		{
+			AbLEUtil.info("Inflating the retained layout again, since its resources changed with the configuration");
+			AnnotatedLayoutInflater.discard(layout.root);
+			screenStack.addAll(layout.screenStack);
+			setContentLayout(layout.screen);
+			return contentView != null;
+		}
+		viewContext = layout.viewContext;
+		viewContext.setBaseContext(this);
+		currentScreen = layout.screen;
+		screenStack.addAll(layout.screenStack);
+		AnnotatedLayoutInflater.reattach(layout.root, this);
+		setContentLayout(layout.root);
+		if (currentScreen != null && !AnnotatedLayoutInflater.matchesConfiguration(this, layout.root, currentScreen))
+		{
+			//the layout was retained in another configuration, and a different variant matches now
+			setContentLayout(currentScreen);
+		}
+		return true;
+	}
+	
+	/**
+	 * Gets the context with which the views of the layout are created. This is the Activity, unless the 
+	 * {@code retainLayout} meta-data is {@code true}: the views are then created with a 
+	 * {@link MutableContextWrapper} of the Activity, which is moved to the new Activity if the layout is
+	 * retained across a configuration change. Views should then not cast their context to an Activity, and
+	 * static {@code @Variable} fields of layout classes that reference the Activity are not moved to the new
+	 * one.
+	 * @return the context of the views
+	 */
+	public Context getViewContext()
+	{
+		return viewContext == null ? this : viewContext;
+	}
+	
+	/**
+	 * Runs the static initializers of the layout classes again, without killing the process. The layout 
+	 * classes in the packages of the layout classes that this Activity has shown are loaded again by a new 
+	 * class loader, and the cached {@link self.philbrown.AbLE.annotations.LayoutPlan LayoutPlan}s are 
+	 * discarded, so the static fields of the layout classes are initialized again the next time they are 
+	 * inflated. If a layout is shown, it is reconciled with its reloaded class, and the cached screens are 
+	 * discarded. Other Activities of the process use the reloaded classes as well.
+	 * <p>
+	 * Only the classes that declare an AbLE annotation, the classes nested in them and their generated 
+	 * inflaters are loaded again. Other classes of these packages (such as controllers and models) are
+	 * shared with the rest of the application, so they are not reset, and never exist as two incompatible
+	 * types. Layout classes should therefore not be referenced directly from other classes, since those
+	 * would keep using the previous version. Must be called on the main thread.
+	 */
+	public void resetLayouts()
+	{
+		Set<String> packages = new HashSet<String>();
+		if (layoutLoader != null)
+			packages.addAll(layoutLoader.getReloadedPackages());
+		if (currentScreen != null)
+			packages.add(LayoutClassLoader.getPackageName(currentScreen.getName()));
+		for (Class<?> screen : screenStack)
+			packages.add(LayoutClassLoader.getPackageName(screen.getName()));
+		if (packages.isEmpty())
+		{
+			AbLEUtil.warn("No layout classes to reset");
+			return;
+		}
+		if (inflationTask != null)
+		{
+			inflationTask.cancel();
+			inflationTask = null;
+		}
+		layoutLoader = new LayoutClassLoader(this, packages);
+		LayoutPlan.clear();
+		screenCache.evictAll();
+		for (int i = 0; i < screenStack.size(); i++)
+			screenStack.set(i, layoutLoader.reload(screenStack.get(i)));
+		if (currentScreen == null)
+			return;
+		if (contentView != null && !isFinishing())
+			setContentLayout(currentScreen);
+		else
+			currentScreen = layoutLoader.reload(currentScreen);
+	}
+	
+	/**
+	 * @return the class loader of the layout classes named in the meta-data
+	 */
+	private ClassLoader getLayoutClassLoader()
+	{
+		return layoutLoader == null ? getClassLoader() : layoutLoader;
+	}
+	
+	/**
+	 * @param layout a layout class
+	 * @return the class of the same name that was loaded again by {@link #resetLayouts()}, or the given class
+	 */
+	private static Class<?> getLayoutClass(Class<?> layout)
+	{
+		return layoutLoader == null ? layout : layoutLoader.reload(layout);
+	}
+	
+	/**
+	 * If the layout class of the current screen declares {@link self.philbrown.AbLE.annotations.Variant Variant}s,
+	 * and a different variant matches the new configuration, the content is reconciled with that variant.
+	 * This is only called if the Activity handles the configuration change itself (see 
+	 * {@code android:configChanges}). Otherwise, the Activity is created again, and inflates the matching
+	 * variant.
+	 */
+	@Override
+	public void onConfigurationChanged(Configuration newConfig)
+	{
+		super.onConfigurationChanged(newConfig);
+		if (currentScreen != null && contentView != null && inflationTask == null
+			&& !AnnotatedLayoutInflater.matchesConfiguration(this, contentView, currentScreen))
+		{
+			setContentLayout(currentScreen);
+		}
+	}
+	
+	/**
+	 * Evicts the cached screens, since they can be inflated again.
+	 */
+	@Override
+	public void onLowMemory()
+	{
+		super.onLowMemory();
+		screenCache.evictAll();
+		viewPool.clear();
+	}
+	
+	/**
+	 * Sets the given view as the content of this Activity, and notifies {@link #onLayoutInflated(View)}.
+	 * @param view the inflated layout
+	 */
+	private void setContentLayout(View view)
+	{
+		if (contentView != null && keyboardListener != null)
+			contentView.getViewTreeObserver().removeGlobalOnLayoutListener(keyboardListener);
+		contentView = view;
+		viewIndex = ViewIndex.of(contentView);
+		if (keyboardListener == null)
+		{
+			keyboardListener = new OnGlobalLayoutListener() 
+			{
+				
+				public void onGlobalLayout() {
+					Rect r = new Rect();
+					//r will be populated with the coordinates of your view that area still visible.
+					contentView.getWindowVisibleDisplayFrame(r);
+
+					int heightDiff = contentView.getRootView().getHeight() - (r.bottom - r.top);
+					if (heightDiff > 100) 
+					{ // if more than 100 pixels, its probably a keyboard...
+						keyboardHeight = heightDiff;
+						if (!isKeyboardVisible)
+							setKeyboardVisible(true);
+					}
+					else
+					{
+						if (isKeyboardVisible)
+							setKeyboardVisible(false);
+					}
+				}
+			};
+		}
+		contentView.getViewTreeObserver().addOnGlobalLayoutListener(keyboardListener);
+		
+		if (customContentSize)
+		{
+			RelativeLayout rl = new RelativeLayout(this);
+			rl.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+			
+			if (backgroundResource > 0)
+			{
+				rl.setBackgroundResource(backgroundResource);
+			}
+			else//use background color
+			{
+				rl.setBackgroundColor(backgroundColor);
+			}
+			
+			RelativeLayout.LayoutParams params = new RelativeLayout.LayoutParams(customContentWidth, customContentHeight);
+			params.addRule(RelativeLayout.CENTER_IN_PARENT);
+			contentView.setLayoutParams(params);
+			
+			rl.addView(contentView);
+			setContentView(rl);
+		}
+		else
+		{
+			setContentView(contentView);
+		}
+		onLayoutInflated(contentView);
+	}
+	
+	/**
+	 * Called once the layout specified in the Activity meta-data has been inflated and set as the 
+	 * content view. If the {@code asyncLayout} meta-data is {@code true}, the layout is inflated on a
+	 * background thread, and this is called after {@link #onCreate(Bundle)} returns.
+	 * @param contentView the root view of the layout
+	 */
+	protected void onLayoutInflated(View contentView)
+	{
+		
+	}
+	
 	/**
 	 * Returns the location of the contentView within the screen. This is different from the screen size
 	 * when the developer specifies a custom screen size in the application meta-data
@@ -306,7 +719,8 @@ public class AbLEActivity extends Activity {
 	
 	/**
 	 * Recursively iterates through all views and view children in the layout to look for 
-	 * a view with the given id.
+	 * a view with the given id. The placeholder of a {@link self.philbrown.AbLE.annotations.Lazy Lazy}
+	 * class with that id is expanded, and its view is returned.
 	 * @param id the id of the view in question
 	 * @param v the view whose id to check, or whose children id's to check
 	 * @return the view in the layout with the given id, or null if it was not found.
@@ -315,6 +729,8 @@ public class AbLEActivity extends Activity {
 	{
 		if (v.getId() == id)
 		{
+			if (v instanceof LazyView)
+				return ((LazyView) v).expand();
 			return v;
 		}
 		else
@@ -334,16 +750,34 @@ public class AbLEActivity extends Activity {
 	
 	/**
 	 * This is a replacement for {@link Activity#findViewById(int)}, that handles the id query
-	 * based on the annotations-based layout scheme.
+	 * based on the annotations-based layout scheme. Views are looked up in the {@link ViewIndex} of
+	 * the layout, which takes constant time.
 	 * @param id the view id for which to query
 	 * @return the view with the given id, or null if no view with that id is found in the layout.
 	 */
 	@Override
 	public View findViewById(int id)
 	{
+		if (viewIndex != null)
+		{
+			View v = viewIndex.findViewById(id);
+			if (v != null)
+				return v;
+			//the view may be in a ViewGroup whose hierarchy listener was replaced
+		}
 		return recursivelyFindViewById(id, contentView);
 	}
 	
+	/**
+	 * Gets the index of the views in the layout, which can also find views by tag or by the layout class
+	 * that declared them.
+	 * @return the index, or {@code null} if the layout has not been inflated yet.
+	 */
+	public ViewIndex getViewIndex()
+	{
+		return viewIndex;
+	}
+	
 	/**
 	 * Adds a listener to {@link #listeners}. 
 	 * This does not check for multiple instances of listeners.
@@ -441,6 +875,11 @@ public class AbLEActivity extends Activity {
 	public void onDestroy()
 	{
 		super.onDestroy();	
+		if (inflationTask != null)
+		{
+			inflationTask.cancel();
+			inflationTask = null;
+		}
 		for (ActivityListener listener : listeners)
 		{
 			listener.onDestroy();
@@ -461,6 +900,7 @@ public class AbLEActivity extends Activity {
 	/**
 	 * Kill the application. This can be used for cases where Objects in static layout files reference
 	 * variables that will be nullified when the application closes - but are not reset by the VM.
+	 * {@link #resetLayouts()} resets these classes without restarting the process.
 	 */
 	public void killProcess()
 	{
@@ -510,4 +950,39 @@ public class AbLEActivity extends Activity {
 	{
 		return new WeakReference<AbLEActivity>(self);
 	}
+	
+	/**
+	 * The layout kept across the recreation of an {@code AbLEActivity}
+	 */
+	private static final class RetainedLayout
+	{
+		/** The context of the views */
+		final MutableContextWrapper viewContext;
+		/** The root view */
+		final View root;
+		/** The layout class of the root view */
+		final Class<?> screen;
+		/** The layout classes of the screens to return to */
+		final List<Class<?>> screenStack;
+		/** The configuration in which the layout was inflated */
+		final Configuration configuration;
+		
+		/**
+		 * Constructor
+		 * @param viewContext the context of the views
+		 * @param root the root view
+		 * @param screen the layout class of the root view
+		 * @param screenStack the layout classes of the screens to return to
+		 * @param configuration the configuration in which the layout was inflated. It is copied.
+		 */
+		RetainedLayout(MutableContextWrapper viewContext, View root, Class<?> screen, List<Class<?>> screenStack,
+				Configuration configuration)
+		{
+			this.viewContext = viewContext;
+			this.root = root;
+			this.screen = screen;
+			this.screenStack = new ArrayList<Class<?>>(screenStack);
+			this.configuration = new Configuration(configuration);
+		}
+	}
 }
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package self.philbrown.AbLE;
+
+import java.util.Collections;
+import java.util.Set;
+
+import self.philbrown.AbLE.annotations.AnnotatedLayoutInflater;
+import self.philbrown.AbLE.annotations.LayoutPlan;
+import android.content.Context;
+import dalvik.system.DexClassLoader;
+
+/**
+ * Loads the layout classes of some packages of the application again, so that their static initializers
+ * run again without restarting the process. This is used by {@link AbLEActivity#resetLayouts()}, since 
+ * layout classes keep their state in static fields. Only layout classes (classes that declare an AbLE 
+ * annotation, and the classes nested in them, including anonymous classes) of the given packages (but not 
+ * of their subpackages), and their generated inflaters, are loaded from the application's dex file by 
+ * this loader first. Every other class, including the other classes of these packages (such as 
+ * controllers, models and Activities), is loaded by the application's class loader as usual, so that the
+ * reloaded layout classes share them with the rest of the application, and no class exists as two 
+ * incompatible types.
+ * @author Phil Brown
+ */
+final class LayoutClassLoader extends DexClassLoader
+{
+	/** The names of the packages whose classes are loaded again */
+	private final Set<String> packages;
+	
+	/**
+	 * Constructor
+	 * @param context used to find the application's dex file and class loader
+	 * @param packages the names of the packages whose classes are loaded again
+	 */
+	LayoutClassLoader(Context context, Set<String> packages)
+	{
+		super(context.getApplicationInfo().sourceDir, context.getDir("able_layouts", Context.MODE_PRIVATE).getAbsolutePath(), 
+			  null, context.getClassLoader());
+		this.packages = Collections.unmodifiableSet(packages);
+	}
+	
+	/**
+	 * @return the names of the packages whose classes are loaded again
+	 */
+	Set<String> getReloadedPackages()
+	{
+		return packages;
+	}
+	
+	/**
+	 * @param name the binary name of a class
+	 * @return the name of the package of the class
+	 */
+	static String getPackageName(String name)
+	{
+		int dot = name.lastIndexOf('.');
+		return dot < 0 ? "" : name.substring(0, dot);
+	}
+	
+	/**
+	 * Gets the version of a class that this loader loads
+	 * @param layout a class loaded by any class loader
+	 * @return the class of the same name loaded by this loader, or the given class if this loader does not
+	 * load it again
+	 */
+	Class<?> reload(Class<?> layout)
+	{
+		if (layout.getClassLoader() == this || !packages.contains(getPackageName(layout.getName())))
+			return layout;
+		try
+		{
+			return loadClass(layout.getName());
+		} catch (ClassNotFoundException e)
+		{
+			AbLEUtil.err("Could not load %s again", layout.getName());
+			return layout;
+		}
+	}
+	
+	/**
+	 * Checks whether a class of one of the packages is loaded again
+	 * @param original the class, loaded by the application's class loader
+	 * @return {@code true} if the class is a layout class, is nested in one, or is the generated inflater
+	 * of one
+	 */
+	private boolean isReloaded(Class<?> original)
+	{
+		if (Context.class.isAssignableFrom(original))
+			return false;
+		String name = original.getName();
+		if (name.endsWith(AnnotatedLayoutInflater.GENERATED_SUFFIX))
+		{
+			try
+			{
+				String layout = name.substring(0, name.length() - AnnotatedLayoutInflater.GENERATED_SUFFIX.length());
+				return isReloaded(getParent().loadClass(layout));
+			} catch (ClassNotFoundException e)
+			{
+				return false;
+			}
+		}
+		for (Class<?> c = original; c != null; c = c.getEnclosingClass())
+		{
+			if (LayoutPlan.isLayoutClass(c))
+				return true;
+		}
+		return false;
+	}
+	
+	@Override
+	protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException
+	{
+		if (!packages.contains(getPackageName(name)))
+			return super.loadClass(name, resolve);
+		Class<?> c = findLoadedClass(name);
+		if (c == null)
+		{
+			Class<?> original = getParent().loadClass(name);
+			if (!isReloaded(original))
+				return original;
+			try
+			{
+				c = findClass(name);
+			} catch (ClassNotFoundException e)
+			{
+				//not in the application's dex file
+				return original;
+			}
+		}
+		if (resolve)
+			resolveClass(c);
+		return c;
+	}
+}
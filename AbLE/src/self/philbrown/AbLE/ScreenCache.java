@@ -0,0 +1,231 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package self.philbrown.AbLE;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * A least-recently-used cache of detached screens (root views), by layout class. It is used by
+ * {@link AbLEActivity#showScreen(Class)} and {@link AbLEActivity#goBack()} so that a screen that was
+ * shown before is restored without being inflated again. The size of the cache is bounded by the total 
+ * number of views in the cached screens, so a few large screens take as much room as many small ones.
+ * @author Phil Brown
+ */
+public class ScreenCache
+{
+	/** The default maximum number of views in all the cached screens */
+	public static final int DEFAULT_MAX_WEIGHT = 1000;
+	
+	/** The cached screens, from least to most recently used */
+	private final LinkedHashMap<Class<?>, Entry> screens = new LinkedHashMap<Class<?>, Entry>(8, 0.75f, true);
+	/** The maximum number of views in all the cached screens */
+	private int maxWeight;
+	/** The number of views in all the cached screens */
+	private int weight;
+	/** The number of screens that were restored from the cache */
+	private int hits;
+	/** The number of screens that were not in the cache */
+	private int misses;
+	
+	/**
+	 * Constructor
+	 * @param maxWeight the maximum number of views in all the cached screens
+	 */
+	public ScreenCache(int maxWeight)
+	{
+		this.maxWeight = maxWeight;
+	}
+	
+	/**
+	 * Caches the given detached screen. A screen whose weight is larger than the maximum weight is not
+	 * cached, and is passed to {@link #onEvicted(Class, View)} right away, as is a different screen that was
+	 * cached for the same layout class. Least recently used screens are evicted to make room.
+	 * @param layout the layout class of the screen
+	 * @param root the root view of the screen. It must not have a parent.
+	 */
+	public void put(Class<?> layout, View root)
+	{
+		Entry previous = screens.remove(layout);
+		if (previous != null)
+		{
+			weight -= previous.weight;
+			if (previous.root != root)
+				onEvicted(layout, previous.root);
+		}
+		int viewCount = countViews(root);
+		if (viewCount > maxWeight)
+		{
+			onEvicted(layout, root);
+			return;
+		}
+		screens.put(layout, new Entry(root, viewCount));
+		weight += viewCount;
+		trimToWeight(maxWeight);
+	}
+	
+	/**
+	 * Removes a screen from the cache, so that it can be shown.
+	 * @param layout the layout class of the screen
+	 * @return the root view of the screen, or {@code null} if it is not cached
+	 */
+	public View take(Class<?> layout)
+	{
+		Entry entry = screens.remove(layout);
+		if (entry == null)
+		{
+			misses++;
+			return null;
+		}
+		hits++;
+		weight -= entry.weight;
+		return entry.root;
+	}
+	
+	/**
+	 * Removes a screen from the cache, if it is cached
+	 * @param layout the layout class of the screen
+	 */
+	public void remove(Class<?> layout)
+	{
+		Entry entry = screens.remove(layout);
+		if (entry != null)
+			weight -= entry.weight;
+	}
+	
+	/**
+	 * Evicts the least recently used screens until the cache weighs no more than the given weight.
+	 * @param maxWeight the maximum number of views in all the cached screens. Use 0 to evict all screens.
+	 */
+	public void trimToWeight(int maxWeight)
+	{
+		Iterator<Map.Entry<Class<?>, Entry>> iterator = screens.entrySet().iterator();
+		while (weight > maxWeight && iterator.hasNext())
+		{
+			Map.Entry<Class<?>, Entry> entry = iterator.next();
+			iterator.remove();
+			weight -= entry.getValue().weight;
+			onEvicted(entry.getKey(), entry.getValue().root);
+		}
+	}
+	
+	/**
+	 * Evicts all screens
+	 */
+	public void evictAll()
+	{
+		trimToWeight(0);
+	}
+	
+	/**
+	 * Called when a screen is evicted from the cache, or is too heavy to be cached. It is not called for 
+	 * screens that are taken or removed. Does nothing by default.
+	 * @param layout the layout class of the screen
+	 * @param root the root view of the screen
+	 */
+	protected void onEvicted(Class<?> layout, View root)
+	{
+		
+	}
+	
+	/**
+	 * Sets the maximum number of views in all the cached screens, evicting screens if needed.
+	 * @param maxWeight the maximum weight
+	 */
+	public void setMaxWeight(int maxWeight)
+	{
+		this.maxWeight = maxWeight;
+		trimToWeight(maxWeight);
+	}
+	
+	/**
+	 * @return the maximum number of views in all the cached screens
+	 */
+	public int getMaxWeight()
+	{
+		return maxWeight;
+	}
+	
+	/**
+	 * @return the number of views in all the cached screens
+	 */
+	public int getWeight()
+	{
+		return weight;
+	}
+	
+	/**
+	 * @return the number of cached screens
+	 */
+	public int size()
+	{
+		return screens.size();
+	}
+	
+	/**
+	 * @return the number of screens that were restored from the cache
+	 */
+	public int getHitCount()
+	{
+		return hits;
+	}
+	
+	/**
+	 * @return the number of screens that were requested but were not in the cache
+	 */
+	public int getMissCount()
+	{
+		return misses;
+	}
+	
+	/**
+	 * @return the number of views in the hierarchy under the given view, including the view itself
+	 */
+	private static int countViews(View view)
+	{
+		int count = 1;
+		if (view instanceof ViewGroup)
+		{
+			ViewGroup group = (ViewGroup) view;
+			for (int i = 0; i < group.getChildCount(); i++)
+				count += countViews(group.getChildAt(i));
+		}
+		return count;
+	}
+	
+	/**
+	 * A cached screen
+	 */
+	private static class Entry
+	{
+		/** The root view of the screen */
+		final View root;
+		/** The number of views in the screen */
+		final int weight;
+		
+		Entry(View root, int weight)
+		{
+			this.root = root;
+			this.weight = weight;
+		}
+	}
+}
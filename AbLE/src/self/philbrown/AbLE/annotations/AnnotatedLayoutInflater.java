@@ -16,12 +16,17 @@
 
 package self.philbrown.AbLE.annotations;
 
-import java.lang.annotation.Annotation;
-import java.lang.reflect.Constructor;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import self.philbrown.AbLE.AbLEActivity;
 import self.philbrown.AbLE.AbLEUtil;
+import self.philbrown.AbLE.R;
 import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AdapterView;
 
 /**
  * Layout Inflater to be used with the Annotated Layout Framework.
@@ -32,16 +37,28 @@ public class AnnotatedLayoutInflater
 {
 	/** 
 	 * This context is passed to the inflater, and in turn is passed to all children inflaters.
-	 * It is publicly available during layout, after which it is set to null. This allows layout
-	 * classes access to the activity during inflation, which can be used in a static block. 
+	 * It is publicly available during layout, after which it is restored to its previous value. This
+	 * allows layout classes access to the activity during inflation, which can be used in a static block. 
+	 * @deprecated this is shared by all threads, so it is not reliable when several layouts are inflated
+	 * at the same time. Use {@link #getContext()} or {@link InflationContext#current()}.
 	 */
 	public static AbLEActivity context;
-	/** This provides non-static access to the class name */
-	private static AnnotatedLayoutInflater self;
+	/** 
+	 * Suffix appended to the binary name of a layout class to get the name of the inflater that is
+	 * generated for it by the AbLE annotation processor.
+	 */
+	public static final String GENERATED_SUFFIX = "_AbLEInflater";
+	/** Runs asynchronous inflations */
+	private static Executor executor;
+	/** Checks the {@link IncludeIf} and {@link ExcludeIf} conditions and the {@link Lazy} annotation of a child class */
+	private static final int CHECK_ALL = 0;
+	/** Only checks the {@link Lazy} annotation of a child class, whose condition is true */
+	private static final int CHECK_LAZY = 1;
+	/** Inflates the class without checking its annotations */
+	private static final int CHECK_NONE = 2;
 	
 	/** 
-	 * Constructor. {@link #self} is created using this constructor, but classes should only use the static 
-	 * methods that this class provides.
+	 * Constructor. Classes should only use the static methods that this class provides.
 	 */
 	private AnnotatedLayoutInflater()
 	{
@@ -51,9 +68,12 @@ public class AnnotatedLayoutInflater
 	/**
 	 * This method is called to inflate a View from an annotated class in a layout file. It maintains
 	 * a record of parent classes so children classes can access variables and other information from
-	 * super classes in the layout. This method simply delegates the layout inflation to the class
-	 * with the name of the annotation, followed by "Inflater". The inflater methods generally re-call
-	 * this method to inflate children views, creating a recursive layout process.
+	 * super classes in the layout. If the AbLE annotation processor generated an inflater for the
+	 * class, it is used. Otherwise, this method simply delegates the layout inflation to the inflater
+	 * registered for the class's annotation in the {@link InflaterRegistry}. The inflater methods generally re-call
+	 * this method to inflate children views, creating a recursive layout process. Everything that is
+	 * learned about the class through reflection is cached in its {@link LayoutPlan}, so each class
+	 * is only introspected once.
 	 * @param _context used to create views or access resources
 	 * @param layout the class that is declared in the layout file
 	 * @param parent the previous Inflater that created a view. Use <em>null</em> to denote the
@@ -62,55 +82,393 @@ public class AnnotatedLayoutInflater
 	 */
 	public static View inflate(AbLEActivity _context, Class<?> layout, ClassAnnotationInflater parent)
 	{
+		return inflate(_context, LayoutPlan.of(layout), parent);
+	}
+	
+	/**
+	 * Inflates a View using the cached {@link LayoutPlan} of a layout class. 
+	 * @param _context used to create views or access resources
+	 * @param plan the plan of the class that is declared in the layout file
+	 * @param parent the previous Inflater that created a view. Use <em>null</em> to denote the
+	 * root of the hierarchy (generally the <em>Activity</em>), or a break in the hierarchy.
+	 * @return the inflated View, or {@code null} if the class could not be inflated
+	 * @see #inflate(AbLEActivity, Class, ClassAnnotationInflater)
+	 */
+	public static View inflate(AbLEActivity _context, LayoutPlan plan, ClassAnnotationInflater parent)
+	{
+		return inflate(_context, plan, parent, null, CHECK_ALL);
+	}
+	
+	/**
+	 * Inflates the root view of an inflation whose context has already been created, such as an 
+	 * asynchronous inflation.
+	 * @param plan the plan of the layout class
+	 * @param inflation the context of the inflation
+	 * @return the inflated View, or {@code null} if the class could not be inflated
+	 */
+	static View inflate(LayoutPlan plan, InflationContext inflation)
+	{
+		return inflate(inflation.getActivity(), plan, null, inflation, CHECK_ALL);
+	}
+	
+	/**
+	 * Inflates a class declared with {@link IncludeIf} or {@link ExcludeIf} without checking its condition
+	 * again. This is used once the condition was found to be true. If the class is {@link Lazy}, a 
+	 * {@link LazyView} is returned.
+	 * @param plan the plan of the conditional class
+	 * @param parent the inflater of the parent view
+	 * @param inflation the context of the inflation, or {@code null} to use the parent's
+	 * @return the inflated View, or {@code null} if the class could not be inflated
+	 */
+	static View inflateBranch(LayoutPlan plan, ClassAnnotationInflater parent, InflationContext inflation)
+	{
+		return inflate(parent.context, plan, parent, inflation, CHECK_LAZY);
+	}
+	
+	/**
+	 * Inflates the subtree of a {@link Lazy} class, once its view is needed
+	 * @param plan the plan of the lazy class
+	 * @param parent the inflater of the parent view
+	 * @param inflation the context of the inflation
+	 * @return the inflated View, or {@code null} if the class could not be inflated
+	 */
+	static View inflateLazy(LayoutPlan plan, ClassAnnotationInflater parent, InflationContext inflation)
+	{
+		return inflate(parent.context, plan, parent, inflation, CHECK_NONE);
+	}
+	
+	/**
+	 * Inflates a View using the cached {@link LayoutPlan} of a layout class.
+	 * @param _context used to create views or access resources
+	 * @param plan the plan of the class that is declared in the layout file
+	 * @param parent the previous Inflater that created a view, or <em>null</em>
+	 * @param inflation the context of the inflation, or {@code null}. If this is {@code null}, the 
+	 * context of the parent is used, or a new context is created for a root.
+	 * @param check which annotations of a child class to check first: {@link #CHECK_ALL}, {@link #CHECK_LAZY}
+	 * or {@link #CHECK_NONE}
+	 * @return the inflated View, or {@code null} if the class could not be inflated or is excluded
+	 */
+	private static View inflate(AbLEActivity _context, LayoutPlan plan, ClassAnnotationInflater parent, InflationContext inflation, int check)
+	{
+		if (inflation == null)
+			inflation = parent == null || parent.inflation == null ? new InflationContext(_context, null) : parent.inflation;
+		InflationContext previous = InflationContext.enter(inflation);
+		AbLEActivity previousContext = context;
+		context = _context;
+		LayoutPlan declared = plan;
+		ClassAnnotationInflater inflater = null;
 		try
 		{
-			context = _context;
-			if (self == null)
-				self = new AnnotatedLayoutInflater();
-			Annotation[] annotations = layout.getAnnotations();
-			Annotation root = null;
-			for (Annotation a : annotations)
-			{
-				//NPE.info("Annotation Found: %s", a.annotationType().getName());
-				if (a.annotationType().getPackage() == self.getClass().getPackage())
-				{
-					root = a;
-					break;
-				}
-			}
-			if (root == null)
+			if (plan.getAnnotation() == null)
 				throw new MissingAnnotationException("Could not find a valid annotation for this class");
+			if (check == CHECK_ALL && parent != null && plan.isConditional())
+				return ConditionalBranch.inflate(plan, parent, inflation);
+			if (check != CHECK_NONE && parent != null && plan.isLazy())
+				return new LazyView(plan, parent, inflation);
+			//the conditions and laziness of a class apply to all of its variants
+			if (!plan.getVariants().isEmpty())
+				plan = plan.resolve(inflation.getConfiguration());
 			
-			//root is an annotation from this package. Use reflection to get the name of the class
-			//that handles its inflation.
-			String clazz = AbLEUtil.buildString(root.annotationType().getName(), "Inflater");
-			//NPE.info("Looking for class: %s", clazz);
-			Class<?> rootInflater = Class.forName(clazz);//, true, ClassLoader.getSystemClassLoader());
-			Constructor<?> constructor = rootInflater.getConstructor(new Class<?>[]{AbLEActivity.class, ClassAnnotationInflater.class});
-			ClassAnnotationInflater inflater = (ClassAnnotationInflater) constructor.newInstance(context, parent);
-			
-			//TODO create tree hierarchy of ClassAnnotationInflaters so that variables and bindings
-			//in the proper scope can be handed to all created Abstract objects. We are receiving
-			//a hierarchy as it is - we just need to make something happen, and keeping the scope
-			//would be a huge plus.
+			inflater = plan.newInflater(_context, parent);
+			inflater.inflation = inflation;
+			inflater.previous = inflation.takeReuse();
 			
 			//inflate, then return, the view
-			View v = inflater.inflate(layout);
-			
+			View v = inflater.inflateRecorded(plan);
+			if (v != null && parent == null)
+			{
+				inflation.getIndex().markRoot(v);
+				v.setTag(R.id.able_inflation_record, inflater.record);
+			}
 			
 			//TODO set binding variables and allow access to them from Activity to handle on...methods
 			
-			context = null;
 			return v;
 		} catch (Throwable t)
 		{
+			//a generated inflater could not create its view on the background thread of an asynchronous inflation
+			if (inflater != null && inflater.requireMainThread(plan))
+			{
+				if (declared != plan)
+					declared.setRequiresMainThread();
+				return null;
+			}
 			t.printStackTrace();
-			context = null;
 			return null;
 		}
+		finally
+		{
+			context = previousContext;
+			InflationContext.exit(previous);
+		}
 		
 	}
 	
+	/**
+	 * Checks whether an inflated layout was inflated from the {@link Variant} of its layout class that 
+	 * matches the current device configuration. The variant of each configuration is cached, so this does
+	 * not introspect any class.
+	 * @param _context used to read the configuration
+	 * @param rootView the root view of the layout
+	 * @param layout the layout class that the layout was inflated from
+	 * @return {@code true} if the layout uses the matching variant, or if the layout class has no variants
+	 */
+	public static boolean matchesConfiguration(AbLEActivity _context, View rootView, Class<?> layout)
+	{
+		LayoutPlan plan = LayoutPlan.of(layout);
+		if (plan.getVariants().isEmpty())
+			return true;
+		Object record = rootView.getTag(R.id.able_inflation_record);
+		return record instanceof InflationRecord 
+				&& ((InflationRecord) record).getPlan() == plan.resolve(LayoutConfiguration.of(_context));
+	}
+	
+	/**
+	 * Moves a layout that was retained across the recreation of its Activity (such as for a configuration
+	 * change) to the new Activity. The views themselves keep their context, so they must have been created 
+	 * with a context that follows the new Activity (see {@link AbLEActivity#getViewContext()}). This moves
+	 * the parts of the layout that inflate views later - {@link Repeat}ed classes, {@link IncludeIf} and 
+	 * {@link ExcludeIf} branches, {@link Lazy} placeholders and {@link ListLayout} rows - so that they inflate
+	 * them for the new Activity, and no longer reference the previous one. Must be called on the main thread.
+	 * @param rootView the root view of the retained layout
+	 * @param _context the new Activity
+	 */
+	public static void reattach(View rootView, AbLEActivity _context)
+	{
+		Object repeaters = rootView.getTag(R.id.able_repeat);
+		if (repeaters instanceof List)
+		{
+			for (Object repeater : (List<?>) repeaters)
+				((Repeater) repeater).reattach(_context);
+		}
+		Object branch = rootView.getTag(R.id.able_condition);
+		if (branch instanceof ConditionalBranch)
+			((ConditionalBranch) branch).reattach(_context);
+		Object row = rootView.getTag(R.id.able_list_item);
+		if (row instanceof ClassAnnotationInflater)
+			((ClassAnnotationInflater) row).reattach(_context);
+		if (rootView instanceof LazyView)
+			((LazyView) rootView).reattach(_context);
+		if (rootView instanceof AdapterView && ((AdapterView<?>) rootView).getAdapter() instanceof ListLayoutAdapter)
+			((ListLayoutAdapter) ((AdapterView<?>) rootView).getAdapter()).reattach(_context);
+		if (rootView instanceof ViewGroup)
+		{
+			ViewGroup group = (ViewGroup) rootView;
+			for (int i = 0; i < group.getChildCount(); i++)
+				reattach(group.getChildAt(i), _context);
+		}
+	}
+	
+	/**
+	 * Stops the bindings of an inflated layout from updating its views. This is used for a layout that is
+	 * discarded without being released to a {@link ViewPool}, such as a retained layout whose resources no
+	 * longer match the configuration.
+	 * @param rootView the root view of the layout
+	 */
+	public static void discard(View rootView)
+	{
+		Object record = rootView.getTag(R.id.able_inflation_record);
+		if (record instanceof InflationRecord)
+			((InflationRecord) record).unsubscribe();
+	}
+	
+	/**
+	 * Checks whether a layout can be {@link #reattach(View, AbLEActivity) reattached} to a new Activity. 
+	 * {@link LayoutAdapter} and {@link Invisible} classes create their Objects with the Activity itself, 
+	 * rather than with the {@link AbLEActivity#getViewContext() context of the views}, so a layout that 
+	 * contains them would keep referencing the previous Activity.
+	 * @param rootView the root view of the layout
+	 * @return {@code true} if the layout contains no Object that was created with the Activity
+	 */
+	public static boolean canReattach(View rootView)
+	{
+		Object record = rootView.getTag(R.id.able_inflation_record);
+		if (record instanceof InflationRecord && holdsActivity((InflationRecord) record))
+			return false;
+		Object row = rootView.getTag(R.id.able_list_item);
+		if (row instanceof ClassAnnotationInflater && ((ClassAnnotationInflater) row).record != null 
+				&& holdsActivity(((ClassAnnotationInflater) row).record))
+			return false;
+		if (rootView instanceof ViewGroup)
+		{
+			ViewGroup group = (ViewGroup) rootView;
+			for (int i = 0; i < group.getChildCount(); i++)
+			{
+				if (!canReattach(group.getChildAt(i)))
+					return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * @param record the record of a layout class
+	 * @return {@code true} if the class or one of its children created its Object with the Activity
+	 */
+	private static boolean holdsActivity(InflationRecord record)
+	{
+		Object annotation = record.getPlan().getAnnotation();
+		if (record.getTarget() != null && (annotation instanceof LayoutAdapter || annotation instanceof Invisible))
+			return true;
+		List<InflationRecord> children = record.getChildren();
+		for (int i = 0; i < children.size(); i++)
+		{
+			if (holdsActivity(children.get(i)))
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Updates an inflated layout after the static fields of its layout classes have changed, without 
+	 * inflating it again. The value that each setter applied during inflation is kept; this reads each
+	 * field again, and only calls the setters whose values changed. Views whose fields did not change are
+	 * not touched, so refreshing a large layout that did not change only costs the comparisons. Arrays 
+	 * (such as {@link Setter} parameters) are compared by their elements. Getters, variables and child 
+	 * classes are not handled again. Must be called on the main thread.
+	 * @param rootView the root view returned by {@link #inflate(AbLEActivity, Class, ClassAnnotationInflater)}
+	 * (or delivered by an asynchronous or incremental inflation)
+	 * @return the number of setters that were called
+	 */
+	public static int refresh(View rootView)
+	{
+		Object record = rootView.getTag(R.id.able_inflation_record);
+		if (!(record instanceof InflationRecord))
+		{
+			AbLEUtil.warn("Cannot refresh a view that was not inflated by AnnotatedLayoutInflater");
+			return 0;
+		}
+		return ((InflationRecord) record).refresh();
+	}
+	
+	/**
+	 * Inflates a layout class by reconciling it with a layout that is already inflated, rather than creating
+	 * all of its views again. Starting at the root, each class declared with the {@link Layout} annotation 
+	 * is matched with a view of the current layout by view class, id and position. Matching views are reused:
+	 * only the setters whose values differ from those the current layout applied are called, and their 
+	 * children are reconciled the same way. Only the views that do not match are created or removed.
+	 * <p>
+	 * Setters of the current layout that the new layout does not declare are not undone. If the root cannot
+	 * be reused, a new root view is returned. Must be called on the main thread.
+	 * @param _context used to create views or access resources
+	 * @param current the root view of the current layout
+	 * @param layout the class of the new layout
+	 * @return the root view of the new layout. This is {@code current} if it was reused.
+	 */
+	public static View reconcile(AbLEActivity _context, View current, Class<?> layout)
+	{
+		InflationContext inflation = new InflationContext(_context, null);
+		Object record = current == null ? null : current.getTag(R.id.able_inflation_record);
+		if (record instanceof InflationRecord)
+			inflation.setReuse((InflationRecord) record);
+		return inflate(_context, LayoutPlan.of(layout), null, inflation, CHECK_ALL);
+	}
+	
+	/**
+	 * Gets the Activity of the inflation that is running on the current thread. Layout classes can
+	 * use this in their static initializers:
+	 * <pre>
+	 * {@code @Variable}
+	 * public static MyActivity context = (MyActivity) AnnotatedLayoutInflater.getContext();
+	 * </pre>
+	 * @return the Activity used by the current inflation, or {@code null} if no inflation is running
+	 * on this thread.
+	 * @see InflationContext#current()
+	 */
+	public static AbLEActivity getContext()
+	{
+		InflationContext inflation = InflationContext.current();
+		return inflation == null ? null : inflation.getActivity();
+	}
+	
+	/**
+	 * Inflates a View from the given layout class asynchronously. The layout class is initialized, and 
+	 * its views are created on a background thread (see {@link #setExecutor(Executor)}). The root view
+	 * is then delivered to the callback on the main thread, where it can be passed to 
+	 * {@code setContentView}. Subtrees whose views cannot be created off the main thread are detected
+	 * automatically, and are inflated on the main thread before the callback is notified.
+	 * <p>
+	 * Layout classes are only initialized off the main thread if they have not been initialized yet, 
+	 * so get the class using {@code Class.forName(name, false, classLoader)} rather than 
+	 * {@code Class.forName(name)}.
+	 * @param _context used to create views or access resources
+	 * @param layout the class that is declared in the layout file
+	 * @param callback notified on the main thread once the layout is inflated
+	 * @return the task, which can be used to cancel the inflation (for example, from {@code onDestroy}).
+	 */
+	public static InflationTask inflateAsync(AbLEActivity _context, Class<?> layout, InflationCallback callback)
+	{
+		InflationTask task = new InflationTask(_context, layout, callback);
+		getExecutor().execute(task);
+		return task;
+	}
+	
+	/**
+	 * Inflates a View from the given layout class on the main thread, in slices that each use up to 
+	 * {@link IncrementalInflation#DEFAULT_BUDGET} milliseconds, so that drawing and input are not blocked 
+	 * while a large layout is created.
+	 * @param _context used to create views or access resources
+	 * @param layout the class that is declared in the layout file
+	 * @param callback notified once the layout is inflated. An {@link InflationProgressListener} is 
+	 * also notified after each slice.
+	 * @return the inflation, which can be used to cancel it, or to get the partially inflated root view.
+	 * @see #inflateIncrementally(AbLEActivity, Class, long, InflationCallback)
+	 */
+	public static IncrementalInflation inflateIncrementally(AbLEActivity _context, Class<?> layout, InflationCallback callback)
+	{
+		return inflateIncrementally(_context, layout, IncrementalInflation.DEFAULT_BUDGET, callback);
+	}
+	
+	/**
+	 * Inflates a View from the given layout class on the main thread, in slices. Each slice inflates 
+	 * layout classes until the given budget is used, then posts the next slice, so that frames can be
+	 * drawn in between.
+	 * @param _context used to create views or access resources
+	 * @param layout the class that is declared in the layout file
+	 * @param budget the longest time, in milliseconds, that each slice may spend inflating. At least
+	 * one layout class is inflated per slice.
+	 * @param callback notified once the layout is inflated. An {@link InflationProgressListener} is 
+	 * also notified after each slice.
+	 * @return the inflation, which can be used to cancel it, or to get the partially inflated root view.
+	 */
+	public static IncrementalInflation inflateIncrementally(AbLEActivity _context, Class<?> layout, long budget, InflationCallback callback)
+	{
+		IncrementalInflation inflation = new IncrementalInflation(_context, layout, budget, callback);
+		inflation.start();
+		return inflation;
+	}
+	
+	/**
+	 * Sets the executor used by {@link #inflateAsync(AbLEActivity, Class, InflationCallback)}. By
+	 * default, a single background thread is used.
+	 * @param executor the executor, or {@code null} to use the default executor
+	 */
+	public static synchronized void setExecutor(Executor executor)
+	{
+		AnnotatedLayoutInflater.executor = executor;
+	}
+	
+	/**
+	 * @return the executor used by {@link #inflateAsync(AbLEActivity, Class, InflationCallback)}
+	 */
+	public static synchronized Executor getExecutor()
+	{
+		if (executor == null)
+		{
+			executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				
+				public Thread newThread(Runnable r)
+				{
+					Thread t = new Thread(r, "AbLE-inflater");
+					t.setPriority(Thread.NORM_PRIORITY - 1);
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return executor;
+	}
+	
 	/** 
 	 * Capitalizes the first letter of the given string.
 	 * @param string the string whose first letter should be capitalized
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package self.philbrown.AbLE.annotations;
+
+import java.lang.reflect.Field;
+
+import self.philbrown.AbLE.AbLEUtil;
+
+/**
+ * Calls a setter with any number of parameters, declared as an Object Array using the
+ * {@link Setter} annotation.
+ * @author Phil Brown
+ */
+public class ArgumentsSetterOp extends SetterOp
+{
+	/**
+	 * Constructor
+	 * @param field the static field that contains the Object Array of parameters
+	 */
+	public ArgumentsSetterOp(Field field)
+	{
+		super(field);
+	}
+
+	@Override
+	public void apply(Object target)
+	{
+		Object[] args = null;
+		try
+		{
+			Object value = field.get(null);
+			if (!(value instanceof Object[]))
+			{
+				AbLEUtil.warn("Invalid Setter type. Must be Object[].");
+				return;
+			}
+			args = (Object[]) value;
+			getInvoker(target, args).invoke(target, args);
+		} catch (Throwable t)
+		{
+			logError(target, args);
+		}
+	}
+}
@@ -36,5 +36,15 @@ public @interface Binding
 	 * (in which case the getVariableName method is called)
 	 * @return
 	 */
-	public String observedValue();
+	public String observedValue() default "";
+	
+	/**
+	 * An expression over the {@code @Variable}s that are visible to the class, such as 
+	 * {@code "count + ' items'"} or {@code "user.isAdmin() ? 'Admin' : user.getName()"}. If this is set,
+	 * {@link #observedValue()} is ignored. The expression is compiled once per class, and is evaluated 
+	 * again when one of the {@link ObservableValue}s it reads changes. See {@link BindingExpression}
+	 * for the supported syntax.
+	 * @return
+	 */
+	public String expr() default "";
 }
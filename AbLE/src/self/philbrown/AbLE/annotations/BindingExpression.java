@@ -0,0 +1,779 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package self.philbrown.AbLE.annotations;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import self.philbrown.AbLE.AbLEUtil;
+
+/**
+ * A compiled {@link Binding#expr() binding expression}. The expression is parsed once, when the
+ * {@link LayoutPlan} of its class is built, into a tree of nodes that is evaluated against the
+ * {@link Scope} of an inflater. The names of the variables that the expression reads are collected 
+ * while it is parsed, so that a binding only subscribes to the {@link ObservableValue}s it depends on.
+ * <p>
+ * Expressions support:
+ * <ul>
+ * <li>literals: numbers ({@code 1}, {@code 2.5}), strings ({@code "text"} or {@code 'text'}), 
+ * {@code true}, {@code false} and {@code null}</li>
+ * <li>variables, by name. A variable that holds an {@link ObservableValue} evaluates to its current value.</li>
+ * <li>arithmetic: {@code + - * / %}. {@code +} concatenates if either operand is a String.</li>
+ * <li>comparisons: {@code == != < > <= >=}, and logic: {@code && || !}</li>
+ * <li>the conditional operator: {@code a ? b : c}</li>
+ * <li>public methods, fields and getters of values: {@code user.getName()}, {@code user.name},
+ * {@code items.size()}</li>
+ * </ul>
+ * @author Phil Brown
+ */
+public final class BindingExpression
+{
+	/** The source of the expression */
+	private final String source;
+	/** The root of the compiled expression */
+	private final Node root;
+	/** The names of the variables that the expression reads */
+	private final Set<String> dependencies;
+	
+	/**
+	 * Constructor
+	 * @param source the source of the expression
+	 * @param root the root of the compiled expression
+	 * @param dependencies the names of the variables that the expression reads
+	 */
+	private BindingExpression(String source, Node root, Set<String> dependencies)
+	{
+		this.source = source;
+		this.root = root;
+		this.dependencies = Collections.unmodifiableSet(dependencies);
+	}
+	
+	/**
+	 * Compiles the given expression
+	 * @param source the expression
+	 * @return the compiled expression
+	 * @throws IllegalArgumentException if the expression is not valid
+	 */
+	public static BindingExpression compile(String source)
+	{
+		Parser parser = new Parser(source);
+		Node root = parser.parseExpression();
+		parser.skipWhitespace();
+		if (parser.position < source.length())
+			throw parser.error("Unexpected character");
+		return new BindingExpression(source, root, parser.dependencies);
+	}
+	
+	/**
+	 * Evaluates the expression
+	 * @param scope the variables that the expression can read
+	 * @return the value of the expression
+	 * @throws Throwable if a method that the expression calls fails, or an operator cannot be applied
+	 */
+	public Object evaluate(Scope scope) throws Throwable
+	{
+		return root.evaluate(scope);
+	}
+	
+	/**
+	 * Evaluates the expression as a condition
+	 * @param scope the variables that the expression can read
+	 * @return {@code false} if the value is {@code null}, {@code false}, zero or an empty String
+	 * @throws Throwable if a method that the expression calls fails, or an operator cannot be applied
+	 */
+	boolean test(Scope scope) throws Throwable
+	{
+		return truth(root.evaluate(scope));
+	}
+	
+	/**
+	 * @return the names of the variables that this expression reads
+	 */
+	public Set<String> getDependencies()
+	{
+		return dependencies;
+	}
+	
+	/**
+	 * Gets the observable variables that this expression depends on in the given scope
+	 * @param scope the scope of an inflater
+	 * @return the {@link ObservableValue}s that this expression reads. The list is empty if it reads none.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<ObservableValue<Object>> getObservables(Scope scope)
+	{
+		List<ObservableValue<Object>> observables = null;
+		for (String name : dependencies)
+		{
+			Object value = scope.get(name);
+			if (value instanceof ObservableValue)
+			{
+				if (observables == null)
+					observables = new ArrayList<ObservableValue<Object>>(dependencies.size());
+				observables.add((ObservableValue<Object>) value);
+			}
+		}
+		if (observables == null)
+			return Collections.emptyList();
+		return observables;
+	}
+	
+	/**
+	 * @return the source of the expression
+	 */
+	public String getSource()
+	{
+		return source;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return source;
+	}
+	
+	/**
+	 * Converts the value of an expression to the type of the field it is assigned to. Numbers are converted 
+	 * to the primitive type of the field, and other values are converted to Strings for String fields.
+	 * @param value the value of the expression
+	 * @param type the type of the field
+	 * @return the converted value
+	 */
+	static Object coerce(Object value, Class<?> type)
+	{
+		if (value == null || type.isInstance(value))
+			return value;
+		if (value instanceof Number)
+		{
+			Number n = (Number) value;
+			if (type == int.class || type == Integer.class)
+				return n.intValue();
+			if (type == float.class || type == Float.class)
+				return n.floatValue();
+			if (type == double.class || type == Double.class)
+				return n.doubleValue();
+			if (type == long.class || type == Long.class)
+				return n.longValue();
+			if (type == short.class || type == Short.class)
+				return n.shortValue();
+			if (type == byte.class || type == Byte.class)
+				return n.byteValue();
+		}
+		if (type == boolean.class && value instanceof Boolean)
+			return value;
+		if (type == String.class || type == CharSequence.class)
+			return String.valueOf(value);
+		return value;
+	}
+	
+	/**
+	 * A node of a compiled expression
+	 */
+	private static abstract class Node
+	{
+		abstract Object evaluate(Scope scope) throws Throwable;
+	}
+	
+	/**
+	 * A literal value
+	 */
+	private static final class Literal extends Node
+	{
+		final Object value;
+		
+		Literal(Object value)
+		{
+			this.value = value;
+		}
+		
+		@Override
+		Object evaluate(Scope scope)
+		{
+			return value;
+		}
+	}
+	
+	/**
+	 * A variable of the scope
+	 */
+	private static final class VariableNode extends Node
+	{
+		final String name;
+		
+		VariableNode(String name)
+		{
+			this.name = name;
+		}
+		
+		@Override
+		Object evaluate(Scope scope)
+		{
+			Object value = scope.get(name);
+			if (value instanceof ObservableValue)
+				return ((ObservableValue<?>) value).get();
+			return value;
+		}
+	}
+	
+	/**
+	 * A unary operator
+	 */
+	private static final class Unary extends Node
+	{
+		final char operator;
+		final Node operand;
+		
+		Unary(char operator, Node operand)
+		{
+			this.operator = operator;
+			this.operand = operand;
+		}
+		
+		@Override
+		Object evaluate(Scope scope) throws Throwable
+		{
+			Object value = operand.evaluate(scope);
+			if (operator == '!')
+				return !truth(value);
+			return arithmetic('-', 0, value);
+		}
+	}
+	
+	/**
+	 * A binary operator
+	 */
+	private static final class Binary extends Node
+	{
+		final String operator;
+		final Node left;
+		final Node right;
+		
+		Binary(String operator, Node left, Node right)
+		{
+			this.operator = operator;
+			this.left = left;
+			this.right = right;
+		}
+		
+		@Override
+		Object evaluate(Scope scope) throws Throwable
+		{
+			Object l = left.evaluate(scope);
+			//short-circuit the logical operators
+			if (operator == "&&")
+				return truth(l) && truth(right.evaluate(scope));
+			if (operator == "||")
+				return truth(l) || truth(right.evaluate(scope));
+			Object r = right.evaluate(scope);
+			if (operator == "==")
+				return equal(l, r);
+			if (operator == "!=")
+				return !equal(l, r);
+			if (operator.length() == 1)
+			{
+				char op = operator.charAt(0);
+				if (op == '+' && (l instanceof CharSequence || r instanceof CharSequence))
+					return AbLEUtil.buildString(String.valueOf(l), String.valueOf(r));
+				if (op != '<' && op != '>')
+					return arithmetic(op, l, r);
+			}
+			int comparison = compare(l, r);
+			if (operator == "<")
+				return comparison < 0;
+			if (operator == ">")
+				return comparison > 0;
+			if (operator == "<=")
+				return comparison <= 0;
+			return comparison >= 0;
+		}
+	}
+	
+	/**
+	 * The conditional operator
+	 */
+	private static final class Conditional extends Node
+	{
+		final Node condition;
+		final Node whenTrue;
+		final Node whenFalse;
+		
+		Conditional(Node condition, Node whenTrue, Node whenFalse)
+		{
+			this.condition = condition;
+			this.whenTrue = whenTrue;
+			this.whenFalse = whenFalse;
+		}
+		
+		@Override
+		Object evaluate(Scope scope) throws Throwable
+		{
+			return truth(condition.evaluate(scope)) ? whenTrue.evaluate(scope) : whenFalse.evaluate(scope);
+		}
+	}
+	
+	/**
+	 * A method call, or a field or getter access if {@link #arguments} is {@code null}. The member is
+	 * resolved the first time it is evaluated for each receiver class.
+	 */
+	private static final class Member extends Node
+	{
+		final Node receiver;
+		final String name;
+		final Node[] arguments;
+		/** The member resolved for the class of the last receiver */
+		volatile Resolved resolved;
+		
+		Member(Node receiver, String name, Node[] arguments)
+		{
+			this.receiver = receiver;
+			this.name = name;
+			this.arguments = arguments;
+		}
+		
+		@Override
+		Object evaluate(Scope scope) throws Throwable
+		{
+			Object target = receiver.evaluate(scope);
+			if (target == null)
+				return null;
+			Object[] args = null;
+			if (arguments != null)
+			{
+				args = new Object[arguments.length];
+				for (int i = 0; i < args.length; i++)
+					args[i] = arguments[i].evaluate(scope);
+			}
+			Resolved resolved = this.resolved;
+			if (resolved == null || resolved.clazz != target.getClass())
+			{
+				resolved = resolve(target.getClass(), args);
+				this.resolved = resolved;
+			}
+			if (resolved.field != null)
+				return resolved.field.get(target);
+			return args == null ? resolved.invoker.invoke(target) : resolved.invoker.invoke(target, args);
+		}
+		
+		/**
+		 * Finds the member for the given receiver class
+		 */
+		private Resolved resolve(Class<?> clazz, Object[] args) throws NoSuchMethodException
+		{
+			Method method = null;
+			Field field = null;
+			if (args == null)
+			{
+				try
+				{
+					Field f = clazz.getField(name);
+					if (!Modifier.isStatic(f.getModifiers()))
+						field = f;
+				} catch (NoSuchFieldException e)
+				{
+					//use a getter
+				}
+				if (field == null)
+				{
+					String capitalized = AnnotatedLayoutInflater.capitalize(name);
+					method = findMethod(clazz, AbLEUtil.buildString("get", capitalized), new Object[0]);
+					if (method == null)
+						method = findMethod(clazz, AbLEUtil.buildString("is", capitalized), new Object[0]);
+					if (method == null)
+						method = findMethod(clazz, name, new Object[0]);
+				}
+			}
+			else
+			{
+				method = findMethod(clazz, name, args);
+			}
+			if (field == null && method == null)
+				throw new NoSuchMethodException(AbLEUtil.format("%s has no member %s", clazz.getName(), name));
+			return new Resolved(clazz, method == null ? null : Invokers.create(method), field);
+		}
+	}
+	
+	/**
+	 * The member of a {@link Member} node, resolved for a receiver class
+	 */
+	private static final class Resolved
+	{
+		/** The receiver class */
+		final Class<?> clazz;
+		/** Invokes the method, or {@code null} if a field was resolved */
+		final Invoker invoker;
+		/** The field, or {@code null} if a method was resolved */
+		final Field field;
+		
+		Resolved(Class<?> clazz, Invoker invoker, Field field)
+		{
+			this.clazz = clazz;
+			this.invoker = invoker;
+			this.field = field;
+		}
+	}
+	
+	/**
+	 * Finds a public method with the given name that accepts the given arguments
+	 * @return the method, or {@code null} if none is found
+	 */
+	private static Method findMethod(Class<?> clazz, String name, Object[] args)
+	{
+		for (Method m : clazz.getMethods())
+		{
+			if (!m.getName().equals(name) || Modifier.isStatic(m.getModifiers()))
+				continue;
+			Class<?>[] params = m.getParameterTypes();
+			if (params.length != args.length)
+				continue;
+			boolean matches = true;
+			for (int i = 0; i < params.length && matches; i++)
+				matches = accepts(params[i], args[i]);
+			if (matches)
+				return m;
+		}
+		return null;
+	}
+	
+	/**
+	 * @return {@code true} if a parameter of the given type accepts the given argument
+	 */
+	private static boolean accepts(Class<?> param, Object arg)
+	{
+		if (arg == null)
+			return !param.isPrimitive();
+		if (!param.isPrimitive())
+			return param.isInstance(arg);
+		if (param == boolean.class)
+			return arg instanceof Boolean;
+		if (param == char.class)
+			return arg instanceof Character;
+		return arg instanceof Number;
+	}
+	
+	/**
+	 * @return the truth of a value used as a condition. {@code null}, {@code false}, zero and empty
+	 * Strings are false.
+	 */
+	private static boolean truth(Object value)
+	{
+		if (value == null)
+			return false;
+		if (value instanceof Boolean)
+			return (Boolean) value;
+		if (value instanceof Number)
+			return ((Number) value).doubleValue() != 0;
+		if (value instanceof CharSequence)
+			return ((CharSequence) value).length() != 0;
+		return true;
+	}
+	
+	/**
+	 * @return {@code true} if the values are equal. Numbers are compared by value.
+	 */
+	private static boolean equal(Object l, Object r)
+	{
+		if (l instanceof Number && r instanceof Number)
+			return compare(l, r) == 0;
+		return l == null ? r == null : l.equals(r);
+	}
+	
+	/**
+	 * Compares two numbers, or two Comparable values
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static int compare(Object l, Object r)
+	{
+		if (l instanceof Number && r instanceof Number)
+		{
+			if (isFloating(l) || isFloating(r))
+				return Double.compare(((Number) l).doubleValue(), ((Number) r).doubleValue());
+			long a = ((Number) l).longValue();
+			long b = ((Number) r).longValue();
+			return a < b ? -1 : (a == b ? 0 : 1);
+		}
+		if (l instanceof Comparable && r != null)
+			return ((Comparable) l).compareTo(r);
+		throw new IllegalArgumentException(AbLEUtil.format("Cannot compare %s and %s", l, r));
+	}
+	
+	/**
+	 * Applies an arithmetic operator. The result is a {@code double} if either operand is a floating-point
+	 * number, a {@code long} if either is a {@code long}, and an {@code int} otherwise.
+	 */
+	private static Object arithmetic(char op, Object l, Object r)
+	{
+		if (!(l instanceof Number) || !(r instanceof Number))
+			throw new IllegalArgumentException(AbLEUtil.format("Cannot apply %s to %s and %s", op, l, r));
+		Number a = (Number) l;
+		Number b = (Number) r;
+		if (isFloating(a) || isFloating(b))
+		{
+			double x = a.doubleValue(), y = b.doubleValue();
+			switch (op)
+			{
+			case '+' : return x + y;
+			case '-' : return x - y;
+			case '*' : return x * y;
+			case '/' : return x / y;
+			default : return x % y;
+			}
+		}
+		if (a instanceof Long || b instanceof Long)
+		{
+			long x = a.longValue(), y = b.longValue();
+			switch (op)
+			{
+			case '+' : return x + y;
+			case '-' : return x - y;
+			case '*' : return x * y;
+			case '/' : return x / y;
+			default : return x % y;
+			}
+		}
+		int x = a.intValue(), y = b.intValue();
+		switch (op)
+		{
+		case '+' : return x + y;
+		case '-' : return x - y;
+		case '*' : return x * y;
+		case '/' : return x / y;
+		default : return x % y;
+		}
+	}
+	
+	/**
+	 * @return {@code true} if the given number is a {@code float} or {@code double}
+	 */
+	private static boolean isFloating(Object n)
+	{
+		return n instanceof Double || n instanceof Float;
+	}
+	
+	/**
+	 * A recursive descent parser for binding expressions. Operators are interned Strings, so nodes
+	 * can compare them by reference.
+	 */
+	private static final class Parser
+	{
+		final String source;
+		int position;
+		final Set<String> dependencies = new LinkedHashSet<String>();
+		
+		Parser(String source)
+		{
+			this.source = source;
+		}
+		
+		Node parseExpression()
+		{
+			Node condition = parseBinary(0);
+			if (accept("?"))
+			{
+				Node whenTrue = parseExpression();
+				expect(":");
+				Node whenFalse = parseExpression();
+				return new Conditional(condition, whenTrue, whenFalse);
+			}
+			return condition;
+		}
+		
+		/** Binary operators, by increasing precedence */
+		static final String[][] OPERATORS = {
+			{"||"},
+			{"&&"},
+			{"==", "!="},
+			{"<=", ">=", "<", ">"},
+			{"+", "-"},
+			{"*", "/", "%"}
+		};
+		
+		Node parseBinary(int level)
+		{
+			if (level == OPERATORS.length)
+				return parseUnary();
+			Node left = parseBinary(level + 1);
+			while (true)
+			{
+				String operator = null;
+				for (String op : OPERATORS[level])
+				{
+					if (accept(op))
+					{
+						operator = op;
+						break;
+					}
+				}
+				if (operator == null)
+					return left;
+				left = new Binary(operator, left, parseBinary(level + 1));
+			}
+		}
+		
+		Node parseUnary()
+		{
+			if (accept("!"))
+				return new Unary('!', parseUnary());
+			if (accept("-"))
+				return new Unary('-', parseUnary());
+			Node node = parsePrimary();
+			while (accept("."))
+			{
+				String name = parseIdentifier();
+				Node[] arguments = null;
+				if (accept("("))
+				{
+					List<Node> args = new ArrayList<Node>();
+					if (!accept(")"))
+					{
+						do
+						{
+							args.add(parseExpression());
+						} while (accept(","));
+						expect(")");
+					}
+					arguments = args.toArray(new Node[args.size()]);
+				}
+				node = new Member(node, name, arguments);
+			}
+			return node;
+		}
+		
+		Node parsePrimary()
+		{
+			skipWhitespace();
+			if (position >= source.length())
+				throw error("Unexpected end of expression");
+			char c = source.charAt(position);
+			if (c == '(')
+			{
+				position++;
+				Node node = parseExpression();
+				expect(")");
+				return node;
+			}
+			if (c == '"' || c == '\'')
+				return new Literal(parseString(c));
+			if (Character.isDigit(c))
+				return new Literal(parseNumber());
+			String name = parseIdentifier();
+			if (name.equals("true"))
+				return new Literal(Boolean.TRUE);
+			if (name.equals("false"))
+				return new Literal(Boolean.FALSE);
+			if (name.equals("null"))
+				return new Literal(null);
+			dependencies.add(name);
+			return new VariableNode(name);
+		}
+		
+		String parseIdentifier()
+		{
+			skipWhitespace();
+			int start = position;
+			while (position < source.length() && Character.isJavaIdentifierPart(source.charAt(position)))
+				position++;
+			if (start == position || !Character.isJavaIdentifierStart(source.charAt(start)))
+				throw error("Expected a name");
+			return source.substring(start, position).intern();
+		}
+		
+		Object parseNumber()
+		{
+			int start = position;
+			boolean floating = false;
+			while (position < source.length())
+			{
+				char c = source.charAt(position);
+				if (c == '.' && !floating && position + 1 < source.length() && Character.isDigit(source.charAt(position + 1)))
+					floating = true;
+				else if (!Character.isDigit(c))
+					break;
+				position++;
+			}
+			String number = source.substring(start, position);
+			if (floating)
+				return Double.valueOf(number);
+			long value = Long.parseLong(number);
+			if (value <= Integer.MAX_VALUE)
+				return (int) value;
+			return value;
+		}
+		
+		String parseString(char quote)
+		{
+			StringBuilder b = new StringBuilder();
+			position++;
+			while (position < source.length())
+			{
+				char c = source.charAt(position++);
+				if (c == quote)
+					return b.toString();
+				if (c == '\\' && position < source.length())
+					c = source.charAt(position++);
+				b.append(c);
+			}
+			throw error("Unterminated string");
+		}
+		
+		/**
+		 * Consumes the given token if it is next. Single-character operators are not matched when they
+		 * begin a longer operator (such as {@code <} in {@code <=}).
+		 */
+		boolean accept(String token)
+		{
+			skipWhitespace();
+			if (!source.startsWith(token, position))
+				return false;
+			int end = position + token.length();
+			if (token.length() == 1 && end < source.length())
+			{
+				char next = source.charAt(end);
+				char c = token.charAt(0);
+				if (next == '=' && (c == '<' || c == '>' || c == '!' || c == '='))
+					return false;
+				if ((c == '&' || c == '|') && next == c)
+					return false;
+			}
+			position = end;
+			return true;
+		}
+		
+		void expect(String token)
+		{
+			if (!accept(token))
+				throw error(AbLEUtil.format("Expected '%s'", token));
+		}
+		
+		void skipWhitespace()
+		{
+			while (position < source.length() && Character.isWhitespace(source.charAt(position)))
+				position++;
+		}
+		
+		IllegalArgumentException error(String message)
+		{
+			return new IllegalArgumentException(AbLEUtil.format("%s at position %d of binding expression \"%s\"", message, position, source));
+		}
+	}
+}
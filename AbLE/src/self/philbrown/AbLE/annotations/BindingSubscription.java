@@ -0,0 +1,174 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package self.philbrown.AbLE.annotations;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import self.philbrown.AbLE.AbLEUtil;
+
+/**
+ * A {@link Binding} that has been resolved by an inflater. If the binding reads variables that hold
+ * {@link ObservableValue}s, it subscribes to them once the Object created for the layout class is
+ * known, and then calls the binding's setter on that Object each time one of the values changes. A 
+ * binding with an {@link Binding#expr() expression} evaluates it again, so only the expressions that 
+ * depend on a value are evaluated when it changes.
+ * Changes are applied on the main thread by the {@link BindingUpdateScheduler}, which conflates them. 
+ * The Object is only weakly referenced, so a binding does not keep a layout that is no longer used 
+ * in memory. It is unsubscribed the next time the value changes.
+ * @author Phil Brown
+ */
+final class BindingSubscription implements ObservableValue.OnChangeListener<Object>
+{
+	/** The static field declared with the {@link Binding} annotation */
+	private final Field field;
+	/** Passes the value of {@link #field} to the target */
+	private final SetterOp setter;
+	/** The observed variables. Empty if the binding does not read an {@link ObservableValue}. */
+	private final List<ObservableValue<Object>> sources;
+	/** The scope in which the binding was resolved, and in which {@link #expression} is evaluated */
+	private final Scope scope;
+	/** The compiled expression, or {@code null} if the binding observes a single variable */
+	private final BindingExpression expression;
+	/** The name of the observed variable, or {@code null} if the binding has an expression */
+	private final String observed;
+	/** The Object on which the setter is called, or {@code null} until {@link #apply(Object)} is called */
+	private volatile WeakReference<Object> target;
+	/** The latest value, which has not been applied yet */
+	private volatile Object pending;
+	/** {@code true} while this binding is queued in the {@link BindingUpdateScheduler} */
+	private final AtomicBoolean dirty = new AtomicBoolean();
+	
+	/**
+	 * Constructor
+	 * @param field the static field declared with the {@link Binding} annotation
+	 * @param setter passes the value of the field to the target
+	 * @param sources the observed variables
+	 * @param scope the scope in which the binding was resolved
+	 * @param expression the compiled expression, or {@code null} if the binding observes a single variable
+	 */
+	BindingSubscription(Field field, SetterOp setter, List<ObservableValue<Object>> sources, Scope scope, BindingExpression expression)
+	{
+		this.field = field;
+		this.setter = setter;
+		this.sources = sources;
+		this.scope = scope;
+		this.expression = expression;
+		this.observed = expression == null ? field.getAnnotation(Binding.class).observedValue() : null;
+	}
+	
+	/**
+	 * Calls the setter on the given target, then subscribes to the observed variables.
+	 * @param target the Object created for the layout class
+	 */
+	void apply(Object target)
+	{
+		setter.apply(target);
+		if (!sources.isEmpty() && this.target == null)
+		{
+			this.target = new WeakReference<Object>(target);
+			for (int i = 0; i < sources.size(); i++)
+				sources.get(i).addOnChangeListener(this);
+		}
+	}
+	
+	/**
+	 * Stops observing the variables
+	 */
+	void unsubscribe()
+	{
+		for (int i = 0; i < sources.size(); i++)
+			sources.get(i).removeOnChangeListener(this);
+	}
+	
+	public void onChanged(ObservableValue<? extends Object> source, Object value)
+	{
+		WeakReference<Object> target = this.target;
+		if (target == null || target.get() == null)
+		{
+			unsubscribe();
+			return;
+		}
+		pending = value;
+		if (dirty.compareAndSet(false, true))
+			BindingUpdateScheduler.schedule(this);
+	}
+	
+	/**
+	 * Reads the bound variable (or evaluates the expression) again in the scope of the binding, and sets the
+	 * field. The setter is not called. This is used to bind a recycled list row to the item at a new position,
+	 * whose variables are changed without notifying their listeners. Must be called on the main thread.
+	 * @return {@code true} if the field was set
+	 */
+	boolean update()
+	{
+		try
+		{
+			Object value;
+			if (expression != null)
+			{
+				value = BindingExpression.coerce(expression.evaluate(scope), field.getType());
+			}
+			else
+			{
+				value = scope.get(observed);
+				if (value instanceof ObservableValue)
+					value = ((ObservableValue<?>) value).get();
+			}
+			if (value != null || !field.getType().isPrimitive())
+				field.set(null, value);
+			return true;
+		} catch (Throwable t)
+		{
+			AbLEUtil.err("Could not bind variable %s to %s!", field.getName(), 
+					expression == null ? observed : expression.getSource());
+			return false;
+		}
+	}
+	
+	/**
+	 * Sets the field to the latest value, then calls the setter on the target. Called on the main thread
+	 * by the {@link BindingUpdateScheduler}.
+	 */
+	void flush()
+	{
+		dirty.set(false);
+		Object value = pending;
+		Object target = this.target.get();
+		if (target == null)
+		{
+			unsubscribe();
+			return;
+		}
+		try
+		{
+			if (expression != null)
+				value = BindingExpression.coerce(expression.evaluate(scope), field.getType());
+			if (value != null || !field.getType().isPrimitive())
+				field.set(null, value);
+		} catch (Throwable t)
+		{
+			AbLEUtil.err("Could not bind variable %s to %s!", field.getName(), 
+					expression == null ? observed : expression.getSource());
+			return;
+		}
+		setter.apply(target);
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package self.philbrown.AbLE.annotations;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Applies the changes of {@link ObservableValue}s to their {@link Binding}s on the main thread. Values
+ * may be set on any thread, as often as they change: each binding is queued at most once until it is 
+ * applied, and only its latest value is applied, so the work done on the main thread per frame is bounded
+ * by the number of bindings, not by the number of changes.
+ * <p>
+ * The queue is lock-free. When the first binding is queued, a flush is posted to the main thread, which
+ * applies every binding that was queued before it started.
+ * @author Phil Brown
+ */
+public final class BindingUpdateScheduler
+{
+	/** The bindings whose values changed since they were last applied */
+	private static final ConcurrentLinkedQueue<BindingSubscription> queue = new ConcurrentLinkedQueue<BindingSubscription>();
+	/** The number of bindings in {@link #queue} */
+	private static final AtomicInteger size = new AtomicInteger();
+	/** {@code true} if a flush has been posted and has not started yet */
+	private static final AtomicBoolean posted = new AtomicBoolean();
+	/** Posts flushes to the main thread */
+	private static Handler handler;
+	
+	/** Flushes the queue */
+	private static final Runnable FLUSH = new Runnable() {
+		
+		public void run()
+		{
+			flush();
+		}
+	};
+	
+	/** 
+	 * Constructor. Classes should only use the static methods that this class provides.
+	 */
+	private BindingUpdateScheduler()
+	{
+		//cannot instantiate this class
+	}
+	
+	/**
+	 * Queues a binding whose value changed, and posts a flush if none is pending. The binding must not
+	 * be queued already.
+	 * @param binding the binding
+	 */
+	static void schedule(BindingSubscription binding)
+	{
+		queue.offer(binding);
+		size.incrementAndGet();
+		if (posted.compareAndSet(false, true))
+			getHandler().post(FLUSH);
+	}
+	
+	/**
+	 * Applies the latest value of each queued binding. Bindings that are queued while this runs are
+	 * applied by the next flush. This is called automatically, but may also be called directly to 
+	 * apply pending changes right away. Must be called on the main thread.
+	 */
+	public static void flush()
+	{
+		posted.set(false);
+		int count = size.get();
+		for (int i = 0; i < count; i++)
+		{
+			BindingSubscription binding = queue.poll();
+			if (binding == null)
+				break;
+			size.decrementAndGet();
+			binding.flush();
+		}
+	}
+	
+	/**
+	 * @return the number of bindings that are waiting to be applied
+	 */
+	public static int getPendingCount()
+	{
+		return size.get();
+	}
+	
+	/**
+	 * @return the handler of the main thread
+	 */
+	private static synchronized Handler getHandler()
+	{
+		if (handler == null)
+			handler = new Handler(Looper.getMainLooper());
+		return handler;
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package self.philbrown.AbLE.annotations;
+
+import java.lang.reflect.Field;
+
+import android.view.View;
+
+/**
+ * Calls a setter whose single parameter is a {@code boolean}. The value is read using
+ * {@link Field#getBoolean(Object)}. Only the common view setters listed below (such as 
+ * {@code setEnabled}) are called directly. Every other setter is called reflectively by its 
+ * {@link Invoker}, and is passed the shared {@link Boolean#TRUE} or {@link Boolean#FALSE}.
+ * Generated inflaters call each setter they can resolve directly instead.
+ * @author Phil Brown
+ */
+public class BooleanSetterOp extends SetterOp
+{
+	/** The parameter type of the setter */
+	private static final Class<?>[] TYPES = new Class<?>[]{boolean.class};
+	
+	/** Setters that are called directly */
+	private static final int NONE = 0, 
+							 ENABLED = 1, 
+							 CLICKABLE = 2, 
+							 LONG_CLICKABLE = 3, 
+							 FOCUSABLE = 4, 
+							 SELECTED = 5, 
+							 ACTIVATED = 6;
+	
+	/** The setter that is called directly, or {@link #NONE} */
+	private final int intrinsic;
+	
+	/**
+	 * Constructor
+	 * @param field the static {@code boolean} field that contains the value to set
+	 */
+	public BooleanSetterOp(Field field)
+	{
+		super(field);
+		intrinsic = getIntrinsic(name);
+	}
+
+	@Override
+	public void apply(Object target)
+	{
+		try
+		{
+			boolean value = field.getBoolean(null);
+			if (intrinsic != NONE && applyIntrinsic(target, value))
+				return;
+			getInvoker(target, TYPES).invoke(target, Boolean.valueOf(value));
+		} catch (Throwable t)
+		{
+			logError(target, TYPES);
+		}
+	}
+	
+	/**
+	 * Calls the setter directly, if the target is of the type that declares it.
+	 * @param target the Object on which the setter is called
+	 * @param value the value to set
+	 * @return {@code true} if the setter was called. Otherwise {@code false}.
+	 */
+	private boolean applyIntrinsic(Object target, boolean value)
+	{
+		if (!(target instanceof View))
+			return false;
+		View v = (View) target;
+		switch (intrinsic)
+		{
+			case ENABLED :
+				v.setEnabled(value);
+				return true;
+			case CLICKABLE :
+				v.setClickable(value);
+				return true;
+			case LONG_CLICKABLE :
+				v.setLongClickable(value);
+				return true;
+			case FOCUSABLE :
+				v.setFocusable(value);
+				return true;
+			case SELECTED :
+				v.setSelected(value);
+				return true;
+			case ACTIVATED :
+				v.setActivated(value);
+				return true;
+			default :
+				return false;
+		}
+	}
+	
+	/**
+	 * @param name the name of the setter
+	 * @return the setter that is called directly, or {@link #NONE}
+	 */
+	private static int getIntrinsic(String name)
+	{
+		if (name.equals("setEnabled"))
+			return ENABLED;
+		else if (name.equals("setClickable"))
+			return CLICKABLE;
+		else if (name.equals("setLongClickable"))
+			return LONG_CLICKABLE;
+		else if (name.equals("setFocusable"))
+			return FOCUSABLE;
+		else if (name.equals("setSelected"))
+			return SELECTED;
+		else if (name.equals("setActivated"))
+			return ACTIVATED;
+		return NONE;
+	}
+}
@@ -16,16 +16,20 @@
 
 package self.philbrown.AbLE.annotations;
 
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import self.philbrown.AbLE.AbLEActivity;
 import self.philbrown.AbLE.AbLEUtil;
+import self.philbrown.AbLE.R;
+import android.content.pm.ActivityInfo;
 import android.view.View;
 import android.view.ViewGroup;
 
@@ -45,24 +49,31 @@ public abstract class ClassAnnotationInflater
 	public Map<Class<?>, Object> children;
 	/** Contains the fields discovered with the {@link Binding} annotations.*/
 	public List<Field> bindings;
+	/** The view that this class is creating */
+	public View view;
 	/** 
-	 * Contains a Collection of setter methods to call once the class is loaded. These have been
-	 * discovered with the annotation {@link Setter}, and will usually contain more than one parameter.
-	 * Stored as:<pre>
-	 * &lt;Method Name, &lt;&lt;parameter classes&gt;, &lt;parameters&gt;&gt;&gt;. 
-	 * </pre>
+	 * The plan of the layout class that is being inflated. This is set before {@link #inflate(Class)}
+	 * is called by {@link AnnotatedLayoutInflater}, or the first time it is needed.
 	 */
-	public Map<String, Map<List<Class<?>>, List<Object>>> setters;
+	protected LayoutPlan plan;
+	/** The {@link Binding}s resolved by {@link #handleBindings()}, which are applied with the setters */
+	private List<BindingSubscription> boundSetters;
+	/** What this inflater did, used by {@link AnnotatedLayoutInflater#refresh(View)} */
+	InflationRecord record;
 	/** 
-	 * Contains a Collection of getter methods to call once the class is loaded. These have been
-	 * discovered with the annotation {@link Getter}, and will usually contain more than one parameter.
-	 * Stored as:<pre>
-	 * &lt;Field &lt;Method Name, &lt;&lt;parameter classes&gt;, &lt;parameters&gt;&gt;&gt;&gt;. 
-	 * </pre>
+	 * The record of a previous inflation whose Object may be reused, or {@code null}. Set when a layout
+	 * is {@link AnnotatedLayoutInflater#reconcile(AbLEActivity, View, Class) reconciled}. 
 	 */
-	public Map<Field, Map<String, Map<List<Class<?>>, List<Object>>>> getters;
-	/** The view that this class is creating */
-	public View view;
+	InflationRecord previous;
+	/** 
+	 * {@code true} if {@link #view} was reused from {@link #previous} without being reset, so that setters
+	 * that would set the same values again are skipped.
+	 */
+	protected boolean diffSetters;
+	/** The variables visible to this class. Built from {@link #variables} by {@link #getScope()}. */
+	private volatile Scope scope;
+	/** The inflation that this inflater is part of. This is shared by all inflaters in the chain. */
+	protected InflationContext inflation;
 	
 	/**
 	 * Provides access to the parent view and the fields declared in the parent layout. This
@@ -79,12 +90,12 @@ public abstract class ClassAnnotationInflater
 	public ClassAnnotationInflater(AbLEActivity context, ClassAnnotationInflater parent)
 	{
 		variables = new HashMap<String, Object>();
-		setters = new HashMap<String, Map<List<Class<?>>, List<Object>>>();
 		children = new HashMap<Class<?>, Object>();
 		bindings = new ArrayList<Field>();
-		getters = new HashMap<Field, Map<String, Map<List<Class<?>>, List<Object>>>>();
 		this.parent = parent;
 		this.context = context;
+		if (parent != null)
+			inflation = parent.inflation;
 	}
 	
 	/**
@@ -114,6 +125,36 @@ public abstract class ClassAnnotationInflater
 	 */
 	public abstract View inflate(Class<?> layout);
 	
+	/**
+	 * Calls {@link #inflate(Class)}, and records the Object it created and the values of the fields it
+	 * passed to setters, so that the setters can be called again by {@link AnnotatedLayoutInflater#refresh(View)}
+	 * if the fields change. If the Object was reused from {@link #previous}, the bindings of the previous 
+	 * record are unsubscribed. The view is recorded in the {@link ViewIndex} of the inflation as declared by
+	 * the layout class, whether this inflater is reflective or generated.
+	 * @param plan the plan of the layout class
+	 * @return the view that was inflated, or null if no view is used.
+	 */
+	final View inflateRecorded(LayoutPlan plan)
+	{
+		InflationRecord record = new InflationRecord(plan);
+		this.record = record;
+		View v = inflate(plan.getLayout());
+		Object target = getTarget();
+		if (target != null)
+		{
+			record.capture(target);
+			record.setBindings(boundSetters);
+			//the reused Object is now updated by the bindings of this record only
+			if (previous != null && previous.getTarget() == target)
+				previous.unsubscribeBindings();
+			if (parent != null && parent.record != null)
+				parent.record.addChild(record);
+		}
+		if (v != null && inflation != null)
+			inflation.getIndex().putLayout(v, plan.getLayout());
+		return v;
+	}
+	
 	/**
 	 * @return the {@code ClassAnnotationInflater} that contains this 
 	 * {@code ClassAnnotationInflater}, or {@code null} if none exists.
@@ -124,102 +165,129 @@ public abstract class ClassAnnotationInflater
 	}
 	
 	/**
-	 * Loops through the {@link Fields} declared in this class and hands them off a
-	 * {@link FieldAnnotationInflater} to be handled as {@link Binding}s, {@link Variable}s,
-	 * and setters.
+	 * Gets the Object on which setters and getters are called. This is {@link #view} by default.
+	 * Inflaters that create a different Object, such as an {@link AbstractLayoutAdapter}, return it here.
+	 * @return the Object created for the layout class
+	 */
+	protected Object getTarget()
+	{
+		return view;
+	}
+	
+	/**
+	 * Gets the plan of the given layout class. This is {@link #plan}, unless a different class is given.
+	 * @param layout the layout class
+	 * @return the plan of the class
+	 */
+	protected LayoutPlan getPlan(Class<?> layout)
+	{
+		if (plan == null || plan.getLayout() != layout)
+			plan = LayoutPlan.of(layout);
+		return plan;
+	}
+	
+	/**
+	 * Gets the Object of the previous inflation that this inflater may reuse for the given plan, instead
+	 * of creating a new one. The Object is only offered while a layout is being 
+	 * {@link AnnotatedLayoutInflater#reconcile(AbLEActivity, View, Class) reconciled}, and only if it
+	 * is an instance of the plan's {@link LayoutPlan#getTargetClass() target class}.
+	 * @param plan the plan of the layout class
+	 * @return the Object to reuse, or {@code null} if a new Object must be created
+	 */
+	protected Object getReusableTarget(LayoutPlan plan)
+	{
+		if (previous == null || previous.getTarget() == null)
+			return null;
+		if (previous.getTarget().getClass() != plan.getTargetClass())
+			return null;
+		return previous.getTarget();
+	}
+	
+	/**
+	 * @return the layout annotation of the class whose Object is being reused, or {@code null}
+	 */
+	protected Annotation getPreviousAnnotation()
+	{
+		return previous == null ? null : previous.getPlan().getAnnotation();
+	}
+	
+	/**
+	 * Reads the values of the {@link Variable}s declared in this class, and collects its {@link Binding}s,
+	 * using the class's {@link LayoutPlan}. The getters and setters of the plan are used by 
+	 * {@link #handleGetters(String)} and {@link #performSetters(String)}.
 	 * @param layout the class declaration of the view that has been created.
 	 */
 	protected void handleFields(Class<?> layout)
 	{
-		FieldAnnotationInflater fi = new FieldAnnotationInflater(context);
-		for (Field f : layout.getFields())
+		LayoutPlan plan = getPlan(layout);
+		for (Field f : plan.getVariables())
 		{
 			try {
-				fi.inflate(f, this);
+				variables.put(f.getName(), f.get(null));
 			} catch (Exception e) {
 				e.printStackTrace();
 			}
 		}
+		bindings.addAll(plan.getBindings());
 	}
 	
 	/**
 	 * If the class has a static method called "onLayoutComplete", it is invoked after all fields are handled. The first
 	 * parameter is of type {@link NPEActivity}, and the second parameter depends on the type of inflater.
-	 * Default is {@code View}.
+	 * Default is {@code View}. During an {@link IncrementalInflation}, the call is postponed until 
+	 * the children of the class have been inflated.
 	 * @param layout
 	 * @param obj
 	 */
 	protected void onLayoutComplete(Class<?> layout, Object obj)
 	{
+		IncrementalInflation incremental = inflation == null ? null : inflation.getIncremental();
+		if (incremental != null && incremental.deferCompletion(this, layout, obj))
+			return;
+		callOnLayoutComplete(layout, obj);
+	}
+	
+	/**
+	 * Invokes the "onLayoutComplete" method of the given class, if it has one.
+	 * @param layout
+	 * @param obj
+	 */
+	void callOnLayoutComplete(Class<?> layout, Object obj)
+	{
+		Method m = getPlan(layout).getOnLayoutComplete();
+		if (m == null)
+			return;
 		try {
-			for (Method m : layout.getMethods())
-			{
-				if (m.getName().equals("onLayoutComplete"))
-				{
-					m.invoke(null, context, obj);
-					break;
-				}
-			}
-//			Method main = layout.getMethod("main", new Class[]{NPEActivity.class, obj.getClass()});
-//			NPE.info("Invoking method main(NPEActivity, %s)", obj.getClass().getSimpleName());
-//			main.invoke(null, context, obj);
+			m.invoke(null, context, obj);
 		} catch (Throwable t) {
-			//No Main method.
+			//Could not call method.
 		}
 	}
 	
 	/**
 	 * Sets the fields that use the {@code @Getter} annotation to the values retrieved from
-	 * calling the specified getter methods.
-	 * @param viewClass the String name of the class whose getters are being accessed
+	 * calling the specified getter methods on the {@link #getTarget() target}.
+	 * @param viewClass the String name of the class whose getters are being accessed. The methods
+	 * are resolved using the class of the target.
 	 */
 	protected void handleGetters(String viewClass)
 	{
-		
-		for (Map.Entry<Field, Map<String,Map<List<Class<?>>,List<Object>>>> method : getters.entrySet())
+		applyGetters(getTarget());
+	}
+	
+	/**
+	 * Calls the getters of the current {@link #plan} on the given Object.
+	 * @param target the Object whose getters are called
+	 */
+	protected void applyGetters(Object target)
+	{
+		if (plan == null)
+			return;
+		List<GetterOp> getters = plan.getGetters();
+		for (int i = 0; i < getters.size(); i++)
 		{
-			Field f = method.getKey();
-			Map<String, Map<List<Class<?>>, List<Object>>> _info = method.getValue();
-			for (Entry<String, Map<List<Class<?>>, List<Object>>> entry : _info.entrySet())
-			{
-				List<Class<?>> type = null;
-				try
-				{
-					String name = entry.getKey();
-					
-					List<Object> value = null;
-					for (Entry<List<Class<?>>, List<Object>> info : entry.getValue().entrySet())
-					{
-						//there should only be one entry here, so it is not a big time consumer
-						type = info.getKey();
-						value = info.getValue();
-						break;
-					}
-					Class<?>[] classes = new Class<?>[type.size()];
-					classes = type.toArray(classes);
-					Method m = Class.forName(viewClass).getMethod(name, classes);
-					Object[] params = new Object[value.size()];
-					params = value.toArray(params);
-					Object returnVal = m.invoke(view, params);
-					f.set(null, returnVal);
-				} catch (Throwable t)
-				{
-					StringBuilder b = new StringBuilder();
-					for (int i = 0; i < type.size(); i++)
-					{
-						b.append(type.get(i).getSimpleName());
-						if (i != type.size() - 1)
-						{
-							b.append(", ");
-						}
-					}
-					AbLEUtil.err("Could not call method %s(%s) on class %s", method.getKey(), b.toString(), viewClass);
-				}
-			}
+			getters.get(i).apply(target);
 		}
-		
-		
-		
 	}
 	
 	/**
@@ -268,110 +336,361 @@ public abstract class ClassAnnotationInflater
 	}
 	
 	/**
-	 * Uses the setter information stored in {@link #setters} to set values in {@link #view}
-	 * @param viewClass the String name of the class whose setters are being accessed
+	 * Uses the setters stored in the {@link LayoutPlan} to set values in the {@link #getTarget() target}
+	 * @param viewClass the String name of the class whose setters are being accessed. The methods
+	 * are resolved using the class of the target.
 	 */
 	protected void performSetters(String viewClass)
 	{
-		for (Map.Entry<String,Map<List<Class<?>>,List<Object>>> method : setters.entrySet())
+		applySetters(getTarget());
+	}
+	
+	/**
+	 * Calls the setters of the current {@link #plan}, then those of its {@link Binding}s, on the given Object.
+	 * @param target the Object whose setters are called
+	 */
+	protected void applySetters(Object target)
+	{
+		if (plan == null)
+			return;
+		List<SetterOp> setters = plan.getSetters();
+		boolean diff = diffSetters && previous != null && previous.getTarget() == target;
+		for (int i = 0; i < setters.size(); i++)
 		{
-			List<Class<?>> type = null;
-			try
-			{
-				String name = method.getKey();
-				
-				List<Object> value = null;
-				for (Entry<List<Class<?>>, List<Object>> info : method.getValue().entrySet())
-				{
-					//there should only be one entry here, so it is not a big time consumer
-					type = info.getKey();
-					value = info.getValue();
-					break;
-				}
-				Class<?>[] classes = new Class<?>[type.size()];
-				classes = type.toArray(classes);
-				Method m = Class.forName(viewClass).getMethod(name, classes);
-				Object[] params = new Object[value.size()];
-				params = value.toArray(params);
-				m.invoke(view, params);
-			} catch (Throwable t)
-			{
-				StringBuilder b = new StringBuilder();
-				for (int i = 0; i < type.size(); i++)
-				{
-					b.append(type.get(i).getSimpleName());
-					if (i != type.size() - 1)
-					{
-						b.append(", ");
-					}
-				}
-				AbLEUtil.err("Could not call method %s(%s) on class %s", method.getKey(), b.toString(), viewClass);
-			}
+			SetterOp setter = setters.get(i);
+			if (diff && previous.isApplied(setter))
+				continue;
+			setter.apply(target);
 		}
+		applyBindings(target);
 	}
 	
 	/**
 	 * Uses the bindings/variables information to set bound values. If the variable that the object is bound to was declared in a different, parent
-	 * class, it will still be found and used.
+	 * class, it will still be found and used. If the variable holds an {@link ObservableValue}, the field is set to its current value,
+	 * and the binding is updated each time the value changes (see {@link #applyBindings(Object)}).
 	 */
+	@SuppressWarnings("unchecked")
 	protected void handleBindings()
 	{
-		for (Field f : bindings)
+		if (plan == null)
+			return;
+		List<Field> bindings = plan.getBindings();
+		boundSetters = bindings.isEmpty() ? null : new ArrayList<BindingSubscription>(bindings.size());
+		for (int i = 0; i < bindings.size(); i++)
 		{
+			Field f = bindings.get(i);
 			Binding binder = null;
+			BindingExpression expression = plan.getBindingExpression(i);
+			List<ObservableValue<Object>> observables = Collections.emptyList();
 			try
 			{
 				binder = f.getAnnotation(Binding.class);
 				
-				ClassAnnotationInflater inflater = this;
-				Object newVal = null;
-				while (inflater != null && newVal == null)
+				Object newVal;
+				if (expression != null)
 				{
-					Map<String, Object> vars = inflater.variables;
-					for (String s : vars.keySet())
+					Scope scope = getScope();
+					observables = expression.getObservables(scope);
+					newVal = BindingExpression.coerce(expression.evaluate(scope), f.getType());
+				}
+				else
+				{
+					newVal = findVariable(binder.observedValue());
+					if (newVal instanceof ObservableValue)
 					{
-						if (binder.observedValue().equals(s))
-						{
-							newVal = vars.get(s);
-							if (newVal != null)
-								f.set(null, newVal);
-							
-							//otherwise, the default value is used. 
-						}
-						//DON'T Add these to the #setters with the correct value. FIXME this means that the binded value only works upon first inflation.
-//						Map<List<Class<?>>, List<Object>> setter = new HashMap<List<Class<?>>, List<Object>>();
-//						Class<?> type = f.getType();
-//						List<Class<?>> classes = new ArrayList<Class<?>>();
-//						classes.add(type);
-//						Object value = f.get(null);
-//						List<Object> objects = new ArrayList<Object>();
-//						objects.add(value);
-//						setter.put(classes, objects);
-//						String method = NPE.buildString("set", AnnotatedLayoutInflater.capitalize(f.getName()));
-//						setters.put(method, setter);
+						observables = Collections.singletonList((ObservableValue<Object>) newVal);
+						newVal = observables.get(0).get();
 					}
-					
-					
-					inflater = inflater.getParent();
 				}
-				if (newVal == null)
+				//When no variable is found, the setter uses the field's declared value
+				if (newVal != null)
 				{
-					//This happens when no variable is found
-					Map<List<Class<?>>, List<Object>> setter = new HashMap<List<Class<?>>, List<Object>>();
-					Class<?> type = f.getType();
-					List<Class<?>> classes = new ArrayList<Class<?>>();
-					classes.add(type);
-					Object value = f.get(null);
-					List<Object> objects = new ArrayList<Object>();
-					objects.add(value);
-					setter.put(classes, objects);
-					String method = AbLEUtil.buildString("set", AnnotatedLayoutInflater.capitalize(f.getName()));
-					setters.put(method, setter);
+					f.set(null, newVal);
 				}
 			} catch (Throwable t)
 			{
-				AbLEUtil.err("Could not bind variable %s to %s!", f.getName(), binder.observedValue());
+				//the annotation may not have been read yet
+				String source = expression != null ? expression.getSource() 
+						: binder != null ? binder.observedValue() : "its variable";
+				AbLEUtil.err("Could not bind variable %s to %s!", f.getName(), source);
 			}
+			boundSetters.add(new BindingSubscription(f, getBindingSetter(i), observables, getScope(), expression));
+		}
+	}
+	
+	/**
+	 * Gets the setter that passes the value of a {@link Binding} to the Object created for the layout class, 
+	 * each time the binding is applied or its variable changes. By default, this is the setter of the current 
+	 * {@link #plan}, which boxes primitive values unless the setter is one of the few common view setters that
+	 * it calls directly. Generated inflaters override this to call each setter that was found at compile time
+	 * directly, and use the setter of the plan as a fallback.
+	 * @param index the index of the binding in the current plan
+	 * @return the setter
+	 */
+	protected SetterOp getBindingSetter(int index)
+	{
+		return plan.getBindingSetter(index);
+	}
+	
+	/**
+	 * Calls the setters of the {@link Binding}s resolved by {@link #handleBindings()} on the given Object.
+	 * Bindings to an {@link ObservableValue} then subscribe to it, so that the setter is called again on 
+	 * the Object when the value changes.
+	 * @param target the Object whose setters are called
+	 */
+	protected void applyBindings(Object target)
+	{
+		if (boundSetters == null || target == null)
+			return;
+		for (int i = 0; i < boundSetters.size(); i++)
+		{
+			boundSetters.get(i).apply(target);
+		}
+	}
+	
+	/**
+	 * Looks for a {@link Variable} with the given name in this class, then in each parent class
+	 * until one is found. This is a single lookup in the {@link #getScope() scope} of this class.
+	 * @param name the name of the variable
+	 * @return the value of the variable, or {@code null} if it was not found or is not set.
+	 */
+	protected Object findVariable(String name)
+	{
+		return getScope().get(name);
+	}
+	
+	/**
+	 * Gets the variables that are visible to this class. The scope is built the first time it is needed
+	 * (generally by {@link #handleBindings()}), by adding the {@link #variables} of this class to the scope
+	 * of the parent class, so variables that are added after that are not visible to bindings.
+	 * @return the scope of this class
+	 */
+	protected Scope getScope()
+	{
+		Scope scope = this.scope;
+		if (scope == null)
+		{
+			//children inflated in parallel may build this at the same time. The results are equal.
+			Scope base = parent == null ? Scope.EMPTY : parent.getScope();
+			scope = base.plusAll(variables);
+			this.scope = scope;
+		}
+		return scope;
+	}
+	
+	/**
+	 * Inflates a child layout using the given inflater. Errors are logged, and the child is skipped, 
+	 * the same way they are by {@link AnnotatedLayoutInflater#inflate(AbLEActivity, Class, ClassAnnotationInflater)}.
+	 * This is used by generated inflaters, which create the inflaters of their children directly.
+	 * Children declared with {@link IncludeIf}, {@link ExcludeIf} or {@link Lazy}, and children with 
+	 * {@link Variant}s, are inflated by {@link AnnotatedLayoutInflater}, which handles these annotations.
+	 * @param inflater the inflater for the child class, whose parent is this inflater
+	 * @param layout the child class
+	 * @return the inflated view, or {@code null} if no view was created.
+	 */
+	protected View inflateChild(ClassAnnotationInflater inflater, Class<?> layout)
+	{
+		LayoutPlan plan = LayoutPlan.of(layout);
+		if (plan.isConditional() || plan.isLazy() || !plan.getVariants().isEmpty())
+			return AnnotatedLayoutInflater.inflate(context, plan, this);
+		InflationTask task = getTask();
+		if (task != null)
+		{
+			if (task.isCancelled())
+				return null;
+			if (view instanceof ViewGroup && task.defer((ViewGroup) view, plan, this))
+				return null;
+		}
+		try
+		{
+			return inflater.inflateRecorded(plan);
+		} catch (Throwable t)
+		{
+			if (inflater.requireMainThread(plan) && view instanceof ViewGroup)
+			{
+				task.defer((ViewGroup) view, plan, this);
+				return null;
+			}
+			t.printStackTrace();
+			return null;
+		}
+	}
+	
+	/**
+	 * Moves this inflater and its parents to a new Activity, after the layout they inflated was retained 
+	 * across the recreation of their Activity. Parts of the layout that are inflated later (such as 
+	 * {@link Lazy} classes) then use the new Activity.
+	 * @param context the new Activity
+	 */
+	void reattach(AbLEActivity context)
+	{
+		for (ClassAnnotationInflater inflater = this; inflater != null; inflater = inflater.parent)
+		{
+			inflater.context = context;
+			if (inflater.inflation != null)
+				inflater.inflation.reattach(context);
+		}
+	}
+	
+	/**
+	 * @return the context of the inflation that this inflater is part of
+	 */
+	public InflationContext getInflationContext()
+	{
+		return inflation;
+	}
+	
+	/**
+	 * @return the asynchronous inflation that this inflater is part of, or {@code null}.
+	 */
+	protected InflationTask getTask()
+	{
+		return inflation == null ? null : inflation.getTask();
+	}
+	
+	/**
+	 * Called when the Object declared by a layout class could not be created. If this happened on the 
+	 * background thread of an asynchronous inflation, the layout is marked as requiring the main thread,
+	 * so that it is inflated there instead, during the attach phase.
+	 * @param plan the plan of the layout class
+	 * @return {@code true} if the layout will be inflated on the main thread. Otherwise {@code false}.
+	 */
+	protected boolean requireMainThread(LayoutPlan plan)
+	{
+		InflationTask task = getTask();
+		if (task == null || !task.isBackgroundThread())
+			return false;
+		plan.setRequiresMainThread();
+		return true;
+	}
+	
+	/**
+	 * Gets a view of the given class from the {@link ViewPool} of the Activity. This is used by generated 
+	 * inflaters, which create the view themselves if none is pooled, then pass it to 
+	 * {@link #recordDefaults(View, Class)}, as {@link LayoutInflater} does.
+	 * @param viewClass the class of the view
+	 * @return a pooled view, or {@code null} if none is available
+	 */
+	protected View obtainView(Class<?> viewClass)
+	{
+		return context.getViewPool().obtain(viewClass);
+	}
+	
+	/**
+	 * Records the default values of the setters of the given layout class on a view that was just created,
+	 * so that the view can be reset when it is released to the {@link ViewPool}. This is used by generated
+	 * inflaters.
+	 * @param view the new view
+	 * @param layout the layout class
+	 */
+	protected void recordDefaults(View view, Class<?> layout)
+	{
+		context.getViewPool().recordDefaults(view, getPlan(layout));
+	}
+	
+	/**
+	 * Calls the method with the given name and parameter types on the given Object. This is used
+	 * by generated inflaters for methods that cannot be resolved at compile time, such as those 
+	 * declared using {@link Setter} or {@link Getter}.
+	 * @param target the Object on which to invoke the method
+	 * @param name the name of the method
+	 * @param types the parameter types of the method
+	 * @param args the parameters to pass to the method
+	 * @return the value returned by the method, or {@code null} if the method could not be called.
+	 */
+	protected Object invokeMethod(Object target, String name, Class<?>[] types, Object[] args)
+	{
+		try
+		{
+			Method m = target.getClass().getMethod(name, types);
+			return m.invoke(target, args);
+		} catch (Throwable t)
+		{
+			StringBuilder b = new StringBuilder();
+			for (int i = 0; i < types.length; i++)
+			{
+				b.append(types[i].getSimpleName());
+				if (i != types.length - 1)
+				{
+					b.append(", ");
+				}
+			}
+			AbLEUtil.err("Could not call method %s(%s) on class %s", name, b.toString(), target.getClass().getName());
+			return null;
+		}
+	}
+	
+	/**
+	 * Convenience method for calling {@link #invokeMethod(Object, String, Class[], Object[])} with
+	 * {@code int} parameters, such as those declared as an {@code int[]} using {@link Setter}.
+	 * @param target the Object on which to invoke the method
+	 * @param name the name of the method
+	 * @param args the parameters to pass to the method
+	 * @return the value returned by the method, or {@code null} if the method could not be called.
+	 */
+	protected Object invokeMethod(Object target, String name, int[] args)
+	{
+		Object[] params = new Object[args.length];
+		for (int i = 0; i < args.length; i++)
+		{
+			params[i] = Integer.valueOf(args[i]);
+		}
+		return invokeMethod(target, name, IntArraySetterOp.getParameterTypes(args.length), params);
+	}
+	
+	/**
+	 * Convenience method for calling {@link #invokeMethod(Object, String, Class[], Object[])} with
+	 * parameters declared as an Object Array, such as those used by {@link Setter} and {@link Getter}.
+	 * @param target the Object on which to invoke the method
+	 * @param name the name of the method
+	 * @param args the parameters to pass to the method. Wrapper types are matched as primitives.
+	 * @return the value returned by the method, or {@code null} if the method could not be called.
+	 */
+	protected Object invokeMethod(Object target, String name, Object[] args)
+	{
+		return invokeMethod(target, name, FieldAnnotationInflater.getParameterTypes(args), args);
+	}
+	
+	/**
+	 * Locks the Activity to the given orientations. This should only be used by the top-level layout.
+	 * @param allowedOrientations the orientations the layout supports
+	 * @throws UnsupportedOperationException if no orientation is given
+	 */
+	protected void requestOrientation(ORIENTATION[] allowedOrientations)
+	{
+		boolean portrait = false, 
+				portraitUpsideDown = false, 
+				landscapeRight = false, 
+				landscapeLeft = false;
+		for (ORIENTATION o : allowedOrientations)
+		{
+			if (o == ORIENTATION.portrait)
+				portrait = true;
+			else if (o == ORIENTATION.portraitUpsideDown)
+				portraitUpsideDown = true;
+			else if (o == ORIENTATION.landscapeRight)
+				landscapeRight = true;
+			else if (o == ORIENTATION.landscapeLeft)
+				landscapeLeft = true;
+		}
+		if(portrait && portraitUpsideDown && landscapeRight && landscapeLeft)
+			context.setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_FULL_SENSOR);
+		else if(landscapeRight && landscapeLeft)
+			context.setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_SENSOR_LANDSCAPE);
+		else if(portrait && portraitUpsideDown)
+			context.setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_SENSOR_PORTRAIT);
+		else if(portrait)
+			context.setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_PORTRAIT);
+		else if(portraitUpsideDown)
+			context.setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_REVERSE_PORTRAIT);
+		else if(landscapeRight)
+			context.setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_LANDSCAPE);
+		else if(landscapeLeft)
+			context.setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_REVERSE_LANDSCAPE);
+		else
+		{
+			throw new UnsupportedOperationException("Invalid Layout Orientation parameters!");
 		}
 	}
 	
@@ -384,12 +703,129 @@ public abstract class ClassAnnotationInflater
 	{
 		if (view != null && view instanceof ViewGroup)
 		{
-			for (Class<?> child : layout.getClasses())
+			InflationTask task = getTask();
+			List<LayoutPlan> children = getPlan(layout).getChildren();
+			//repeated children are stamped in order, so they are never reconciled, deferred or parallelized
+			boolean repeats = getPlan(layout).hasRepeatedChildren();
+			if (previous != null && previous.getTarget() == view)
 			{
+				if (!repeats)
+				{
+					reconcileChildViews(children);
+					return;
+				}
+				List<InflationRecord> previousChildren = previous.getChildren();
+				for (int i = 0; i < previousChildren.size(); i++)
+					context.getViewPool().release(previousChildren.get(i));
+			}
+			IncrementalInflation incremental = inflation == null ? null : inflation.getIncremental();
+			if (!repeats && incremental != null && incremental.enqueue(this, (ViewGroup) view, children))
+				return;//the children are inflated by later slices
+			if (!repeats && ParallelInflater.shouldParallelize(children, task))
+			{
+				//build the subtrees in parallel, then add them in declaration order
+				View[] views = ParallelInflater.inflate(this, children);
+				for (int i = 0; i < views.length; i++)
+				{
+					if (task != null && task.isCancelled())
+						return;
+					if (views[i] != null)
+						((ViewGroup) view).addView(views[i]);
+					else if (task != null)
+						task.defer((ViewGroup) view, children.get(i), this);
+				}
+				return;
+			}
+			for (int i = 0; i < children.size(); i++)
+			{
+				if (task != null && task.isCancelled())
+					return;
+				LayoutPlan child = children.get(i);
+				if (child.getRepeat() != null)
+				{
+					Repeater.inflate(this, (ViewGroup) view, child);
+					continue;
+				}
+				if (task != null && task.defer((ViewGroup) view, child, this))
+					continue;
 				View v = AnnotatedLayoutInflater.inflate(context, child, this);
 				if (v != null)//since it could be an Invisible or a Controller
 					((ViewGroup) view).addView(v);
+				else if (task != null)
+					task.defer((ViewGroup) view, child, this);
+			}
+		}
+	}
+	
+	/**
+	 * Adds a copy of the given {@link Repeat}ed child class to {@link #view} for each item of its source.
+	 * This is used by generated inflaters.
+	 * @param layout the child class
+	 */
+	protected void inflateRepeated(Class<?> layout)
+	{
+		if (view instanceof ViewGroup)
+			Repeater.inflate(this, (ViewGroup) view, LayoutPlan.of(layout));
+	}
+	
+	/**
+	 * Reconciles the children of a reused {@link ViewGroup} with the child classes of the new layout.
+	 * Each child class is matched with a previous child by {@link LayoutReconciler}, and may reuse its view.
+	 * Previous children that were not reused are removed, and the views are then arranged in declaration order.
+	 * @param children the plans of the child classes
+	 */
+	private void reconcileChildViews(List<LayoutPlan> children)
+	{
+		ViewGroup group = (ViewGroup) view;
+		List<InflationRecord> previousChildren = previous.getChildren();
+		boolean[] used = new boolean[previousChildren.size()];
+		View[] views = new View[children.size()];
+		Map<View, Boolean> kept = new IdentityHashMap<View, Boolean>();
+		for (int i = 0; i < children.size(); i++)
+		{
+			LayoutPlan child = children.get(i);
+			int match = LayoutReconciler.findMatch(child, previousChildren, used, i);
+			if (match >= 0)
+				used[match] = true;
+			inflation.setReuse(match >= 0 ? previousChildren.get(match) : null);
+			views[i] = AnnotatedLayoutInflater.inflate(context, child, this);
+			inflation.setReuse(null);
+			if (views[i] != null)
+				kept.put(views[i], Boolean.TRUE);
+		}
+		
+		//remove the previous children that were not reused, and pool their views
+		for (int i = 0; i < previousChildren.size(); i++)
+		{
+			Object target = previousChildren.get(i).getTarget();
+			if (target instanceof View && ((View) target).getParent() == group && !kept.containsKey(target))
+				context.getViewPool().release(previousChildren.get(i));
+		}
+		//remove the placeholders of excluded conditional children and of lazy children that were not reused
+		for (int i = group.getChildCount() - 1; i >= 0; i--)
+		{
+			View child = group.getChildAt(i);
+			if (!kept.containsKey(child) && (child.getTag(R.id.able_condition) != null || child instanceof LazyView))
+			{
+				child.setTag(R.id.able_condition, null);
+				group.removeViewAt(i);
+			}
+		}
+		
+		//arrange the views in declaration order, moving only those that are out of place
+		int index = 0;
+		for (int i = 0; i < views.length; i++)
+		{
+			View v = views[i];
+			if (v == null)
+				continue;
+			if (index >= group.getChildCount() || group.getChildAt(index) != v)
+			{
+				if (v.getParent() == group)
+					group.removeView(v);
+				group.addView(v, index);
 			}
+			index++;
 		}
 	}
 	
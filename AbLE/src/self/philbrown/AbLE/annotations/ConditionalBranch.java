@@ -0,0 +1,220 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package self.philbrown.AbLE.annotations;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import self.philbrown.AbLE.AbLEActivity;
+import self.philbrown.AbLE.R;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.view.ViewStub;
+
+/**
+ * Holds the place of a layout class declared with {@link IncludeIf} or {@link ExcludeIf} whose condition reads 
+ * an {@link ObservableValue}. Either the inflated branch or an empty placeholder is added to the parent view,
+ * and the one that is shown is swapped on the main thread when the condition changes. The view that is shown 
+ * keeps the branch, which the observed values only reference weakly.
+ * @author Phil Brown
+ */
+final class ConditionalBranch implements Runnable
+{
+	/** The plan of the conditional class */
+	private final LayoutPlan plan;
+	/** The inflater of the parent view, in whose scope the condition is evaluated */
+	private final ClassAnnotationInflater parent;
+	/** The observed values */
+	private final List<ObservableValue<Object>> observables;
+	/** Notified when an observed value changes */
+	private final Listener listener;
+	/** {@code true} while a check of the condition is posted */
+	private final AtomicBoolean pending = new AtomicBoolean();
+	/** The view that is shown. This is either the inflated branch, or {@link #placeholder}. */
+	private View current;
+	/** Shown while the branch is excluded */
+	private View placeholder;
+	/** {@code true} if the branch is shown */
+	private boolean included;
+	
+	/**
+	 * Constructor
+	 * @param plan the plan of the conditional class
+	 * @param parent the inflater of the parent view
+	 * @param observables the values that the condition reads
+	 */
+	private ConditionalBranch(LayoutPlan plan, ClassAnnotationInflater parent, List<ObservableValue<Object>> observables)
+	{
+		this.plan = plan;
+		this.parent = parent;
+		this.observables = observables;
+		this.listener = new Listener(this);
+	}
+	
+	/**
+	 * Inflates a conditional class if its condition is true. If the condition reads an {@link ObservableValue},
+	 * a placeholder is returned instead of {@code null} while it is false, so that the branch can be inflated
+	 * in its place later.
+	 * @param plan the plan of the conditional class
+	 * @param parent the inflater of the parent view
+	 * @param inflation the context of the inflation, or {@code null} to use the parent's
+	 * @return the view to add to the parent, or {@code null}
+	 */
+	static View inflate(LayoutPlan plan, ClassAnnotationInflater parent, InflationContext inflation)
+	{
+		boolean included = plan.isIncluded(parent.getScope());
+		List<ObservableValue<Object>> observables = plan.getConditionObservables(parent.getScope());
+		if (observables.isEmpty())
+			return included ? AnnotatedLayoutInflater.inflateBranch(plan, parent, inflation) : null;
+		
+		ConditionalBranch branch = new ConditionalBranch(plan, parent, observables);
+		branch.included = included;
+		branch.current = included ? AnnotatedLayoutInflater.inflateBranch(plan, parent, inflation) : branch.getPlaceholder();
+		if (branch.current == null)
+			branch.current = branch.getPlaceholder();
+		branch.current.setTag(R.id.able_condition, branch);
+		for (int i = 0; i < observables.size(); i++)
+			observables.get(i).addOnChangeListener(branch.listener);
+		return branch.current;
+	}
+	
+	/**
+	 * @return the placeholder, which is created when it is first needed
+	 */
+	private View getPlaceholder()
+	{
+		if (placeholder == null)
+			placeholder = new ViewStub(parent.context.getViewContext());
+		return placeholder;
+	}
+	
+	/**
+	 * Checks the condition again, and swaps the branch in or out if it changed. Called on the main thread.
+	 */
+	public void run()
+	{
+		pending.set(false);
+		if (current instanceof LazyView && ((LazyView) current).isExpanded())
+			current = ((LazyView) current).getView();
+		if (current.getTag(R.id.able_condition) != this)
+		{
+			//the view was released or replaced by a reconciled layout
+			unsubscribe();
+			return;
+		}
+		boolean include = plan.isIncluded(parent.getScope());
+		ViewParent group = current.getParent();
+		if (include == included || !(group instanceof ViewGroup))
+			return;
+		ViewGroup viewGroup = (ViewGroup) group;
+		int index = viewGroup.indexOfChild(current);
+		View next;
+		if (include)
+		{
+			InflationContext inflation = parent.inflation == null ? new InflationContext(parent.context, null) : parent.inflation.continuation();
+			next = AnnotatedLayoutInflater.inflateBranch(plan, parent, inflation);
+			if (next == null)
+				return;
+			viewGroup.removeViewAt(index);
+		}
+		else
+		{
+			next = getPlaceholder();
+			InflationRecord record = findRecord();
+			if (record != null)
+			{
+				parent.record.removeChild(record);
+				parent.context.getViewPool().release(record);
+			}
+			if (current.getParent() == viewGroup)
+				viewGroup.removeViewAt(index);
+		}
+		current.setTag(R.id.able_condition, null);
+		included = include;
+		current = next;
+		current.setTag(R.id.able_condition, this);
+		viewGroup.addView(current, index);
+	}
+	
+	/**
+	 * @return the record of the branch that is shown, or {@code null}
+	 */
+	private InflationRecord findRecord()
+	{
+		if (parent.record == null)
+			return null;
+		List<InflationRecord> children = parent.record.getChildren();
+		for (int i = 0; i < children.size(); i++)
+		{
+			if (children.get(i).getTarget() == current)
+				return children.get(i);
+		}
+		return null;
+	}
+	
+	/**
+	 * Moves the branch to a new Activity, after the layout was retained across the recreation of its Activity
+	 * @param context the new Activity
+	 */
+	void reattach(AbLEActivity context)
+	{
+		parent.reattach(context);
+	}
+	
+	/**
+	 * Stops observing the condition
+	 */
+	private void unsubscribe()
+	{
+		for (int i = 0; i < observables.size(); i++)
+			observables.get(i).removeOnChangeListener(listener);
+	}
+	
+	/**
+	 * Posts a check of the condition when an observed value changes. The branch is only weakly referenced, so 
+	 * that the observed values do not keep its views in memory.
+	 */
+	private static final class Listener implements ObservableValue.OnChangeListener<Object>
+	{
+		/** The branch */
+		private final WeakReference<ConditionalBranch> branch;
+		
+		/**
+		 * Constructor
+		 * @param branch the branch
+		 */
+		Listener(ConditionalBranch branch)
+		{
+			this.branch = new WeakReference<ConditionalBranch>(branch);
+		}
+		
+		public void onChanged(ObservableValue<? extends Object> source, Object value)
+		{
+			ConditionalBranch branch = this.branch.get();
+			if (branch == null)
+			{
+				source.removeOnChangeListener(this);
+				return;
+			}
+			if (branch.pending.compareAndSet(false, true))
+				ItemSource.getHandler().post(branch);
+		}
+	}
+}
@@ -17,6 +17,7 @@
 package self.philbrown.AbLE.annotations;
 
 import self.philbrown.AbLE.AbLEActivity;
+import self.philbrown.AbLE.AbLEUtil;
 import android.view.View;
 
 /**
@@ -39,7 +40,7 @@ public class EmbedInflater extends ClassAnnotationInflater
 	public View inflate(Class<?> layout) {
 		
 		Embed embed = layout.getAnnotation(Embed.class);
-		createView(embed);
+		createView(layout, embed);
 		if (view == null)
 			return null;
 		handleFields(layout);
@@ -54,16 +55,18 @@ public class EmbedInflater extends ClassAnnotationInflater
 	
 	/**
 	 * Adds the view for layout class {@link Embed#layout()} at the given location in the layout
+	 * @param layout
 	 * @param embed
 	 */
-	private void createView(Embed embed)
+	private void createView(Class<?> layout, Embed embed)
 	{
-		try {
-			Class<?> _class = Class.forName(embed.layout());
-			view = AnnotatedLayoutInflater.inflate(context, _class, this);
-		} catch (ClassNotFoundException e) {
-			e.printStackTrace();
+		Class<?> _class = getPlan(layout).getTargetClass();
+		if (_class == null)
+		{
+			AbLEUtil.err("Could not find class %s", embed.layout());
+			return;
 		}
+		view = AnnotatedLayoutInflater.inflate(context, _class, this);
 	}
 
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package self.philbrown.AbLE.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares that a nested layout class is only inflated if a condition is false. The condition is a 
+ * {@link Variable} name, or an expression over the variables using the same syntax as {@link Binding#expr()}, 
+ * such as {@code @ExcludeIf("user != null && user.isAdmin()")}. It is evaluated in the scope of the parent
+ * class before the class is inflated, so a branch that is excluded is never constructed. {@code null}, {@code false},
+ * zero and empty Strings are false.
+ * <p>
+ * If the condition reads an {@link ObservableValue}, a placeholder view holds the place of the excluded branch, 
+ * and the branch is inflated into it when the condition changes. When the branch is excluded again, its views
+ * are released to the {@link ViewPool}. The condition of a root layout class is ignored.
+ * @author Phil Brown
+ * @see IncludeIf
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ExcludeIf 
+{
+	/**
+	 * The condition
+	 * @return
+	 */
+	public String value();
+}
@@ -17,10 +17,7 @@
 package self.philbrown.AbLE.annotations;
 
 import java.lang.reflect.Field;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.lang.reflect.Modifier;
 
 import self.philbrown.AbLE.AbLEActivity;
 import self.philbrown.AbLE.AbLEUtil;
@@ -43,122 +40,95 @@ public class FieldAnnotationInflater
 	}
 	
 	/**
-	 * This method handles fields in the layout. To do this it first looks for annotations that 
-	 * are relevant to the layout system. If a {@link Variable} or a {@link Binding} is found, the parent is notified (and 
-	 * it is used once the View has been created). If no annotation is found, then the field is translated into a
-	 * setter method and handed to the parent for later use.
-	 * @param field the <br>static</b> field that is found. 
-	 * @param parent the Class that is currently being handled by the layout inflater
+	 * This method adds the operation for a field in the layout to the plan that is being built for
+	 * the layout class. To do this it first looks for annotations that are relevant to the layout 
+	 * system. If a {@link Getter}, {@link Variable}, {@link Setter} or {@link Binding} is found, the
+	 * matching operation is added. If no annotation is found, then the field is translated into a
+	 * setter method. Field values are not read until the plan is used.
+	 * @param field the <b>static</b> field that is found. 
+	 * @param plan the plan that is being built for the class that declares the field
 	 * @throws Exception if the field is not declared as <b>public static</b>.
 	 */
-	public void inflate(Field field, ClassAnnotationInflater parent) throws Exception
+	public void inflate(Field field, LayoutPlan.Builder plan) throws Exception
 	{
+		if (!Modifier.isStatic(field.getModifiers()))
+			throw new IllegalArgumentException(AbLEUtil.format("Field %s must be static", field.getName()));
+		
 		if (field.isAnnotationPresent(Getter.class))
 		{
-			Object value = field.get(null);
-			
-			Map<List<Class<?>>, List<Object>> getter = new HashMap<List<Class<?>>, List<Object>>();
-			List<Class<?>> classes = new ArrayList<Class<?>>();
-			List<Object> parameters = new ArrayList<Object>();
-			Object[] obj = (Object[]) value;
-			for (Object o : obj)
-			{
-				Class<?> clazz = o.getClass();
-				if (clazz.equals(Byte.class) || clazz.equals(Byte.TYPE))
-					classes.add(byte.class);
-				else if (clazz.equals(Double.class) || clazz.equals(Double.TYPE))
-					classes.add(double.class);
-				else if (clazz.equals(Float.class) || clazz.equals(Float.TYPE))
-					classes.add(float.class);
-				else if (clazz.equals(Integer.class) || clazz.equals(Integer.TYPE))
-					classes.add(int.class);
-				else if (clazz.equals(Long.class) || clazz.equals(Long.TYPE))
-					classes.add(long.class);
-				else if (clazz.equals(Short.class) || clazz.equals(Short.TYPE))
-					classes.add(short.class);
-				else if (clazz.equals(Boolean.class) || clazz.equals(Boolean.TYPE))
-					classes.add(boolean.class);
-				else
-					classes.add(clazz);
-				
-				parameters.add(o);
-			}
-			getter.put(classes, parameters);
-			String method = field.getAnnotation(Getter.class).methodName();
-			if (method.equals(""))
-				method = AbLEUtil.buildString("get", AnnotatedLayoutInflater.capitalize(field.getName()));
-			Map<String, Map<List<Class<?>>, List<Object>>> m = parent.getters.get(field);//.put(method, getter);
-			if (m == null)
-				m = new HashMap<String, Map<List<Class<?>>, List<Object>>>();
-			m.put(method, getter);
-			parent.getters.put(field, m);
-			
+			plan.addGetter(new GetterOp(field));
 		}
 		else if (field.isAnnotationPresent(Variable.class))
 		{
-			String varName = field.getName();
-			parent.variables.put(varName, field.get(null));
+			plan.addVariable(field);
 		}
 		else if (field.isAnnotationPresent(Setter.class))
 		{
-			Object value = field.get(null);
-			if (value instanceof Object[])
-			{
-				Map<List<Class<?>>, List<Object>> setter = new HashMap<List<Class<?>>, List<Object>>();
-				List<Class<?>> classes = new ArrayList<Class<?>>();
-				List<Object> parameters = new ArrayList<Object>();
-				Object[] obj = (Object[]) value;
-				for (Object o : obj)
-				{
-					Class<?> clazz = o.getClass();
-					if (clazz.equals(Byte.class) || clazz.equals(Byte.TYPE))
-						classes.add(byte.class);
-					else if (clazz.equals(Double.class) || clazz.equals(Double.TYPE))
-						classes.add(double.class);
-					else if (clazz.equals(Float.class) || clazz.equals(Float.TYPE))
-						classes.add(float.class);
-					else if (clazz.equals(Integer.class) || clazz.equals(Integer.TYPE))
-						classes.add(int.class);
-					else if (clazz.equals(Long.class) || clazz.equals(Long.TYPE))
-						classes.add(long.class);
-					else if (clazz.equals(Short.class) || clazz.equals(Short.TYPE))
-						classes.add(short.class);
-					else if (clazz.equals(Boolean.class) || clazz.equals(Boolean.TYPE))
-						classes.add(boolean.class);
-					else
-						classes.add(clazz);
-					
-					parameters.add(o);
-				}
-				setter.put(classes, parameters);
-				String method = AbLEUtil.buildString("set", AnnotatedLayoutInflater.capitalize(field.getName()));
-				
-				parent.setters.put(method, setter);
-			}
+			if (field.getType() == int[].class)
+				plan.addSetter(new IntArraySetterOp(field));
 			else
-			{
-				AbLEUtil.warn("Invalid Setter type. Must be Object[].");
-			}
-			
+				plan.addSetter(new ArgumentsSetterOp(field));
 		}
 		else if (field.isAnnotationPresent(Binding.class))
 		{
-			parent.bindings.add(field);
+			plan.addBinding(field);
 		}
 		else
 		{
-			//No relevant annotation found, so add the setter method info to the parent for inflation
-			Map<List<Class<?>>, List<Object>> setter = new HashMap<List<Class<?>>, List<Object>>();
-			Class<?> type = field.getType();
-			List<Class<?>> classes = new ArrayList<Class<?>>();
-			classes.add(type);
-			Object value = field.get(null);
-			List<Object> objects = new ArrayList<Object>();
-			objects.add(value);
-			setter.put(classes, objects);
-			String method = AbLEUtil.buildString("set", AnnotatedLayoutInflater.capitalize(field.getName()));
-			parent.setters.put(method, setter);
+			//No relevant annotation found, so add the setter method
+			plan.addSetter(newSetter(field));
+		}
+	}
+	
+	/**
+	 * Creates the operation that passes the value of the given field to its single-parameter setter.
+	 * Fields of type {@code int}, {@code float} and {@code boolean} use primitive-specialized operations,
+	 * which do not box the value.
+	 * @param field the static field that contains the value to set
+	 * @return the setter operation
+	 */
+	public static SetterOp newSetter(Field field)
+	{
+		Class<?> type = field.getType();
+		if (type == int.class)
+			return new IntSetterOp(field);
+		else if (type == float.class)
+			return new FloatSetterOp(field);
+		else if (type == boolean.class)
+			return new BooleanSetterOp(field);
+		return new ObjectSetterOp(field);
+	}
+	
+	/**
+	 * Gets the parameter types used to look up a method that accepts the given arguments. Wrapper
+	 * types (such as {@code Integer}) are converted to their primitive types (such as {@code int}).
+	 * @param args the arguments that will be passed to the method
+	 * @return the parameter types of the method
+	 */
+	public static Class<?>[] getParameterTypes(Object[] args)
+	{
+		Class<?>[] classes = new Class<?>[args.length];
+		for (int i = 0; i < args.length; i++)
+		{
+			Class<?> clazz = args[i].getClass();
+			if (clazz.equals(Byte.class) || clazz.equals(Byte.TYPE))
+				classes[i] = byte.class;
+			else if (clazz.equals(Double.class) || clazz.equals(Double.TYPE))
+				classes[i] = double.class;
+			else if (clazz.equals(Float.class) || clazz.equals(Float.TYPE))
+				classes[i] = float.class;
+			else if (clazz.equals(Integer.class) || clazz.equals(Integer.TYPE))
+				classes[i] = int.class;
+			else if (clazz.equals(Long.class) || clazz.equals(Long.TYPE))
+				classes[i] = long.class;
+			else if (clazz.equals(Short.class) || clazz.equals(Short.TYPE))
+				classes[i] = short.class;
+			else if (clazz.equals(Boolean.class) || clazz.equals(Boolean.TYPE))
+				classes[i] = boolean.class;
+			else
+				classes[i] = clazz;
 		}
+		return classes;
 	}
 	
 }
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package self.philbrown.AbLE.annotations;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import self.philbrown.AbLE.AbLEUtil;
+
+/**
+ * A method that is called on the Object created for a layout class, using one of the layout's static
+ * fields. Field operations are created once per layout class by its {@link LayoutPlan}, and are
+ * safe to use from multiple threads.
+ * @author Phil Brown
+ */
+public abstract class FieldOp
+{
+	/** The static field that is used by the method */
+	protected final Field field;
+	/** The name of the method */
+	protected final String name;
+
+	/** The invoker of the most recently resolved method. This is replaced, never modified. */
+	private volatile ResolvedMethod resolved;
+
+	/**
+	 * Constructor
+	 * @param field the static field that is used by the method
+	 * @param name the name of the method
+	 */
+	protected FieldOp(Field field, String name)
+	{
+		this.field = field;
+		this.name = name;
+	}
+
+	/**
+	 * @return the static field that is used by the method
+	 */
+	public Field getField()
+	{
+		return field;
+	}
+
+	/**
+	 * @return the name of the method
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Calls the method on the given target. Errors are logged.
+	 * @param target the Object on which the method is called
+	 */
+	public abstract void apply(Object target);
+
+	/**
+	 * Gets the invoker of the method with the given parameter types from the class of the given target.
+	 * The last invoker is cached, so the lookup happens once as long as the target class and the
+	 * parameter types do not change. All target kinds (views, {@link AbstractLayoutAdapter}s and
+	 * {@link AbstractInvisible}s) share this cache.
+	 * @param target the Object on which the method will be called
+	 * @param types the parameter types of the method
+	 * @return the invoker
+	 * @throws NoSuchMethodException if the method does not exist
+	 */
+	protected Invoker getInvoker(Object target, Class<?>[] types) throws NoSuchMethodException
+	{
+		ResolvedMethod r = resolved;
+		Class<?> clazz = target.getClass();
+		if (r != null && r.clazz == clazz && (r.types == types || Arrays.equals(r.types, types)))
+			return r.invoker;
+		Method m = clazz.getMethod(name, types);
+		Invoker invoker = Invokers.create(m);
+		resolved = new ResolvedMethod(clazz, types, invoker);
+		return invoker;
+	}
+
+	/**
+	 * Gets the invoker of the method that accepts the given arguments. If the arguments match the
+	 * parameter types of the cached invoker, no parameter type array is created.
+	 * @param target the Object on which the method will be called
+	 * @param args the arguments that will be passed to the method
+	 * @return the invoker
+	 * @throws NoSuchMethodException if the method does not exist
+	 * @see FieldAnnotationInflater#getParameterTypes(Object[])
+	 */
+	protected Invoker getInvoker(Object target, Object[] args) throws NoSuchMethodException
+	{
+		ResolvedMethod r = resolved;
+		if (r != null && r.clazz == target.getClass() && matches(r.types, args))
+			return r.invoker;
+		return getInvoker(target, FieldAnnotationInflater.getParameterTypes(args));
+	}
+	
+	/**
+	 * @param types parameter types returned by {@link FieldAnnotationInflater#getParameterTypes(Object[])}
+	 * @param args the arguments
+	 * @return {@code true} if the given parameter types are those of the given arguments
+	 */
+	private static boolean matches(Class<?>[] types, Object[] args)
+	{
+		if (types.length != args.length)
+			return false;
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i] == null)
+				return false;
+			Class<?> clazz = args[i].getClass();
+			if (clazz != types[i] && !(types[i].isPrimitive() && clazz == boxed(types[i])))
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * @param primitive a primitive type
+	 * @return the wrapper class of the given primitive type
+	 */
+	private static Class<?> boxed(Class<?> primitive)
+	{
+		if (primitive == int.class)
+			return Integer.class;
+		else if (primitive == float.class)
+			return Float.class;
+		else if (primitive == boolean.class)
+			return Boolean.class;
+		else if (primitive == double.class)
+			return Double.class;
+		else if (primitive == long.class)
+			return Long.class;
+		else if (primitive == short.class)
+			return Short.class;
+		else if (primitive == byte.class)
+			return Byte.class;
+		return primitive;
+	}
+	
+	/**
+	 * Logs the error for a method that could not be called.
+	 * @param target the Object on which the method was called
+	 * @param types the parameter types of the method
+	 */
+	protected void logError(Object target, Class<?>[] types)
+	{
+		StringBuilder b = new StringBuilder();
+		for (int i = 0; types != null && i < types.length; i++)
+		{
+			b.append(types[i].getSimpleName());
+			if (i != types.length - 1)
+			{
+				b.append(", ");
+			}
+		}
+		AbLEUtil.err("Could not call method %s(%s) on class %s", name, b.toString(),
+				target == null ? "null" : target.getClass().getName());
+	}
+
+	/**
+	 * Logs the error for a method that could not be called with the given arguments.
+	 * @param target the Object on which the method was called
+	 * @param args the arguments passed to the method
+	 */
+	protected void logError(Object target, Object[] args)
+	{
+		Class<?>[] types = null;
+		if (args != null)
+		{
+			types = new Class<?>[args.length];
+			for (int i = 0; i < args.length; i++)
+			{
+				types[i] = args[i] == null ? Object.class : args[i].getClass();
+			}
+		}
+		logError(target, types);
+	}
+
+	/**
+	 * Immutable record of a resolved method
+	 */
+	private static final class ResolvedMethod
+	{
+		final Class<?> clazz;
+		final Class<?>[] types;
+		final Invoker invoker;
+
+		ResolvedMethod(Class<?> clazz, Class<?>[] types, Invoker invoker)
+		{
+			this.clazz = clazz;
+			this.types = types;
+			this.invoker = invoker;
+		}
+	}
+}
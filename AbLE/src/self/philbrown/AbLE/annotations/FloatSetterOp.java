@@ -0,0 +1,151 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package self.philbrown.AbLE.annotations;
+
+import java.lang.reflect.Field;
+
+import android.view.View;
+import android.widget.TextView;
+
+/**
+ * Calls a setter whose single parameter is a {@code float}. The value is read using
+ * {@link Field#getFloat(Object)}. Only the common view setters listed below (such as {@code setAlpha}
+ * and {@code setX}) are called directly. Every other setter is called by its {@link Invoker}, which
+ * boxes the value. Generated inflaters call each setter they can resolve directly instead.
+ * @author Phil Brown
+ */
+public class FloatSetterOp extends SetterOp
+{
+	/** The parameter type of the setter */
+	private static final Class<?>[] TYPES = new Class<?>[]{float.class};
+	
+	/** Setters that are called directly */
+	private static final int NONE = 0, 
+							 X = 1, 
+							 Y = 2, 
+							 ALPHA = 3, 
+							 ROTATION = 4, 
+							 SCALE_X = 5, 
+							 SCALE_Y = 6, 
+							 TRANSLATION_X = 7, 
+							 TRANSLATION_Y = 8, 
+							 TEXT_SIZE = 9;
+	
+	/** The setter that is called directly, or {@link #NONE} */
+	private final int intrinsic;
+	
+	/**
+	 * Constructor
+	 * @param field the static {@code float} field that contains the value to set
+	 */
+	public FloatSetterOp(Field field)
+	{
+		super(field);
+		intrinsic = getIntrinsic(name);
+	}
+
+	@Override
+	public void apply(Object target)
+	{
+		try
+		{
+			float value = field.getFloat(null);
+			if (intrinsic != NONE && applyIntrinsic(target, value))
+				return;
+			getInvoker(target, TYPES).invoke(target, Float.valueOf(value));
+		} catch (Throwable t)
+		{
+			logError(target, TYPES);
+		}
+	}
+	
+	/**
+	 * Calls the setter directly, if the target is of the type that declares it.
+	 * @param target the Object on which the setter is called
+	 * @param value the value to set
+	 * @return {@code true} if the setter was called. Otherwise {@code false}.
+	 */
+	private boolean applyIntrinsic(Object target, float value)
+	{
+		if (!(target instanceof View))
+			return false;
+		View v = (View) target;
+		switch (intrinsic)
+		{
+			case X :
+				v.setX(value);
+				return true;
+			case Y :
+				v.setY(value);
+				return true;
+			case ALPHA :
+				v.setAlpha(value);
+				return true;
+			case ROTATION :
+				v.setRotation(value);
+				return true;
+			case SCALE_X :
+				v.setScaleX(value);
+				return true;
+			case SCALE_Y :
+				v.setScaleY(value);
+				return true;
+			case TRANSLATION_X :
+				v.setTranslationX(value);
+				return true;
+			case TRANSLATION_Y :
+				v.setTranslationY(value);
+				return true;
+			case TEXT_SIZE :
+				if (v instanceof TextView)
+				{
+					((TextView) v).setTextSize(value);
+					return true;
+				}
+				return false;
+			default :
+				return false;
+		}
+	}
+	
+	/**
+	 * @param name the name of the setter
+	 * @return the setter that is called directly, or {@link #NONE}
+	 */
+	private static int getIntrinsic(String name)
+	{
+		if (name.equals("setX"))
+			return X;
+		else if (name.equals("setY"))
+			return Y;
+		else if (name.equals("setAlpha"))
+			return ALPHA;
+		else if (name.equals("setRotation"))
+			return ROTATION;
+		else if (name.equals("setScaleX"))
+			return SCALE_X;
+		else if (name.equals("setScaleY"))
+			return SCALE_Y;
+		else if (name.equals("setTranslationX"))
+			return TRANSLATION_X;
+		else if (name.equals("setTranslationY"))
+			return TRANSLATION_Y;
+		else if (name.equals("setTextSize"))
+			return TEXT_SIZE;
+		return NONE;
+	}
+}
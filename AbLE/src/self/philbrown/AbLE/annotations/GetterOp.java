@@ -0,0 +1,68 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package self.philbrown.AbLE.annotations;
+
+import java.lang.reflect.Field;
+
+import self.philbrown.AbLE.AbLEUtil;
+
+/**
+ * A getter method that is called on the Object created for a layout class. The parameters are read
+ * from a static field declared with the {@link Getter} annotation, and the returned value is stored
+ * in the same field. Getter operations are created once per layout class by its {@link LayoutPlan}.
+ * @author Phil Brown
+ */
+public class GetterOp extends FieldOp
+{
+	/**
+	 * Constructor
+	 * @param field the static field that contains the Object Array of parameters
+	 */
+	public GetterOp(Field field)
+	{
+		super(field, getMethodName(field));
+	}
+
+	/**
+	 * Calls the getter on the given target and stores the returned value in {@link #field}.
+	 * Errors are logged.
+	 */
+	@Override
+	public void apply(Object target)
+	{
+		Object[] args = null;
+		try
+		{
+			args = (Object[]) field.get(null);
+			field.set(null, getInvoker(target, args).invoke(target, args));
+		} catch (Throwable t)
+		{
+			logError(target, args);
+		}
+	}
+
+	/**
+	 * @return the name of the getter method for the given field
+	 */
+	private static String getMethodName(Field field)
+	{
+		String method = field.getAnnotation(Getter.class).methodName();
+		if (method.equals(""))
+			method = AbLEUtil.buildString("get", AnnotatedLayoutInflater.capitalize(field.getName()));
+		return method;
+	}
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package self.philbrown.AbLE.annotations;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import self.philbrown.AbLE.AbLEActivity;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * An inflation that runs on the main thread in small slices, so that a large layout does not block
+ * drawing and input while it is created. Instead of recursing through the layout, child layout classes
+ * are added to a work queue, and each slice inflates nodes from the queue, depth-first and in declaration
+ * order, until its time budget is used. The next slice is then posted to the main thread, so that frames
+ * can be drawn between slices.
+ * <p>
+ * The static {@code onLayoutComplete} method of a layout class is called once all of its children have
+ * been inflated, as it is for a normal inflation. Layouts whose inflaters do not use
+ * {@link ClassAnnotationInflater#handleChildViews(Class)} (such as generated inflaters) inflate their 
+ * children within a single slice.
+ * @author Phil Brown
+ * @see AnnotatedLayoutInflater#inflateIncrementally(AbLEActivity, Class, long, InflationCallback)
+ */
+public final class IncrementalInflation implements Runnable
+{
+	/** The default time budget of each slice, in milliseconds */
+	public static final long DEFAULT_BUDGET = 4;
+	
+	/** Used to create views and access resources */
+	private final AbLEActivity context;
+	/** Notified of progress, and once the layout is inflated */
+	private final InflationCallback callback;
+	/** Posts slices to the main thread */
+	private final Handler handler;
+	/** The longest time, in milliseconds, that a slice may spend inflating */
+	private final long budget;
+	/** The context of this inflation */
+	private final InflationContext inflation;
+	/** The nodes that remain to be inflated, in the order they will be inflated */
+	private final LinkedList<Node> queue = new LinkedList<Node>();
+	/** The number of layout classes declared by the layout */
+	private final int total;
+	/** The node being inflated, or {@code null} between nodes */
+	private Node current;
+	/** The root view, or {@code null} until the root has been inflated */
+	private View root;
+	/** The number of nodes that have been inflated */
+	private int inflated;
+	/** {@code true} once {@link #cancel()} has been called */
+	private boolean cancelled;
+	/** {@code true} once the callback has been notified */
+	private boolean done;
+	
+	/**
+	 * Constructor
+	 * @param context used to create views and access resources
+	 * @param layout the layout class
+	 * @param budget the longest time, in milliseconds, that a slice may spend inflating
+	 * @param callback notified once the layout is inflated. If this is an {@link InflationProgressListener},
+	 * it is also notified of progress after each slice.
+	 */
+	IncrementalInflation(AbLEActivity context, Class<?> layout, long budget, InflationCallback callback)
+	{
+		this.context = context;
+		this.callback = callback;
+		this.budget = budget;
+		this.handler = new Handler(Looper.getMainLooper());
+		this.inflation = new InflationContext(context, null, this);
+		LayoutPlan plan = LayoutPlan.of(layout);
+		this.total = plan.getSubtreeSize();
+		queue.add(new Node(plan, null, null, null));
+	}
+	
+	/**
+	 * Posts the first slice to the main thread
+	 */
+	void start()
+	{
+		handler.post(this);
+	}
+	
+	/**
+	 * Cancels the inflation. No more slices are run, and the callback is not notified. This must be
+	 * called on the main thread, for example from {@code onDestroy}.
+	 */
+	public void cancel()
+	{
+		cancelled = true;
+		handler.removeCallbacks(this);
+	}
+	
+	/**
+	 * @return {@code true} if {@link #cancel()} has been called
+	 */
+	public boolean isCancelled()
+	{
+		return cancelled;
+	}
+	
+	/**
+	 * @return {@code true} once the layout has been inflated and the callback has been notified
+	 */
+	public boolean isDone()
+	{
+		return done;
+	}
+	
+	/**
+	 * Gets the root view. This is available after the first slice, so a partially inflated layout can
+	 * be shown while the rest of it is created.
+	 * @return the root view, or {@code null} if the root has not been inflated yet, or could not be inflated
+	 */
+	public View getRoot()
+	{
+		return root;
+	}
+	
+	/**
+	 * Runs one slice of the inflation on the main thread, then posts the next slice, or notifies the callback
+	 * if the queue is empty.
+	 */
+	public void run()
+	{
+		if (cancelled || done)
+			return;
+		long start = SystemClock.uptimeMillis();
+		do
+		{
+			inflateNext();
+		} while (!queue.isEmpty() && !cancelled && SystemClock.uptimeMillis() - start < budget);
+		
+		if (cancelled)
+			return;
+		if (callback instanceof InflationProgressListener)
+			((InflationProgressListener) callback).onProgress(inflated, total);
+		if (cancelled)
+			return;
+		if (queue.isEmpty())
+		{
+			done = true;
+			if (callback != null)
+				callback.onInflated(root);
+		}
+		else
+		{
+			handler.post(this);
+		}
+	}
+	
+	/**
+	 * Inflates the node at the head of the queue, and adds its view to its parent. The children that it 
+	 * declares are placed at the head of the queue, in declaration order.
+	 */
+	private void inflateNext()
+	{
+		Node node = queue.removeFirst();
+		current = node;
+		View v;
+		try
+		{
+			if (node.parent == null)
+				v = root = AnnotatedLayoutInflater.inflate(node.plan, inflation);
+			else
+				v = AnnotatedLayoutInflater.inflate(context, node.plan, node.parent);
+		}
+		finally
+		{
+			current = null;
+		}
+		inflated++;
+		if (v != null && node.parentView != null)
+			node.parentView.addView(v);
+		if (node.children != null)
+		{
+			for (int i = node.children.size() - 1; i >= 0; i--)
+				queue.addFirst(node.children.get(i));
+			node.children = null;
+		}
+		if (node.pending == 0)
+			complete(node);
+	}
+	
+	/**
+	 * Calls the deferred {@code onLayoutComplete} method of the given node, and of each of its ancestors
+	 * whose last child has now been inflated.
+	 * @param node a node whose children have all been inflated
+	 */
+	private void complete(Node node)
+	{
+		while (node != null)
+		{
+			if (node.completeInflater != null)
+				node.completeInflater.callOnLayoutComplete(node.completeLayout, node.completeObject);
+			node = node.parentNode;
+			if (node == null || --node.pending > 0)
+				return;
+		}
+	}
+	
+	/**
+	 * Adds the given children of the node being inflated to the queue, instead of inflating them now.
+	 * @param inflater the inflater of the parent layout class
+	 * @param parent the view to which the children's views are added
+	 * @param children the plans of the child layout classes, in declaration order
+	 * @return {@code true} if the children were queued, or {@code false} if no node is being inflated,
+	 * in which case the children should be inflated normally.
+	 */
+	boolean enqueue(ClassAnnotationInflater inflater, ViewGroup parent, List<LayoutPlan> children)
+	{
+		Node node = current;
+		if (node == null)
+			return false;
+		if (children.isEmpty())
+			return true;
+		if (node.children == null)
+			node.children = new ArrayList<Node>(children.size());
+		for (int i = 0; i < children.size(); i++)
+			node.children.add(new Node(children.get(i), inflater, parent, node));
+		node.pending += children.size();
+		node.enqueuer = inflater;
+		return true;
+	}
+	
+	/**
+	 * Postpones a call to the {@code onLayoutComplete} method of a layout class until its queued children
+	 * have been inflated.
+	 * @param inflater the inflater of the layout class
+	 * @param layout the layout class
+	 * @param obj the Object created for the layout class
+	 * @return {@code true} if the call was postponed. {@code false} if the method should be called now.
+	 */
+	boolean deferCompletion(ClassAnnotationInflater inflater, Class<?> layout, Object obj)
+	{
+		Node node = current;
+		if (node == null || node.pending == 0 || node.enqueuer != inflater)
+			return false;
+		node.completeInflater = inflater;
+		node.completeLayout = layout;
+		node.completeObject = obj;
+		return true;
+	}
+	
+	/**
+	 * A layout class that is waiting in the queue, or whose children are.
+	 */
+	private static class Node
+	{
+		/** The plan of the layout class */
+		final LayoutPlan plan;
+		/** The inflater of the parent layout class, or {@code null} for the root */
+		final ClassAnnotationInflater parent;
+		/** The view to which this node's view is added, or {@code null} for the root */
+		final ViewGroup parentView;
+		/** The node of the parent layout class, or {@code null} for the root */
+		final Node parentNode;
+		/** Children queued while this node was inflated. They are moved to the queue afterwards. */
+		List<Node> children;
+		/** The number of children that have not been completely inflated */
+		int pending;
+		/** The inflater that queued this node's children */
+		ClassAnnotationInflater enqueuer;
+		/** The inflater whose {@code onLayoutComplete} call is postponed, or {@code null} */
+		ClassAnnotationInflater completeInflater;
+		/** The layout class passed to the postponed {@code onLayoutComplete} call */
+		Class<?> completeLayout;
+		/** The Object passed to the postponed {@code onLayoutComplete} call */
+		Object completeObject;
+		
+		Node(LayoutPlan plan, ClassAnnotationInflater parent, ViewGroup parentView, Node parentNode)
+		{
+			this.plan = plan;
+			this.parent = parent;
+			this.parentView = parentView;
+			this.parentNode = parentNode;
+		}
+	}
+}
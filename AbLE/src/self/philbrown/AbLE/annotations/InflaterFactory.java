@@ -0,0 +1,35 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package self.philbrown.AbLE.annotations;
+
+import self.philbrown.AbLE.AbLEActivity;
+
+/**
+ * Creates the {@link ClassAnnotationInflater} that handles a layout class annotation. Factories are
+ * registered with the {@link InflaterRegistry}.
+ * @author Phil Brown
+ */
+public interface InflaterFactory
+{
+	/**
+	 * Creates a new inflater
+	 * @param context used to create views and access resources
+	 * @param parent the parent inflater, or {@code null} for the root of the hierarchy
+	 * @return the inflater
+	 */
+	public ClassAnnotationInflater create(AbLEActivity context, ClassAnnotationInflater parent);
+}
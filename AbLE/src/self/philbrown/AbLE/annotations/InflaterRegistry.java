@@ -0,0 +1,151 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package self.philbrown.AbLE.annotations;
+
+import java.lang.annotation.Annotation;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import self.philbrown.AbLE.AbLEActivity;
+
+/**
+ * Maps layout class annotations to the {@link InflaterFactory} that handles them. The built-in
+ * annotations ({@link Layout}, {@link LayoutAdapter}, {@link XMLLayout}, {@link Invisible}, 
+ * {@link Embed} and {@link ListLayout}) are registered by default. Custom annotations can be added using
+ * {@link #register(Class, InflaterFactory)}:
+ * <pre>
+ * InflaterRegistry.register(MyAnnotation.class, new InflaterFactory() {
+ *     public ClassAnnotationInflater create(AbLEActivity context, ClassAnnotationInflater parent) {
+ *         return new MyAnnotationInflater(context, parent);
+ *     }
+ * });
+ * </pre>
+ * Custom annotations must have runtime retention, and should be registered before any layout class
+ * that uses them is first inflated.
+ * @author Phil Brown
+ */
+public final class InflaterRegistry
+{
+	/** 
+	 * The registered factories. This map is never modified once it is published. Registering a factory
+	 * replaces it with a copy, so lookups do not need to synchronize.
+	 */
+	private static volatile Map<Class<? extends Annotation>, InflaterFactory> factories;
+	
+	static
+	{
+		Map<Class<? extends Annotation>, InflaterFactory> map = new IdentityHashMap<Class<? extends Annotation>, InflaterFactory>();
+		map.put(Layout.class, new InflaterFactory() {
+			
+			public ClassAnnotationInflater create(AbLEActivity context, ClassAnnotationInflater parent)
+			{
+				return new LayoutInflater(context, parent);
+			}
+		});
+		map.put(LayoutAdapter.class, new InflaterFactory() {
+			
+			public ClassAnnotationInflater create(AbLEActivity context, ClassAnnotationInflater parent)
+			{
+				return new LayoutAdapterInflater(context, parent);
+			}
+		});
+		map.put(XMLLayout.class, new InflaterFactory() {
+			
+			public ClassAnnotationInflater create(AbLEActivity context, ClassAnnotationInflater parent)
+			{
+				return new XMLLayoutInflater(context, parent);
+			}
+		});
+		map.put(Invisible.class, new InflaterFactory() {
+			
+			public ClassAnnotationInflater create(AbLEActivity context, ClassAnnotationInflater parent)
+			{
+				return new InvisibleInflater(context, parent);
+			}
+		});
+		map.put(Embed.class, new InflaterFactory() {
+			
+			public ClassAnnotationInflater create(AbLEActivity context, ClassAnnotationInflater parent)
+			{
+				return new EmbedInflater(context, parent);
+			}
+		});
+		map.put(ListLayout.class, new InflaterFactory() {
+			
+			public ClassAnnotationInflater create(AbLEActivity context, ClassAnnotationInflater parent)
+			{
+				return new ListLayoutInflater(context, parent);
+			}
+		});
+		factories = map;
+	}
+	
+	/**
+	 * Constructor. Classes should only use the static methods that this class provides.
+	 */
+	private InflaterRegistry()
+	{
+		//cannot instantiate this class
+	}
+	
+	/**
+	 * Registers the factory that handles the given annotation. If a factory is already registered for
+	 * the annotation, it is replaced.
+	 * @param annotation the annotation type
+	 * @param factory creates the inflater for classes that declare the annotation
+	 */
+	public static synchronized void register(Class<? extends Annotation> annotation, InflaterFactory factory)
+	{
+		if (annotation == null || factory == null)
+			throw new NullPointerException("Cannot register null annotation or factory");
+		Map<Class<? extends Annotation>, InflaterFactory> map = new IdentityHashMap<Class<? extends Annotation>, InflaterFactory>(factories);
+		map.put(annotation, factory);
+		factories = map;
+	}
+	
+	/**
+	 * Removes the factory that handles the given annotation.
+	 * @param annotation the annotation type
+	 */
+	public static synchronized void unregister(Class<? extends Annotation> annotation)
+	{
+		if (!factories.containsKey(annotation))
+			return;
+		Map<Class<? extends Annotation>, InflaterFactory> map = new IdentityHashMap<Class<? extends Annotation>, InflaterFactory>(factories);
+		map.remove(annotation);
+		factories = map;
+	}
+	
+	/**
+	 * Gets the factory that handles the given annotation.
+	 * @param annotation the annotation type
+	 * @return the factory, or {@code null} if none is registered
+	 */
+	public static InflaterFactory get(Class<? extends Annotation> annotation)
+	{
+		return factories.get(annotation);
+	}
+	
+	/**
+	 * @param annotation the annotation type
+	 * @return {@code true} if a factory is registered for the given annotation
+	 */
+	public static boolean isRegistered(Class<? extends Annotation> annotation)
+	{
+		return factories.containsKey(annotation);
+	}
+}
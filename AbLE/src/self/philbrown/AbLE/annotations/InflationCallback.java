@@ -0,0 +1,34 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package self.philbrown.AbLE.annotations;
+
+import android.view.View;
+
+/**
+ * Receives the result of an asynchronous inflation started with 
+ * {@link AnnotatedLayoutInflater#inflateAsync(self.philbrown.AbLE.AbLEActivity, Class, InflationCallback)}.
+ * @author Phil Brown
+ */
+public interface InflationCallback
+{
+	/**
+	 * Called on the main thread once the layout has been inflated. This is not called if the
+	 * inflation was cancelled.
+	 * @param view the root view of the layout, or {@code null} if the layout could not be inflated.
+	 */
+	public void onInflated(View view);
+}
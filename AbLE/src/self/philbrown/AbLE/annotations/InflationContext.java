@@ -0,0 +1,197 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package self.philbrown.AbLE.annotations;
+
+import self.philbrown.AbLE.AbLEActivity;
+
+/**
+ * The state of a single inflation, from its root layout class down. Each call to 
+ * {@link AnnotatedLayoutInflater#inflate(AbLEActivity, Class, ClassAnnotationInflater)} with a 
+ * {@code null} parent (and each asynchronous inflation) creates a new context, which is passed down
+ * the chain of {@link ClassAnnotationInflater}s. Inflations on different threads therefore never share
+ * a context, and a nested inflation (such as an {@link self.philbrown.AbLE.view.AbLE_Annotation} 
+ * in an XML layout) does not affect the inflation that contains it.
+ * <p>
+ * While a layout is being inflated, its context is available to the layout classes, including their
+ * static initializers, through {@link #current()}:
+ * <pre>
+ * {@code @Variable}
+ * public static MyActivity context = (MyActivity) InflationContext.current().getActivity();
+ * </pre>
+ * @author Phil Brown
+ */
+public final class InflationContext
+{
+	/** The context of the inflation that is running on each thread */
+	private static final ThreadLocal<InflationContext> current = new ThreadLocal<InflationContext>();
+	
+	/** Used to create views and access resources. Changes if a retained layout is reattached. */
+	private volatile AbLEActivity activity;
+	/** The asynchronous inflation, or {@code null} */
+	private final InflationTask task;
+	/** The incremental inflation, or {@code null} */
+	private final IncrementalInflation incremental;
+	/** The record whose Object the next inflater may reuse, or {@code null}. Only used on the main thread. */
+	private InflationRecord reuse;
+	/** Indexes the views created by this inflation. Created when the first view is inflated. */
+	private ViewIndex index;
+	/** The device configuration that selects {@link Variant}s. Read when the first variant is resolved. */
+	private LayoutConfiguration configuration;
+	
+	/**
+	 * Constructor
+	 * @param activity used to create views and access resources
+	 * @param task the asynchronous inflation, or {@code null} if the inflation is synchronous
+	 */
+	InflationContext(AbLEActivity activity, InflationTask task)
+	{
+		this(activity, task, null);
+	}
+	
+	/**
+	 * Constructor
+	 * @param activity used to create views and access resources
+	 * @param task the asynchronous inflation, or {@code null} if the inflation is synchronous
+	 * @param incremental the incremental inflation, or {@code null} if the inflation is not time-sliced
+	 */
+	InflationContext(AbLEActivity activity, InflationTask task, IncrementalInflation incremental)
+	{
+		this.activity = activity;
+		this.task = task;
+		this.incremental = incremental;
+	}
+	
+	/**
+	 * @return the context of the inflation that is running on the current thread, or {@code null}
+	 * if no inflation is running.
+	 */
+	public static InflationContext current()
+	{
+		return current.get();
+	}
+	
+	/**
+	 * Makes the given context the current context of this thread.
+	 * @param context the context of the inflation that is starting
+	 * @return the previous context, which must be passed to {@link #exit(InflationContext)}
+	 */
+	static InflationContext enter(InflationContext context)
+	{
+		InflationContext previous = current.get();
+		current.set(context);
+		return previous;
+	}
+	
+	/**
+	 * Restores the context that was current before {@link #enter(InflationContext)} was called
+	 * @param previous the value returned by {@link #enter(InflationContext)}
+	 */
+	static void exit(InflationContext previous)
+	{
+		if (previous == null)
+			current.remove();
+		else
+			current.set(previous);
+	}
+	
+	/**
+	 * @return the Activity used to create views and access resources
+	 */
+	public AbLEActivity getActivity()
+	{
+		return activity;
+	}
+	
+	/**
+	 * @return the asynchronous inflation, or {@code null} if the inflation is synchronous
+	 */
+	public InflationTask getTask()
+	{
+		return task;
+	}
+	
+	/**
+	 * @return the incremental inflation, or {@code null} if the inflation is not time-sliced
+	 */
+	public IncrementalInflation getIncremental()
+	{
+		return incremental;
+	}
+	
+	/**
+	 * @return the device configuration in which this inflation resolves {@link Variant}s. It is read once, so
+	 * that every class of the inflation uses the same configuration.
+	 */
+	synchronized LayoutConfiguration getConfiguration()
+	{
+		if (configuration == null)
+			configuration = LayoutConfiguration.of(activity);
+		return configuration;
+	}
+	
+	/**
+	 * @return the index that records the views created by this inflation
+	 */
+	synchronized ViewIndex getIndex()
+	{
+		if (index == null)
+			index = new ViewIndex();
+		return index;
+	}
+	
+	/**
+	 * Moves this context to the Activity that shows the layout after it was retained across the recreation
+	 * of its Activity
+	 * @param activity the new Activity
+	 */
+	void reattach(AbLEActivity activity)
+	{
+		this.activity = activity;
+	}
+	
+	/**
+	 * Creates the context of views that are inflated into this layout after its inflation finished, such as
+	 * {@link Lazy} subtrees. The new context has no task, and shares the {@link ViewIndex} of this one.
+	 * @return the new context
+	 */
+	InflationContext continuation()
+	{
+		InflationContext continuation = new InflationContext(activity, null);
+		continuation.index = getIndex();
+		return continuation;
+	}
+	
+	/**
+	 * Offers the Object of a previous inflation to the next inflater that is created, so that it can be
+	 * reconciled with the new layout class instead of being created again.
+	 * @param record the record of the previous inflation, or {@code null}
+	 */
+	void setReuse(InflationRecord record)
+	{
+		reuse = record;
+	}
+	
+	/**
+	 * @return the record offered by {@link #setReuse(InflationRecord)}, which is then cleared, or {@code null}
+	 */
+	InflationRecord takeReuse()
+	{
+		InflationRecord record = reuse;
+		reuse = null;
+		return record;
+	}
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package self.philbrown.AbLE.annotations;
+
+/**
+ * Receives the progress of an incremental inflation started with 
+ * {@link AnnotatedLayoutInflater#inflateIncrementally(self.philbrown.AbLE.AbLEActivity, Class, InflationCallback)}.
+ * Callbacks that only need the result can implement {@link InflationCallback} instead.
+ * @author Phil Brown
+ */
+public interface InflationProgressListener extends InflationCallback
+{
+	/**
+	 * Called on the main thread at the end of each slice of the inflation.
+	 * @param inflated the number of layout classes that have been inflated so far
+	 * @param total the number of layout classes declared by the layout. Embedded layouts are not
+	 * counted, so {@code inflated} may briefly exceed this value.
+	 */
+	public void onProgress(int inflated, int total);
+}
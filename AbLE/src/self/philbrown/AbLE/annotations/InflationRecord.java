@@ -0,0 +1,303 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package self.philbrown.AbLE.annotations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import self.philbrown.AbLE.AbLEUtil;
+import android.view.View;
+
+/**
+ * What an inflater did for one layout class: the Object it created, and the value of each field that
+ * it passed to a setter. Records form a tree that matches the layout, whose root is tagged on the root
+ * view, so that {@link AnnotatedLayoutInflater#refresh(View)} can call again only the setters whose
+ * fields have changed since they were applied.
+ * @author Phil Brown
+ */
+final class InflationRecord
+{
+	/** The plan of the layout class */
+	private final LayoutPlan plan;
+	/** The Object on which the setters were called, or {@code null} until {@link #capture(Object)} */
+	private Object target;
+	/** The setters of the plan, followed by the setters of its bindings */
+	private SetterOp[] setters;
+	/** The last value applied by each setter */
+	private Object[] values;
+	/** The bindings resolved by the inflater, or {@code null} if the layout class has none */
+	private List<BindingSubscription> bindings;
+	/** 
+	 * {@code true} if this record has no target, and its only child is the copy of a layout class for an item 
+	 * of a {@link Repeat} or {@link ListLayout}
+	 */
+	private boolean item;
+	/** The records of the child layout classes, in the order they were inflated */
+	private final List<InflationRecord> children = new ArrayList<InflationRecord>(0);
+	
+	/**
+	 * Constructor
+	 * @param plan the plan of the layout class
+	 */
+	InflationRecord(LayoutPlan plan)
+	{
+		this.plan = plan;
+	}
+	
+	/**
+	 * Records the Object that was created for the layout class, and the values that its setters applied.
+	 * @param target the Object on which the setters were called
+	 */
+	void capture(Object target)
+	{
+		this.target = target;
+		List<SetterOp> setters = plan.getSetters();
+		int bindings = plan.getBindings().size();
+		this.setters = new SetterOp[setters.size() + bindings];
+		this.values = new Object[this.setters.length];
+		for (int i = 0; i < setters.size(); i++)
+			this.setters[i] = setters.get(i);
+		for (int i = 0; i < bindings; i++)
+			this.setters[setters.size() + i] = plan.getBindingSetter(i);
+		for (int i = 0; i < this.setters.length; i++)
+		{
+			try
+			{
+				values[i] = this.setters[i].snapshot();
+			} catch (IllegalAccessException e)
+			{
+				values[i] = null;
+			}
+		}
+	}
+	
+	/**
+	 * Records the bindings that the inflater resolved, so that they can be {@link #rebind() bound again}.
+	 * @param bindings the bindings, or {@code null}
+	 */
+	void setBindings(List<BindingSubscription> bindings)
+	{
+		this.bindings = bindings;
+	}
+	
+	/**
+	 * Stops the bindings of this layout class from updating its Object, without unsubscribing its children.
+	 * This is used when the Object is taken over by another record.
+	 */
+	void unsubscribeBindings()
+	{
+		List<BindingSubscription> bindings = this.bindings;
+		if (bindings == null)
+			return;
+		for (int i = 0; i < bindings.size(); i++)
+			bindings.get(i).unsubscribe();
+	}
+	
+	/**
+	 * Stops the bindings of this layout class and of its children from updating their Objects. This must
+	 * be called before the Objects are pooled or reused, so that they do not receive stale updates.
+	 */
+	void unsubscribe()
+	{
+		unsubscribeBindings();
+		List<InflationRecord> children = getChildren();
+		for (int i = 0; i < children.size(); i++)
+			children.get(i).unsubscribe();
+	}
+	
+	/**
+	 * Marks this record as the parent of the copy of a layout class for an item
+	 * @param item {@code true} if the bindings of the copy must be read again when it is refreshed
+	 */
+	void setItem(boolean item)
+	{
+		this.item = item;
+	}
+	
+	/**
+	 * @return the plan of the layout class
+	 */
+	LayoutPlan getPlan()
+	{
+		return plan;
+	}
+	
+	/**
+	 * @return the Object on which the setters were called
+	 */
+	Object getTarget()
+	{
+		return target;
+	}
+	
+	/**
+	 * @return the setters that were called on the Object, or {@code null} if none were recorded
+	 */
+	SetterOp[] getSetters()
+	{
+		return setters;
+	}
+	
+	/**
+	 * @return the records of the child layout classes, in the order they were inflated
+	 */
+	List<InflationRecord> getChildren()
+	{
+		synchronized (children)
+		{
+			return new ArrayList<InflationRecord>(children);
+		}
+	}
+	
+	/**
+	 * Checks whether calling the given setter on {@link #target} would change anything, because this 
+	 * record has a setter with the same name that applied the value that the setter's field has now.
+	 * This is used to reconcile a new layout class with a view that is reused.
+	 * @param setter a setter of another layout class
+	 * @return {@code true} if the setter does not need to be called
+	 */
+	boolean isApplied(SetterOp setter)
+	{
+		if (setters == null)
+			return false;
+		for (int i = 0; i < setters.length; i++)
+		{
+			if (!setters[i].getName().equals(setter.getName()))
+				continue;
+			try
+			{
+				return SetterOp.isSame(values[i], setter.snapshot());
+			} catch (IllegalAccessException e)
+			{
+				return false;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Adds the record of a child layout class. Children may be added from several threads during a
+	 * parallel inflation.
+	 * @param child the record of the child
+	 */
+	void addChild(InflationRecord child)
+	{
+		synchronized (children)
+		{
+			children.add(child);
+		}
+	}
+	
+	/**
+	 * Removes the record of a child layout class whose Object is no longer used
+	 * @param child the record of the child
+	 */
+	void removeChild(InflationRecord child)
+	{
+		synchronized (children)
+		{
+			children.remove(child);
+		}
+	}
+	
+	/**
+	 * Reads the fields of this layout class and of its children again, and calls each setter whose field
+	 * has a different value than the one it last applied.
+	 * @return the number of setters that were called
+	 */
+	int refresh()
+	{
+		return refresh(false);
+	}
+	
+	/**
+	 * Refreshes this layout class and its children.
+	 * @param rebind {@code true} if the bound fields must be read again from the scope of their bindings, 
+	 * because other copies of the same classes share them
+	 * @return the number of setters that were called
+	 */
+	private int refresh(boolean rebind)
+	{
+		rebind |= item;
+		int applied = 0;
+		if (target != null)
+		{
+			int offset = bindings == null ? setters.length : setters.length - bindings.size();
+			for (int i = 0; i < setters.length; i++)
+			{
+				if (rebind && i >= offset && !bindings.get(i - offset).update())
+					continue;
+				Object current;
+				try
+				{
+					current = setters[i].snapshot();
+				} catch (IllegalAccessException e)
+				{
+					AbLEUtil.err("Could not read field %s", setters[i].getField().getName());
+					continue;
+				}
+				if (SetterOp.isSame(values[i], current))
+					continue;
+				setters[i].apply(target);
+				values[i] = current;
+				applied++;
+			}
+		}
+		for (int i = 0; i < children.size(); i++)
+			applied += children.get(i).refresh(rebind);
+		return applied;
+	}
+	
+	/**
+	 * Binds this layout class and its children again, by reading each bound variable in the scope in which
+	 * it was resolved. Like {@link #refresh()}, only the binding setters whose values differ from those they
+	 * last applied are called.
+	 * @return the number of setters that were called
+	 */
+	int rebind()
+	{
+		int applied = 0;
+		if (target != null && bindings != null)
+		{
+			int offset = setters.length - bindings.size();
+			for (int i = 0; i < bindings.size(); i++)
+			{
+				if (!bindings.get(i).update())
+					continue;
+				SetterOp setter = setters[offset + i];
+				Object current;
+				try
+				{
+					current = setter.snapshot();
+				} catch (IllegalAccessException e)
+				{
+					AbLEUtil.err("Could not read field %s", setter.getField().getName());
+					continue;
+				}
+				if (SetterOp.isSame(values[offset + i], current))
+					continue;
+				setter.apply(target);
+				values[offset + i] = current;
+				applied++;
+			}
+		}
+		for (int i = 0; i < children.size(); i++)
+			applied += children.get(i).rebind();
+		return applied;
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package self.philbrown.AbLE.annotations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import self.philbrown.AbLE.AbLEActivity;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * An asynchronous inflation. The layout class is loaded and initialized, its {@link LayoutPlan} is 
+ * built and its views are created on a background thread. The detached root view is then delivered
+ * to the main thread. Subtrees whose views cannot be created off the main thread (for example, 
+ * because their constructors need the main {@link Looper}) are deferred, and are inflated and added
+ * to their parents on the main thread, before the callback is notified.
+ * @author Phil Brown
+ * @see AnnotatedLayoutInflater#inflateAsync(AbLEActivity, Class, InflationCallback)
+ */
+public final class InflationTask implements Runnable
+{
+	/** Used to create views and access resources */
+	private final AbLEActivity context;
+	/** The layout class */
+	private final Class<?> layout;
+	/** Notified on the main thread once the layout is inflated */
+	private final InflationCallback callback;
+	/** Posts the attach phase to the main thread */
+	private final Handler handler;
+	/** Subtrees that must be inflated on the main thread, in declaration order */
+	private final List<Deferred> deferred = new ArrayList<Deferred>();
+	/** {@code true} once {@link #cancel()} has been called */
+	private volatile boolean cancelled;
+	/** {@code true} once the callback has been notified */
+	private volatile boolean done;
+	
+	/**
+	 * Constructor
+	 * @param context used to create views and access resources
+	 * @param layout the layout class
+	 * @param callback notified on the main thread once the layout is inflated
+	 */
+	InflationTask(AbLEActivity context, Class<?> layout, InflationCallback callback)
+	{
+		this.context = context;
+		this.layout = layout;
+		this.callback = callback;
+		this.handler = new Handler(Looper.getMainLooper());
+	}
+	
+	/**
+	 * Cancels the inflation. No more views are created, and the callback is not notified. This should
+	 * be called from {@code onDestroy} if the inflation may not have completed.
+	 */
+	public void cancel()
+	{
+		cancelled = true;
+	}
+	
+	/**
+	 * @return {@code true} if {@link #cancel()} has been called
+	 */
+	public boolean isCancelled()
+	{
+		return cancelled;
+	}
+	
+	/**
+	 * @return {@code true} once the callback has been notified
+	 */
+	public boolean isDone()
+	{
+		return done;
+	}
+	
+	/**
+	 * The background phase. Do not call this directly.
+	 */
+	public void run()
+	{
+		if (cancelled)
+			return;
+		View root = null;
+		LayoutPlan plan = null;
+		InflationContext inflation = new InflationContext(context, this);
+		InflationContext previous = InflationContext.enter(inflation);
+		try
+		{
+			//initializes the class off the main thread. Its static initializer can access the context.
+			Class.forName(layout.getName(), true, layout.getClassLoader());
+			plan = LayoutPlan.of(layout);
+			if (!plan.requiresMainThread())
+				root = AnnotatedLayoutInflater.inflate(plan, inflation);
+		} catch (Throwable t)
+		{
+			t.printStackTrace();
+		}
+		finally
+		{
+			InflationContext.exit(previous);
+		}
+		final View view = root;
+		final boolean inflateOnMainThread = root == null && plan != null && plan.requiresMainThread();
+		handler.post(new Runnable() {
+			
+			public void run()
+			{
+				attach(view, inflateOnMainThread);
+			}
+		});
+	}
+	
+	/**
+	 * The attach phase, which runs on the main thread. Inflates the deferred subtrees, then notifies
+	 * the callback.
+	 * @param root the root view inflated in the background
+	 * @param inflateOnMainThread {@code true} if the whole layout must be inflated on the main thread
+	 */
+	private void attach(View root, boolean inflateOnMainThread)
+	{
+		if (cancelled)
+			return;
+		if (inflateOnMainThread)
+			root = AnnotatedLayoutInflater.inflate(context, layout, null);
+		for (int i = 0; i < deferred.size(); i++)
+		{
+			if (cancelled)
+				return;
+			Deferred d = deferred.get(i);
+			View v = AnnotatedLayoutInflater.inflate(context, d.plan, d.inflater);
+			if (v != null)
+				d.parent.addView(v, Math.min(d.index, d.parent.getChildCount()));
+		}
+		deferred.clear();
+		done = true;
+		if (callback != null)
+			callback.onInflated(root);
+	}
+	
+	/**
+	 * @return {@code true} if the current thread is not the main thread
+	 */
+	boolean isBackgroundThread()
+	{
+		return Looper.myLooper() != Looper.getMainLooper();
+	}
+	
+	/**
+	 * Defers the given child layout to the attach phase, if this is called on a background thread
+	 * and the child requires the main thread. This may be called from several threads when sibling 
+	 * subtrees are inflated in parallel.
+	 * @param parent the view to which the child is added
+	 * @param child the plan of the child layout
+	 * @param inflater the inflater of the parent layout
+	 * @return {@code true} if the child was deferred. Otherwise {@code false}.
+	 */
+	boolean defer(ViewGroup parent, LayoutPlan child, ClassAnnotationInflater inflater)
+	{
+		if (!child.requiresMainThread() || !isBackgroundThread())
+			return false;
+		synchronized (deferred)
+		{
+			//account for the children of the same parent that were deferred before this one.
+			int index = parent.getChildCount();
+			for (int i = 0; i < deferred.size(); i++)
+			{
+				if (deferred.get(i).parent == parent)
+					index++;
+			}
+			deferred.add(new Deferred(parent, index, child, inflater));
+		}
+		return true;
+	}
+	
+	/**
+	 * A subtree that is inflated in the attach phase
+	 */
+	private static final class Deferred
+	{
+		final ViewGroup parent;
+		final int index;
+		final LayoutPlan plan;
+		final ClassAnnotationInflater inflater;
+		
+		Deferred(ViewGroup parent, int index, LayoutPlan plan, ClassAnnotationInflater inflater)
+		{
+			this.parent = parent;
+			this.index = index;
+			this.plan = plan;
+			this.inflater = inflater;
+		}
+	}
+}
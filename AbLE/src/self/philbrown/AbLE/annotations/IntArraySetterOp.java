@@ -0,0 +1,108 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package self.philbrown.AbLE.annotations;
+
+import java.lang.reflect.Field;
+
+import android.view.View;
+
+/**
+ * Calls a setter whose parameters are all {@code int}s, declared as an {@code int[]} using the
+ * {@link Setter} annotation. For example:
+ * <pre>
+ * &#64;Setter
+ * public static int[] padding = {px, px, px, px};
+ * </pre>
+ * calls {@code setPadding(px, px, px, px)} directly. Other setters are called using the parameter
+ * types for the length of the array.
+ * @author Phil Brown
+ */
+public class IntArraySetterOp extends SetterOp
+{
+	/** Cached parameter types, by array length */
+	private static final Class<?>[][] TYPES = new Class<?>[8][];
+	
+	static
+	{
+		for (int i = 0; i < TYPES.length; i++)
+		{
+			TYPES[i] = getTypes(i);
+		}
+	}
+	
+	/** {@code true} if the setter is {@code setPadding} */
+	private final boolean padding;
+	
+	/**
+	 * Constructor
+	 * @param field the static {@code int[]} field that contains the parameters
+	 */
+	public IntArraySetterOp(Field field)
+	{
+		super(field);
+		padding = name.equals("setPadding");
+	}
+
+	@Override
+	public void apply(Object target)
+	{
+		int[] args = null;
+		try
+		{
+			args = (int[]) field.get(null);
+			if (padding && args.length == 4 && target instanceof View)
+			{
+				((View) target).setPadding(args[0], args[1], args[2], args[3]);
+				return;
+			}
+			Object[] params = new Object[args.length];
+			for (int i = 0; i < args.length; i++)
+			{
+				params[i] = Integer.valueOf(args[i]);
+			}
+			getInvoker(target, getParameterTypes(args.length)).invoke(target, params);
+		} catch (Throwable t)
+		{
+			logError(target, args == null ? null : getParameterTypes(args.length));
+		}
+	}
+	
+	/**
+	 * @param length the number of parameters
+	 * @return the parameter types of a method with the given number of {@code int} parameters
+	 */
+	public static Class<?>[] getParameterTypes(int length)
+	{
+		if (length < TYPES.length)
+			return TYPES[length];
+		return getTypes(length);
+	}
+	
+	/**
+	 * @param length the number of parameters
+	 * @return a new array of {@code int} parameter types
+	 */
+	private static Class<?>[] getTypes(int length)
+	{
+		Class<?>[] types = new Class<?>[length];
+		for (int i = 0; i < length; i++)
+		{
+			types[i] = int.class;
+		}
+		return types;
+	}
+}
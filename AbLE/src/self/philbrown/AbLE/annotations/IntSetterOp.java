@@ -0,0 +1,167 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package self.philbrown.AbLE.annotations;
+
+import java.lang.reflect.Field;
+
+import android.view.View;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+/**
+ * Calls a setter whose single parameter is an {@code int}. The value is read using
+ * {@link Field#getInt(Object)}. Only the common view setters listed below (such as {@code setId} 
+ * and {@code setBackgroundColor}) are called directly. Every other setter is called by its 
+ * {@link Invoker}, which boxes the value. Layouts that need other setters to be called without 
+ * boxing should be compiled with the AbLE annotation processor, whose generated inflaters call 
+ * each setter they can resolve directly.
+ * @author Phil Brown
+ */
+public class IntSetterOp extends SetterOp
+{
+	/** The parameter type of the setter */
+	private static final Class<?>[] TYPES = new Class<?>[]{int.class};
+	
+	/** Setters that are called directly */
+	private static final int NONE = 0, 
+							 ID = 1, 
+							 BACKGROUND_COLOR = 2, 
+							 BACKGROUND_RESOURCE = 3, 
+							 VISIBILITY = 4, 
+							 MINIMUM_WIDTH = 5, 
+							 MINIMUM_HEIGHT = 6, 
+							 TEXT_COLOR = 7, 
+							 GRAVITY = 8, 
+							 ORIENTATION = 9;
+	
+	/** The setter that is called directly, or {@link #NONE} */
+	private final int intrinsic;
+	
+	/**
+	 * Constructor
+	 * @param field the static {@code int} field that contains the value to set
+	 */
+	public IntSetterOp(Field field)
+	{
+		super(field);
+		intrinsic = getIntrinsic(name);
+	}
+
+	@Override
+	public void apply(Object target)
+	{
+		try
+		{
+			int value = field.getInt(null);
+			if (intrinsic != NONE && applyIntrinsic(target, value))
+				return;
+			getInvoker(target, TYPES).invoke(target, Integer.valueOf(value));
+		} catch (Throwable t)
+		{
+			logError(target, TYPES);
+		}
+	}
+	
+	/**
+	 * Calls the setter directly, if the target is of the type that declares it.
+	 * @param target the Object on which the setter is called
+	 * @param value the value to set
+	 * @return {@code true} if the setter was called. Otherwise {@code false}.
+	 */
+	private boolean applyIntrinsic(Object target, int value)
+	{
+		if (!(target instanceof View))
+			return false;
+		View v = (View) target;
+		switch (intrinsic)
+		{
+			case ID :
+				v.setId(value);
+				return true;
+			case BACKGROUND_COLOR :
+				v.setBackgroundColor(value);
+				return true;
+			case BACKGROUND_RESOURCE :
+				v.setBackgroundResource(value);
+				return true;
+			case VISIBILITY :
+				v.setVisibility(value);
+				return true;
+			case MINIMUM_WIDTH :
+				v.setMinimumWidth(value);
+				return true;
+			case MINIMUM_HEIGHT :
+				v.setMinimumHeight(value);
+				return true;
+			case TEXT_COLOR :
+				if (v instanceof TextView)
+				{
+					((TextView) v).setTextColor(value);
+					return true;
+				}
+				return false;
+			case GRAVITY :
+				if (v instanceof TextView)
+				{
+					((TextView) v).setGravity(value);
+					return true;
+				}
+				else if (v instanceof LinearLayout)
+				{
+					((LinearLayout) v).setGravity(value);
+					return true;
+				}
+				return false;
+			case ORIENTATION :
+				if (v instanceof LinearLayout)
+				{
+					((LinearLayout) v).setOrientation(value);
+					return true;
+				}
+				return false;
+			default :
+				return false;
+		}
+	}
+	
+	/**
+	 * @param name the name of the setter
+	 * @return the setter that is called directly, or {@link #NONE}
+	 */
+	private static int getIntrinsic(String name)
+	{
+		if (name.equals("setId"))
+			return ID;
+		else if (name.equals("setBackgroundColor"))
+			return BACKGROUND_COLOR;
+		else if (name.equals("setBackgroundResource"))
+			return BACKGROUND_RESOURCE;
+		else if (name.equals("setVisibility"))
+			return VISIBILITY;
+		else if (name.equals("setMinimumWidth"))
+			return MINIMUM_WIDTH;
+		else if (name.equals("setMinimumHeight"))
+			return MINIMUM_HEIGHT;
+		else if (name.equals("setTextColor"))
+			return TEXT_COLOR;
+		else if (name.equals("setGravity"))
+			return GRAVITY;
+		else if (name.equals("setOrientation"))
+			return ORIENTATION;
+		return NONE;
+	}
+}
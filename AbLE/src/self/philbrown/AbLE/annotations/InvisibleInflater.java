@@ -16,13 +16,6 @@
 
 package self.philbrown.AbLE.annotations;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-
 import self.philbrown.AbLE.AbLEActivity;
 import self.philbrown.AbLE.AbLEUtil;
 import android.view.View;
@@ -46,7 +39,9 @@ public class InvisibleInflater extends ClassAnnotationInflater
 	@Override
 	public View inflate(Class<?> layout) {
 		Invisible invisible = layout.getAnnotation(Invisible.class);
-		create(invisible);
+		create(layout, invisible);
+		if (ghost == null)
+			return null;
 		handleFields(layout);
 		handleInstanceMethods(ghost.getClass().getName());
 		handleBindings();
@@ -58,19 +53,20 @@ public class InvisibleInflater extends ClassAnnotationInflater
 	
 	/**
 	 * Creates the Invisible Object.
+	 * @param layout
 	 * @param invisible
 	 */
-	private void create(Invisible invisible)
+	private void create(Class<?> layout, Invisible invisible)
 	{
 		try
 		{
-			Class<?> _class = Class.forName(invisible.invisibleClass());
-			Constructor<?> _constructor = _class.getConstructor(new Class<?>[]{AbLEActivity.class});
-			ghost = (AbstractInvisible) _constructor.newInstance(context);
+			ghost = (AbstractInvisible) getPlan(layout).newTarget(context);
 			ghost.create();
 			
 		} catch (Throwable t)
 		{
+			if (requireMainThread(getPlan(layout)))
+				return;
 			AbLEUtil.err("Could not create adapter %s", 
 					invisible.invisibleClass() == null ? "null" : invisible.invisibleClass());
 			t.printStackTrace();
@@ -78,97 +74,12 @@ public class InvisibleInflater extends ClassAnnotationInflater
 	}
 	
 	/**
-	 * Redirects setter methods to {@link #ghost}
+	 * Redirects the setters and getters to {@link #ghost}
 	 */
 	@Override
-	protected void performSetters(String viewClass)
-	{
-		for (Map.Entry<String,Map<List<Class<?>>,List<Object>>> method : setters.entrySet())
-		{
-			List<Class<?>> type = null;
-			try
-			{
-				String name = method.getKey();
-				
-				List<Object> value = null;
-				for (Entry<List<Class<?>>, List<Object>> info : method.getValue().entrySet())
-				{
-					//there should only be one entry here, so it is not a big time consumer
-					type = info.getKey();
-					value = info.getValue();
-					break;
-				}
-				Class<?>[] classes = new Class<?>[type.size()];
-				classes = type.toArray(classes);
-				Method m = Class.forName(viewClass).getMethod(name, classes);
-				Object[] params = new Object[value.size()];
-				params = value.toArray(params);
-				m.invoke(ghost, params);
-			} catch (Throwable t)
-			{
-				StringBuilder b = new StringBuilder();
-				for (int i = 0; i < type.size(); i++)
-				{
-					b.append(type.get(i).getSimpleName());
-					if (i != type.size() - 1)
-					{
-						b.append(", ");
-					}
-				}
-				AbLEUtil.err("Could not call method %s(%s) on class %s", method.getKey(), b.toString(), viewClass);
-			}
-		}
-	}
-	
-	@Override
-	protected void handleGetters(String viewClass)
+	protected Object getTarget()
 	{
-		
-		for (Map.Entry<Field, Map<String,Map<List<Class<?>>,List<Object>>>> method : getters.entrySet())
-		{
-			Field f = method.getKey();
-			Map<String, Map<List<Class<?>>, List<Object>>> _info = method.getValue();
-			for (Entry<String, Map<List<Class<?>>, List<Object>>> entry : _info.entrySet())
-			{
-				String methodName = entry.getKey();
-				List<Class<?>> type = null;
-				try
-				{
-					String name = entry.getKey();
-					
-					List<Object> value = null;
-					for (Entry<List<Class<?>>, List<Object>> info : entry.getValue().entrySet())
-					{
-						//there should only be one entry here, so it is not a big time consumer
-						type = info.getKey();
-						value = info.getValue();
-						break;
-					}
-					Class<?>[] classes = new Class<?>[type.size()];
-					classes = type.toArray(classes);
-					Method m = Class.forName(viewClass).getMethod(name, classes);
-					Object[] params = new Object[value.size()];
-					params = value.toArray(params);
-					Object returnVal = m.invoke(ghost, params);
-					f.set(null, returnVal);
-				} catch (Throwable t)
-				{
-					StringBuilder b = new StringBuilder();
-					for (int i = 0; i < type.size(); i++)
-					{
-						b.append(type.get(i).getSimpleName());
-						if (i != type.size() - 1)
-						{
-							b.append(", ");
-						}
-					}
-					AbLEUtil.err("Could not call method %s(%s) on class %s", method.getKey(), b.toString(), viewClass);
-				}
-			}
-		}
-		
-		
-		
+		return ghost;
 	}
 
 }
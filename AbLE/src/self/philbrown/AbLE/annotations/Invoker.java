@@ -0,0 +1,53 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package self.philbrown.AbLE.annotations;
+
+/**
+ * Calls a single, pre-resolved method. Invokers are created by the current {@link InvokerFactory}
+ * when a {@link FieldOp} first resolves its method for a target class, and are then reused for every
+ * Object of that class. Invokers must be safe to use from multiple threads.
+ * @author Phil Brown
+ * @see Invokers
+ */
+public interface Invoker
+{
+	/**
+	 * Calls a method that has no parameters
+	 * @param target the Object on which to call the method
+	 * @return the value returned by the method
+	 * @throws Throwable if the method could not be called, or if it throws
+	 */
+	public Object invoke(Object target) throws Throwable;
+	
+	/**
+	 * Calls a method that has a single parameter
+	 * @param target the Object on which to call the method
+	 * @param arg the parameter
+	 * @return the value returned by the method
+	 * @throws Throwable if the method could not be called, or if it throws
+	 */
+	public Object invoke(Object target, Object arg) throws Throwable;
+	
+	/**
+	 * Calls a method with any number of parameters
+	 * @param target the Object on which to call the method
+	 * @param args the parameters. This array is not copied or modified.
+	 * @return the value returned by the method
+	 * @throws Throwable if the method could not be called, or if it throws
+	 */
+	public Object invoke(Object target, Object[] args) throws Throwable;
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package self.philbrown.AbLE.annotations;
+
+import java.lang.reflect.Method;
+
+/**
+ * Creates the {@link Invoker}s used by setters and getters. The default factory uses reflection.
+ * Runtimes that provide faster method dispatch (such as method handles) can install their own 
+ * factory using {@link Invokers#setFactory(InvokerFactory)}.
+ * @author Phil Brown
+ */
+public interface InvokerFactory
+{
+	/**
+	 * Creates an invoker for the given method. This is called once per method and target class.
+	 * @param method the method to invoke
+	 * @return the invoker
+	 * @throws Exception if the invoker could not be created. The reflective invoker is used instead.
+	 */
+	public Invoker create(Method method) throws Exception;
+}
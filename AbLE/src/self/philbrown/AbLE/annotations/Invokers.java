@@ -0,0 +1,132 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package self.philbrown.AbLE.annotations;
+
+import java.lang.reflect.Method;
+
+import self.philbrown.AbLE.AbLEUtil;
+
+/**
+ * Provides the {@link InvokerFactory} that is used to create {@link Invoker}s. By default this is
+ * {@link #REFLECTION}, which invokes each {@link Method} directly, with its access checks disabled.
+ * @author Phil Brown
+ */
+public final class Invokers
+{
+	/** Creates invokers that use {@link Method#invoke(Object, Object...)} */
+	public static final InvokerFactory REFLECTION = new InvokerFactory() {
+		
+		public Invoker create(Method method)
+		{
+			return new ReflectiveInvoker(method);
+		}
+	};
+	
+	/** The current factory */
+	private static volatile InvokerFactory factory = REFLECTION;
+	
+	/**
+	 * Constructor. Classes should only use the static methods that this class provides.
+	 */
+	private Invokers()
+	{
+		//cannot instantiate this class
+	}
+	
+	/**
+	 * Sets the factory used to create invokers. This should be set before any layout is inflated, since
+	 * invokers that have already been created are cached and are not replaced.
+	 * @param factory the factory, or {@code null} to use {@link #REFLECTION}
+	 */
+	public static void setFactory(InvokerFactory factory)
+	{
+		Invokers.factory = factory == null ? REFLECTION : factory;
+	}
+	
+	/**
+	 * @return the factory used to create invokers
+	 */
+	public static InvokerFactory getFactory()
+	{
+		return factory;
+	}
+	
+	/**
+	 * Creates an invoker for the given method using the current factory. If the factory fails, a
+	 * reflective invoker is returned.
+	 * @param method the method to invoke
+	 * @return the invoker
+	 */
+	public static Invoker create(Method method)
+	{
+		InvokerFactory f = factory;
+		if (f != REFLECTION)
+		{
+			try
+			{
+				Invoker invoker = f.create(method);
+				if (invoker != null)
+					return invoker;
+			} catch (Throwable t)
+			{
+				AbLEUtil.warn("Could not create invoker for method %s. Using reflection.", method.getName());
+			}
+		}
+		return new ReflectiveInvoker(method);
+	}
+	
+	/**
+	 * Invokes a {@link Method} using reflection. Access checks are disabled once, when the invoker
+	 * is created, rather than on each call.
+	 */
+	private static final class ReflectiveInvoker implements Invoker
+	{
+		/** The method to invoke */
+		private final Method method;
+		
+		/**
+		 * Constructor
+		 * @param method the method to invoke
+		 */
+		ReflectiveInvoker(Method method)
+		{
+			this.method = method;
+			try
+			{
+				method.setAccessible(true);
+			} catch (SecurityException e)
+			{
+				//access is checked on each call instead
+			}
+		}
+
+		public Object invoke(Object target) throws Throwable
+		{
+			return method.invoke(target);
+		}
+
+		public Object invoke(Object target, Object arg) throws Throwable
+		{
+			return method.invoke(target, arg);
+		}
+
+		public Object invoke(Object target, Object[] args) throws Throwable
+		{
+			return method.invoke(target, args);
+		}
+	}
+}
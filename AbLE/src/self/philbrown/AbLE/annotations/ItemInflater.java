@@ -0,0 +1,146 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package self.philbrown.AbLE.annotations;
+
+import java.lang.reflect.Field;
+import java.util.List;
+
+import self.philbrown.AbLE.AbLEActivity;
+import android.view.View;
+
+/**
+ * Inflates one copy of a layout class for an item, as its only child. This inflater holds the variables 
+ * that the copy binds to (the item and its position), and the record of the copy, so that the copy can be 
+ * bound again to another item. It is used for the rows of a {@link ListLayout} and the copies of a 
+ * {@link Repeat}ed class.
+ * @author Phil Brown
+ */
+final class ItemInflater extends ClassAnnotationInflater
+{
+	/** The item */
+	private final ObservableValue<Object> item = new ObservableValue<Object>();
+	/** The position of the item */
+	private final ObservableValue<Object> position = new ObservableValue<Object>();
+	/** {@code true} if the copy binds to its position, so the position must be boxed */
+	private final boolean bindsPosition;
+	/** The position that the copy is bound to */
+	private int index;
+	/** The record of the copy, or {@code null} until it is inflated */
+	private InflationRecord copy;
+	
+	/**
+	 * Constructor
+	 * @param context used to create views and access resources
+	 * @param parent the inflater of the class that contains the copies
+	 * @param plan the plan of the layout class
+	 * @param itemVariable the name of the variable that holds the item
+	 * @param positionVariable the name of the variable that holds the position of the item
+	 */
+	ItemInflater(AbLEActivity context, ClassAnnotationInflater parent, LayoutPlan plan, String itemVariable, String positionVariable)
+	{
+		super(context, parent);
+		this.plan = plan;
+		this.bindsPosition = reads(plan, positionVariable);
+		variables.put(itemVariable, item);
+		variables.put(positionVariable, position);
+	}
+	
+	/**
+	 * Checks whether a binding of the given layout class or of its children reads the given variable
+	 * @param plan the plan of the layout class
+	 * @param variable the name of the variable
+	 * @return {@code true} if the variable is read
+	 */
+	static boolean reads(LayoutPlan plan, String variable)
+	{
+		List<Field> bindings = plan.getBindings();
+		for (int i = 0; i < bindings.size(); i++)
+		{
+			BindingExpression expression = plan.getBindingExpression(i);
+			if (expression == null ? bindings.get(i).getAnnotation(Binding.class).observedValue().equals(variable) 
+					: expression.getDependencies().contains(variable))
+				return true;
+		}
+		List<LayoutPlan> children = plan.getChildren();
+		for (int i = 0; i < children.size(); i++)
+		{
+			if (reads(children.get(i), variable))
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Inflates the copy. Its record is added to the {@link #getRecord() record} of this inflater, which
+	 * does not have a target.
+	 */
+	@Override
+	public View inflate(Class<?> layout)
+	{
+		record = new InflationRecord(getPlan(layout));
+		record.setItem(true);
+		View v = AnnotatedLayoutInflater.inflate(context, plan, this);
+		List<InflationRecord> children = record.getChildren();
+		copy = children.isEmpty() ? null : children.get(0);
+		return v;
+	}
+	
+	/**
+	 * @return the record whose only child is the record of the copy
+	 */
+	InflationRecord getRecord()
+	{
+		return record;
+	}
+	
+	/**
+	 * @return the view of the copy, or {@code null}
+	 */
+	View getView()
+	{
+		return copy == null || !(copy.getTarget() instanceof View) ? null : (View) copy.getTarget();
+	}
+	
+	/**
+	 * Sets the variables of the copy, without binding it
+	 * @param value the item
+	 * @param index the position of the item
+	 */
+	void set(Object value, int index)
+	{
+		item.setQuietly(value);
+		this.index = index;
+		if (bindsPosition)
+			position.setQuietly(Integer.valueOf(index));
+	}
+	
+	/**
+	 * Binds the copy to the item at the given position, unless it already shows an equal item there
+	 * @param value the item
+	 * @param index the position of the item
+	 */
+	void bind(Object value, int index)
+	{
+		Object current = item.get();
+		if ((current == value || (value != null && value.equals(current))) && (!bindsPosition || index == this.index))
+			return;
+		set(value, index);
+		if (copy != null)
+			copy.rebind();
+	}
+}
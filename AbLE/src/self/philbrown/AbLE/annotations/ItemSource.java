@@ -0,0 +1,266 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package self.philbrown.AbLE.annotations;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import self.philbrown.AbLE.AbLEUtil;
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * The {@link Variable} that holds the items of a {@link ListLayout} or of a {@link Repeat}ed class. The items
+ * are an Array, a List, or an {@link ObservableValue} that holds either. When an {@link ObservableValue} 
+ * changes, the new items are compared with the items that are shown on the inflater's background thread,
+ * and the {@link ListDiff} is delivered on the main thread. Only the diff of the latest value is delivered.
+ * @author Phil Brown
+ */
+final class ItemSource implements ObservableValue.OnChangeListener<Object>
+{
+	/** Shows the items of a source */
+	interface Target
+	{
+		/**
+		 * Gets the items that are shown. This may be called on any thread.
+		 * @return the items, or {@code null}
+		 */
+		Object getItems();
+		
+		/**
+		 * Shows new items. Called on the main thread.
+		 * @param shown the items that were shown when the diff was computed
+		 * @param items the new items
+		 * @param diff the difference between both, or {@code null} if either is {@code null}
+		 */
+		void setItems(Object shown, Object items, ListDiff diff);
+	}
+	
+	/** Posts diffs to the main thread */
+	private static Handler handler;
+	
+	/** The variable that holds the items. This is either the items, or an {@link ObservableValue}. */
+	private final Object source;
+	/** The name of the method or field that gets the key of an item, or an empty String */
+	private final String key;
+	/** Shows the items. This is only weakly referenced, so that the items do not keep views in memory. */
+	private WeakReference<Target> target;
+	/** Incremented for each new value of the source */
+	private final AtomicInteger generation = new AtomicInteger();
+	
+	/**
+	 * Constructor
+	 * @param source the variable that holds the items, or an {@link ObservableValue} that holds them
+	 * @param key the name of the method or field that gets the key of an item, or an empty String to use 
+	 * each item as its own key
+	 */
+	ItemSource(Object source, String key)
+	{
+		this.source = source;
+		this.key = key;
+	}
+	
+	/**
+	 * @return the current items, which are an Array, a List, or {@code null}
+	 */
+	Object read()
+	{
+		Object items = source instanceof ObservableValue ? ((ObservableValue<?>) source).get() : source;
+		if (items instanceof Collection && !(items instanceof List))
+			return ((Collection<?>) items).toArray();
+		if (items != null && !(items instanceof List) && !items.getClass().isArray())
+		{
+			AbLEUtil.err("Items must be an Array or a Collection. Found %s.", items.getClass().getName());
+			return null;
+		}
+		return items;
+	}
+	
+	/**
+	 * Delivers the changes of the source to the given target, if the source is an {@link ObservableValue}
+	 * @param target shows the items
+	 */
+	@SuppressWarnings("unchecked")
+	void observe(Target target)
+	{
+		if (!(source instanceof ObservableValue))
+			return;
+		this.target = new WeakReference<Target>(target);
+		((ObservableValue<Object>) source).addOnChangeListener(this);
+	}
+	
+	public void onChanged(ObservableValue<? extends Object> source, Object value)
+	{
+		final Target target = this.target.get();
+		if (target == null)
+		{
+			source.removeOnChangeListener(this);
+			return;
+		}
+		final int generation = this.generation.incrementAndGet();
+		AnnotatedLayoutInflater.getExecutor().execute(new Runnable() {
+			
+			public void run()
+			{
+				if (generation != ItemSource.this.generation.get())
+					return;
+				final Object shown = target.getItems();
+				final Object items = read();
+				ListDiff diff = null;
+				if (shown != null && items != null)
+				{
+					Object[] oldItems = toArray(shown), newItems = toArray(items);
+					diff = ListDiff.compute(getKeys(oldItems), oldItems, getKeys(newItems), newItems);
+				}
+				final ListDiff result = diff;
+				getHandler().post(new Runnable() {
+					
+					public void run()
+					{
+						if (generation == ItemSource.this.generation.get())
+							target.setItems(shown, items, result);
+					}
+				});
+			}
+		});
+	}
+	
+	/**
+	 * @param items an Array or a List
+	 * @return the number of items
+	 */
+	static int size(Object items)
+	{
+		if (items == null)
+			return 0;
+		if (items instanceof List)
+			return ((List<?>) items).size();
+		if (items instanceof Object[])
+			return ((Object[]) items).length;
+		return Array.getLength(items);
+	}
+	
+	/**
+	 * @param items an Array or a List
+	 * @param position the position of an item
+	 * @return the item
+	 */
+	static Object get(Object items, int position)
+	{
+		if (items instanceof List)
+			return ((List<?>) items).get(position);
+		if (items instanceof Object[])
+			return ((Object[]) items)[position];
+		return Array.get(items, position);
+	}
+	
+	/**
+	 * @param items an Array or a List
+	 * @return the items in an Object Array
+	 */
+	static Object[] toArray(Object items)
+	{
+		if (items instanceof List)
+			return ((List<?>) items).toArray();
+		if (items instanceof Object[])
+			return (Object[]) items;
+		Object[] array = new Object[Array.getLength(items)];
+		for (int i = 0; i < array.length; i++)
+			array[i] = Array.get(items, i);
+		return array;
+	}
+	
+	/**
+	 * Gets the key of each item, using the method or field named by {@link #key}. Items whose key cannot be
+	 * read are their own key.
+	 * @param items the items
+	 * @return the keys
+	 */
+	private Object[] getKeys(Object[] items)
+	{
+		if (key.length() == 0)
+			return items;
+		Object[] keys = new Object[items.length];
+		Map<Class<?>, Member> members = new HashMap<Class<?>, Member>();
+		for (int i = 0; i < items.length; i++)
+		{
+			Object item = items[i];
+			keys[i] = item;
+			if (item == null)
+				continue;
+			Member member = members.get(item.getClass());
+			try
+			{
+				if (member == null && !members.containsKey(item.getClass()))
+				{
+					member = findKey(item.getClass());
+					members.put(item.getClass(), member);
+				}
+				if (member instanceof Method)
+					keys[i] = ((Method) member).invoke(item);
+				else if (member instanceof Field)
+					keys[i] = ((Field) member).get(item);
+			} catch (Throwable t)
+			{
+				AbLEUtil.err("Could not get the key %s of item %s", key, item.getClass().getName());
+			}
+		}
+		return keys;
+	}
+	
+	/**
+	 * @param type the class of an item
+	 * @return the public method without parameters, or the public field, named by {@link #key}, or {@code null}
+	 * if the class has neither
+	 */
+	private Member findKey(Class<?> type)
+	{
+		try
+		{
+			return type.getMethod(key);
+		} catch (NoSuchMethodException e)
+		{
+			try
+			{
+				return type.getField(key);
+			} catch (NoSuchFieldException e2)
+			{
+				AbLEUtil.err("Item %s has no key named %s", type.getName(), key);
+				return null;
+			}
+		}
+	}
+	
+	/**
+	 * @return the handler of the main thread
+	 */
+	static synchronized Handler getHandler()
+	{
+		if (handler == null)
+			handler = new Handler(Looper.getMainLooper());
+		return handler;
+	}
+}
@@ -16,13 +16,6 @@
 
 package self.philbrown.AbLE.annotations;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-
 import self.philbrown.AbLE.AbLEActivity;
 import self.philbrown.AbLE.AbLEUtil;
 import android.view.View;
@@ -84,9 +77,7 @@ public class LayoutAdapterInflater extends ClassAnnotationInflater {
 	{
 		try
 		{
-			Class<?> _class = Class.forName(adapter.adapterClass());
-			Constructor<?> _constructor = _class.getConstructor(new Class<?>[]{AbLEActivity.class});
-			layout = (AbstractLayoutAdapter) _constructor.newInstance(context);
+			layout = (AbstractLayoutAdapter) getPlan(_layout).newTarget(context);
 			
 			if (adapter.handleSettersFirst())
 			{
@@ -145,6 +136,9 @@ public class LayoutAdapterInflater extends ClassAnnotationInflater {
 			
 		} catch (Throwable t)
 		{
+			view = null;
+			if (requireMainThread(getPlan(_layout)))
+				return;
 			AbLEUtil.err("Could not create adapter %s", 
 					adapter.adapterClass() == null ? "null" : adapter.adapterClass());
 			t.printStackTrace();
@@ -152,97 +146,12 @@ public class LayoutAdapterInflater extends ClassAnnotationInflater {
 	}
 	
 	/**
-	 * Redirects the setters to {@link #layout}
+	 * Redirects the setters and getters to {@link #layout}
 	 */
 	@Override
-	protected void performSetters(String viewClass)
-	{
-		for (Map.Entry<String,Map<List<Class<?>>,List<Object>>> method : setters.entrySet())
-		{
-			List<Class<?>> type = null;
-			try
-			{
-				String name = method.getKey();
-				
-				List<Object> value = null;
-				for (Entry<List<Class<?>>, List<Object>> info : method.getValue().entrySet())
-				{
-					//there should only be one entry here, so it is not a big time consumer
-					type = info.getKey();
-					value = info.getValue();
-					break;
-				}
-				Class<?>[] classes = new Class<?>[type.size()];
-				classes = type.toArray(classes);
-				Method m = Class.forName(viewClass).getMethod(name, classes);
-				Object[] params = new Object[value.size()];
-				params = value.toArray(params);
-				m.invoke(layout, params);
-			} catch (Throwable t)
-			{
-				StringBuilder b = new StringBuilder();
-				for (int i = 0; i < type.size(); i++)
-				{
-					b.append(type.get(i).getSimpleName());
-					if (i != type.size() - 1)
-					{
-						b.append(", ");
-					}
-				}
-				AbLEUtil.err("Could not call method %s(%s) on class %s", method.getKey(), b.toString(), viewClass);
-			}
-		}
-	}
-	
-	@Override
-	protected void handleGetters(String viewClass)
+	protected Object getTarget()
 	{
-		
-		for (Map.Entry<Field, Map<String,Map<List<Class<?>>,List<Object>>>> method : getters.entrySet())
-		{
-			Field f = method.getKey();
-			Map<String, Map<List<Class<?>>, List<Object>>> _info = method.getValue();
-			for (Entry<String, Map<List<Class<?>>, List<Object>>> entry : _info.entrySet())
-			{
-				String methodName = entry.getKey();
-				List<Class<?>> type = null;
-				try
-				{
-					String name = entry.getKey();
-					
-					List<Object> value = null;
-					for (Entry<List<Class<?>>, List<Object>> info : entry.getValue().entrySet())
-					{
-						//there should only be one entry here, so it is not a big time consumer
-						type = info.getKey();
-						value = info.getValue();
-						break;
-					}
-					Class<?>[] classes = new Class<?>[type.size()];
-					classes = type.toArray(classes);
-					Method m = Class.forName(viewClass).getMethod(name, classes);
-					Object[] params = new Object[value.size()];
-					params = value.toArray(params);
-					Object returnVal = m.invoke(layout, params);
-					f.set(null, returnVal);
-				} catch (Throwable t)
-				{
-					StringBuilder b = new StringBuilder();
-					for (int i = 0; i < type.size(); i++)
-					{
-						b.append(type.get(i).getSimpleName());
-						if (i != type.size() - 1)
-						{
-							b.append(", ");
-						}
-					}
-					AbLEUtil.err("Could not call method %s(%s) on class %s", method.getKey(), b.toString(), viewClass);
-				}
-			}
-		}
-		
-		
-		
+		return layout;
 	}
 
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package self.philbrown.AbLE.annotations;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.util.DisplayMetrics;
+
+/**
+ * The properties of the device configuration that select a {@link Variant}: the orientation, the smallest
+ * width of the screen in density-independent pixels, and the screen density. Configurations are compared
+ * by value, so they can be used as keys of the variants that {@link LayoutPlan} caches.
+ * @author Phil Brown
+ */
+final class LayoutConfiguration
+{
+	/** {@code true} if the screen is in landscape */
+	private final boolean landscape;
+	/** The smallest width of the screen, in density-independent pixels */
+	private final int smallestWidth;
+	/** The density of the screen, in dots per inch */
+	private final int density;
+	
+	/**
+	 * Constructor
+	 * @param landscape {@code true} if the screen is in landscape
+	 * @param smallestWidth the smallest width of the screen, in density-independent pixels
+	 * @param density the density of the screen, in dots per inch
+	 */
+	LayoutConfiguration(boolean landscape, int smallestWidth, int density)
+	{
+		this.landscape = landscape;
+		this.smallestWidth = smallestWidth;
+		this.density = density;
+	}
+	
+	/**
+	 * Reads the current configuration
+	 * @param context used to access the resources
+	 * @return the configuration
+	 */
+	static LayoutConfiguration of(Context context)
+	{
+		Configuration configuration = context.getResources().getConfiguration();
+		DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+		int density = metrics.densityDpi == 0 ? DisplayMetrics.DENSITY_DEFAULT : metrics.densityDpi;
+		int smallest = Math.min(metrics.widthPixels, metrics.heightPixels);
+		return new LayoutConfiguration(configuration.orientation == Configuration.ORIENTATION_LANDSCAPE, 
+									   smallest * DisplayMetrics.DENSITY_DEFAULT / density, density);
+	}
+	
+	/**
+	 * @param variant a variant
+	 * @return {@code true} if the variant can be used in this configuration
+	 */
+	boolean matches(Variant variant)
+	{
+		if (variant.smallestWidth() > smallestWidth || variant.density() > density)
+			return false;
+		ORIENTATION[] orientations = variant.orientation();
+		if (orientations.length == 0)
+			return true;
+		for (ORIENTATION o : orientations)
+		{
+			boolean landscapeOrientation = o == ORIENTATION.landscapeLeft || o == ORIENTATION.landscapeRight;
+			if (landscapeOrientation == landscape)
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Compares two matching variants
+	 * @return a positive number if {@code a} is more specific than {@code b}, a negative number if it is less
+	 * specific, or zero
+	 */
+	static int compare(Variant a, Variant b)
+	{
+		if (a.smallestWidth() != b.smallestWidth())
+			return a.smallestWidth() - b.smallestWidth();
+		int orientationA = a.orientation().length == 0 ? 0 : 1, orientationB = b.orientation().length == 0 ? 0 : 1;
+		if (orientationA != orientationB)
+			return orientationA - orientationB;
+		return a.density() - b.density();
+	}
+	
+	@Override
+	public boolean equals(Object o)
+	{
+		if (!(o instanceof LayoutConfiguration))
+			return false;
+		LayoutConfiguration other = (LayoutConfiguration) o;
+		return landscape == other.landscape && smallestWidth == other.smallestWidth && density == other.density;
+	}
+	
+	@Override
+	public int hashCode()
+	{
+		return (smallestWidth * 31 + density) * 2 + (landscape ? 1 : 0);
+	}
+	
+}
@@ -16,12 +16,8 @@
 
 package self.philbrown.AbLE.annotations;
 
-import java.lang.reflect.Constructor;
-
 import self.philbrown.AbLE.AbLEActivity;
 import self.philbrown.AbLE.AbLEUtil;
-import android.content.Context;
-import android.content.pm.ActivityInfo;
 import android.graphics.PointF;
 import android.view.View;
 import android.view.ViewGroup;
@@ -55,7 +51,7 @@ public class LayoutInflater extends ClassAnnotationInflater {
 		Layout annotation = layout.getAnnotation(Layout.class);
 		
 		//Unpack Layout attributes
-		createView(annotation);
+		createView(layout, annotation);
 		if (view == null)
 			return null;
 		
@@ -71,60 +67,49 @@ public class LayoutInflater extends ClassAnnotationInflater {
 	
 	/**
 	 * Creates the view based on the attributes in the given annotation
+	 * @param _layout the layout class
 	 * @param layout
 	 */
-	private void createView(Layout layout)
+	private void createView(Class<?> _layout, Layout layout)
 	{
 		try
 		{
 			viewClass = layout.viewClass();
-			Class<?> _class = Class.forName(viewClass);
-			Constructor<?> _constructor = _class.getConstructor(new Class<?>[]{Context.class});
-			view = (View) _constructor.newInstance(context);
-			
-			if (parent == null)
+			View reused = (View) getReusableTarget(getPlan(_layout));
+			if (reused != null)
 			{
-				//if this is the top-level layout, then force the layout orientation
-				ORIENTATION[] allowedOrientations = layout.orientation();
-				boolean portrait = false, 
-						portraitUpsideDown = false, 
-						landscapeRight = false, 
-						landscapeLeft = false;
-				for (ORIENTATION o : allowedOrientations)
+				view = reused;
+				//the attributes are only applied again if they differ
+				if (layout.equals(getPreviousAnnotation()))
 				{
-					if (o == ORIENTATION.portrait)
-						portrait = true;
-					else if (o == ORIENTATION.portraitUpsideDown)
-						portraitUpsideDown = true;
-					else if (o == ORIENTATION.landscapeRight)
-						landscapeRight = true;
-					else if (o == ORIENTATION.landscapeLeft)
-						landscapeLeft = true;
+					diffSetters = true;
+					return;
 				}
-				if(portrait && portraitUpsideDown && landscapeRight && landscapeLeft)
-					context.setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_FULL_SENSOR);
-				else if(landscapeRight && landscapeLeft)
-					context.setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_SENSOR_LANDSCAPE);
-				else if(portrait && portraitUpsideDown)
-					context.setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_SENSOR_PORTRAIT);
-				else if(portrait)
-					context.setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_PORTRAIT);
-				else if(portraitUpsideDown)
-					context.setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_REVERSE_PORTRAIT);
-				else if(landscapeRight)
-					context.setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_LANDSCAPE);
-				else if(landscapeLeft)
-					context.setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_REVERSE_LANDSCAPE);
-				else
+			}
+			else
+			{
+				LayoutPlan plan = getPlan(_layout);
+				ViewPool pool = context.getViewPool();
+				view = pool.obtain(plan.getTargetClass());
+				if (view == null)
 				{
-					throw new UnsupportedOperationException("Invalid Layout Orientation parameters!");
+					view = (View) plan.newTarget(context.getViewContext());
+					pool.recordDefaults(view, plan);
 				}
 			}
 			
+			if (parent == null)
+			{
+				//if this is the top-level layout, then force the layout orientation
+				requestOrientation(layout.orientation());
+			}
+			
 		} catch (Throwable t)
 		{
+			if (requireMainThread(getPlan(_layout)))
+				return;
 			AbLEUtil.err("Class %s could not be created! Defaulting to FrameLayout.", viewClass);
-			view = new FrameLayout(context);
+			view = new FrameLayout(context.getViewContext());
 		}
 		
 		float[] origin = layout.origin();
@@ -134,41 +119,8 @@ public class LayoutInflater extends ClassAnnotationInflater {
 		
 		//Layout Params
 		String[] params = layout.params();
-		int width, height;
-		if (params[0].equals("match_parent"))
-		{
-			width = ViewGroup.LayoutParams.MATCH_PARENT;
-		}
-		else if (params[0].equals("fill_parent"))
-		{
-			width = ViewGroup.LayoutParams.FILL_PARENT;
-		}
-		else if (params[0].equals("wrap_content"))
-		{
-			width = ViewGroup.LayoutParams.WRAP_CONTENT;
-		}
-		else
-		{
-			width = (int) Float.parseFloat(params[0]);
-		}
-		
-
-		if (params[1].equals("match_parent"))
-		{
-			height = ViewGroup.LayoutParams.MATCH_PARENT;
-		}
-		else if (params[1].equals("fill_parent"))
-		{
-			height = ViewGroup.LayoutParams.FILL_PARENT;
-		}
-		else if (params[1].equals("wrap_content"))
-		{
-			height = ViewGroup.LayoutParams.WRAP_CONTENT;
-		}
-		else
-		{
-			height = (int) Float.parseFloat(params[1]);
-		}
+		int width = parseDimension(params[0]);
+		int height = parseDimension(params[1]);
 		
 		layoutParams = new ViewGroup.LayoutParams(width, height);
 		
@@ -202,5 +154,28 @@ public class LayoutInflater extends ClassAnnotationInflater {
 		view.setPadding(left, top, right, bottom);
 	}
 	
-	
+	/**
+	 * Parses one of the layout parameters of an annotation
+	 * @param param any of "fill_parent", "wrap_content", "match_parent", or a pixel value
+	 * @return the width or height to use in the {@link ViewGroup.LayoutParams LayoutParams}
+	 */
+	static int parseDimension(String param)
+	{
+		if (param.equals("match_parent"))
+		{
+			return ViewGroup.LayoutParams.MATCH_PARENT;
+		}
+		else if (param.equals("fill_parent"))
+		{
+			return ViewGroup.LayoutParams.FILL_PARENT;
+		}
+		else if (param.equals("wrap_content"))
+		{
+			return ViewGroup.LayoutParams.WRAP_CONTENT;
+		}
+		else
+		{
+			return (int) Float.parseFloat(param);
+		}
+	}
 }
@@ -0,0 +1,735 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package self.philbrown.AbLE.annotations;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import self.philbrown.AbLE.AbLEActivity;
+import self.philbrown.AbLE.AbLEUtil;
+import android.content.Context;
+
+/**
+ * Contains everything that AbLE learns about a layout class through reflection: its annotation,
+ * the generated inflater that handles it (if any), the constructor of the Object it creates, its field operations,
+ * its {@code onLayoutComplete} hook, and the plans of its child classes and {@link Variant}s. A plan is built once per
+ * class, the first time that class is inflated, and is then stored in a process-wide cache. Plans
+ * are immutable (except for {@link #requiresMainThread()}, which is only ever set), so they can be
+ * shared by any number of inflations on any thread.
+ * @author Phil Brown
+ */
+public final class LayoutPlan
+{
+	/** Process-wide cache of plans, by layout class */
+	private static final ConcurrentMap<Class<?>, LayoutPlan> plans = new ConcurrentHashMap<Class<?>, LayoutPlan>();
+
+	/** The layout class */
+	private final Class<?> layout;
+	/** The AbLE annotation that declares the layout's type, or {@code null} if there isn't one. */
+	private final Annotation annotation;
+	/** Creates the inflater generated for this layout by the AbLE annotation processor, if one exists. */
+	private final InflaterFactory generated;
+	/** 
+	 * Creates the inflater for an annotation in this package that is not registered with the
+	 * {@link InflaterRegistry}, if the annotation has one.
+	 */
+	private final InflaterFactory unregistered;
+	/**
+	 * The class of the Object created by the layout, such as the view class of a {@link Layout}, or the
+	 * layout class that is embedded by an {@link Embed}.
+	 */
+	private final Class<?> targetClass;
+	/** The constructor used to create the Object declared by the layout, if it has one. */
+	private final Constructor<?> targetConstructor;
+	/** Why {@link #targetClass} or {@link #targetConstructor} could not be resolved, if they were not. */
+	private final Throwable targetError;
+	/** Fields declared with the {@link Variable} annotation */
+	private final List<Field> variables;
+	/** Fields declared with the {@link Binding} annotation */
+	private final List<Field> bindings;
+	/** The setters used for bindings whose variables could not be found. Matches {@link #bindings} */
+	private final List<SetterOp> bindingSetters;
+	/** The compiled {@link Binding#expr() expressions} of the bindings. Matches {@link #bindings} */
+	private final List<BindingExpression> bindingExpressions;
+	/** Getters, in the order they are declared */
+	private final List<GetterOp> getters;
+	/** Setters, in the order they are declared */
+	private final List<SetterOp> setters;
+	/** The static {@code onLayoutComplete} method, or {@code null} if the class does not have one. */
+	private final Method onLayoutComplete;
+	/** The plans for the annotated public inner classes (the child views) */
+	private final List<LayoutPlan> children;
+	/** The number of layout classes in this plan's subtree, including its own */
+	private final int subtreeSize;
+	/** The {@link Repeat} annotation of the layout class, or {@code null} if it is inflated once */
+	private final Repeat repeat;
+	/** {@code true} if one of the {@link #children} is {@link Repeat}ed */
+	private final boolean repeatedChildren;
+	/** The compiled {@link IncludeIf} condition, or {@code null} */
+	private final BindingExpression includeIf;
+	/** The compiled {@link ExcludeIf} condition, or {@code null} */
+	private final BindingExpression excludeIf;
+	/** {@code true} if the layout class is {@link Lazy} */
+	private final boolean lazy;
+	/** The {@link Variant} annotation of the layout class, or {@code null} if it is not a variant */
+	private final Variant variant;
+	/** The plans of the nested {@link Variant}s of the layout class */
+	private final List<LayoutPlan> variants;
+	/** The plan used in each configuration that the plan was resolved for, or {@code null} if it has no variants */
+	private final ConcurrentMap<LayoutConfiguration, LayoutPlan> resolved;
+	/** 
+	 * {@code true} if the Object declared by the layout could not be created off the main thread. This is
+	 * the only value of a plan that changes, and it only changes once.
+	 */
+	private volatile boolean mainThreadOnly;
+
+	/**
+	 * Gets the plan for the given layout class. If no plan has been built yet, it is built now.
+	 * Building the plan does not initialize the layout class.
+	 * @param layout the layout class
+	 * @return the plan
+	 */
+	public static LayoutPlan of(Class<?> layout)
+	{
+		LayoutPlan plan = plans.get(layout);
+		if (plan == null)
+		{
+			plan = new LayoutPlan(new Builder(layout));
+			LayoutPlan existing = plans.putIfAbsent(layout, plan);
+			if (existing != null)
+				plan = existing;
+		}
+		return plan;
+	}
+
+	/**
+	 * Checks whether the given class is a layout class, by looking for the annotation that an inflater 
+	 * handles. This does not build a plan, nor initialize the class.
+	 * @param layout a class
+	 * @return {@code true} if the class declares an AbLE annotation
+	 */
+	public static boolean isLayoutClass(Class<?> layout)
+	{
+		return findAnnotation(layout) != null;
+	}
+
+	/**
+	 * Gets the annotation of a layout class that determines its inflater: a registered annotation, or else
+	 * any annotation of this package.
+	 * @param layout the layout class
+	 * @return the annotation, or {@code null} if the class has none
+	 */
+	private static Annotation findAnnotation(Class<?> layout)
+	{
+		Annotation annotation = null;
+		for (Annotation a : layout.getAnnotations())
+		{
+			if (InflaterRegistry.isRegistered(a.annotationType()))
+				return a;
+			else if (annotation == null && a.annotationType().getPackage() == LayoutPlan.class.getPackage())
+				annotation = a;
+		}
+		return annotation;
+	}
+
+	/**
+	 * Discards the cached plans. Each plan is built again the next time its class is inflated. This is used
+	 * when layout classes are loaded again (see {@link AbLEActivity#resetLayouts()}).
+	 */
+	public static void clear()
+	{
+		plans.clear();
+	}
+
+	/**
+	 * Constructor
+	 * @param builder contains the plan's values
+	 */
+	private LayoutPlan(Builder builder)
+	{
+		layout = builder.layout;
+		annotation = builder.annotation;
+		generated = builder.generated;
+		unregistered = builder.unregistered;
+		targetClass = builder.targetClass;
+		targetConstructor = builder.targetConstructor;
+		targetError = builder.targetError;
+		variables = Collections.unmodifiableList(builder.variables);
+		bindings = Collections.unmodifiableList(builder.bindings);
+		bindingSetters = Collections.unmodifiableList(builder.bindingSetters);
+		bindingExpressions = Collections.unmodifiableList(builder.bindingExpressions);
+		getters = Collections.unmodifiableList(builder.getters);
+		setters = Collections.unmodifiableList(builder.setters);
+		onLayoutComplete = builder.onLayoutComplete;
+		children = Collections.unmodifiableList(builder.children);
+		repeat = layout.getAnnotation(Repeat.class);
+		IncludeIf include = layout.getAnnotation(IncludeIf.class);
+		includeIf = include == null ? null : compileCondition(include.value());
+		ExcludeIf exclude = layout.getAnnotation(ExcludeIf.class);
+		excludeIf = exclude == null ? null : compileCondition(exclude.value());
+		lazy = layout.isAnnotationPresent(Lazy.class);
+		variant = layout.getAnnotation(Variant.class);
+		variants = Collections.unmodifiableList(builder.variants);
+		resolved = variants.isEmpty() ? null : new ConcurrentHashMap<LayoutConfiguration, LayoutPlan>();
+		int size = 1;
+		boolean repeated = false;
+		for (int i = 0; i < children.size(); i++)
+		{
+			size += children.get(i).getSubtreeSize();
+			repeated |= children.get(i).getRepeat() != null;
+		}
+		subtreeSize = size;
+		repeatedChildren = repeated;
+	}
+
+	/**
+	 * @return the layout class
+	 */
+	public Class<?> getLayout()
+	{
+		return layout;
+	}
+
+	/**
+	 * @return the AbLE annotation that declares the layout's type, or {@code null} if there isn't one.
+	 */
+	public Annotation getAnnotation()
+	{
+		return annotation;
+	}
+
+	/**
+	 * Creates a new instance of the inflater that handles this layout. This is the generated inflater,
+	 * if one exists. Otherwise it is created by the factory registered for the layout's annotation in
+	 * the {@link InflaterRegistry}.
+	 * @param context used to create views and access resources
+	 * @param parent the parent inflater, or {@code null} for the root of the hierarchy
+	 * @return the inflater
+	 * @throws MissingAnnotationException if no inflater handles this layout
+	 */
+	public ClassAnnotationInflater newInflater(AbLEActivity context, ClassAnnotationInflater parent) throws MissingAnnotationException
+	{
+		InflaterFactory factory = generated;
+		if (factory == null && annotation != null)
+			factory = InflaterRegistry.get(annotation.annotationType());
+		if (factory == null)
+			factory = unregistered;
+		if (factory == null)
+			throw new MissingAnnotationException(AbLEUtil.format("No inflater found for class %s", layout.getName()));
+		ClassAnnotationInflater i = factory.create(context, parent);
+		i.plan = this;
+		return i;
+	}
+
+	/**
+	 * @return the class of the Object created by the layout, such as the view class of a {@link Layout},
+	 * or the layout class that is embedded by an {@link Embed}. May be {@code null}.
+	 */
+	public Class<?> getTargetClass()
+	{
+		return targetClass;
+	}
+
+	/**
+	 * Creates the Object declared by the layout using its resolved constructor.
+	 * @param argument the single argument of the constructor
+	 * @return the new Object
+	 * @throws Throwable if the Object cannot be created
+	 */
+	public Object newTarget(Object argument) throws Throwable
+	{
+		if (targetConstructor == null)
+			throw targetError == null ? new NoSuchMethodException() : targetError;
+		return targetConstructor.newInstance(argument);
+	}
+
+	/**
+	 * @return the fields declared with the {@link Variable} annotation
+	 */
+	public List<Field> getVariables()
+	{
+		return variables;
+	}
+
+	/**
+	 * @return the fields declared with the {@link Binding} annotation
+	 */
+	public List<Field> getBindings()
+	{
+		return bindings;
+	}
+
+	/**
+	 * @param index the index of the binding in {@link #getBindings()}
+	 * @return the setter used for the binding if its variable is not found
+	 */
+	public SetterOp getBindingSetter(int index)
+	{
+		return bindingSetters.get(index);
+	}
+
+	/**
+	 * @param index the index of the binding in {@link #getBindings()}
+	 * @return the compiled expression of the binding, or {@code null} if it observes a single variable,
+	 * or its expression could not be compiled.
+	 */
+	public BindingExpression getBindingExpression(int index)
+	{
+		return bindingExpressions.get(index);
+	}
+
+	/**
+	 * @return the getters, in the order they are declared
+	 */
+	public List<GetterOp> getGetters()
+	{
+		return getters;
+	}
+
+	/**
+	 * @return the setters, in the order they are declared
+	 */
+	public List<SetterOp> getSetters()
+	{
+		return setters;
+	}
+
+	/**
+	 * @return the static {@code onLayoutComplete} method, or {@code null} if the class does not have one.
+	 */
+	public Method getOnLayoutComplete()
+	{
+		return onLayoutComplete;
+	}
+
+	/**
+	 * @return the plans of the annotated public inner classes
+	 */
+	public List<LayoutPlan> getChildren()
+	{
+		return children;
+	}
+
+	/**
+	 * @return the number of layout classes in this plan's subtree, including its own. Embedded
+	 * layouts are not counted.
+	 */
+	public int getSubtreeSize()
+	{
+		return subtreeSize;
+	}
+	
+	/**
+	 * @return the {@link Repeat} annotation of the layout class, or {@code null} if the class is inflated once
+	 */
+	public Repeat getRepeat()
+	{
+		return repeat;
+	}
+	
+	/**
+	 * @return the {@link Variant} annotation of the layout class, or {@code null} if it is not a variant
+	 */
+	public Variant getVariant()
+	{
+		return variant;
+	}
+	
+	/**
+	 * @return the plans of the nested {@link Variant}s of the layout class. The list is empty if it has none.
+	 */
+	public List<LayoutPlan> getVariants()
+	{
+		return variants;
+	}
+	
+	/**
+	 * Gets the plan to inflate instead of this one in the given configuration: the most specific 
+	 * {@link Variant} that matches it, or this plan. The result is cached for each configuration.
+	 * @param configuration the device configuration
+	 * @return the plan to inflate
+	 */
+	LayoutPlan resolve(LayoutConfiguration configuration)
+	{
+		if (resolved == null)
+			return this;
+		LayoutPlan plan = resolved.get(configuration);
+		if (plan == null)
+		{
+			plan = this;
+			for (int i = 0; i < variants.size(); i++)
+			{
+				LayoutPlan candidate = variants.get(i);
+				if (configuration.matches(candidate.variant) 
+					&& (plan == this || LayoutConfiguration.compare(candidate.variant, plan.variant) > 0))
+					plan = candidate;
+			}
+			//a variant can have variants of its own
+			if (plan != this)
+				plan = plan.resolve(configuration);
+			resolved.putIfAbsent(configuration, plan);
+		}
+		return plan;
+	}
+	
+	/**
+	 * @return {@code true} if the layout class is {@link Lazy}, so it is only inflated once its view is needed
+	 */
+	public boolean isLazy()
+	{
+		return lazy;
+	}
+	
+	/**
+	 * Compiles an {@link IncludeIf} or {@link ExcludeIf} condition. Errors are logged.
+	 * @param condition the condition
+	 * @return the compiled condition, or {@code null} if it is not valid
+	 */
+	private BindingExpression compileCondition(String condition)
+	{
+		try
+		{
+			return BindingExpression.compile(condition);
+		} catch (IllegalArgumentException e)
+		{
+			AbLEUtil.err("Could not compile the condition of %s: %s", layout.getName(), e.getMessage());
+			return null;
+		}
+	}
+	
+	/**
+	 * @return {@code true} if the class declares an {@link IncludeIf} or {@link ExcludeIf} condition
+	 */
+	public boolean isConditional()
+	{
+		return includeIf != null || excludeIf != null;
+	}
+	
+	/**
+	 * Evaluates the {@link IncludeIf} and {@link ExcludeIf} conditions of the class. A condition that cannot
+	 * be evaluated is logged, and does not exclude the class.
+	 * @param scope the scope of the parent class
+	 * @return {@code true} if the class should be inflated
+	 */
+	public boolean isIncluded(Scope scope)
+	{
+		try
+		{
+			if (includeIf != null && !includeIf.test(scope))
+				return false;
+			if (excludeIf != null && excludeIf.test(scope))
+				return false;
+		} catch (Throwable t)
+		{
+			AbLEUtil.err("Could not evaluate the condition of %s", layout.getName());
+		}
+		return true;
+	}
+	
+	/**
+	 * @param scope the scope of the parent class
+	 * @return the {@link ObservableValue}s that the conditions of the class read. The list is empty if
+	 * they read none.
+	 */
+	public List<ObservableValue<Object>> getConditionObservables(Scope scope)
+	{
+		List<ObservableValue<Object>> observables = new ArrayList<ObservableValue<Object>>(0);
+		if (includeIf != null)
+			observables.addAll(includeIf.getObservables(scope));
+		if (excludeIf != null)
+			observables.addAll(excludeIf.getObservables(scope));
+		return observables;
+	}
+	
+	/**
+	 * @return {@code true} if at least one child class is {@link Repeat}ed
+	 */
+	public boolean hasRepeatedChildren()
+	{
+		return repeatedChildren;
+	}
+	
+	/**
+	 * @return {@code true} if the layout must be inflated on the main thread
+	 * @see AnnotatedLayoutInflater#inflateAsync(AbLEActivity, Class, InflationCallback)
+	 */
+	public boolean requiresMainThread()
+	{
+		return mainThreadOnly;
+	}
+	
+	/**
+	 * Marks the layout as requiring the main thread, because the Object it declares could not be
+	 * created on a background thread.
+	 */
+	void setRequiresMainThread()
+	{
+		if (!mainThreadOnly)
+		{
+			mainThreadOnly = true;
+			AbLEUtil.info("Class %s will be inflated on the main thread.", layout.getName());
+		}
+	}
+
+	/**
+	 * Collects the values of a plan while it is being built. {@link FieldAnnotationInflater} adds the
+	 * field operations.
+	 */
+	public static final class Builder
+	{
+		final Class<?> layout;
+		Annotation annotation;
+		InflaterFactory generated;
+		InflaterFactory unregistered;
+		Class<?> targetClass;
+		Constructor<?> targetConstructor;
+		Throwable targetError;
+		final List<Field> variables = new ArrayList<Field>();
+		final List<Field> bindings = new ArrayList<Field>();
+		final List<SetterOp> bindingSetters = new ArrayList<SetterOp>();
+		final List<BindingExpression> bindingExpressions = new ArrayList<BindingExpression>();
+		final List<GetterOp> getters = new ArrayList<GetterOp>();
+		final List<SetterOp> setters = new ArrayList<SetterOp>();
+		Method onLayoutComplete;
+		final List<LayoutPlan> children = new ArrayList<LayoutPlan>();
+		final List<LayoutPlan> variants = new ArrayList<LayoutPlan>();
+
+		/**
+		 * Constructor. Introspects the given class.
+		 * @param layout the layout class
+		 */
+		private Builder(Class<?> layout)
+		{
+			this.layout = layout;
+			annotation = findAnnotation(layout);
+
+			if (annotation != null)
+			{
+				generated = getGeneratedInflater(layout);
+				if (generated == null && !InflaterRegistry.isRegistered(annotation.annotationType()))
+				{
+					//annotation is from this package, but is not registered. Use reflection to get the 
+					//name of the class that handles its inflation.
+					try
+					{
+						Class<?> rootInflater = Class.forName(AbLEUtil.buildString(annotation.annotationType().getName(), "Inflater"));
+						unregistered = new ConstructorFactory(rootInflater.getConstructor(new Class<?>[]{AbLEActivity.class, ClassAnnotationInflater.class}));
+					} catch (Throwable t)
+					{
+						AbLEUtil.err("Could not find the inflater for annotation %s", annotation.annotationType().getName());
+					}
+				}
+				resolveTarget();
+			}
+
+			FieldAnnotationInflater fi = new FieldAnnotationInflater(null);
+			for (Field f : layout.getFields())
+			{
+				try {
+					fi.inflate(f, this);
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+
+			for (Method m : layout.getMethods())
+			{
+				if (m.getName().equals("onLayoutComplete"))
+				{
+					onLayoutComplete = m;
+					break;
+				}
+			}
+
+			for (Class<?> child : layout.getClasses())
+			{
+				LayoutPlan plan = LayoutPlan.of(child);
+				if (plan.getVariant() != null)
+				{
+					//variants replace this class, so they are resolved now, but are not children
+					if (plan.getAnnotation() != null)
+						variants.add(plan);
+					else
+						AbLEUtil.warn("Variant %s does not declare an AbLE annotation, and will not be used.", child.getName());
+				}
+				else if (plan.getAnnotation() != null)
+					children.add(plan);
+				else
+					AbLEUtil.warn("Class %s does not declare an AbLE annotation, and will not be inflated.", child.getName());
+			}
+		}
+
+		/**
+		 * Resolves the class and constructor of the Object declared by the built-in annotations.
+		 */
+		private void resolveTarget()
+		{
+			try
+			{
+				if (annotation instanceof Layout)
+				{
+					targetClass = Class.forName(((Layout) annotation).viewClass());
+					targetConstructor = targetClass.getConstructor(new Class<?>[]{Context.class});
+				}
+				else if (annotation instanceof ListLayout)
+				{
+					targetClass = Class.forName(((ListLayout) annotation).viewClass());
+					targetConstructor = targetClass.getConstructor(new Class<?>[]{Context.class});
+				}
+				else if (annotation instanceof LayoutAdapter)
+				{
+					targetClass = Class.forName(((LayoutAdapter) annotation).adapterClass());
+					targetConstructor = targetClass.getConstructor(new Class<?>[]{AbLEActivity.class});
+				}
+				else if (annotation instanceof Invisible)
+				{
+					targetClass = Class.forName(((Invisible) annotation).invisibleClass());
+					targetConstructor = targetClass.getConstructor(new Class<?>[]{AbLEActivity.class});
+				}
+				else if (annotation instanceof Embed)
+				{
+					//don't initialize the embedded class until it is inflated.
+					targetClass = Class.forName(((Embed) annotation).layout(), false, layout.getClassLoader());
+				}
+			} catch (Throwable t)
+			{
+				targetError = t;
+			}
+		}
+
+		/**
+		 * Adds the operation for a field declared with the {@link Variable} annotation
+		 * @param field the field
+		 */
+		public void addVariable(Field field)
+		{
+			variables.add(field);
+		}
+
+		/**
+		 * Adds the operation for a field declared with the {@link Binding} annotation
+		 * @param field the field
+		 */
+		public void addBinding(Field field)
+		{
+			bindings.add(field);
+			bindingSetters.add(FieldAnnotationInflater.newSetter(field));
+			String expr = field.getAnnotation(Binding.class).expr();
+			BindingExpression expression = null;
+			if (expr.length() > 0)
+			{
+				try
+				{
+					expression = BindingExpression.compile(expr);
+				} catch (IllegalArgumentException e)
+				{
+					AbLEUtil.err("Could not compile binding %s: %s", field.getName(), e.getMessage());
+				}
+			}
+			bindingExpressions.add(expression);
+		}
+
+		/**
+		 * Adds a getter
+		 * @param getter the getter
+		 */
+		public void addGetter(GetterOp getter)
+		{
+			getters.add(getter);
+		}
+
+		/**
+		 * Adds a setter
+		 * @param setter the setter
+		 */
+		public void addSetter(SetterOp setter)
+		{
+			setters.add(setter);
+		}
+	}
+
+	/**
+	 * Gets the factory of the inflater generated for the given layout class by the AbLE annotation
+	 * processor. This is its static {@code FACTORY} field, or its constructor for inflaters that
+	 * were generated without one.
+	 * @param layout the layout class
+	 * @return the factory of the generated inflater, or {@code null} if none was generated.
+	 */
+	private static InflaterFactory getGeneratedInflater(Class<?> layout)
+	{
+		Class<?> generated;
+		try
+		{
+			generated = Class.forName(AbLEUtil.buildString(layout.getName(), AnnotatedLayoutInflater.GENERATED_SUFFIX), true, layout.getClassLoader());
+		} catch (Throwable t)
+		{
+			//not generated. Use the reflection-based inflaters
+			return null;
+		}
+		try
+		{
+			return (InflaterFactory) generated.getField("FACTORY").get(null);
+		} catch (Throwable t)
+		{
+			try
+			{
+				return new ConstructorFactory(generated.getConstructor(new Class<?>[]{AbLEActivity.class, ClassAnnotationInflater.class}));
+			} catch (Throwable t2)
+			{
+				AbLEUtil.err("Could not use the generated inflater %s", generated.getName());
+				return null;
+			}
+		}
+	}
+	
+	/**
+	 * Creates inflaters using their {@code (AbLEActivity, ClassAnnotationInflater)} constructor. 
+	 * This is only used for inflaters that are not registered with the {@link InflaterRegistry}.
+	 */
+	private static final class ConstructorFactory implements InflaterFactory
+	{
+		/** The constructor of the inflater */
+		private final Constructor<?> constructor;
+		
+		/**
+		 * Constructor
+		 * @param constructor the constructor of the inflater
+		 */
+		ConstructorFactory(Constructor<?> constructor)
+		{
+			this.constructor = constructor;
+		}
+		
+		public ClassAnnotationInflater create(AbLEActivity context, ClassAnnotationInflater parent)
+		{
+			try
+			{
+				return (ClassAnnotationInflater) constructor.newInstance(context, parent);
+			} catch (Throwable t)
+			{
+				throw new RuntimeException(t);
+			}
+		}
+	}
+}
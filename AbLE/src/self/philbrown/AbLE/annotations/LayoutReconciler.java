@@ -0,0 +1,104 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package self.philbrown.AbLE.annotations;
+
+import java.util.List;
+
+import android.view.View;
+
+/**
+ * Matches the child layout classes of a new layout against the records of a previous inflation, so that
+ * {@link AnnotatedLayoutInflater#reconcile(self.philbrown.AbLE.AbLEActivity, View, Class)} can reuse
+ * their views. Only classes declared with the {@link Layout} annotation are matched. A previous child
+ * matches if it created a view of the same class, and its id does not conflict with the id that the new 
+ * class sets. A match at the same position is preferred.
+ * @author Phil Brown
+ */
+final class LayoutReconciler
+{
+	/** Name of the setter that sets the id of a view */
+	private static final String SET_ID = "setId";
+	
+	/** 
+	 * Constructor. Classes should only use the static methods that this class provides.
+	 */
+	private LayoutReconciler()
+	{
+		//cannot instantiate this class
+	}
+	
+	/**
+	 * Finds the previous child that the given new child can reuse
+	 * @param child the plan of the new child
+	 * @param previous the records of the previous children
+	 * @param used the previous children that have already been matched
+	 * @param position the position of the new child
+	 * @return the index of the match in {@code previous}, or -1 if none matches
+	 */
+	static int findMatch(LayoutPlan child, List<InflationRecord> previous, boolean[] used, int position)
+	{
+		if (!(child.getAnnotation() instanceof Layout) || child.getTargetClass() == null)
+			return -1;
+		int id = getDeclaredId(child);
+		if (position < previous.size() && !used[position] && matches(child, id, previous.get(position)))
+			return position;
+		for (int i = 0; i < previous.size(); i++)
+		{
+			if (!used[i] && matches(child, id, previous.get(i)))
+				return i;
+		}
+		return -1;
+	}
+	
+	/**
+	 * @return {@code true} if the view of the given record can be reused for the given plan
+	 */
+	private static boolean matches(LayoutPlan child, int id, InflationRecord record)
+	{
+		Object target = record.getTarget();
+		if (!(record.getPlan().getAnnotation() instanceof Layout) || target == null 
+				|| target.getClass() != child.getTargetClass())
+			return false;
+		int previousId = ((View) target).getId();
+		return id == View.NO_ID || previousId == View.NO_ID || id == previousId;
+	}
+	
+	/**
+	 * @return the id set by the {@code id} field of the given layout class, or {@link View#NO_ID}
+	 */
+	static int getDeclaredId(LayoutPlan plan)
+	{
+		List<SetterOp> setters = plan.getSetters();
+		for (int i = 0; i < setters.size(); i++)
+		{
+			SetterOp setter = setters.get(i);
+			if (!SET_ID.equals(setter.getName()))
+				continue;
+			try
+			{
+				Object value = setter.getField().get(null);
+				if (value instanceof Integer)
+					return (Integer) value;
+			} catch (IllegalAccessException e)
+			{
+				//treat as no id
+			}
+		}
+		return View.NO_ID;
+	}
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package self.philbrown.AbLE.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Defers the inflation of a nested layout class until its view is needed. Instead of the subtree, a zero-size
+ * {@link LazyView} with the id of the class is added to the parent view, so a tab, a collapsed section or a 
+ * rarely used panel does not cost anything when the layout is first shown:
+ * <pre>
+ * &#64;Lazy
+ * &#64;Layout(viewClass = "android.widget.LinearLayout")
+ * public static class Details
+ * {
+ *     public static int id = R.id.details;
+ *     ...
+ * }
+ * </pre>
+ * The subtree is inflated from the class's {@link LayoutPlan}, and replaces the placeholder, when the 
+ * placeholder is made visible, when it is looked up by id (through {@link ViewIndex#findViewById(int)} or
+ * {@link self.philbrown.AbLE.AbLEActivity#findViewById(int)}), or when {@link LazyView#expand()} is called. 
+ * This must happen on the main thread. The annotation of a root layout class is ignored.
+ * @author Phil Brown
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Lazy 
+{
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package self.philbrown.AbLE.annotations;
+
+import self.philbrown.AbLE.AbLEActivity;
+import self.philbrown.AbLE.AbLEUtil;
+import self.philbrown.AbLE.R;
+import android.graphics.Canvas;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+
+/**
+ * The zero-size placeholder of a {@link Lazy} layout class. It has the id of the class, draws nothing, and is
+ * {@link View#GONE} until it is expanded. Expanding it inflates the class from its {@link LayoutPlan}, and
+ * replaces the placeholder with the new view in its parent, at the same position. This happens when the 
+ * placeholder is made visible or looked up by id, or when {@link #expand()} is called. Once expanded, 
+ * visibility changes are forwarded to the new view. Must be used on the main thread.
+ * @author Phil Brown
+ */
+public final class LazyView extends View
+{
+	/** The plan of the lazy class */
+	private final LayoutPlan plan;
+	/** The inflater of the parent view, in whose scope the class is inflated */
+	private final ClassAnnotationInflater parent;
+	/** The context of the inflation that created the placeholder */
+	private final InflationContext inflation;
+	/** The inflated view, or {@code null} until the placeholder is expanded */
+	private View view;
+	
+	/**
+	 * Constructor
+	 * @param plan the plan of the lazy class
+	 * @param parent the inflater of the parent view
+	 * @param inflation the context of the inflation that creates the placeholder
+	 */
+	LazyView(LayoutPlan plan, ClassAnnotationInflater parent, InflationContext inflation)
+	{
+		super(parent.context.getViewContext());
+		this.plan = plan;
+		this.parent = parent;
+		this.inflation = inflation;
+		setId(LayoutReconciler.getDeclaredId(plan));
+		setVisibility(GONE);
+		setWillNotDraw(true);
+	}
+	
+	/**
+	 * Inflates the lazy class, and replaces this placeholder with its view. Calling this again returns
+	 * the same view.
+	 * @return the inflated view, or {@code null} if the class could not be inflated, or this placeholder
+	 * is not attached to a parent view
+	 */
+	public View expand()
+	{
+		if (view != null)
+			return view;
+		ViewParent group = getParent();
+		if (!(group instanceof ViewGroup))
+		{
+			AbLEUtil.warn("Cannot expand %s before it is added to a parent view", plan.getLayout().getName());
+			return null;
+		}
+		View v = AnnotatedLayoutInflater.inflateLazy(plan, parent, inflation.continuation());
+		if (v == null)
+			return null;
+		//a conditional branch keeps its state on the view that is shown
+		Object branch = getTag(R.id.able_condition);
+		if (branch != null)
+		{
+			setTag(R.id.able_condition, null);
+			v.setTag(R.id.able_condition, branch);
+		}
+		//swap the views before publishing the new one, so that a ViewIndex sees the placeholder removed
+		ViewGroup viewGroup = (ViewGroup) group;
+		int index = viewGroup.indexOfChild(this);
+		viewGroup.removeViewAt(index);
+		viewGroup.addView(v, index);
+		view = v;
+		return view;
+	}
+	
+	/**
+	 * Moves the placeholder to a new Activity, after the layout was retained across the recreation of its
+	 * Activity, so that the class is inflated for the new Activity
+	 * @param context the new Activity
+	 */
+	void reattach(AbLEActivity context)
+	{
+		parent.reattach(context);
+		inflation.reattach(context);
+	}
+	
+	/**
+	 * @return {@code true} if the class has been inflated
+	 */
+	public boolean isExpanded()
+	{
+		return view != null;
+	}
+	
+	/**
+	 * @return the inflated view, or {@code null} if the placeholder has not been expanded
+	 */
+	public View getView()
+	{
+		return view;
+	}
+	
+	/**
+	 * @return the lazy layout class
+	 */
+	public Class<?> getLayout()
+	{
+		return plan.getLayout();
+	}
+	
+	/**
+	 * Making the placeholder {@link View#VISIBLE visible} or {@link View#INVISIBLE invisible} expands it.
+	 * Once it is expanded, the visibility of the inflated view is set instead.
+	 */
+	@Override
+	public void setVisibility(int visibility)
+	{
+		if (view != null)
+		{
+			view.setVisibility(visibility);
+			return;
+		}
+		super.setVisibility(visibility);
+		if (visibility != GONE)
+			expand();
+	}
+	
+	@Override
+	protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec)
+	{
+		setMeasuredDimension(0, 0);
+	}
+	
+	@Override
+	public void draw(Canvas canvas)
+	{
+		//draws nothing
+	}
+	
+	@Override
+	protected void dispatchDraw(Canvas canvas)
+	{
+		//draws nothing
+	}
+}
@@ -0,0 +1,398 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package self.philbrown.AbLE.annotations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The difference between two lists of items, computed with Myers' algorithm over the stable key of each
+ * item. Items whose keys are in the longest common subsequence of both lists stay in place; the other items
+ * are moved (if an item with the same key is in both lists), removed or inserted. Items that stay or move
+ * are changed if they are not {@link Object#equals(Object) equal}. The differences are reported as a 
+ * sequence of operations, which transform the old list into the new list when they are applied in order.
+ * <p>
+ * The common prefix and suffix are matched first, so the cost of a diff mostly depends on the number of 
+ * edits. If more than {@link #MAX_EDITS} edits are needed, the diff is a {@link #isReset() reset} that 
+ * removes every old item and inserts every new item. This is generally computed on a background thread.
+ * @author Phil Brown
+ */
+final class ListDiff
+{
+	/** The maximum number of insertions and removals that are searched for before a diff is a reset */
+	static final int MAX_EDITS = 1000;
+	
+	/** Operation type: {@code count} items are inserted at {@code position} */
+	private static final int INSERT = 0;
+	/** Operation type: {@code count} items are removed at {@code position} */
+	private static final int REMOVE = 1;
+	/** Operation type: the item at {@code position} is moved to {@code count} */
+	private static final int MOVE = 2;
+	/** Operation type: the item at {@code position} is changed */
+	private static final int CHANGE = 3;
+	
+	/** Receives the operations of a diff, in the order in which they must be applied */
+	interface Receiver
+	{
+		/**
+		 * Items were inserted
+		 * @param position the position of the first inserted item
+		 * @param count the number of items
+		 */
+		void onInserted(int position, int count);
+		
+		/**
+		 * Items were removed
+		 * @param position the position of the first removed item
+		 * @param count the number of items
+		 */
+		void onRemoved(int position, int count);
+		
+		/**
+		 * An item was moved. The items between both positions are shifted by one.
+		 * @param from the position of the item
+		 * @param to the new position of the item
+		 */
+		void onMoved(int from, int to);
+		
+		/**
+		 * The item at the given position was replaced by an item with the same key that is not equal to it
+		 * @param position the position of the item
+		 */
+		void onChanged(int position);
+	}
+	
+	/** The operations, stored as (type, position, count) triples */
+	private int[] operations = new int[24];
+	/** The number of values used in {@link #operations} */
+	private int size;
+	/** The new position of each old item, or -1 if it was removed */
+	private final int[] oldToNew;
+	/** The old position of each new item, or -1 if it was inserted */
+	private final int[] newToOld;
+	/** {@code true} if the lists were too different to be compared */
+	private boolean reset;
+	
+	/**
+	 * Constructor
+	 * @param oldCount the number of old items
+	 * @param newCount the number of new items
+	 */
+	private ListDiff(int oldCount, int newCount)
+	{
+		oldToNew = new int[oldCount];
+		newToOld = new int[newCount];
+		Arrays.fill(oldToNew, -1);
+		Arrays.fill(newToOld, -1);
+	}
+	
+	/**
+	 * Computes the difference between two lists
+	 * @param oldKeys the key of each old item
+	 * @param oldItems the old items
+	 * @param newKeys the key of each new item
+	 * @param newItems the new items
+	 * @return the difference
+	 */
+	static ListDiff compute(Object[] oldKeys, Object[] oldItems, Object[] newKeys, Object[] newItems)
+	{
+		int n = oldKeys.length, m = newKeys.length;
+		ListDiff diff = new ListDiff(n, m);
+		
+		int start = 0;
+		while (start < n && start < m && equal(oldKeys[start], newKeys[start]))
+		{
+			diff.match(start, start);
+			start++;
+		}
+		int oldEnd = n, newEnd = m;
+		while (oldEnd > start && newEnd > start && equal(oldKeys[oldEnd - 1], newKeys[newEnd - 1]))
+		{
+			oldEnd--;
+			newEnd--;
+			diff.match(oldEnd, newEnd);
+		}
+		
+		if (!diff.match(oldKeys, start, oldEnd - start, newKeys, start, newEnd - start))
+		{
+			Arrays.fill(diff.oldToNew, -1);
+			Arrays.fill(diff.newToOld, -1);
+			diff.reset = true;
+			if (n > 0)
+				diff.add(REMOVE, 0, n);
+			if (m > 0)
+				diff.add(INSERT, 0, m);
+			return diff;
+		}
+		diff.matchMoves(oldKeys, newKeys);
+		diff.addOperations(oldItems, newItems);
+		return diff;
+	}
+	
+	/**
+	 * @return {@code true} if the lists were too different to be compared, so the operations remove every 
+	 * old item, then insert every new item
+	 */
+	boolean isReset()
+	{
+		return reset;
+	}
+	
+	/**
+	 * @return the number of operations
+	 */
+	int getOperationCount()
+	{
+		return size / 3;
+	}
+	
+	/**
+	 * @param oldPosition the position of an item in the old list
+	 * @return the position of the item in the new list, or -1 if it was removed
+	 */
+	int getNewPosition(int oldPosition)
+	{
+		return oldToNew[oldPosition];
+	}
+	
+	/**
+	 * @param newPosition the position of an item in the new list
+	 * @return the position of the item in the old list, or -1 if it was inserted
+	 */
+	int getOldPosition(int newPosition)
+	{
+		return newToOld[newPosition];
+	}
+	
+	/**
+	 * Passes the operations to the given receiver, in order
+	 * @param receiver the receiver
+	 */
+	void dispatch(Receiver receiver)
+	{
+		for (int i = 0; i < size; i += 3)
+		{
+			switch (operations[i])
+			{
+				case INSERT:
+					receiver.onInserted(operations[i + 1], operations[i + 2]);
+					break;
+				case REMOVE:
+					receiver.onRemoved(operations[i + 1], operations[i + 2]);
+					break;
+				case MOVE:
+					receiver.onMoved(operations[i + 1], operations[i + 2]);
+					break;
+				default:
+					receiver.onChanged(operations[i + 1]);
+					break;
+			}
+		}
+	}
+	
+	/**
+	 * Records that an old item is kept at a new position
+	 */
+	private void match(int oldPosition, int newPosition)
+	{
+		oldToNew[oldPosition] = newPosition;
+		newToOld[newPosition] = oldPosition;
+	}
+	
+	/**
+	 * Finds the longest common subsequence of two ranges of keys, using Myers' algorithm, and matches its items.
+	 * The furthest reaching path of each diagonal is kept for each number of edits, and the shortest path is
+	 * then followed back from the end.
+	 * @return {@code false} if more than {@link #MAX_EDITS} edits are needed
+	 */
+	private boolean match(Object[] a, int aStart, int n, Object[] b, int bStart, int m)
+	{
+		int limit = Math.min(n + m, MAX_EDITS);
+		int offset = limit + 1;
+		int[] v = new int[2 * limit + 3];
+		//for each number of edits d, the furthest x reached on diagonals -d to d
+		List<int[]> trace = new ArrayList<int[]>();
+		for (int d = 0; d <= limit; d++)
+		{
+			for (int k = -d; k <= d; k += 2)
+			{
+				int x;
+				if (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1]))
+					x = v[offset + k + 1];
+				else
+					x = v[offset + k - 1] + 1;
+				int y = x - k;
+				while (x < n && y < m && equal(a[aStart + x], b[bStart + y]))
+				{
+					x++;
+					y++;
+				}
+				v[offset + k] = x;
+				if (x >= n && y >= m)
+				{
+					trace.add(Arrays.copyOfRange(v, offset - d, offset + d + 1));
+					backtrack(trace, d, aStart, n, bStart, m);
+					return true;
+				}
+			}
+			trace.add(Arrays.copyOfRange(v, offset - d, offset + d + 1));
+		}
+		return false;
+	}
+	
+	/**
+	 * Follows the shortest path found by Myers' algorithm back from the end, and matches the items along 
+	 * its diagonals.
+	 */
+	private void backtrack(List<int[]> trace, int edits, int aStart, int n, int bStart, int m)
+	{
+		int x = n, y = m;
+		for (int d = edits; d > 0; d--)
+		{
+			int[] previous = trace.get(d - 1);
+			int k = x - y;
+			int previousK;
+			if (k == -d || (k != d && previous[k - 1 + d - 1] < previous[k + 1 + d - 1]))
+				previousK = k + 1;
+			else
+				previousK = k - 1;
+			int previousX = previous[previousK + d - 1];
+			int previousY = previousX - previousK;
+			while (x > previousX && y > previousY)
+			{
+				x--;
+				y--;
+				match(aStart + x, bStart + y);
+			}
+			x = previousX;
+			y = previousY;
+		}
+		while (x > 0 && y > 0)
+		{
+			x--;
+			y--;
+			match(aStart + x, bStart + y);
+		}
+	}
+	
+	/**
+	 * Matches each removed item with an inserted item that has the same key, so that it is moved instead
+	 */
+	private void matchMoves(Object[] oldKeys, Object[] newKeys)
+	{
+		Map<Object, LinkedList<Integer>> inserted = null;
+		for (int j = 0; j < newToOld.length; j++)
+		{
+			if (newToOld[j] != -1)
+				continue;
+			if (inserted == null)
+				inserted = new HashMap<Object, LinkedList<Integer>>();
+			LinkedList<Integer> positions = inserted.get(newKeys[j]);
+			if (positions == null)
+			{
+				positions = new LinkedList<Integer>();
+				inserted.put(newKeys[j], positions);
+			}
+			positions.add(j);
+		}
+		if (inserted == null)
+			return;
+		for (int i = 0; i < oldToNew.length; i++)
+		{
+			if (oldToNew[i] != -1)
+				continue;
+			LinkedList<Integer> positions = inserted.get(oldKeys[i]);
+			if (positions != null && !positions.isEmpty())
+				match(i, positions.removeFirst());
+		}
+	}
+	
+	/**
+	 * Creates the operations from the matched items. Removals are applied first, from the end of the list.
+	 * Then the new list is built from the start: each position is filled by inserting new items, or by 
+	 * moving the matched old item there if it is not there already.
+	 */
+	private void addOperations(Object[] oldItems, Object[] newItems)
+	{
+		List<Integer> current = new ArrayList<Integer>(oldToNew.length);
+		for (int i = 0; i < oldToNew.length; i++)
+			current.add(i);
+		
+		for (int i = oldToNew.length - 1; i >= 0; i--)
+		{
+			if (oldToNew[i] != -1)
+				continue;
+			int end = i;
+			while (i > 0 && oldToNew[i - 1] == -1)
+				i--;
+			add(REMOVE, i, end - i + 1);
+			current.subList(i, end + 1).clear();
+		}
+		
+		for (int j = 0; j < newToOld.length; j++)
+		{
+			int old = newToOld[j];
+			if (old == -1)
+			{
+				int end = j;
+				while (end + 1 < newToOld.length && newToOld[end + 1] == -1)
+					end++;
+				add(INSERT, j, end - j + 1);
+				for (int p = j; p <= end; p++)
+					current.add(p, -1);
+				j = end;
+				continue;
+			}
+			if (current.get(j) != old)
+			{
+				int from = j + 1;
+				while (current.get(from) != old)
+					from++;
+				add(MOVE, from, j);
+				current.remove(from);
+				current.add(j, old);
+			}
+			if (!equal(oldItems[old], newItems[j]))
+				add(CHANGE, j, 1);
+		}
+	}
+	
+	/**
+	 * Adds an operation
+	 */
+	private void add(int type, int position, int count)
+	{
+		if (size + 3 > operations.length)
+			operations = Arrays.copyOf(operations, operations.length * 2);
+		operations[size++] = type;
+		operations[size++] = position;
+		operations[size++] = count;
+	}
+	
+	/**
+	 * @return {@code true} if both Objects are {@code null}, or are equal
+	 */
+	private static boolean equal(Object a, Object b)
+	{
+		return a == b || (a != null && a.equals(b));
+	}
+}
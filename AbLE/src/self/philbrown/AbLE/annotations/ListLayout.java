@@ -0,0 +1,105 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package self.philbrown.AbLE.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares a recycling list of rows. Each row is inflated from the layout class given by {@link #item()},
+ * but only for the positions that are visible: rows that scroll off-screen are reused for the positions 
+ * that scroll on, and are bound to their new item through the row's {@link Binding}s. For example:
+ * <pre>
+ * &#64;ListLayout(item = Row.class, source = "contacts")
+ * public class Contacts
+ * {
+ *     &#64;Variable
+ *     public static List&lt;Contact&gt; contacts = loadContacts();
+ * 
+ *     &#64;Layout(viewClass = "android.widget.TextView")
+ *     public static class Row
+ *     {
+ *         &#64;Binding(expr = "item.getName()")
+ *         public static String text;
+ *     }
+ * }
+ * </pre>
+ * The items are read from the {@link Variable} named by {@link #source()}, which may be an Array, a 
+ * {@link java.util.List List}, or an {@link ObservableValue} that holds either. Setting a new value
+ * on an {@link ObservableValue} updates the list: the new items are compared with the current items on a
+ * background thread, so a list should be replaced by a new one rather than modified. Within a row, the
+ * item is the variable named by {@link #itemVariable()} and its index is the variable named by 
+ * {@link #positionVariable()}.
+ * <p>
+ * Static classes nested in the annotated class are not inflated as children, so the row class may be
+ * declared there. Fields, bindings and setters of the annotated class apply to the list view.
+ * @author Phil Brown
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ListLayout 
+{
+	/**
+	 * The layout class of each row
+	 * @return
+	 */
+	public Class<?> item();
+	
+	/**
+	 * The name of the {@link Variable} that holds the items. The variable may be declared in this class or 
+	 * in any of its parent classes.
+	 * @return
+	 */
+	public String source() default "items";
+	
+	/**
+	 * The name of the variable that rows bind to in order to read their item
+	 * @return
+	 */
+	public String itemVariable() default "item";
+	
+	/**
+	 * The name of the variable that rows bind to in order to read their position
+	 * @return
+	 */
+	public String positionVariable() default "position";
+	
+	/**
+	 * The name of a public method without parameters, or of a public field, that gets the stable key of
+	 * an item, such as its id. When a new list is set on the {@link ObservableValue} that holds the items,
+	 * items with the same key are matched, so that only the rows of items that changed are bound again. 
+	 * By default, each item is its own key.
+	 * @return
+	 */
+	public String key() default "";
+	
+	/**
+	 * Layout Parameters. Can be any of "fill_parent", "wrap_content", "match_parent", or a pixel value.
+	 * @return
+	 * @see {@link android.view.ViewGroup.LayoutParams LayoutParams}
+	 */
+	public String[] params() default {"match_parent", "match_parent"};
+	
+	/**
+	 * View class that is used. Must be an {@link android.widget.AbsListView AbsListView}
+	 * @return
+	 */
+	public String viewClass() default "android.widget.ListView";
+}
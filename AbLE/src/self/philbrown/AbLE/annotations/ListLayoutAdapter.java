@@ -0,0 +1,212 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package self.philbrown.AbLE.annotations;
+
+import self.philbrown.AbLE.AbLEActivity;
+import self.philbrown.AbLE.AbLEUtil;
+import self.philbrown.AbLE.R;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.BaseAdapter;
+import android.widget.ListView;
+
+/**
+ * The adapter of a {@link ListLayout}. A row is only inflated when the list asks for a view and has none to
+ * recycle, so a list creates about as many rows as fit on screen, however many items it has. Each row keeps 
+ * the {@link ItemInflater} that inflated it under the {@code able_list_item} tag. When the row is 
+ * recycled, the variables it binds to are set to the new item and position, and its {@link Binding}s are
+ * read again directly, without inflating anything. Only the binding setters whose values changed are called,
+ * and a row that is asked to show the item it already shows is not bound at all. Binding a recycled row does 
+ * not allocate, other than what its expressions and setters allocate themselves.
+ * <p>
+ * When the items are held by an {@link ObservableValue}, each new list is compared with the current one on 
+ * a background thread, using a {@link ListDiff} over the {@link ListLayout#key() key} of each item. The list
+ * keeps showing the same first item, wherever it moved, and only the rows of changed items are bound again.
+ * @author Phil Brown
+ */
+final class ListLayoutAdapter extends BaseAdapter implements ItemSource.Target
+{
+	/** Used to inflate rows */
+	private AbLEActivity context;
+	/** The inflater of the list, which is the parent of each row */
+	private final ClassAnnotationInflater list;
+	/** The plan of the row layout class */
+	private final LayoutPlan item;
+	/** The name of the variable that holds the item of a row */
+	private final String itemVariable;
+	/** The name of the variable that holds the position of a row */
+	private final String positionVariable;
+	/** The context shared by the inflations of the rows, which do not belong to the list's inflation */
+	private final InflationContext inflation;
+	/** 
+	 * The items shown by the list. This is only changed on the main thread, so that the list is never
+	 * given a count it has not been notified of.
+	 */
+	private volatile Object items;
+	
+	/**
+	 * Constructor
+	 * @param context used to inflate rows
+	 * @param list the inflater of the list
+	 * @param layout the annotation of the list
+	 * @param source the variable that holds the items, or an {@link ObservableValue} that holds them
+	 */
+	ListLayoutAdapter(AbLEActivity context, ClassAnnotationInflater list, ListLayout layout, Object source)
+	{
+		this.context = context;
+		this.list = list;
+		this.item = LayoutPlan.of(layout.item());
+		this.itemVariable = layout.itemVariable();
+		this.positionVariable = layout.positionVariable();
+		this.inflation = new InflationContext(context, null);
+		ItemSource items = new ItemSource(source, layout.key());
+		this.items = items.read();
+		items.observe(this);
+	}
+	
+	/**
+	 * Moves the adapter to a new Activity, after the list was retained across the recreation of its Activity
+	 * @param context the new Activity
+	 */
+	void reattach(AbLEActivity context)
+	{
+		this.context = context;
+		list.reattach(context);
+		inflation.reattach(context);
+	}
+	
+	public Object getItems()
+	{
+		return items;
+	}
+	
+	public void setItems(Object shown, Object items, ListDiff diff)
+	{
+		View view = list.view;
+		if (diff == null || diff.isReset() || this.items != shown || !(view instanceof AbsListView))
+		{
+			this.items = items;
+			notifyDataSetChanged();
+			return;
+		}
+		AbsListView listView = (AbsListView) view;
+		Anchor anchor = new Anchor(listView.getFirstVisiblePosition());
+		View first = listView.getChildAt(0);
+		int top = first == null ? 0 : first.getTop();
+		diff.dispatch(anchor);
+		
+		this.items = items;
+		notifyDataSetChanged();
+		if (anchor.position != listView.getFirstVisiblePosition() && anchor.position < getCount())
+		{
+			if (listView instanceof ListView)
+				((ListView) listView).setSelectionFromTop(anchor.position, top);
+			else
+				listView.setSelection(anchor.position);
+		}
+	}
+	
+	public int getCount()
+	{
+		return ItemSource.size(items);
+	}
+
+	public Object getItem(int position)
+	{
+		return ItemSource.get(items, position);
+	}
+
+	public long getItemId(int position)
+	{
+		return position;
+	}
+
+	public View getView(int position, View convertView, ViewGroup parent)
+	{
+		Object value = getItem(position);
+		ItemInflater row = convertView == null ? null : (ItemInflater) convertView.getTag(R.id.able_list_item);
+		if (row != null)
+		{
+			row.bind(value, position);
+			return convertView;
+		}
+		
+		row = new ItemInflater(context, list, item, itemVariable, positionVariable);
+		row.inflation = inflation;
+		row.set(value, position);
+		View v = row.inflate(item.getLayout());
+		if (v == null)
+		{
+			AbLEUtil.err("Could not inflate list row %s", item.getLayout().getName());
+			return new View(context.getViewContext());
+		}
+		v.setTag(R.id.able_list_item, row);
+		return v;
+	}
+	
+	/**
+	 * Follows the position of the first visible item through the operations of a diff
+	 */
+	private static final class Anchor implements ListDiff.Receiver
+	{
+		/** The position of the item */
+		int position;
+		
+		/**
+		 * Constructor
+		 * @param position the position of the item in the old list
+		 */
+		Anchor(int position)
+		{
+			this.position = position;
+		}
+
+		public void onInserted(int position, int count)
+		{
+			if (position <= this.position)
+				this.position += count;
+		}
+
+		public void onRemoved(int position, int count)
+		{
+			if (position + count <= this.position)
+				this.position -= count;
+			else if (position <= this.position)
+				this.position = position;//the item was removed. Keep the item that replaces it.
+		}
+
+		public void onMoved(int from, int to)
+		{
+			if (from == position)
+			{
+				position = to;
+				return;
+			}
+			if (from < position)
+				position--;
+			if (to <= position)
+				position++;
+		}
+
+		public void onChanged(int position)
+		{
+			//the item is still there
+		}
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package self.philbrown.AbLE.annotations;
+
+import self.philbrown.AbLE.AbLEActivity;
+import self.philbrown.AbLE.AbLEUtil;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+
+/**
+ * Inflates a recycling list from a class that declares a {@link ListLayout} annotation. The list view is
+ * created and its setters are called like those of a {@link Layout}, then it is given a {@link ListLayoutAdapter}
+ * that inflates the rows.
+ * @author Phil Brown
+ */
+public class ListLayoutInflater extends ClassAnnotationInflater 
+{
+	/** The name of the class of the list view */
+	private String viewClass;
+	
+	/**
+	 * Constructor
+	 * @param context used to create views and access resources. This is automatically saved
+	 * to the {@link ClassAnnotationInflater#context context} variable in the super class.
+	 * @param parent the parent {@code ClassAnnotationInflater} in this view hierarchy
+	 */
+	public ListLayoutInflater(AbLEActivity context, ClassAnnotationInflater parent) 
+	{
+		super(context, parent);
+	}
+
+	@Override
+	public View inflate(Class<?> layout) 
+	{
+		ListLayout annotation = layout.getAnnotation(ListLayout.class);
+		
+		createView(layout, annotation);
+		if (view == null)
+			return null;
+		
+		handleFields(layout);
+		handleInstanceMethods(viewClass);
+		handleBindings();
+		performSetters(viewClass);
+		//nested classes are not children of the list. The rows are inflated by the adapter.
+		setAdapter(annotation);
+		onLayoutComplete(layout, view);
+		
+		return view;
+	}
+	
+	/**
+	 * Creates the list view based on the attributes in the given annotation
+	 * @param _layout the layout class
+	 * @param layout
+	 */
+	private void createView(Class<?> _layout, ListLayout layout)
+	{
+		viewClass = layout.viewClass();
+		try
+		{
+			LayoutPlan plan = getPlan(_layout);
+			ViewPool pool = context.getViewPool();
+			view = pool.obtain(plan.getTargetClass());
+			if (view == null)
+			{
+				view = (View) plan.newTarget(context.getViewContext());
+				pool.recordDefaults(view, plan);
+			}
+		} catch (Throwable t)
+		{
+			if (requireMainThread(getPlan(_layout)))
+				return;
+			AbLEUtil.err("Class %s could not be created!", viewClass);
+			return;
+		}
+		
+		if (!(view instanceof AbsListView))
+		{
+			AbLEUtil.err("Class %s is not a list view!", viewClass);
+			view = null;
+			return;
+		}
+		
+		String[] params = layout.params();
+		view.setLayoutParams(new ViewGroup.LayoutParams(LayoutInflater.parseDimension(params[0]), 
+				LayoutInflater.parseDimension(params[1])));
+	}
+	
+	/**
+	 * Gives the list view an adapter that inflates the rows from the item class
+	 * @param layout
+	 */
+	private void setAdapter(ListLayout layout)
+	{
+		Object source = findVariable(layout.source());
+		if (source == null)
+			AbLEUtil.warn("No items found for the list. Declare a variable named %s.", layout.source());
+		ListLayoutAdapter adapter = new ListLayoutAdapter(context, this, layout, source);
+		((AbsListView) view).setAdapter(adapter);
+	}
+}
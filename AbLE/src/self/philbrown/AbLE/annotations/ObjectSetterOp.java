@@ -0,0 +1,54 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package self.philbrown.AbLE.annotations;
+
+import java.lang.reflect.Field;
+
+/**
+ * Calls a single-parameter setter, whose parameter type is the type of the field. This is used
+ * for fields that do not declare an annotation, and for {@link Binding}s, when the type of the field
+ * does not have a primitive-specialized setter operation.
+ * @see FieldAnnotationInflater#newSetter(Field)
+ * @author Phil Brown
+ */
+public class ObjectSetterOp extends SetterOp
+{
+	/** The parameter type of the setter */
+	private final Class<?>[] types;
+
+	/**
+	 * Constructor
+	 * @param field the static field that contains the value to set
+	 */
+	public ObjectSetterOp(Field field)
+	{
+		super(field);
+		types = new Class<?>[]{field.getType()};
+	}
+
+	@Override
+	public void apply(Object target)
+	{
+		try
+		{
+			getInvoker(target, types).invoke(target, field.get(null));
+		} catch (Throwable t)
+		{
+			logError(target, types);
+		}
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package self.philbrown.AbLE.annotations;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A value that notifies its listeners when it changes. A {@link Variable} that holds an 
+ * {@code ObservableValue} can be observed by {@link Binding}s:
+ * <pre>
+ * {@code @Variable}
+ * public static ObservableValue<String> title = new ObservableValue<String>("Loading...");
+ * 
+ * public static class Header extends AbstractAnnotation
+ * {
+ *     {@code @Binding(observedValue="title")}
+ *     public static String text;
+ * }
+ * </pre>
+ * The bound field is set to the current value when the layout is inflated. After each later call to 
+ * {@link #set(Object)} with a different value, the field is updated and its setter is called again
+ * on each view that is bound to this value, without inflating the layout again.
+ * <p>
+ * Values may be set on any thread. Listeners are notified on the thread that calls {@link #set(Object)},
+ * but bindings only queue the change: the {@link BindingUpdateScheduler} applies the latest value of 
+ * each binding on the main thread.
+ * @author Phil Brown
+ * @param <T> the type of the value
+ */
+public class ObservableValue<T>
+{
+	/** The current value */
+	private volatile T value;
+	/** Notified when the value changes */
+	private final CopyOnWriteArrayList<OnChangeListener<? super T>> listeners = new CopyOnWriteArrayList<OnChangeListener<? super T>>();
+	
+	/**
+	 * Constructor. The initial value is {@code null}.
+	 */
+	public ObservableValue()
+	{
+	}
+	
+	/**
+	 * Constructor
+	 * @param value the initial value
+	 */
+	public ObservableValue(T value)
+	{
+		this.value = value;
+	}
+	
+	/**
+	 * @return the current value
+	 */
+	public T get()
+	{
+		return value;
+	}
+	
+	/**
+	 * Sets the value. If it is not equal to the current value, the listeners are notified.
+	 * @param value the new value
+	 */
+	public void set(T value)
+	{
+		T old = this.value;
+		this.value = value;
+		if (old == value || (old != null && old.equals(value)))
+			return;
+		for (OnChangeListener<? super T> listener : listeners)
+		{
+			listener.onChanged(this, value);
+		}
+	}
+	
+	/**
+	 * Sets the value without notifying the listeners. This is used for values that are read again
+	 * explicitly, such as the item bound to a recycled list row.
+	 * @param value the new value
+	 */
+	void setQuietly(T value)
+	{
+		this.value = value;
+	}
+
+	/**
+	 * Adds a listener that is notified when the value changes
+	 * @param listener the listener
+	 */
+	public void addOnChangeListener(OnChangeListener<? super T> listener)
+	{
+		listeners.addIfAbsent(listener);
+	}
+	
+	/**
+	 * Removes a listener. This may be called while the listeners are being notified.
+	 * @param listener the listener
+	 */
+	public void removeOnChangeListener(OnChangeListener<? super T> listener)
+	{
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * @return the number of listeners, including bindings whose views have not been collected yet
+	 */
+	public int getListenerCount()
+	{
+		return listeners.size();
+	}
+	
+	@Override
+	public String toString()
+	{
+		return String.valueOf(value);
+	}
+	
+	/**
+	 * Notified when an {@link ObservableValue} changes
+	 * @param <T> the type of the value
+	 */
+	public interface OnChangeListener<T>
+	{
+		/**
+		 * Called after the value changed
+		 * @param source the value that changed
+		 * @param value the new value
+		 */
+		public void onChanged(ObservableValue<? extends T> source, T value);
+	}
+}
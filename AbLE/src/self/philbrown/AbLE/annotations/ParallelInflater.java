@@ -0,0 +1,252 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package self.philbrown.AbLE.annotations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import android.view.View;
+
+/**
+ * Inflates independent sibling subtrees in parallel. When enabled, the children of a layout whose
+ * subtrees contain at least {@link #getThreshold()} layout classes are built as detached views on 
+ * a pool of worker threads, while the smaller children are built on the calling thread. The views
+ * are then added to their parent in declaration order, on the thread that inflates the parent.
+ * <p>
+ * The thread that waits for a subtree runs it itself if no worker has started it yet, so nested 
+ * parallel inflations cannot starve the pool. Sibling layout classes must be independent of each
+ * other: their static initializers may run at the same time, on different threads. Subtrees are only
+ * inflated in parallel on the background thread of an
+ * {@link AnnotatedLayoutInflater#inflateAsync(self.philbrown.AbLE.AbLEActivity, Class, InflationCallback) asynchronous}
+ * inflation, which detects views whose constructors need a {@code Looper} and moves them to the main
+ * thread. Other inflations build their children sequentially, so that such views are not lost on a 
+ * worker thread. Parallel inflation is disabled by default.
+ * @author Phil Brown
+ */
+public final class ParallelInflater
+{
+	/** {@code true} if sibling subtrees are inflated in parallel */
+	private static volatile boolean enabled = false;
+	/** The minimum number of layout classes in a subtree for it to be inflated on a worker thread */
+	private static volatile int threshold = 16;
+	/** The number of worker threads */
+	private static int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+	/** The worker threads, which are created when they are first needed */
+	private static ThreadPoolExecutor executor;
+	
+	/**
+	 * Constructor. Classes should only use the static methods that this class provides.
+	 */
+	private ParallelInflater()
+	{
+		//cannot instantiate this class
+	}
+	
+	/**
+	 * Enables or disables parallel inflation
+	 * @param enabled {@code true} to inflate sibling subtrees in parallel
+	 */
+	public static void setEnabled(boolean enabled)
+	{
+		ParallelInflater.enabled = enabled;
+	}
+	
+	/**
+	 * @return {@code true} if sibling subtrees are inflated in parallel
+	 */
+	public static boolean isEnabled()
+	{
+		return enabled;
+	}
+	
+	/**
+	 * Sets the minimum number of layout classes a subtree must contain for it to be inflated on a
+	 * worker thread. Smaller subtrees are inflated sequentially, since handing them off costs more than
+	 * it saves.
+	 * @param threshold the minimum subtree size. Must be at least 1.
+	 * @see LayoutPlan#getSubtreeSize()
+	 */
+	public static void setThreshold(int threshold)
+	{
+		if (threshold < 1)
+			throw new IllegalArgumentException("Threshold must be at least 1");
+		ParallelInflater.threshold = threshold;
+	}
+	
+	/**
+	 * @return the minimum number of layout classes a subtree must contain for it to be inflated on a 
+	 * worker thread.
+	 */
+	public static int getThreshold()
+	{
+		return threshold;
+	}
+	
+	/**
+	 * Sets the number of worker threads. By default, this is one less than the number of processors,
+	 * since the calling thread also inflates subtrees.
+	 * @param threads the number of worker threads. Must be at least 1.
+	 */
+	public static synchronized void setParallelism(int threads)
+	{
+		if (threads < 1)
+			throw new IllegalArgumentException("Parallelism must be at least 1");
+		parallelism = threads;
+		if (executor != null)
+		{
+			executor.setCorePoolSize(threads);
+			executor.setMaximumPoolSize(threads);
+		}
+	}
+	
+	/**
+	 * @return the number of worker threads
+	 */
+	public static synchronized int getParallelism()
+	{
+		return parallelism;
+	}
+	
+	/**
+	 * @return the worker threads
+	 */
+	private static synchronized ThreadPoolExecutor getExecutor()
+	{
+		if (executor == null)
+		{
+			executor = new ThreadPoolExecutor(parallelism, parallelism, 30, TimeUnit.SECONDS, 
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				
+				/** Used to name the threads */
+				private int count = 0;
+				
+				public synchronized Thread newThread(Runnable r)
+				{
+					Thread t = new Thread(r, "AbLE-parallel-" + count++);
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			executor.allowCoreThreadTimeOut(true);
+		}
+		return executor;
+	}
+	
+	/**
+	 * @param children the plans of the children of a layout
+	 * @param task the asynchronous inflation that the layout is part of, or {@code null}
+	 * @return {@code true} if the given children should be inflated in parallel
+	 */
+	static boolean shouldParallelize(List<LayoutPlan> children, InflationTask task)
+	{
+		if (!enabled || children.size() < 2)
+			return false;
+		//only an asynchronous inflation moves the views that fail on a worker thread to the main thread
+		if (task == null || !task.isBackgroundThread())
+			return false;
+		int threshold = ParallelInflater.threshold;
+		for (int i = 0; i < children.size(); i++)
+		{
+			if (children.get(i).getSubtreeSize() >= threshold)
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Inflates the given children of a layout. The subtrees that reach the threshold are inflated on
+	 * worker threads, while the others are inflated on the calling thread.
+	 * @param parent the inflater of the layout
+	 * @param children the plans of the children
+	 * @return the detached views, in declaration order. Elements are {@code null} for children that did
+	 * not create a view, and for children that must be inflated on the main thread of an asynchronous
+	 * inflation.
+	 */
+	static View[] inflate(final ClassAnnotationInflater parent, List<LayoutPlan> children)
+	{
+		int size = children.size();
+		int threshold = ParallelInflater.threshold;
+		InflationTask task = parent.getTask();
+		View[] views = new View[size];
+		List<FutureTask<View>> futures = new ArrayList<FutureTask<View>>(size);
+		
+		//fork
+		for (int i = 0; i < size; i++)
+		{
+			final LayoutPlan child = children.get(i);
+			if (child.getSubtreeSize() >= threshold && !child.requiresMainThread())
+			{
+				FutureTask<View> future = new FutureTask<View>(new Callable<View>() {
+
+					public View call()
+					{
+						return AnnotatedLayoutInflater.inflate(parent.context, child, parent);
+					}
+				});
+				futures.add(future);
+				getExecutor().execute(future);
+			}
+			else
+			{
+				futures.add(null);
+			}
+		}
+		
+		//inflate the small subtrees while the workers run
+		for (int i = 0; i < size; i++)
+		{
+			if (task != null && task.isCancelled())
+				break;
+			LayoutPlan child = children.get(i);
+			if (futures.get(i) == null && !(task != null && child.requiresMainThread() && task.isBackgroundThread()))
+				views[i] = AnnotatedLayoutInflater.inflate(parent.context, child, parent);
+		}
+		
+		//join
+		for (int i = 0; i < size; i++)
+		{
+			FutureTask<View> future = futures.get(i);
+			if (future == null)
+				continue;
+			if (task != null && task.isCancelled())
+			{
+				future.cancel(false);
+				continue;
+			}
+			//runs the subtree on this thread if no worker has started it yet
+			future.run();
+			try
+			{
+				views[i] = future.get();
+			} catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e)
+			{
+				e.printStackTrace();
+			}
+		}
+		return views;
+	}
+}
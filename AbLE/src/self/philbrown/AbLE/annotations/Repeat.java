@@ -0,0 +1,77 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package self.philbrown.AbLE.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Stamps a nested layout class once for each item of a {@link Variable}, instead of once. The class is still
+ * declared with its layout annotation (such as {@link Layout}), and all of the copies are inflated from its 
+ * single {@link LayoutPlan}. Each copy binds to its own item and index through its {@link Binding}s:
+ * <pre>
+ * &#64;Variable
+ * public static String[] badges = {"new", "sale", "popular"};
+ * 
+ * &#64;Repeat(source = "badges")
+ * &#64;Layout(viewClass = "android.widget.TextView")
+ * public static class Badge
+ * {
+ *     &#64;Binding(observedValue = "item")
+ *     public static String text;
+ * }
+ * </pre>
+ * The items are read from the variable named by {@link #source()}, which may be an Array, a 
+ * {@link java.util.Collection Collection}, or an {@link ObservableValue} that holds either. When a new value
+ * is set on an {@link ObservableValue}, it is compared with the current items (see {@link #key()}), and 
+ * only the copies of the items that were inserted, removed, moved or changed are updated.
+ * @author Phil Brown
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Repeat 
+{
+	/**
+	 * The name of the {@link Variable} that holds the items. The variable may be declared in the enclosing
+	 * class or in any of its parent classes.
+	 * @return
+	 */
+	public String source();
+	
+	/**
+	 * The name of the variable that each copy binds to in order to read its item
+	 * @return
+	 */
+	public String itemVariable() default "item";
+	
+	/**
+	 * The name of the variable that each copy binds to in order to read its index
+	 * @return
+	 */
+	public String indexVariable() default "index";
+	
+	/**
+	 * The name of a public method without parameters, or of a public field, that gets the stable key of
+	 * an item. By default, each item is its own key.
+	 * @return
+	 * @see ListLayout#key()
+	 */
+	public String key() default "";
+}
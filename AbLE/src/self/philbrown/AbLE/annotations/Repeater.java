@@ -0,0 +1,232 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package self.philbrown.AbLE.annotations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import self.philbrown.AbLE.AbLEActivity;
+import self.philbrown.AbLE.AbLEUtil;
+import self.philbrown.AbLE.R;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Adds one copy of a {@link Repeat}ed layout class to its parent view for each item of its source. Every copy
+ * is inflated from the same {@link LayoutPlan} by an {@link ItemInflater}, so the cost of the class does not 
+ * depend on the number of copies. If the source is an {@link ObservableValue}, the operations of each 
+ * {@link ListDiff} are applied to the parent view: copies are only inflated for inserted items, and removed
+ * copies are released to the {@link ViewPool}.
+ * @author Phil Brown
+ */
+final class Repeater implements ItemSource.Target, ListDiff.Receiver
+{
+	/** The inflater of the parent view */
+	private final ClassAnnotationInflater parent;
+	/** The plan of the repeated class */
+	private final LayoutPlan plan;
+	/** The parent view */
+	private final ViewGroup group;
+	/** The view that was added to {@link #group} before the copies, or {@code null} if they are first */
+	private final View before;
+	/** The source of the items */
+	private final ItemSource source;
+	/** The inflaters of the copies, in order */
+	private final List<ItemInflater> copies = new ArrayList<ItemInflater>();
+	/** The items shown by the copies */
+	private volatile Object items;
+	/** The new items, while a diff is applied */
+	private Object next;
+	/** 
+	 * The context of the copies that are inflated when the items change, after the parent's inflation has
+	 * finished, or {@code null} until then
+	 */
+	private InflationContext inflation;
+	
+	/**
+	 * Constructor
+	 * @param parent the inflater of the parent view
+	 * @param plan the plan of the repeated class
+	 * @param group the parent view
+	 * @param source the source of the items
+	 */
+	private Repeater(ClassAnnotationInflater parent, LayoutPlan plan, ViewGroup group, ItemSource source)
+	{
+		this.parent = parent;
+		this.plan = plan;
+		this.group = group;
+		this.before = group.getChildCount() == 0 ? null : group.getChildAt(group.getChildCount() - 1);
+		this.source = source;
+	}
+	
+	/**
+	 * Adds a copy of the given repeated class to the given view for each of its items
+	 * @param parent the inflater of the parent view, in whose scope the source is found
+	 * @param group the parent view
+	 * @param plan the plan of the repeated class
+	 * @return the number of copies
+	 */
+	static int inflate(ClassAnnotationInflater parent, ViewGroup group, LayoutPlan plan)
+	{
+		Repeat repeat = plan.getRepeat();
+		Object variable = parent.findVariable(repeat.source());
+		if (variable == null)
+			AbLEUtil.warn("No items found for %s. Declare a variable named %s.", plan.getLayout().getName(), repeat.source());
+		Repeater repeater = new Repeater(parent, plan, group, new ItemSource(variable, repeat.key()));
+		Object items = repeater.source.read();
+		repeater.items = items;
+		int count = ItemSource.size(items);
+		for (int i = 0; i < count; i++)
+			repeater.insert(i, ItemSource.get(items, i));
+		
+		if (variable instanceof ObservableValue)
+		{
+			//the parent view keeps the repeater, which the source only references weakly
+			@SuppressWarnings("unchecked")
+			List<Repeater> repeaters = (List<Repeater>) group.getTag(R.id.able_repeat);
+			if (repeaters == null)
+			{
+				repeaters = new ArrayList<Repeater>(1);
+				group.setTag(R.id.able_repeat, repeaters);
+			}
+			repeaters.add(repeater);
+			repeater.source.observe(repeater);
+		}
+		return count;
+	}
+	
+	/**
+	 * Inflates a copy for an item
+	 * @param position the position of the item
+	 * @param value the item
+	 */
+	private void insert(int position, Object value)
+	{
+		Repeat repeat = plan.getRepeat();
+		ItemInflater copy = new ItemInflater(parent.context, parent, plan, repeat.itemVariable(), repeat.indexVariable());
+		if (inflation != null)
+			copy.inflation = inflation;
+		copy.set(value, position);
+		View v = copy.inflate(plan.getLayout());
+		if (parent.record != null)
+			parent.record.addChild(copy.getRecord());
+		int index = getViewIndex(position);
+		copies.add(position, copy);
+		if (v != null)
+			group.addView(v, index);
+	}
+	
+	/**
+	 * @param position the position of a copy
+	 * @return the index in {@link #group} of the view of the copy at the given position
+	 */
+	private int getViewIndex(int position)
+	{
+		int index = before == null ? 0 : group.indexOfChild(before) + 1;
+		for (int i = 0; i < position; i++)
+		{
+			if (copies.get(i).getView() != null)
+				index++;
+		}
+		return index;
+	}
+	
+	/**
+	 * Removes the copy at the given position, and releases its views
+	 * @param position the position of the copy
+	 */
+	private void remove(int position)
+	{
+		ItemInflater copy = copies.remove(position);
+		if (parent.record != null)
+			parent.record.removeChild(copy.getRecord());
+		parent.context.getViewPool().release(copy.getRecord());
+	}
+	
+	/**
+	 * Moves the inflaters of the copies to a new Activity, after the layout was retained across the 
+	 * recreation of its Activity
+	 * @param context the new Activity
+	 */
+	void reattach(AbLEActivity context)
+	{
+		parent.reattach(context);
+		for (int i = 0; i < copies.size(); i++)
+			copies.get(i).reattach(context);
+		if (inflation != null)
+			inflation.reattach(context);
+	}
+	
+	public Object getItems()
+	{
+		return items;
+	}
+	
+	public void setItems(Object shown, Object items, ListDiff diff)
+	{
+		if (inflation == null)
+			inflation = parent.inflation == null ? new InflationContext(parent.context, null) : parent.inflation.continuation();
+		if (diff == null || diff.isReset() || this.items != shown)
+		{
+			while (!copies.isEmpty())
+				remove(copies.size() - 1);
+			int count = ItemSource.size(items);
+			for (int i = 0; i < count; i++)
+				insert(i, ItemSource.get(items, i));
+		}
+		else
+		{
+			next = items;
+			diff.dispatch(this);
+			next = null;
+		}
+		this.items = items;
+		//bind the items that changed, or whose index changed
+		for (int i = 0; i < copies.size(); i++)
+			copies.get(i).bind(ItemSource.get(items, i), i);
+	}
+
+	public void onInserted(int position, int count)
+	{
+		for (int i = position; i < position + count; i++)
+			insert(i, ItemSource.get(next, i));
+	}
+
+	public void onRemoved(int position, int count)
+	{
+		for (int i = 0; i < count; i++)
+			remove(position);
+	}
+
+	public void onMoved(int from, int to)
+	{
+		ItemInflater copy = copies.remove(from);
+		copies.add(to, copy);
+		View v = copy.getView();
+		if (v != null)
+		{
+			group.removeView(v);
+			group.addView(v, getViewIndex(to));
+		}
+	}
+
+	public void onChanged(int position)
+	{
+		//changed copies are bound once all operations are applied
+	}
+}
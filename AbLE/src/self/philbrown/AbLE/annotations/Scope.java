@@ -0,0 +1,281 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package self.philbrown.AbLE.annotations;
+
+import java.util.Map;
+
+/**
+ * The {@link Variable}s that are visible to a layout class: its own, and those of the classes that
+ * contain it. A scope is immutable. A child scope is created from its parent's by adding the child's
+ * variables, which shares the structure of the parent scope instead of copying it, so each inflater
+ * can have its own scope cheaply, and a variable is found with a single hash lookup, however deep the
+ * layout is.
+ * <p>
+ * The scope is stored as a hash array mapped trie: each level of the trie uses five bits of the hash of 
+ * the variable name, and only the nodes along the path of an added variable are copied.
+ * @author Phil Brown
+ */
+public final class Scope
+{
+	/** The scope that contains no variables */
+	public static final Scope EMPTY = new Scope(null, 0);
+	
+	/** The root of the trie, or {@code null} if the scope is empty */
+	private final Node root;
+	/** The number of variables */
+	private final int size;
+	
+	/**
+	 * Constructor
+	 * @param root the root of the trie
+	 * @param size the number of variables
+	 */
+	private Scope(Node root, int size)
+	{
+		this.root = root;
+		this.size = size;
+	}
+	
+	/**
+	 * Gets the value of the variable with the given name
+	 * @param name the name of the variable
+	 * @return the value, or {@code null} if the variable is not in this scope
+	 */
+	public Object get(String name)
+	{
+		if (root == null)
+			return null;
+		return root.find(name, name.hashCode(), 0);
+	}
+	
+	/**
+	 * @return the number of variables in this scope
+	 */
+	public int size()
+	{
+		return size;
+	}
+	
+	/**
+	 * Creates a scope that contains the variables of this scope and the given variable, which hides any
+	 * variable of this scope with the same name. This scope is not changed.
+	 * @param name the name of the variable
+	 * @param value the value of the variable. Must not be {@code null}.
+	 * @return the new scope
+	 */
+	public Scope plus(String name, Object value)
+	{
+		boolean[] added = new boolean[1];
+		Node node = (root == null ? BitmapNode.EMPTY : root).assoc(name.intern(), name.hashCode(), value, 0, added);
+		if (node == root)
+			return this;
+		return new Scope(node, added[0] ? size + 1 : size);
+	}
+	
+	/**
+	 * Creates a scope that contains the variables of this scope and the given variables. Variables whose
+	 * values are {@code null} are skipped, so that the variable of this scope with the same name stays visible.
+	 * @param variables the variables, by name
+	 * @return the new scope, or this scope if no variables were added
+	 */
+	public Scope plusAll(Map<String, Object> variables)
+	{
+		if (variables == null || variables.isEmpty())
+			return this;
+		Scope scope = this;
+		for (Map.Entry<String, Object> variable : variables.entrySet())
+		{
+			if (variable.getValue() != null)
+				scope = scope.plus(variable.getKey(), variable.getValue());
+		}
+		return scope;
+	}
+	
+	/**
+	 * A node of the trie
+	 */
+	private static abstract class Node
+	{
+		/**
+		 * @return the value of the given key, or {@code null}
+		 */
+		abstract Object find(String key, int hash, int shift);
+		
+		/**
+		 * @return a node that maps the given key to the given value, or this node if it already does.
+		 * {@code added[0]} is set to {@code true} if the key was not in this node.
+		 */
+		abstract Node assoc(String key, int hash, Object value, int shift, boolean[] added);
+	}
+	
+	/**
+	 * A node whose entries are indexed by five bits of their hash. Each entry is either a key and its value,
+	 * or a {@code null} key and a child node.
+	 */
+	private static final class BitmapNode extends Node
+	{
+		/** The node that has no entries */
+		static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+		
+		/** The positions that have an entry */
+		final int bitmap;
+		/** Key and value pairs, in the order of their positions */
+		final Object[] array;
+		
+		BitmapNode(int bitmap, Object[] array)
+		{
+			this.bitmap = bitmap;
+			this.array = array;
+		}
+		
+		@Override
+		Object find(String key, int hash, int shift)
+		{
+			int bit = 1 << ((hash >>> shift) & 31);
+			if ((bitmap & bit) == 0)
+				return null;
+			int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+			Object k = array[index];
+			if (k == null)
+				return ((Node) array[index + 1]).find(key, hash, shift + 5);
+			if (k == key || key.equals(k))
+				return array[index + 1];
+			return null;
+		}
+		
+		@Override
+		Node assoc(String key, int hash, Object value, int shift, boolean[] added)
+		{
+			int bit = 1 << ((hash >>> shift) & 31);
+			int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+			if ((bitmap & bit) == 0)
+			{
+				Object[] copy = new Object[array.length + 2];
+				System.arraycopy(array, 0, copy, 0, index);
+				copy[index] = key;
+				copy[index + 1] = value;
+				System.arraycopy(array, index, copy, index + 2, array.length - index);
+				added[0] = true;
+				return new BitmapNode(bitmap | bit, copy);
+			}
+			Object k = array[index];
+			Object v = array[index + 1];
+			if (k == null)
+			{
+				Node child = ((Node) v).assoc(key, hash, value, shift + 5, added);
+				if (child == v)
+					return this;
+				return with(index, null, child);
+			}
+			if (k == key || key.equals(k))
+			{
+				if (v == value)
+					return this;
+				return with(index, k, value);
+			}
+			added[0] = true;
+			return with(index, null, createNode((String) k, v, key, hash, value, shift + 5));
+		}
+		
+		/**
+		 * @return a copy of this node, with the given entry replaced
+		 */
+		private BitmapNode with(int index, Object key, Object value)
+		{
+			Object[] copy = array.clone();
+			copy[index] = key;
+			copy[index + 1] = value;
+			return new BitmapNode(bitmap, copy);
+		}
+		
+		/**
+		 * @return a node that contains two keys that share a position at the previous level
+		 */
+		private static Node createNode(String key1, Object value1, String key2, int hash2, Object value2, int shift)
+		{
+			int hash1 = key1.hashCode();
+			if (hash1 == hash2)
+				return new CollisionNode(hash1, new String[] {key1, key2}, new Object[] {value1, value2});
+			boolean[] added = new boolean[1];
+			return EMPTY.assoc(key1, hash1, value1, shift, added).assoc(key2, hash2, value2, shift, added);
+		}
+	}
+	
+	/**
+	 * A node whose keys all have the same hash
+	 */
+	private static final class CollisionNode extends Node
+	{
+		/** The hash of every key */
+		final int hash;
+		/** The keys */
+		final String[] keys;
+		/** The values. Matches {@link #keys}. */
+		final Object[] values;
+		
+		CollisionNode(int hash, String[] keys, Object[] values)
+		{
+			this.hash = hash;
+			this.keys = keys;
+			this.values = values;
+		}
+		
+		@Override
+		Object find(String key, int hash, int shift)
+		{
+			if (hash != this.hash)
+				return null;
+			for (int i = 0; i < keys.length; i++)
+			{
+				if (keys[i] == key || key.equals(keys[i]))
+					return values[i];
+			}
+			return null;
+		}
+		
+		@Override
+		Node assoc(String key, int hash, Object value, int shift, boolean[] added)
+		{
+			if (hash != this.hash)
+			{
+				//nest this node in a bitmap node, so that the key can be placed next to it
+				Node node = new BitmapNode(1 << ((this.hash >>> shift) & 31), new Object[] {null, this});
+				return node.assoc(key, hash, value, shift, added);
+			}
+			for (int i = 0; i < keys.length; i++)
+			{
+				if (keys[i] == key || key.equals(keys[i]))
+				{
+					if (values[i] == value)
+						return this;
+					Object[] copy = values.clone();
+					copy[i] = value;
+					return new CollisionNode(hash, keys, copy);
+				}
+			}
+			String[] keyCopy = new String[keys.length + 1];
+			Object[] valueCopy = new Object[values.length + 1];
+			System.arraycopy(keys, 0, keyCopy, 0, keys.length);
+			System.arraycopy(values, 0, valueCopy, 0, values.length);
+			keyCopy[keys.length] = key;
+			valueCopy[values.length] = value;
+			added[0] = true;
+			return new CollisionNode(hash, keyCopy, valueCopy);
+		}
+	}
+}
@@ -30,6 +30,14 @@ import java.lang.annotation.Target;
  * {@code @Setter}
  * public static Object tags = new Object[]{"tag0", "tag1"};
  * </pre>
+ * Setters whose parameters are all {@code int}s can be declared as an {@code int[]}. Generated inflaters 
+ * call these setters directly, as does the reflection-based inflater for {@code setPadding}. Other setters
+ * are called using reflection, which boxes the values:<br>
+ * 
+ * <pre>
+ * {@code @Setter}
+ * public static int[] padding = {px, px, px, px};
+ * </pre>
  * @author Phil Brown
  *
  */
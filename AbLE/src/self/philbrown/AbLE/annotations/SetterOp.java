@@ -0,0 +1,92 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package self.philbrown.AbLE.annotations;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+
+import self.philbrown.AbLE.AbLEUtil;
+
+/**
+ * A setter method that is called on the Object created for a layout class, using the value of one
+ * of the layout's static fields.
+ * @author Phil Brown
+ */
+public abstract class SetterOp extends FieldOp
+{
+	/**
+	 * Constructor
+	 * @param field the static field that contains the value(s) to set
+	 * @param name the name of the setter method
+	 */
+	protected SetterOp(Field field, String name)
+	{
+		super(field, name);
+	}
+
+	/**
+	 * Constructor. The name of the setter method is "set", followed by the capitalized name of the field.
+	 * @param field the static field that contains the value(s) to set
+	 */
+	protected SetterOp(Field field)
+	{
+		this(field, AbLEUtil.buildString("set", AnnotatedLayoutInflater.capitalize(field.getName())));
+	}
+
+	/**
+	 * Reads the current value of {@link #field} and passes it to the setter method of the given target.
+	 * Errors are logged.
+	 * @param target the Object on which the setter is called
+	 */
+	@Override
+	public abstract void apply(Object target);
+	
+	/**
+	 * Reads the current value of {@link #field}. Arrays are copied, so that changes made to their elements
+	 * after the value was applied can be detected by {@link #isSame(Object, Object)}.
+	 * @return the value of the field
+	 * @throws IllegalAccessException if the field cannot be read
+	 */
+	public Object snapshot() throws IllegalAccessException
+	{
+		Object value = field.get(null);
+		if (value instanceof Object[])
+			return ((Object[]) value).clone();
+		if (value instanceof int[])
+			return ((int[]) value).clone();
+		return value;
+	}
+	
+	/**
+	 * Compares two values returned by {@link #snapshot()}
+	 * @param last the value that was applied
+	 * @param current the current value
+	 * @return {@code true} if the setter would not change anything by being called with the current value
+	 */
+	public static boolean isSame(Object last, Object current)
+	{
+		if (last == current)
+			return true;
+		if (last == null || current == null)
+			return false;
+		if (last instanceof Object[] && current instanceof Object[])
+			return Arrays.deepEquals((Object[]) last, (Object[]) current);
+		if (last instanceof int[] && current instanceof int[])
+			return Arrays.equals((int[]) last, (int[]) current);
+		return last.equals(current);
+	}
+}
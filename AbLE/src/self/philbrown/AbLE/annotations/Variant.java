@@ -0,0 +1,83 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package self.philbrown.AbLE.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares a nested layout class as an alternative of its enclosing layout class for some device 
+ * configurations, instead of a child view. When the enclosing class is inflated, the most specific variant 
+ * that matches the current configuration is inflated in its place; if none matches, the enclosing class itself
+ * is used. This replaces branching on {@link self.philbrown.AbLE.AbLEUtil#isTablet(android.content.Context)} in 
+ * static blocks:
+ * <pre>
+ * &#64;Layout(viewClass = "android.widget.LinearLayout")
+ * public class Contacts
+ * {
+ *     public static int orientation = LinearLayout.VERTICAL;
+ *     ...
+ *     
+ *     &#64;Variant(smallestWidth = 600)
+ *     &#64;Layout(viewClass = "android.widget.LinearLayout")
+ *     public static class Tablet
+ *     {
+ *         public static int orientation = LinearLayout.HORIZONTAL;
+ *         ...
+ *     }
+ * }
+ * </pre>
+ * A variant is a complete layout class: it declares its own fields, variables and children. The 
+ * {@link LayoutPlan} of each variant is resolved when the plan of the enclosing class is built, and the 
+ * variant chosen for each configuration is cached, so inflating in another configuration does not introspect
+ * any class. Variants are ranked like Android resource qualifiers: a larger {@link #smallestWidth()} first, 
+ * then a variant that requires an {@link #orientation()}, then a larger {@link #density()}.
+ * <p>
+ * If the Activity handles its own configuration changes ({@code android:configChanges} in the manifest), 
+ * {@link self.philbrown.AbLE.AbLEActivity AbLEActivity} reconciles its content with the matching variant 
+ * when the configuration changes.
+ * @author Phil Brown
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Variant 
+{
+	/**
+	 * The orientations in which the variant is used. {@link ORIENTATION#portrait} and 
+	 * {@link ORIENTATION#portraitUpsideDown} both match a portrait screen, and {@link ORIENTATION#landscapeLeft}
+	 * and {@link ORIENTATION#landscapeRight} both match a landscape screen. By default, any orientation matches.
+	 * @return
+	 */
+	public ORIENTATION[] orientation() default {};
+	
+	/**
+	 * The smallest width of the screen, in density-independent pixels, from which the variant is used 
+	 * (such as {@code 600} for tablets). By default, any size matches.
+	 * @return
+	 */
+	public int smallestWidth() default 0;
+	
+	/**
+	 * The density of the screen, in dots per inch, from which the variant is used (such as 
+	 * {@link android.util.DisplayMetrics#DENSITY_HIGH}). By default, any density matches.
+	 * @return
+	 */
+	public int density() default 0;
+}
@@ -0,0 +1,495 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package self.philbrown.AbLE.annotations;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import self.philbrown.AbLE.AbLEUtil;
+import self.philbrown.AbLE.R;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewGroup.OnHierarchyChangeListener;
+
+/**
+ * An index of the views in an inflated layout, by id, by tag and by the layout class that declared them.
+ * Lookups take constant time, regardless of the size of the layout, so they can replace 
+ * {@link View#findViewById(int)}, which walks the hierarchy on every call.
+ * <p>
+ * The inflaters record the layout class of each view that they create. When the index is first 
+ * {@link #of(View) requested} for a root view, the hierarchy is walked once to index the ids and tags
+ * of its views, and each {@code ViewGroup} gets an {@link OnHierarchyChangeListener}, so that views
+ * that are later added or removed are indexed accordingly. A listener that the {@code ViewGroup} already 
+ * had is kept, and notified after the index, and it is set back when the {@code ViewGroup} is removed from
+ * the index. Because a {@code ViewGroup} can only have one such listener, a listener that is set after the
+ * view was indexed replaces the index, so the layout must then call {@link #add(View)} and 
+ * {@link #remove(View)} itself. Likewise, if the id or tag of an indexed view changes, remove the view 
+ * from the index, then add it again.
+ * <p>
+ * The index is not synchronized. Once attached, it must only be used on the main thread.
+ * @author Phil Brown
+ */
+public final class ViewIndex implements OnHierarchyChangeListener
+{
+	/** The initial capacity of the id table. Must be a power of two. */
+	private static final int INITIAL_CAPACITY = 32;
+	/** 
+	 * The field in which a {@code ViewGroup} keeps its {@link OnHierarchyChangeListener}, which has no getter,
+	 * or {@code null} if it cannot be read
+	 */
+	private static final Field HIERARCHY_LISTENER = getHierarchyListenerField();
+	
+	/** The root of the indexed hierarchy, or {@code null} until the index is attached */
+	private View root;
+	/** Ids of the views in {@link #values}. Slots whose value is {@code null} are free. */
+	private int[] keys = new int[INITIAL_CAPACITY];
+	/** Views with the id at the same position in {@link #keys} */
+	private View[] values = new View[INITIAL_CAPACITY];
+	/** The number of ids in the table */
+	private int size;
+	/** Views by tag */
+	private final Map<Object, View> tags = new HashMap<Object, View>();
+	/** 
+	 * The layout class that declared each view. Kept for removed views, in case they are added again. 
+	 * Views are put from several threads during a parallel inflation, so this is accessed while holding 
+	 * its lock.
+	 */
+	private final Map<View, Class<?>> layouts = new WeakHashMap<View, Class<?>>();
+	/** The attached views declared by each layout class, in the order they were indexed */
+	private final Map<Class<?>, List<View>> byLayout = new HashMap<Class<?>, List<View>>();
+	
+	/**
+	 * Constructor. Indexes are created by the inflation, and retrieved using {@link #of(View)}.
+	 */
+	ViewIndex()
+	{
+	}
+	
+	/**
+	 * Gets the index of the hierarchy under the given root, creating and attaching it if needed.
+	 * @param root the root view of an inflated layout
+	 * @return the index of the hierarchy
+	 */
+	public static ViewIndex of(View root)
+	{
+		Object tag = root.getTag(R.id.able_view_index);
+		ViewIndex index;
+		if (tag instanceof ViewIndex)
+			index = (ViewIndex) tag;
+		else
+		{
+			index = new ViewIndex();
+			root.setTag(R.id.able_view_index, index);
+		}
+		if (index.root == null)
+		{
+			index.root = root;
+			index.add(root);
+		}
+		return index;
+	}
+	
+	/**
+	 * Marks the given view as the root of the hierarchy that this index will cover. The index is attached
+	 * by the first call to {@link #of(View)}.
+	 * @param root the root view of an inflation
+	 */
+	void markRoot(View root)
+	{
+		root.setTag(R.id.able_view_index, this);
+	}
+	
+	/**
+	 * Records the layout class that declared the given view. This is called by the inflation as each 
+	 * view is created, possibly from several threads.
+	 * @param view the view
+	 * @param layout the layout class that declared it
+	 */
+	void putLayout(View view, Class<?> layout)
+	{
+		synchronized (layouts)
+		{
+			layouts.put(view, layout);
+		}
+	}
+	
+	/**
+	 * @return the root view of the indexed hierarchy, or {@code null} if the index is not attached
+	 */
+	public View getRoot()
+	{
+		return root;
+	}
+	
+	/**
+	 * Gets the view with the given id. If several views share the id, the first one that was indexed
+	 * is returned. If the view is the placeholder of a {@link Lazy} class, the class is inflated, and its
+	 * view is returned instead.
+	 * @param id the id of the view
+	 * @return the view, or {@code null} if no view with that id is in the hierarchy
+	 */
+	public View findViewById(int id)
+	{
+		View view = getId(id);
+		return view instanceof LazyView ? ((LazyView) view).expand() : view;
+	}
+	
+	/**
+	 * Gets the view with the given tag (as set by {@link View#setTag(Object)}).
+	 * @param tag the tag of the view
+	 * @return the view, or {@code null} if no view with that tag is in the hierarchy
+	 */
+	public View findViewWithTag(Object tag)
+	{
+		return tags.get(tag);
+	}
+	
+	/**
+	 * Gets the first view that was declared by the given layout class.
+	 * @param layout the layout class
+	 * @return the view, or {@code null} if the class has no view in the hierarchy
+	 */
+	public View findViewByLayout(Class<?> layout)
+	{
+		List<View> views = byLayout.get(layout);
+		return views == null || views.isEmpty() ? null : views.get(0);
+	}
+	
+	/**
+	 * Gets all the views that were declared by the given layout class (for example, in an adapter).
+	 * @param layout the layout class
+	 * @return the views, in the order they were indexed. This list cannot be modified.
+	 */
+	public List<View> findViewsByLayout(Class<?> layout)
+	{
+		List<View> views = byLayout.get(layout);
+		if (views == null)
+			return Collections.emptyList();
+		return Collections.unmodifiableList(views);
+	}
+	
+	/**
+	 * @param view a view created by an inflater
+	 * @return the layout class that declared the given view, or {@code null} if it was not declared by one
+	 */
+	public Class<?> getLayout(View view)
+	{
+		synchronized (layouts)
+		{
+			return layouts.get(view);
+		}
+	}
+	
+	/**
+	 * Indexes the given view and all of its children. This is called automatically when a view is added
+	 * to an indexed {@code ViewGroup}.
+	 * @param view the view to index
+	 */
+	public void add(View view)
+	{
+		Object tag = view.getTag(R.id.able_view_index);
+		if (tag instanceof ViewIndex && tag != this)
+		{
+			//a nested inflation. Adopt the layout classes that it recorded.
+			ViewIndex nested = (ViewIndex) tag;
+			synchronized (nested.layouts)
+			{
+				synchronized (layouts)
+				{
+					layouts.putAll(nested.layouts);
+				}
+			}
+			view.setTag(R.id.able_view_index, null);
+		}
+		
+		int id = view.getId();
+		if (id != View.NO_ID && getId(id) == null)
+			putId(id, view);
+		Object viewTag = view.getTag();
+		if (viewTag != null && !tags.containsKey(viewTag))
+			tags.put(viewTag, view);
+		Class<?> layout = getLayout(view);
+		if (layout != null)
+		{
+			List<View> views = byLayout.get(layout);
+			if (views == null)
+			{
+				views = new ArrayList<View>(1);
+				byLayout.put(layout, views);
+			}
+			views.add(view);
+		}
+		
+		if (view instanceof ViewGroup)
+		{
+			ViewGroup group = (ViewGroup) view;
+			OnHierarchyChangeListener listener = getHierarchyListener(group);
+			if (!(listener instanceof Listener && ((Listener) listener).index == this))
+				group.setOnHierarchyChangeListener(new Listener(this, listener));
+			for (int i = 0; i < group.getChildCount(); i++)
+				add(group.getChildAt(i));
+		}
+	}
+	
+	/**
+	 * Removes the given view and all of its children from the index. This is called automatically when
+	 * a view is removed from an indexed {@code ViewGroup}.
+	 * @param view the view to remove
+	 */
+	public void remove(View view)
+	{
+		if (view instanceof ViewGroup)
+		{
+			ViewGroup group = (ViewGroup) view;
+			OnHierarchyChangeListener listener = getHierarchyListener(group);
+			if (listener instanceof Listener && ((Listener) listener).index == this)
+				group.setOnHierarchyChangeListener(((Listener) listener).previous);
+			else if (HIERARCHY_LISTENER == null)
+				group.setOnHierarchyChangeListener(null);
+			for (int i = 0; i < group.getChildCount(); i++)
+				remove(group.getChildAt(i));
+		}
+		
+		int id = view.getId();
+		if (id != View.NO_ID && getId(id) == view)
+		{
+			removeId(id);
+			//another view may share the id
+			View other = root == null ? null : findUnindexed(root, id, view);
+			if (other != null)
+				putId(id, other);
+		}
+		Object viewTag = view.getTag();
+		if (viewTag != null && tags.get(viewTag) == view)
+			tags.remove(viewTag);
+		Class<?> layout = getLayout(view);
+		if (layout != null)
+		{
+			List<View> views = byLayout.get(layout);
+			if (views != null)
+				views.remove(view);
+		}
+	}
+	
+	public void onChildViewAdded(View parent, View child)
+	{
+		add(child);
+	}
+	
+	public void onChildViewRemoved(View parent, View child)
+	{
+		remove(child);
+	}
+	
+	/**
+	 * @return the field of {@code ViewGroup} that holds its {@link OnHierarchyChangeListener}, or {@code null}
+	 */
+	private static Field getHierarchyListenerField()
+	{
+		try
+		{
+			Field field = ViewGroup.class.getDeclaredField("mOnHierarchyChangeListener");
+			field.setAccessible(true);
+			return field;
+		} catch (Throwable t)
+		{
+			AbLEUtil.warn("Could not read OnHierarchyChangeListeners. Listeners set by layouts will be replaced by the ViewIndex.");
+			return null;
+		}
+	}
+	
+	/**
+	 * @param group a {@code ViewGroup}
+	 * @return the {@link OnHierarchyChangeListener} of the group, or {@code null} if it has none or it 
+	 * cannot be read
+	 */
+	private static OnHierarchyChangeListener getHierarchyListener(ViewGroup group)
+	{
+		if (HIERARCHY_LISTENER == null)
+			return null;
+		try
+		{
+			return (OnHierarchyChangeListener) HIERARCHY_LISTENER.get(group);
+		} catch (Throwable t)
+		{
+			return null;
+		}
+	}
+	
+	/**
+	 * Searches the hierarchy for a view with the given id, skipping the given subtree. This is only used
+	 * when a view whose id is shared by other views is removed.
+	 * @param v the view to search from
+	 * @param id the id
+	 * @param removed the subtree being removed
+	 * @return the first view with the id, or {@code null}
+	 */
+	private static View findUnindexed(View v, int id, View removed)
+	{
+		if (v == removed)
+			return null;
+		if (v.getId() == id)
+			return v;
+		if (v instanceof ViewGroup)
+		{
+			ViewGroup group = (ViewGroup) v;
+			for (int i = 0; i < group.getChildCount(); i++)
+			{
+				View found = findUnindexed(group.getChildAt(i), id, removed);
+				if (found != null)
+					return found;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Gets the view with the given id from the table. Unlike {@link #findViewById(int)}, a {@link Lazy}
+	 * placeholder is returned as it is, so indexing views does not inflate lazy classes.
+	 * @param id the id
+	 * @return the view, or {@code null} if the id is not in the table
+	 */
+	private View getId(int id)
+	{
+		int mask = keys.length - 1;
+		for (int i = mix(id) & mask; values[i] != null; i = (i + 1) & mask)
+		{
+			if (keys[i] == id)
+				return values[i];
+		}
+		return null;
+	}
+	
+	/**
+	 * Adds an id to the table. The id must not be in the table already.
+	 * @param id the id
+	 * @param view the view with the id
+	 */
+	private void putId(int id, View view)
+	{
+		if ((size + 1) * 2 > keys.length)
+			resize(keys.length * 2);
+		int mask = keys.length - 1;
+		int i = mix(id) & mask;
+		while (values[i] != null)
+			i = (i + 1) & mask;
+		keys[i] = id;
+		values[i] = view;
+		size++;
+	}
+	
+	/**
+	 * Removes an id from the table, shifting back the entries that follow it so that no tombstones
+	 * are needed.
+	 * @param id the id
+	 */
+	private void removeId(int id)
+	{
+		int mask = keys.length - 1;
+		int i = mix(id) & mask;
+		while (values[i] != null && keys[i] != id)
+			i = (i + 1) & mask;
+		if (values[i] == null)
+			return;
+		values[i] = null;
+		size--;
+		for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask)
+		{
+			int home = mix(keys[j]) & mask;
+			//move the entry back if its home slot is not between the free slot and its current slot
+			if (i <= j ? (home <= i || home > j) : (home <= i && home > j))
+			{
+				keys[i] = keys[j];
+				values[i] = values[j];
+				values[j] = null;
+				i = j;
+			}
+		}
+	}
+	
+	/**
+	 * Rehashes the table into the given capacity
+	 * @param capacity the new capacity. Must be a power of two.
+	 */
+	private void resize(int capacity)
+	{
+		int[] oldKeys = keys;
+		View[] oldValues = values;
+		keys = new int[capacity];
+		values = new View[capacity];
+		size = 0;
+		for (int i = 0; i < oldKeys.length; i++)
+		{
+			if (oldValues[i] != null)
+				putId(oldKeys[i], oldValues[i]);
+		}
+	}
+	
+	/**
+	 * Spreads the bits of a resource id, whose low bits are often sequential, across the table.
+	 * @param id the id
+	 * @return the hash of the id
+	 */
+	private static int mix(int id)
+	{
+		int h = id * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+	
+	/**
+	 * The {@link OnHierarchyChangeListener} that the index sets on each indexed {@code ViewGroup}. It updates
+	 * the index, then notifies the listener that the group had before it was indexed.
+	 */
+	private static final class Listener implements OnHierarchyChangeListener
+	{
+		/** The index */
+		final ViewIndex index;
+		/** The listener that the group had before, or {@code null} */
+		final OnHierarchyChangeListener previous;
+		
+		/**
+		 * Constructor
+		 * @param index the index
+		 * @param previous the listener that the group had before, or {@code null}
+		 */
+		Listener(ViewIndex index, OnHierarchyChangeListener previous)
+		{
+			this.index = index;
+			this.previous = previous;
+		}
+		
+		public void onChildViewAdded(View parent, View child)
+		{
+			index.onChildViewAdded(parent, child);
+			if (previous != null)
+				previous.onChildViewAdded(parent, child);
+		}
+		
+		public void onChildViewRemoved(View parent, View child)
+		{
+			index.onChildViewRemoved(parent, child);
+			if (previous != null)
+				previous.onChildViewRemoved(parent, child);
+		}
+	}
+}
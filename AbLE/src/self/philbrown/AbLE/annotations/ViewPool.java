@@ -0,0 +1,390 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+
+package self.philbrown.AbLE.annotations;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import self.philbrown.AbLE.AbLEUtil;
+import self.philbrown.AbLE.R;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+
+/**
+ * A pool of views that were created for {@link Layout} classes and then discarded, by view class. 
+ * {@link LayoutInflater} takes views from the pool before constructing new ones. Each {@code AbLEActivity}
+ * has its own pool, so views are never reused with a different Context.
+ * <p>
+ * A view is only pooled if every setter that was called on it can be undone: the first time a setter 
+ * is called on a new view of a class, its default value is read from the matching getter ({@code getX} 
+ * or {@code isX}). When a view is released, each setter is called again with its default value. Views 
+ * with setters that have no getter (such as listeners) are not pooled. The layout attributes (origin,
+ * size and padding) are always set again by the inflater, so they are not reset.
+ * <p>
+ * The pool cannot tell what else was done to a view after it was inflated. Views of layout classes that
+ * have an {@code onLayoutComplete} method, or that are nested in one, are therefore never pooled. The 
+ * click, long click, touch, key and focus change listeners and the tag ({@link View#setTag(Object)}) of 
+ * a pooled view are cleared. Any other state that the app sets on a view that it later releases (such as
+ * in {@code onLayoutInflated}) must be undone by the app, or the view must not be released.
+ * <p>
+ * Views are released automatically when a reconciled layout removes them (see 
+ * {@link AnnotatedLayoutInflater#reconcile(self.philbrown.AbLE.AbLEActivity, View, Class)}), 
+ * and can be released with {@link #release(View)} when a layout is discarded. 
+ * @author Phil Brown
+ */
+public class ViewPool
+{
+	/** The default maximum number of pooled views of each class */
+	public static final int DEFAULT_MAX_PER_CLASS = 16;
+	
+	/** Setters whose values are set again by {@link LayoutInflater} each time a view is used */
+	private static final String[] LAYOUT_ATTRIBUTES = {"setPadding", "setLayoutParams", "setX", "setY"};
+	
+	/** Pooled views, by class */
+	private final Map<Class<?>, List<View>> views = new HashMap<Class<?>, List<View>>();
+	/** How to undo each setter, by view class and setter name. {@link #NO_RESET} if it cannot be undone. */
+	private final Map<Class<?>, Map<String, Reset>> resets = new HashMap<Class<?>, Map<String, Reset>>();
+	/** The maximum number of pooled views of each class */
+	private int maxPerClass;
+	/** The number of views that were taken from the pool */
+	private int hits;
+	/** The number of views that were requested, but were not in the pool */
+	private int misses;
+	/** The number of released views that could not be pooled */
+	private int dropped;
+	
+	/** Marks setters that cannot be undone */
+	private static final Reset NO_RESET = new Reset(null, null);
+	
+	/**
+	 * Constructor
+	 * @param maxPerClass the maximum number of pooled views of each class
+	 */
+	public ViewPool(int maxPerClass)
+	{
+		this.maxPerClass = maxPerClass;
+	}
+	
+	/**
+	 * Takes a view of the given class from the pool
+	 * @param viewClass the class of the view
+	 * @return the view, or {@code null} if none is pooled
+	 */
+	public synchronized View obtain(Class<?> viewClass)
+	{
+		List<View> pooled = views.get(viewClass);
+		if (pooled == null || pooled.isEmpty())
+		{
+			misses++;
+			return null;
+		}
+		hits++;
+		return pooled.remove(pooled.size() - 1);
+	}
+	
+	/**
+	 * Reads the default values of the setters of the given plan from a view that was just created, so that 
+	 * the setters can be undone when the view is released. Each setter of a view class is only read once.
+	 * @param view a new view, on which no setters have been called yet
+	 * @param plan the plan of the layout class that created the view
+	 */
+	synchronized void recordDefaults(View view, LayoutPlan plan)
+	{
+		Map<String, Reset> classResets = resets.get(view.getClass());
+		if (classResets == null)
+		{
+			classResets = new HashMap<String, Reset>();
+			resets.put(view.getClass(), classResets);
+		}
+		List<SetterOp> setters = plan.getSetters();
+		for (int i = 0; i < setters.size(); i++)
+			recordDefault(view, setters.get(i), classResets);
+		for (int i = 0; i < plan.getBindings().size(); i++)
+			recordDefault(view, plan.getBindingSetter(i), classResets);
+	}
+	
+	/**
+	 * Reads the default value of a single setter
+	 */
+	private static void recordDefault(View view, SetterOp setter, Map<String, Reset> classResets)
+	{
+		String name = setter.getName();
+		if (classResets.containsKey(name) || isLayoutAttribute(name) || !name.startsWith("set") || name.length() == 3)
+			return;
+		Reset reset = NO_RESET;
+		try
+		{
+			String property = name.substring(3);
+			Method getter = findGetter(view.getClass(), property);
+			if (getter != null)
+			{
+				Method method = view.getClass().getMethod(name, new Class<?>[]{getter.getReturnType()});
+				reset = new Reset(Invokers.create(method), getter.invoke(view));
+			}
+		} catch (Throwable t)
+		{
+			//cannot be undone
+		}
+		classResets.put(name, reset);
+	}
+	
+	/**
+	 * @return the public getter of the given property, or {@code null}
+	 */
+	private static Method findGetter(Class<?> viewClass, String property)
+	{
+		try
+		{
+			return viewClass.getMethod(AbLEUtil.buildString("get", property), new Class<?>[0]);
+		} catch (NoSuchMethodException e)
+		{
+			try
+			{
+				return viewClass.getMethod(AbLEUtil.buildString("is", property), new Class<?>[0]);
+			} catch (NoSuchMethodException e1)
+			{
+				return null;
+			}
+		}
+	}
+	
+	/**
+	 * @return {@code true} if the setter is handled by the layout attributes
+	 */
+	private static boolean isLayoutAttribute(String name)
+	{
+		for (String attribute : LAYOUT_ATTRIBUTES)
+		{
+			if (attribute.equals(name))
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Releases the views of a discarded layout. The layout must have been returned by 
+	 * {@link AnnotatedLayoutInflater}, and must not be used again.
+	 * @param root the root view of the layout
+	 */
+	public void release(View root)
+	{
+		Object record = root.getTag(R.id.able_inflation_record);
+		if (record instanceof InflationRecord)
+			release((InflationRecord) record);
+	}
+	
+	/**
+	 * Releases the views created for a layout class and its children. Each view is removed from its parent,
+	 * its setters are undone, and it is pooled if there is room. The bindings of the layout class and its
+	 * children are unsubscribed first, so that a pooled view is not updated by the variables it was bound to.
+	 * @param record the record of the layout class
+	 */
+	void release(InflationRecord record)
+	{
+		record.unsubscribe();
+		recycle(record, false);
+	}
+	
+	/**
+	 * Releases the views of a record whose bindings have been unsubscribed
+	 * @param record the record of the layout class
+	 * @param completed {@code true} if an enclosing layout class has an {@code onLayoutComplete} method
+	 */
+	private void recycle(InflationRecord record, boolean completed)
+	{
+		//onLayoutComplete may change any view of the class or of its children in ways that cannot be undone
+		completed |= record.getPlan().getOnLayoutComplete() != null;
+		List<InflationRecord> children = record.getChildren();
+		for (int i = 0; i < children.size(); i++)
+			recycle(children.get(i), completed);
+		
+		Object target = record.getTarget();
+		if (!(target instanceof View))
+			return;
+		View view = (View) target;
+		ViewParent parent = view.getParent();
+		if (parent instanceof ViewGroup)
+			((ViewGroup) parent).removeView(view);
+		view.setTag(R.id.able_condition, null);
+		if (!(record.getPlan().getAnnotation() instanceof Layout))
+			return;
+		if (view instanceof ViewGroup)
+		{
+			ViewGroup group = (ViewGroup) view;
+			group.setOnHierarchyChangeListener(null);
+			group.removeAllViews();
+		}
+		view.setTag(R.id.able_view_index, null);
+		view.setTag(R.id.able_inflation_record, null);
+		if (completed)
+		{
+			synchronized (this)
+			{
+				dropped++;
+			}
+			return;
+		}
+		clearListeners(view);
+		
+		synchronized (this)
+		{
+			List<View> pooled = views.get(view.getClass());
+			if (pooled == null)
+			{
+				pooled = new ArrayList<View>();
+				views.put(view.getClass(), pooled);
+			}
+			if (pooled.size() >= maxPerClass || !reset(view, record.getSetters()))
+			{
+				dropped++;
+				return;
+			}
+			pooled.add(view);
+		}
+	}
+	
+	/**
+	 * Removes the listeners and the tag that the app may have set on a view after it was inflated (for
+	 * example, in {@code onLayoutInflated}), since they have no getters from which defaults could be read
+	 * @param view the view
+	 */
+	private static void clearListeners(View view)
+	{
+		view.setOnClickListener(null);
+		view.setOnLongClickListener(null);
+		view.setOnTouchListener(null);
+		view.setOnKeyListener(null);
+		view.setOnFocusChangeListener(null);
+		view.setTag(null);
+	}
+	
+	/**
+	 * Undoes the given setters on the given view
+	 * @return {@code true} if every setter was undone
+	 */
+	private boolean reset(View view, SetterOp[] setters)
+	{
+		if (setters == null)
+			return false;
+		Map<String, Reset> classResets = resets.get(view.getClass());
+		for (int i = 0; i < setters.length; i++)
+		{
+			String name = setters[i].getName();
+			if (isLayoutAttribute(name))
+				continue;
+			Reset reset = classResets == null ? null : classResets.get(name);
+			if (reset == null || reset == NO_RESET)
+				return false;
+			try
+			{
+				reset.setter.invoke(view, reset.value);
+			} catch (Throwable t)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Removes all pooled views
+	 */
+	public synchronized void clear()
+	{
+		views.clear();
+	}
+	
+	/**
+	 * Sets the maximum number of pooled views of each class. Pooled views beyond the maximum are discarded.
+	 * @param maxPerClass the maximum
+	 */
+	public synchronized void setMaxPerClass(int maxPerClass)
+	{
+		this.maxPerClass = maxPerClass;
+		for (List<View> pooled : views.values())
+		{
+			while (pooled.size() > maxPerClass)
+				pooled.remove(pooled.size() - 1);
+		}
+	}
+	
+	/**
+	 * @return the maximum number of pooled views of each class
+	 */
+	public synchronized int getMaxPerClass()
+	{
+		return maxPerClass;
+	}
+	
+	/**
+	 * @return the number of pooled views
+	 */
+	public synchronized int size()
+	{
+		int size = 0;
+		for (List<View> pooled : views.values())
+			size += pooled.size();
+		return size;
+	}
+	
+	/**
+	 * @return the number of views that were taken from the pool
+	 */
+	public synchronized int getHitCount()
+	{
+		return hits;
+	}
+	
+	/**
+	 * @return the number of views that were requested, but had to be created
+	 */
+	public synchronized int getMissCount()
+	{
+		return misses;
+	}
+	
+	/**
+	 * @return the number of released views that were not pooled, because the pool was full or their
+	 * setters could not be undone
+	 */
+	public synchronized int getDroppedCount()
+	{
+		return dropped;
+	}
+	
+	/**
+	 * Undoes a setter
+	 */
+	private static final class Reset
+	{
+		/** Invokes the setter */
+		final Invoker setter;
+		/** The default value */
+		final Object value;
+		
+		Reset(Invoker setter, Object value)
+		{
+			this.setter = setter;
+			this.value = value;
+		}
+	}
+}
@@ -19,7 +19,6 @@ package self.philbrown.AbLE.annotations;
 import self.philbrown.AbLE.AbLEActivity;
 import self.philbrown.AbLE.AbLEUtil;
 import android.content.Context;
-import android.content.pm.ActivityInfo;
 import android.view.View;
 import android.view.ViewGroup;
 
@@ -53,7 +52,17 @@ public class XMLLayoutInflater extends ClassAnnotationInflater {
 			file = array[array.length-1];
 		}
 		android.view.LayoutInflater inflater = (android.view.LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
-		view = inflater.inflate(context.getResources().getIdentifier(file, "layout", context.getPackageName()), null);
+		if (context.getViewContext() != context)
+			inflater = inflater.cloneInContext(context.getViewContext());
+		try
+		{
+			view = inflater.inflate(context.getResources().getIdentifier(file, "layout", context.getPackageName()), null);
+		} catch (RuntimeException e)
+		{
+			if (requireMainThread(getPlan(layout)))
+				return null;
+			throw e;
+		}
 		
 		createView(xml);
 		if (view == null)
@@ -82,40 +91,7 @@ public class XMLLayoutInflater extends ClassAnnotationInflater {
 		if (parent == null)
 		{
 			//if this is the top-level layout, then force the layout orientation
-			ORIENTATION[] allowedOrientations = xml.orientation();
-			boolean portrait = false, 
-					portraitUpsideDown = false, 
-					landscapeRight = false, 
-					landscapeLeft = false;
-			for (ORIENTATION o : allowedOrientations)
-			{
-				if (o == ORIENTATION.portrait)
-					portrait = true;
-				else if (o == ORIENTATION.portraitUpsideDown)
-					portraitUpsideDown = true;
-				else if (o == ORIENTATION.landscapeRight)
-					landscapeRight = true;
-				else if (o == ORIENTATION.landscapeLeft)
-					landscapeLeft = true;
-			}
-			if(portrait && portraitUpsideDown && landscapeRight && landscapeLeft)
-				context.setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_FULL_SENSOR);
-			else if(landscapeRight && landscapeLeft)
-				context.setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_SENSOR_LANDSCAPE);
-			else if(portrait && portraitUpsideDown)
-				context.setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_SENSOR_PORTRAIT);
-			else if(portrait)
-				context.setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_PORTRAIT);
-			else if(portraitUpsideDown)
-				context.setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_REVERSE_PORTRAIT);
-			else if(landscapeRight)
-				context.setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_LANDSCAPE);
-			else if(landscapeLeft)
-				context.setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_REVERSE_LANDSCAPE);
-			else
-			{
-				throw new UnsupportedOperationException("Invalid Layout Orientation parameters!");
-			}
+			requestOrientation(xml.orientation());
 		}
 		
 		float[] origin = xml.origin();
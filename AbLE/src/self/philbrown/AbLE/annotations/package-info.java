@@ -37,7 +37,8 @@ package self.philbrown.AbLE.annotations;
  * directly cross-platform compatible, but it requires less set up than an xml-based architecture.
  * <p>
  * The layout inflater recursively creates all 
- * the layouts and set their attributes using reflection. Other aspects that improve speed of coding
+ * the layouts and set their attributes using reflection, unless the AbLE annotation processor has
+ * generated an inflater for the layout class. Other aspects that improve speed of coding
  * include the ability to define the layout file in activity meta-data.
  * <p>
  * Currently available meta-data tags are as follows:<br>
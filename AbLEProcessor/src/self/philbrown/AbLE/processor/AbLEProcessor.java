@@ -0,0 +1,876 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package self.philbrown.AbLE.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates a plain Java inflater for each class annotated with {@code @Layout}, {@code @XMLLayout},
+ * {@code @LayoutAdapter}, {@code @Invisible} or {@code @Embed}. The generated inflater extends
+ * {@code ClassAnnotationInflater} and replaces the reflective field scan, constructor lookup and
+ * {@code Method.invoke} calls with direct constructor, setter and getter calls. It is named after
+ * the binary name of the layout class, followed by {@code _AbLEInflater}, which is where
+ * {@code AnnotatedLayoutInflater} looks for it.
+ * <p>
+ * Anything that cannot be resolved at compile time - such as {@code @Setter} and {@code @Getter}
+ * parameters, which are only known once the class is loaded - is delegated to the reflective helpers
+ * in {@code ClassAnnotationInflater}. If a layout class cannot be handled at all, no inflater is
+ * generated for it, and it is inflated using reflection.
+ * @author Phil Brown
+ */
+@SupportedAnnotationTypes({
+	AbLEProcessor.LAYOUT,
+	AbLEProcessor.XML_LAYOUT,
+	AbLEProcessor.LAYOUT_ADAPTER,
+	AbLEProcessor.INVISIBLE,
+	AbLEProcessor.EMBED
+})
+public class AbLEProcessor extends AbstractProcessor
+{
+	/** The package that contains the AbLE annotations */
+	static final String PACKAGE = "self.philbrown.AbLE.annotations";
+	/** Canonical name of the {@code Layout} annotation */
+	static final String LAYOUT = PACKAGE + ".Layout";
+	/** Canonical name of the {@code XMLLayout} annotation */
+	static final String XML_LAYOUT = PACKAGE + ".XMLLayout";
+	/** Canonical name of the {@code LayoutAdapter} annotation */
+	static final String LAYOUT_ADAPTER = PACKAGE + ".LayoutAdapter";
+	/** Canonical name of the {@code Invisible} annotation */
+	static final String INVISIBLE = PACKAGE + ".Invisible";
+	/** Canonical name of the {@code Embed} annotation */
+	static final String EMBED = PACKAGE + ".Embed";
+	/** Canonical name of the {@code ListLayout} annotation */
+	static final String LIST_LAYOUT = PACKAGE + ".ListLayout";
+	/** Canonical name of the {@code Repeat} annotation */
+	static final String REPEAT = PACKAGE + ".Repeat";
+	/** Canonical name of the {@code Variant} annotation */
+	static final String VARIANT = PACKAGE + ".Variant";
+	/** Canonical name of the {@code Variable} annotation */
+	static final String VARIABLE = PACKAGE + ".Variable";
+	/** Canonical name of the {@code Binding} annotation */
+	static final String BINDING = PACKAGE + ".Binding";
+	/** Canonical name of the {@code Setter} annotation */
+	static final String SETTER = PACKAGE + ".Setter";
+	/** Canonical name of the {@code Getter} annotation */
+	static final String GETTER = PACKAGE + ".Getter";
+
+	/** Must match {@code AnnotatedLayoutInflater.GENERATED_SUFFIX} */
+	static final String GENERATED_SUFFIX = "_AbLEInflater";
+
+	private static final String ACTIVITY = "self.philbrown.AbLE.AbLEActivity";
+	private static final String INFLATER = PACKAGE + ".ClassAnnotationInflater";
+	private static final String FACTORY = PACKAGE + ".InflaterFactory";
+	private static final String SETTER_OP = PACKAGE + ".SetterOp";
+	private static final String UTIL = "self.philbrown.AbLE.AbLEUtil";
+	private static final String VIEW = "android.view.View";
+	private static final String VIEW_GROUP = "android.view.ViewGroup";
+	private static final String CONTEXT = "android.content.Context";
+
+	private Elements elements;
+	private Types types;
+
+	/**
+	 * Keeps track of the classes that have already been handled, and whether or not an inflater
+	 * was generated for them.
+	 */
+	private Map<TypeElement, Boolean> generated;
+	
+	/** The direct binding setters of the inflater that is being written. See {@link #writeBindingSetter}. */
+	private StringBuilder bindingSetters;
+
+	@Override
+	public synchronized void init(ProcessingEnvironment processingEnv)
+	{
+		super.init(processingEnv);
+		elements = processingEnv.getElementUtils();
+		types = processingEnv.getTypeUtils();
+		generated = new HashMap<TypeElement, Boolean>();
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion()
+	{
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+	{
+		if (elements.getTypeElement(ACTIVITY) == null || elements.getTypeElement(VIEW) == null)
+		{
+			//AbLE or Android is not on the class path. Nothing can be generated.
+			return false;
+		}
+		for (TypeElement annotation : annotations)
+		{
+			for (Element e : roundEnv.getElementsAnnotatedWith(annotation))
+			{
+				if (e.getKind() == ElementKind.CLASS)
+					generate((TypeElement) e);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Generates the inflater for the given layout class, if it has not yet been generated.
+	 * @param layout the layout class
+	 * @return {@code true} if an inflater exists for the class. Otherwise {@code false}.
+	 */
+	private boolean generate(TypeElement layout)
+	{
+		Boolean done = generated.get(layout);
+		if (done != null)
+			return done;
+		//children are generated first, so guard against re-entry
+		generated.put(layout, false);
+
+		boolean success = false;
+		try
+		{
+			AnnotationMirror root = getRootAnnotation(layout);
+			if (root != null && layout.getModifiers().contains(Modifier.PUBLIC))
+			{
+				String source = write(layout, root);
+				if (source != null)
+				{
+					String name = getGeneratedName(layout);
+					JavaFileObject file = processingEnv.getFiler().createSourceFile(name, layout);
+					Writer writer = file.openWriter();
+					try
+					{
+						writer.write(source);
+					}
+					finally
+					{
+						writer.close();
+					}
+					success = true;
+				}
+			}
+		} catch (IOException e)
+		{
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"Could not write AbLE inflater: " + e.getMessage(), layout);
+		}
+
+		generated.put(layout, success);
+		return success;
+	}
+
+	/**
+	 * Writes the source of the inflater for the given layout.
+	 * @param layout the layout class
+	 * @param root the AbLE annotation that declares the layout's type
+	 * @return the source code, or {@code null} if the class cannot be handled at compile time.
+	 */
+	private String write(TypeElement layout, AnnotationMirror root)
+	{
+		String kind = ((TypeElement) root.getAnnotationType().asElement()).getQualifiedName().toString();
+		String name = getGeneratedName(layout);
+		String simpleName = name.substring(name.lastIndexOf('.') + 1);
+		String packageName = elements.getPackageOf(layout).getQualifiedName().toString();
+
+		StringBuilder body = new StringBuilder();
+		//children are generated while the body is written, so the setters of this class are kept aside
+		StringBuilder outerBindingSetters = bindingSetters;
+		bindingSetters = new StringBuilder();
+		StringBuilder direct = bindingSetters;
+		boolean ok;
+		if (kind.equals(LAYOUT))
+			ok = writeLayout(layout, root, body);
+		else if (kind.equals(XML_LAYOUT))
+			ok = writeXMLLayout(layout, root, body);
+		else if (kind.equals(LAYOUT_ADAPTER))
+			ok = writeLayoutAdapter(layout, root, body);
+		else if (kind.equals(INVISIBLE))
+			ok = writeInvisible(layout, root, body);
+		else if (kind.equals(LIST_LAYOUT))
+			ok = false;//rows are inflated and bound by the list's adapter at runtime
+		else
+			ok = writeEmbed(layout, root, body);
+		bindingSetters = outerBindingSetters;
+		if (!ok)
+		{
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+					"No AbLE inflater generated. This class will be inflated using reflection.", layout);
+			return null;
+		}
+
+		StringBuilder b = new StringBuilder();
+		b.append("// Generated by the AbLE annotation processor. Do not modify!\n");
+		if (packageName.length() > 0)
+			b.append("package ").append(packageName).append(";\n\n");
+		b.append("/**\n * Reflection-free inflater for {@link ").append(layout.getQualifiedName()).append("}\n */\n");
+		b.append("public final class ").append(simpleName).append(" extends ").append(INFLATER).append("\n{\n");
+		b.append("\t/** Used by {@code LayoutPlan} to create this inflater without reflection */\n");
+		b.append("\tpublic static final ").append(FACTORY).append(" FACTORY = new ").append(FACTORY).append("() {\n");
+		b.append("\t\tpublic ").append(INFLATER).append(" create(").append(ACTIVITY).append(" context, ")
+		 .append(INFLATER).append(" parent)\n\t\t{\n\t\t\treturn new ").append(simpleName)
+		 .append("(context, parent);\n\t\t}\n\t};\n\n");
+		b.append("\tpublic ").append(simpleName).append("(").append(ACTIVITY).append(" context, ")
+		 .append(INFLATER).append(" parent)\n\t{\n\t\tsuper(context, parent);\n\t}\n\n");
+		b.append("\t@Override\n\t@SuppressWarnings(\"unchecked\")\n");
+		b.append("\tpublic ").append(VIEW).append(" inflate(java.lang.Class<?> layout)\n\t{\n");
+		b.append(body);
+		b.append("\t}\n");
+		if (direct.length() > 0)
+		{
+			b.append("\n\t@Override\n\tprotected ").append(SETTER_OP).append(" getBindingSetter(int index)\n\t{\n");
+			b.append("\t\tfinal ").append(SETTER_OP).append(" setter = super.getBindingSetter(index);\n");
+			b.append("\t\tjava.lang.reflect.Field field = setter.getField();\n");
+			b.append(direct);
+			b.append("\t\treturn setter;\n\t}\n");
+		}
+		b.append("}\n");
+		return b.toString();
+	}
+
+	/**
+	 * Writes the body of the inflater for a {@code @Layout} class
+	 */
+	private boolean writeLayout(TypeElement layout, AnnotationMirror root, StringBuilder b)
+	{
+		String viewClass = getString(root, "viewClass");
+		TypeElement target = elements.getTypeElement(viewClass);
+		if (target == null || !isSubtype(target.asType(), VIEW) || !hasConstructor(target, CONTEXT))
+			return false;
+		int[] params = getLayoutParams(root);
+		if (params == null)
+			return false;
+
+		String type = target.getQualifiedName().toString();
+		b.append("\t\t").append(type).append(" v = (").append(type).append(") obtainView(").append(type).append(".class);\n");
+		b.append("\t\tif (v == null)\n\t\t{\n");
+		b.append("\t\t\tv = new ").append(type).append("(context.getViewContext());\n");
+		b.append("\t\t\trecordDefaults(v, layout);\n\t\t}\n");
+		b.append("\t\tview = v;\n");
+		b.append("\t\tif (parent == null)\n");
+		b.append("\t\t\trequestOrientation(").append(getOrientation(root)).append(");\n");
+		writeGeometry("v", root, params, b);
+
+		List<Object> padding = getList(root, "padding");
+		int[] p = new int[4];
+		if (padding.size() == 1)
+		{
+			p[0] = p[1] = p[2] = p[3] = (Integer) padding.get(0);
+		}
+		else if (padding.size() == 4)
+		{
+			for (int i = 0; i < 4; i++)
+				p[i] = (Integer) padding.get(i);
+		}
+		else
+		{
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+					"Layout padding must contain either 1 or 4 integer values.", layout, root);
+		}
+		b.append("\t\tv.setPadding(").append(p[0]).append(", ").append(p[1]).append(", ")
+		 .append(p[2]).append(", ").append(p[3]).append(");\n");
+
+		if (!writeFields(layout, "v", target.asType(), b))
+			return false;
+		if (isSubtype(target.asType(), VIEW_GROUP))
+			writeChildren(layout, false, b);
+		writeLayoutComplete(layout, "v", target.asType(), b);
+		b.append("\t\treturn view;\n");
+		return true;
+	}
+
+	/**
+	 * Writes the body of the inflater for a {@code @XMLLayout} class
+	 */
+	private boolean writeXMLLayout(TypeElement layout, AnnotationMirror root, StringBuilder b)
+	{
+		String file = getString(root, "resourceID");
+		if (file.contains("R.layout"))
+			return false;
+		int[] params = getLayoutParams(root);
+		if (params == null)
+			return false;
+
+		b.append("\t\tandroid.view.LayoutInflater inflater = (android.view.LayoutInflater) context.getSystemService(")
+		 .append(CONTEXT).append(".LAYOUT_INFLATER_SERVICE);\n");
+		b.append("\t\t").append(VIEW).append(" v = inflater.inflate(context.getResources().getIdentifier(")
+		 .append(literal(file)).append(", \"layout\", context.getPackageName()), null);\n");
+		b.append("\t\tview = v;\n");
+		b.append("\t\tif (v == null)\n\t\t{\n");
+		b.append("\t\t\t").append(UTIL).append(".err(\"Could not create layout for resource R.layout.%s\", ")
+		 .append(literal(file)).append(");\n");
+		b.append("\t\t\treturn null;\n\t\t}\n");
+		b.append("\t\tif (parent == null)\n");
+		b.append("\t\t\trequestOrientation(").append(getOrientation(root)).append(");\n");
+		writeGeometry("v", root, params, b);
+
+		TypeMirror target = elements.getTypeElement(VIEW).asType();
+		if (!writeFields(layout, "v", target, b))
+			return false;
+		writeChildren(layout, true, b);
+		writeLayoutComplete(layout, "v", target, b);
+		b.append("\t\treturn view;\n");
+		return true;
+	}
+
+	/**
+	 * Writes the body of the inflater for a {@code @LayoutAdapter} class
+	 */
+	private boolean writeLayoutAdapter(TypeElement layout, AnnotationMirror root, StringBuilder b)
+	{
+		TypeElement target = elements.getTypeElement(getString(root, "adapterClass"));
+		if (target == null || !hasConstructor(target, ACTIVITY))
+			return false;
+		int[] params = getLayoutParams(root);
+		if (params == null)
+			return false;
+		boolean settersFirst = (Boolean) getValue(root, "handleSettersFirst");
+
+		String type = target.getQualifiedName().toString();
+		b.append("\t\t").append(type).append(" adapter = new ").append(type).append("(context);\n");
+		if (settersFirst && !writeFields(layout, "adapter", target.asType(), b))
+			return false;
+		b.append("\t\tview = adapter.getView();\n");
+		b.append("\t\tif (view == null)\n\t\t\treturn null;\n");
+		writeGeometry("view", root, params, b);
+		if (!settersFirst && !writeFields(layout, "adapter", target.asType(), b))
+			return false;
+		writeChildren(layout, true, b);
+		writeLayoutComplete(layout, "view", elements.getTypeElement(VIEW).asType(), b);
+		b.append("\t\treturn view;\n");
+		return true;
+	}
+
+	/**
+	 * Writes the body of the inflater for an {@code @Invisible} class
+	 */
+	private boolean writeInvisible(TypeElement layout, AnnotationMirror root, StringBuilder b)
+	{
+		TypeElement target = elements.getTypeElement(getString(root, "invisibleClass"));
+		if (target == null || !hasConstructor(target, ACTIVITY))
+			return false;
+
+		String type = target.getQualifiedName().toString();
+		b.append("\t\t").append(type).append(" ghost = new ").append(type).append("(context);\n");
+		b.append("\t\tghost.create();\n");
+		if (!writeFields(layout, "ghost", target.asType(), b))
+			return false;
+		writeLayoutComplete(layout, "ghost", target.asType(), b);
+		b.append("\t\treturn null;\n");
+		return true;
+	}
+
+	/**
+	 * Writes the body of the inflater for an {@code @Embed} class
+	 */
+	private boolean writeEmbed(TypeElement layout, AnnotationMirror root, StringBuilder b)
+	{
+		b.append("\t\ttry\n\t\t{\n");
+		b.append("\t\t\tview = ").append(PACKAGE).append(".AnnotatedLayoutInflater.inflate(context, java.lang.Class.forName(")
+		 .append(literal(getString(root, "layout"))).append("), this);\n");
+		b.append("\t\t} catch (java.lang.ClassNotFoundException e) {\n\t\t\te.printStackTrace();\n\t\t}\n");
+		b.append("\t\tif (view == null)\n\t\t\treturn null;\n");
+		b.append("\t\t").append(VIEW).append(" v = view;\n");
+
+		TypeMirror target = elements.getTypeElement(VIEW).asType();
+		if (!writeFields(layout, "v", target, b))
+			return false;
+		writeChildren(layout, true, b);
+		writeLayoutComplete(layout, "v", target, b);
+		b.append("\t\treturn view;\n");
+		return true;
+	}
+
+	/**
+	 * Writes the origin and layout parameters
+	 */
+	private void writeGeometry(String target, AnnotationMirror root, int[] params, StringBuilder b)
+	{
+		List<Object> origin = getList(root, "origin");
+		b.append("\t\t").append(target).append(".setX(").append(origin.get(0)).append("f);\n");
+		b.append("\t\t").append(target).append(".setY(").append(origin.get(1)).append("f);\n");
+		b.append("\t\t").append(target).append(".setLayoutParams(new ").append(VIEW_GROUP)
+		 .append(".LayoutParams(").append(params[0]).append(", ").append(params[1]).append("));\n");
+	}
+
+	/**
+	 * Writes the handling of the public static fields of the layout, in the same order as the
+	 * reflection-based inflaters: variables, getters, bindings, then setters.
+	 * @param layout the layout class
+	 * @param target the name of the local variable on which getters and setters are called
+	 * @param targetType the type of {@code target}
+	 * @param b where the source is written
+	 * @return {@code true} if all fields could be handled
+	 */
+	private boolean writeFields(TypeElement layout, String target, TypeMirror targetType, StringBuilder b)
+	{
+		List<VariableElement> fields = ElementFilter.fieldsIn(elements.getAllMembers(layout));
+		StringBuilder getters = new StringBuilder();
+		StringBuilder bindings = new StringBuilder();
+		StringBuilder setters = new StringBuilder();
+		int bound = 0;
+		for (VariableElement field : fields)
+		{
+			Set<Modifier> modifiers = field.getModifiers();
+			if (!modifiers.contains(Modifier.PUBLIC) || !modifiers.contains(Modifier.STATIC))
+				continue;
+			String name = field.getSimpleName().toString();
+			String ref = getReference(field);
+			TypeMirror type = types.erasure(field.asType());
+
+			AnnotationMirror getter = getAnnotation(field, GETTER);
+			if (getter != null)
+			{
+				if (type.getKind().isPrimitive())
+					return false;
+				String method = getString(getter, "methodName");
+				if (method.length() == 0)
+					method = "get" + capitalize(name);
+				//the field may be declared with a type that is not an array, so it is cast through Object
+				getters.append("\t\tif (").append(ref).append(" == null || (java.lang.Object) ").append(ref)
+				 .append(" instanceof java.lang.Object[])\n");
+				getters.append("\t\t\t").append(ref).append(" = (").append(type).append(") invokeMethod(")
+				 .append(target).append(", ").append(literal(method)).append(", (java.lang.Object[]) (java.lang.Object) ")
+				 .append(ref).append(");\n");
+				getters.append("\t\telse\n\t\t\t").append(UTIL).append(".err(\"Could not call getter ")
+				 .append(method).append(". Its field must be null or an Object[] of parameters.\");\n");
+			}
+			else if (getAnnotation(field, VARIABLE) != null)
+			{
+				b.append("\t\tvariables.put(").append(literal(name)).append(", ").append(ref).append(");\n");
+			}
+			else if (getAnnotation(field, SETTER) != null && isIntArray(type))
+			{
+				writeIntArraySetter(target, targetType, name, ref, setters);
+			}
+			else if (getAnnotation(field, SETTER) != null)
+			{
+				setters.append("\t\tif ((java.lang.Object) ").append(ref).append(" instanceof java.lang.Object[])\n");
+				setters.append("\t\t\tinvokeMethod(").append(target).append(", ")
+				 .append(literal("set" + capitalize(name))).append(", (java.lang.Object[]) (java.lang.Object) ")
+				 .append(ref).append(");\n");
+				setters.append("\t\telse\n\t\t\t").append(UTIL).append(".warn(\"Invalid Setter type. Must be Object[].\");\n");
+			}
+			else if (getAnnotation(field, BINDING) != null)
+			{
+				//bindings may observe an ObservableValue, so they are resolved and applied by the base class
+				bound++;
+				writeBindingSetter(field, targetType, name, ref, type);
+			}
+			else
+			{
+				writeSetter(target, targetType, name, ref, type, setters);
+			}
+		}
+		if (bound > 0)
+		{
+			bindings.append("\t\tgetPlan(").append(layout.getQualifiedName()).append(".class);\n");
+			bindings.append("\t\thandleBindings();\n");
+			setters.append("\t\tapplyBindings(").append(target).append(");\n");
+		}
+		b.append(getters).append(bindings).append(setters);
+		return true;
+	}
+
+	/**
+	 * Writes a call to the setter method for the given field. If the method does not exist on the
+	 * target type, the call is made using reflection, which logs the same error the reflection-based
+	 * inflaters do.
+	 */
+	private void writeSetter(String target, TypeMirror targetType, String name, String ref, TypeMirror type, StringBuilder b)
+	{
+		String method = "set" + capitalize(name);
+		if (findSetter((TypeElement) types.asElement(targetType), method, type) != null)
+		{
+			b.append("\t\t").append(target).append(".").append(method).append("(").append(ref).append(");\n");
+		}
+		else
+		{
+			b.append("\t\tinvokeMethod(").append(target).append(", ").append(literal(method))
+			 .append(", new java.lang.Class<?>[]{").append(type).append(".class}, new java.lang.Object[]{")
+			 .append(ref).append("});\n");
+		}
+	}
+
+	/**
+	 * Writes the setter used for a {@code @Binding} field, if its setter method exists on the target type.
+	 * The setter is called directly, so a primitive value is not boxed. If the Object the binding is applied
+	 * to is not of the target type, the setter of the layout's plan is used instead.
+	 */
+	private void writeBindingSetter(VariableElement field, TypeMirror targetType, String name, String ref, TypeMirror type)
+	{
+		String method = "set" + capitalize(name);
+		if (findSetter((TypeElement) types.asElement(targetType), method, type) == null)
+			return;
+		String owner = ((TypeElement) field.getEnclosingElement()).getQualifiedName().toString();
+		String target = types.erasure(targetType).toString();
+		StringBuilder b = bindingSetters;
+		b.append("\t\tif (field.getDeclaringClass() == ").append(owner).append(".class && field.getName().equals(")
+		 .append(literal(name)).append("))\n\t\t{\n");
+		b.append("\t\t\treturn new ").append(SETTER_OP).append("(field, setter.getName()) {\n");
+		b.append("\t\t\t\tpublic void apply(java.lang.Object target)\n\t\t\t\t{\n");
+		b.append("\t\t\t\t\tif (!(target instanceof ").append(target).append("))\n\t\t\t\t\t{\n");
+		b.append("\t\t\t\t\t\tsetter.apply(target);\n\t\t\t\t\t\treturn;\n\t\t\t\t\t}\n");
+		b.append("\t\t\t\t\ttry\n\t\t\t\t\t{\n");
+		b.append("\t\t\t\t\t\t((").append(target).append(") target).").append(method).append("(").append(ref).append(");\n");
+		b.append("\t\t\t\t\t} catch (java.lang.Throwable throwable)\n\t\t\t\t\t{\n");
+		b.append("\t\t\t\t\t\tlogError(target, new java.lang.Class<?>[]{").append(type).append(".class});\n");
+		b.append("\t\t\t\t\t}\n\t\t\t\t}\n\t\t\t};\n\t\t}\n");
+	}
+
+	/**
+	 * Writes a call to the setter method for an {@code int[]} declared using {@code @Setter}. Each
+	 * overload of the method on the target type whose parameters are all {@code int}s is called
+	 * directly when the array has the same length. Other lengths are called using reflection.
+	 */
+	private void writeIntArraySetter(String target, TypeMirror targetType, String name, String ref, StringBuilder b)
+	{
+		String method = "set" + capitalize(name);
+		String indent = "\t\t";
+		for (ExecutableElement m : ElementFilter.methodsIn(elements.getAllMembers((TypeElement) types.asElement(targetType))))
+		{
+			if (!m.getSimpleName().contentEquals(method)
+					|| !m.getModifiers().contains(Modifier.PUBLIC)
+					|| m.getModifiers().contains(Modifier.STATIC)
+					|| m.getParameters().isEmpty())
+				continue;
+			boolean ints = true;
+			for (VariableElement param : m.getParameters())
+			{
+				if (param.asType().getKind() != TypeKind.INT)
+					ints = false;
+			}
+			if (!ints)
+				continue;
+			int length = m.getParameters().size();
+			b.append(indent).append("if (").append(ref).append(".length == ").append(length).append(")\n");
+			b.append(indent).append("\t").append(target).append(".").append(method).append("(");
+			for (int i = 0; i < length; i++)
+			{
+				if (i > 0)
+					b.append(", ");
+				b.append(ref).append("[").append(i).append("]");
+			}
+			b.append(");\n").append(indent).append("else\n");
+			indent = indent + "\t";
+		}
+		b.append(indent).append("invokeMethod(").append(target).append(", ").append(literal(method))
+		 .append(", ").append(ref).append(");\n");
+	}
+
+	/**
+	 * Writes the inflation of the public inner classes that declare an AbLE annotation. Classes that
+	 * have a generated inflater are inflated directly. {@code @Repeat} classes are stamped at runtime, and
+	 * {@code @Variant} classes are skipped.
+	 * @param layout the layout class
+	 * @param check {@code true} if {@code view} must be checked to be a {@code ViewGroup} at runtime
+	 * @param b where the source is written
+	 */
+	private void writeChildren(TypeElement layout, boolean check, StringBuilder b)
+	{
+		String indent = check ? "\t\t\t" : "\t\t";
+		StringBuilder children = new StringBuilder();
+		for (TypeElement child : ElementFilter.typesIn(elements.getAllMembers(layout)))
+		{
+			//variants replace the layout at runtime, so they are not children
+			if (!child.getModifiers().contains(Modifier.PUBLIC) || getRootAnnotation(child) == null 
+				|| getAnnotation(child, VARIANT) != null)
+				continue;
+			String type = child.getQualifiedName().toString();
+			if (getAnnotation(child, REPEAT) != null)
+			{
+				children.append(indent).append("inflateRepeated(").append(type).append(".class);\n");
+				continue;
+			}
+			if (child.getKind() == ElementKind.CLASS && child.getModifiers().contains(Modifier.STATIC) && generate(child))
+			{
+				children.append(indent).append("child = inflateChild(new ").append(getGeneratedName(child))
+				 .append("(context, this), ").append(type).append(".class);\n");
+			}
+			else
+			{
+				children.append(indent).append("child = ").append(PACKAGE).append(".AnnotatedLayoutInflater.inflate(context, ")
+				 .append(type).append(".class, this);\n");
+			}
+			children.append(indent).append("if (child != null)\n");
+			children.append(indent).append("\t((").append(VIEW_GROUP).append(") view).addView(child);\n");
+		}
+		if (children.length() == 0)
+			return;
+		if (check)
+			b.append("\t\tif (view instanceof ").append(VIEW_GROUP).append(")\n\t\t{\n");
+		b.append(indent).append(VIEW).append(" child;\n");
+		b.append(children);
+		if (check)
+			b.append("\t\t}\n");
+	}
+
+	/**
+	 * Writes the call to the static {@code onLayoutComplete} method of the layout, if it has one
+	 * that accepts the activity and the inflated object.
+	 */
+	private void writeLayoutComplete(TypeElement layout, String target, TypeMirror targetType, StringBuilder b)
+	{
+		TypeMirror activity = elements.getTypeElement(ACTIVITY).asType();
+		for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(layout)))
+		{
+			if (!method.getSimpleName().contentEquals("onLayoutComplete"))
+				continue;
+			Set<Modifier> modifiers = method.getModifiers();
+			if (!modifiers.contains(Modifier.PUBLIC) || !modifiers.contains(Modifier.STATIC) || method.getParameters().size() != 2)
+				return;
+			TypeMirror first = types.erasure(method.getParameters().get(0).asType());
+			TypeMirror second = types.erasure(method.getParameters().get(1).asType());
+			if (!isCastable(activity, first) || !isCastable(targetType, second))
+				return;
+			b.append("\t\ttry\n\t\t{\n");
+			b.append("\t\t\t").append(((TypeElement) method.getEnclosingElement()).getQualifiedName())
+			 .append(".onLayoutComplete((").append(first).append(") context, (").append(second).append(") ")
+			 .append(target).append(");\n");
+			b.append("\t\t} catch (java.lang.Throwable t) {\n\t\t\t//errors are ignored by the reflection-based inflaters as well\n\t\t}\n");
+			return;
+		}
+	}
+
+	/**
+	 * Gets the AbLE annotation that declares how the given class is inflated.
+	 * @return the annotation, or {@code null} if the class does not have one
+	 */
+	private AnnotationMirror getRootAnnotation(TypeElement layout)
+	{
+		for (AnnotationMirror mirror : layout.getAnnotationMirrors())
+		{
+			String name = ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString();
+			if (name.equals(LAYOUT) || name.equals(XML_LAYOUT) || name.equals(LAYOUT_ADAPTER)
+					|| name.equals(INVISIBLE) || name.equals(EMBED) || name.equals(LIST_LAYOUT))
+				return mirror;
+		}
+		return null;
+	}
+
+	/**
+	 * @return the annotation with the given name on the given element, or {@code null} if it is not present.
+	 */
+	private AnnotationMirror getAnnotation(Element element, String annotation)
+	{
+		for (AnnotationMirror mirror : element.getAnnotationMirrors())
+		{
+			if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotation))
+				return mirror;
+		}
+		return null;
+	}
+
+	/**
+	 * @return the value of the given annotation attribute, including defaults.
+	 */
+	private Object getValue(AnnotationMirror mirror, String attribute)
+	{
+		for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : elements.getElementValuesWithDefaults(mirror).entrySet())
+		{
+			if (entry.getKey().getSimpleName().contentEquals(attribute))
+				return entry.getValue().getValue();
+		}
+		return null;
+	}
+
+	private String getString(AnnotationMirror mirror, String attribute)
+	{
+		return (String) getValue(mirror, attribute);
+	}
+
+	/**
+	 * @return the values of an array attribute
+	 */
+	private List<Object> getList(AnnotationMirror mirror, String attribute)
+	{
+		List<?> values = (List<?>) getValue(mirror, attribute);
+		List<Object> list = new java.util.ArrayList<Object>();
+		for (Object value : values)
+			list.add(((AnnotationValue) value).getValue());
+		return list;
+	}
+
+	/**
+	 * @return the {@code ORIENTATION[]} attribute of the given annotation, as source code
+	 */
+	private String getOrientation(AnnotationMirror root)
+	{
+		StringBuilder b = new StringBuilder("new ").append(PACKAGE).append(".ORIENTATION[]{");
+		List<Object> orientations = getList(root, "orientation");
+		for (int i = 0; i < orientations.size(); i++)
+		{
+			if (i > 0)
+				b.append(", ");
+			b.append(PACKAGE).append(".ORIENTATION.").append(((VariableElement) orientations.get(i)).getSimpleName());
+		}
+		return b.append("}").toString();
+	}
+
+	/**
+	 * Parses the {@code params} attribute the same way the reflection-based inflaters do.
+	 * @return the width and height, or {@code null} if they cannot be parsed.
+	 */
+	private int[] getLayoutParams(AnnotationMirror root)
+	{
+		List<Object> params = getList(root, "params");
+		if (params.size() < 2)
+			return null;
+		int[] out = new int[2];
+		for (int i = 0; i < 2; i++)
+		{
+			String param = (String) params.get(i);
+			if (param.equals("match_parent") || param.equals("fill_parent"))
+				out[i] = -1;
+			else if (param.equals("wrap_content"))
+				out[i] = -2;
+			else
+			{
+				try
+				{
+					out[i] = (int) Float.parseFloat(param);
+				} catch (NumberFormatException e)
+				{
+					return null;
+				}
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * Looks for a public instance method with the given name and a single parameter of the given type
+	 */
+	private ExecutableElement findSetter(TypeElement target, String name, TypeMirror type)
+	{
+		for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(target)))
+		{
+			if (method.getSimpleName().contentEquals(name)
+					&& method.getModifiers().contains(Modifier.PUBLIC)
+					&& !method.getModifiers().contains(Modifier.STATIC)
+					&& method.getParameters().size() == 1
+					&& types.isSameType(types.erasure(method.getParameters().get(0).asType()), type))
+				return method;
+		}
+		return null;
+	}
+
+	/**
+	 * @return {@code true} if the given class has a public constructor with a single parameter of the given type.
+	 */
+	private boolean hasConstructor(TypeElement type, String parameter)
+	{
+		if (type.getModifiers().contains(Modifier.ABSTRACT))
+			return false;
+		TypeMirror param = elements.getTypeElement(parameter).asType();
+		for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements()))
+		{
+			if (constructor.getModifiers().contains(Modifier.PUBLIC)
+					&& constructor.getParameters().size() == 1
+					&& types.isSameType(types.erasure(constructor.getParameters().get(0).asType()), param))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return {@code true} if the given type is {@code int[]}
+	 */
+	private boolean isIntArray(TypeMirror type)
+	{
+		return type.getKind() == TypeKind.ARRAY && ((ArrayType) type).getComponentType().getKind() == TypeKind.INT;
+	}
+
+	/**
+	 * @return {@code true} if a value of type {@code from} can be cast to type {@code to}
+	 * without a compile error. Only up and down casts are supported.
+	 */
+	private boolean isCastable(TypeMirror from, TypeMirror to)
+	{
+		return types.isAssignable(from, to) || types.isAssignable(to, from);
+	}
+
+	private boolean isSubtype(TypeMirror type, String superType)
+	{
+		TypeElement element = elements.getTypeElement(superType);
+		return element != null && types.isAssignable(type, types.erasure(element.asType()));
+	}
+
+	/**
+	 * @return the source reference to the given static field
+	 */
+	private String getReference(VariableElement field)
+	{
+		return ((TypeElement) field.getEnclosingElement()).getQualifiedName() + "." + field.getSimpleName();
+	}
+
+	/**
+	 * @return the fully-qualified name of the inflater generated for the given layout.
+	 */
+	private String getGeneratedName(TypeElement layout)
+	{
+		return elements.getBinaryName(layout).toString() + GENERATED_SUFFIX;
+	}
+
+	/**
+	 * @return the given String as a Java String literal
+	 */
+	private static String literal(String string)
+	{
+		StringBuilder b = new StringBuilder("\"");
+		for (char c : string.toCharArray())
+		{
+			if (c == '"' || c == '\\')
+				b.append('\\').append(c);
+			else if (c == '\n')
+				b.append("\\n");
+			else
+				b.append(c);
+		}
+		return b.append('"').toString();
+	}
+
+	private static String capitalize(String string)
+	{
+		return Character.toUpperCase(string.charAt(0)) + string.substring(1);
+	}
+}
@@ -0,0 +1,24 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package self.philbrown.AbLE.processor;
+
+/**
+ * Contains the compile-time annotation processor that generates reflection-free inflaters for
+ * AbLE layout classes. Add the AbLEProcessor jar to the annotation factory path of a project that
+ * uses AbLE to enable it. Layout classes without a generated inflater are still inflated using
+ * reflection.
+ */
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package self.philbrown.AbLE.processor;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import junit.framework.TestCase;
+
+/**
+ * Compiles layout classes with the {@link AbLEProcessor}, then checks that the generated inflaters
+ * compile and call what they should. The AbLE library and {@code android.jar} must be on the class
+ * path of the test, since the layout classes and the generated inflaters are compiled against them.
+ * @author Phil Brown
+ */
+public class AbLEProcessorTest extends TestCase
+{
+	/** The directory in which layout classes are compiled */
+	private File dir;
+	
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		assertNotNull("A JDK is needed to run this test", ToolProvider.getSystemJavaCompiler());
+		try
+		{
+			Class.forName("self.philbrown.AbLE.AbLEActivity", false, getClass().getClassLoader());
+			Class.forName("android.view.View", false, getClass().getClassLoader());
+		} catch (ClassNotFoundException e)
+		{
+			fail("AbLE and android.jar must be on the class path: " + e.getMessage());
+		}
+		dir = File.createTempFile("AbLEProcessorTest", "");
+		assertTrue(dir.delete() && dir.mkdir());
+	}
+	
+	@Override
+	protected void tearDown() throws Exception
+	{
+		delete(dir);
+		super.tearDown();
+	}
+	
+	/**
+	 * Getters and setters declared with {@code @Getter} and {@code @Setter} are called using reflection, 
+	 * whatever the declared type of their field is.
+	 */
+	public void testGetterAndSetterFieldsOfAnyType() throws IOException
+	{
+		String inflater = compile("test.Accessors", 
+				"package test;\n" +
+				"import self.philbrown.AbLE.annotations.*;\n" +
+				"@Layout(viewClass = \"android.widget.TextView\")\n" +
+				"public class Accessors {\n" +
+				"	@Getter public static String text;\n" +
+				"	@Getter public static Object hint = new Object[0];\n" +
+				"	@Setter public static String tag = \"tag\";\n" +
+				"	@Setter public static Object[] contentDescription = {\"description\"};\n" +
+				"}\n");
+		assertContains(inflater, "invokeMethod(v, \"getText\", (java.lang.Object[]) (java.lang.Object) test.Accessors.text)");
+		assertContains(inflater, "invokeMethod(v, \"getHint\"");
+		assertContains(inflater, "invokeMethod(v, \"setTag\"");
+		assertContains(inflater, "invokeMethod(v, \"setContentDescription\"");
+	}
+	
+	/**
+	 * Setters that exist on the view class are called directly, and other setters using reflection
+	 */
+	public void testSetters() throws IOException
+	{
+		String inflater = compile("test.Setters", 
+				"package test;\n" +
+				"import self.philbrown.AbLE.annotations.*;\n" +
+				"@Layout(viewClass = \"android.widget.TextView\")\n" +
+				"public class Setters {\n" +
+				"	public static int textColor = 0xFF000000;\n" +
+				"	public static float textSize = 12f;\n" +
+				"	public static CharSequence text = \"text\";\n" +
+				"	public static int unknown = 1;\n" +
+				"}\n");
+		assertContains(inflater, "v.setTextColor(test.Setters.textColor);");
+		assertContains(inflater, "v.setTextSize(test.Setters.textSize);");
+		assertContains(inflater, "v.setText(test.Setters.text);");
+		assertContains(inflater, "invokeMethod(v, \"setUnknown\", new java.lang.Class<?>[]{int.class}, new java.lang.Object[]{test.Setters.unknown});");
+	}
+	
+	/**
+	 * Setters declared as an {@code int[]} call each overload with the same number of {@code int} parameters directly
+	 */
+	public void testIntArraySetter() throws IOException
+	{
+		String inflater = compile("test.Padded", 
+				"package test;\n" +
+				"import self.philbrown.AbLE.annotations.*;\n" +
+				"@Layout(viewClass = \"android.widget.TextView\")\n" +
+				"public class Padded {\n" +
+				"	@Setter public static int[] padding = {1, 2, 3, 4};\n" +
+				"}\n");
+		assertContains(inflater, "v.setPadding(test.Padded.padding[0], test.Padded.padding[1], test.Padded.padding[2], test.Padded.padding[3]);");
+	}
+	
+	/**
+	 * Bindings are resolved by the base class, but their setters are called directly if they exist
+	 */
+	public void testBindings() throws IOException
+	{
+		String inflater = compile("test.Bound", 
+				"package test;\n" +
+				"import self.philbrown.AbLE.annotations.*;\n" +
+				"@Layout(viewClass = \"android.widget.TextView\")\n" +
+				"public class Bound {\n" +
+				"	@Variable public static ObservableValue<Integer> color = new ObservableValue<Integer>(0);\n" +
+				"	@Binding(observedValue = \"color\") public static int textColor;\n" +
+				"	@Binding(expr = \"'unknown'\") public static String unknown;\n" +
+				"}\n");
+		assertContains(inflater, "handleBindings();");
+		assertContains(inflater, "applyBindings(v);");
+		assertContains(inflater, "getBindingSetter(int index)");
+		assertContains(inflater, "((android.widget.TextView) target).setTextColor(test.Bound.textColor);");
+		assertFalse(inflater.contains("setUnknown"));
+	}
+	
+	/**
+	 * Children that are static nested layout classes are inflated by their own generated inflaters
+	 */
+	public void testChildren() throws IOException
+	{
+		String inflater = compile("test.Parent", 
+				"package test;\n" +
+				"import self.philbrown.AbLE.annotations.*;\n" +
+				"@Layout(viewClass = \"android.widget.FrameLayout\")\n" +
+				"public class Parent {\n" +
+				"	@Layout(viewClass = \"android.widget.TextView\")\n" +
+				"	public static class Child {\n" +
+				"		public static CharSequence text = \"child\";\n" +
+				"	}\n" +
+				"}\n");
+		assertContains(inflater, "inflateChild(new test.Parent$Child_AbLEInflater(context, this), test.Parent.Child.class)");
+		assertTrue(new File(dir, "gen/test/Parent$Child_AbLEInflater.java").exists());
+	}
+	
+	/**
+	 * List layouts are bound by their adapter at runtime, so no inflater is generated for them
+	 */
+	public void testListLayoutIsNotGenerated() throws IOException
+	{
+		String inflater = compile("test.Contacts", 
+				"package test;\n" +
+				"import self.philbrown.AbLE.annotations.*;\n" +
+				"@ListLayout(item = Contacts.Row.class, source = \"contacts\")\n" +
+				"public class Contacts {\n" +
+				"	@Layout(viewClass = \"android.widget.TextView\")\n" +
+				"	public static class Row {\n" +
+				"	}\n" +
+				"}\n");
+		assertNull(inflater);
+	}
+	
+	/**
+	 * Compiles a layout class with the processor. The compilation, which includes the generated 
+	 * inflaters, must not fail.
+	 * @param className the name of the layout class
+	 * @param source the source of the layout class
+	 * @return the source of the inflater generated for the layout class, or {@code null} if none was generated
+	 */
+	private String compile(String className, String source) throws IOException
+	{
+		String path = className.replace('.', File.separatorChar);
+		File sources = new File(dir, "src");
+		File generated = new File(dir, "gen");
+		File classes = new File(dir, "classes");
+		File file = new File(sources, path + ".java");
+		assertTrue(file.getParentFile().mkdirs() && generated.mkdir() && classes.mkdir());
+		write(file, source);
+		
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+		StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics, null, null);
+		List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"), 
+				"-s", generated.getPath(), "-d", classes.getPath());
+		JavaCompiler.CompilationTask task = compiler.getTask(null, files, diagnostics, options, null, 
+				files.getJavaFileObjects(file));
+		task.setProcessors(Collections.singletonList(new AbLEProcessor()));
+		boolean success = task.call();
+		files.close();
+		
+		StringBuilder errors = new StringBuilder();
+		for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics())
+		{
+			if (diagnostic.getKind() == Diagnostic.Kind.ERROR)
+				errors.append(diagnostic).append('\n');
+		}
+		assertTrue(errors.toString(), success);
+		
+		File inflater = new File(generated, path + AbLEProcessor.GENERATED_SUFFIX + ".java");
+		return inflater.exists() ? read(inflater) : null;
+	}
+	
+	/**
+	 * Fails if the given generated source does not contain the given code
+	 */
+	private static void assertContains(String inflater, String code)
+	{
+		assertNotNull("No inflater was generated", inflater);
+		assertTrue("Expected \"" + code + "\" in:\n" + inflater, inflater.contains(code));
+	}
+	
+	private static void write(File file, String text) throws IOException
+	{
+		Writer writer = new FileWriter(file);
+		try
+		{
+			writer.write(text);
+		} finally
+		{
+			writer.close();
+		}
+	}
+	
+	private static String read(File file) throws IOException
+	{
+		StringBuilder b = new StringBuilder();
+		Reader reader = new FileReader(file);
+		try
+		{
+			char[] buffer = new char[4096];
+			int count;
+			while ((count = reader.read(buffer)) != -1)
+				b.append(buffer, 0, count);
+		} finally
+		{
+			reader.close();
+		}
+		return b.toString();
+	}
+	
+	private static void delete(File file)
+	{
+		File[] children = file.listFiles();
+		if (children != null)
+		{
+			for (File child : children)
+				delete(child);
+		}
+		file.delete();
+	}
+}
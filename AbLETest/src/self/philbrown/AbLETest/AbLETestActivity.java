@@ -44,7 +44,7 @@ public class AbLETestActivity extends AbLEActivity
 		//using the getController() method, from within the layout file. But use this cautiously,
 		//as the VM is kept active after the app has stopped - and these static variables are set to
 		//null even for the next time the app is launched. This technique can be really handy for
-		//single-Activity applications, and context.killProcess() should be called in the onDestroy if
+		//single-Activity applications, and context.resetLayouts() should be called in the onDestroy if
 		//you choose to go this route.
 		controller = new AbLETestController(this);
 		super.onCreate(savedInstanceState);
@@ -105,11 +105,12 @@ public class AbLETestController implements ActivityListener, View.OnClickListene
 
 	@Override
 	public void onDestroy() {
-		//If you are accessing the controller statically in a layout file, you will need to destroy
-		//the app process here. This is generally bad practice, but it can work very well in a single-
-		//Activity application (moves a lot of code to the layout file that would be in this controller
-		//file).
-		context.killProcess();
+		//If you are accessing the controller statically in a layout file, the static fields of the
+		//layout classes must be initialized again the next time the Activity is created. This reloads
+		//them without killing the app process. It can work very well in a single-Activity application
+		//(moves a lot of code to the layout file that would be in this controller file).
+		if (context.isFinishing())
+			context.resetLayouts();
 	}
 
 	@Override
@@ -44,10 +44,10 @@ public class AbLETestLayout
 	{
 		//context is not accessible from the top-most layout, but it will be available here.
 		@Variable
-		public static AbLETestActivity context = (AbLETestActivity) AnnotatedLayoutInflater.context;
+		public static AbLETestActivity context = (AbLETestActivity) AnnotatedLayoutInflater.getContext();
 		
-		//these attributes will be set to null when the app is destroyed, and requires the VM to be
-		//killed using context.killProcess() in the onDestroy() method. Do not use this technique for
+		//these attributes will be set to null when the app is destroyed, and require the layout classes
+		//to be reset using context.resetLayouts() in the onDestroy() method. Do not use this technique for
 		//multi-activity applications
 		@Variable
 		public static AbLETestController controller = context.getController();
@@ -85,7 +85,7 @@ public class AbLETestLayout
 			public static int px = (int) AbLEActivity.convertDipToPixels(15f);
 			
 			@Setter
-			public static Object padding = new Object[]{px, px, px, px};
+			public static int[] padding = {px, px, px, px};
 			
 		}
 	}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package self.philbrown.AbLE;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.test.AndroidTestCase;
+import android.view.View;
+import android.widget.FrameLayout;
+
+/**
+ * Tests {@link ScreenCache}
+ * @author Phil Brown
+ */
+public class ScreenCacheTest extends AndroidTestCase
+{
+	/** Layout classes. Only their identity matters. */
+	private static final class A {}
+	private static final class B {}
+	private static final class C {}
+	
+	/** The evicted screens, in order */
+	private List<View> evicted;
+	private ScreenCache cache;
+	
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		evicted = new ArrayList<View>();
+		cache = new ScreenCache(5) {
+			@Override
+			protected void onEvicted(Class<?> layout, View root)
+			{
+				evicted.add(root);
+			}
+		};
+	}
+	
+	public void testWeightIsNumberOfViews()
+	{
+		cache.put(A.class, screen(3));
+		assertEquals(1, cache.size());
+		assertEquals(3, cache.getWeight());
+	}
+	
+	public void testTake()
+	{
+		View a = screen(2);
+		cache.put(A.class, a);
+		assertSame(a, cache.take(A.class));
+		assertNull(cache.take(A.class));
+		assertEquals(0, cache.getWeight());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertTrue(evicted.isEmpty());
+	}
+	
+	public void testLeastRecentlyUsedScreenIsEvicted()
+	{
+		View a = screen(2), b = screen(2), c = screen(2);
+		cache.put(A.class, a);
+		cache.put(B.class, b);
+		cache.put(A.class, a);
+		assertTrue(evicted.isEmpty());
+		cache.put(C.class, c);
+		assertEquals(1, evicted.size());
+		assertSame(b, evicted.get(0));
+		assertEquals(4, cache.getWeight());
+		assertNull(cache.take(B.class));
+	}
+	
+	public void testHeavyScreenIsNotCached()
+	{
+		View a = screen(2), heavy = screen(6);
+		cache.put(A.class, a);
+		cache.put(B.class, heavy);
+		assertEquals(1, evicted.size());
+		assertSame(heavy, evicted.get(0));
+		assertEquals(1, cache.size());
+		assertEquals(2, cache.getWeight());
+	}
+	
+	public void testReplacedScreenIsEvicted()
+	{
+		View first = screen(2), second = screen(1);
+		cache.put(A.class, first);
+		cache.put(A.class, second);
+		assertEquals(1, evicted.size());
+		assertSame(first, evicted.get(0));
+		assertEquals(1, cache.getWeight());
+		assertSame(second, cache.take(A.class));
+	}
+	
+	public void testTrim()
+	{
+		cache.put(A.class, screen(2));
+		cache.put(B.class, screen(2));
+		cache.remove(A.class);
+		assertTrue(evicted.isEmpty());
+		assertEquals(2, cache.getWeight());
+		
+		cache.put(C.class, screen(1));
+		cache.setMaxWeight(1);
+		assertEquals(1, evicted.size());
+		assertEquals(1, cache.getWeight());
+		cache.evictAll();
+		assertEquals(2, evicted.size());
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getWeight());
+	}
+	
+	/**
+	 * @param views the number of views in the screen
+	 * @return a root view with the given number of views, including itself
+	 */
+	private View screen(int views)
+	{
+		if (views == 1)
+			return new View(getContext());
+		FrameLayout root = new FrameLayout(getContext());
+		for (int i = 1; i < views; i++)
+			root.addView(new View(getContext()));
+		return root;
+	}
+}
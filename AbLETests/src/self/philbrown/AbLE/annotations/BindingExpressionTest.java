@@ -0,0 +1,195 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package self.philbrown.AbLE.annotations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link BindingExpression}
+ * @author Phil Brown
+ */
+public class BindingExpressionTest extends TestCase
+{
+	public void testLiterals() throws Throwable
+	{
+		assertEquals(1, evaluate("1"));
+		assertEquals(2.5, evaluate("2.5"));
+		assertEquals(10000000000L, evaluate("10000000000"));
+		assertEquals("text", evaluate("\"text\""));
+		assertEquals("it's", evaluate("'it\\'s'"));
+		assertEquals(Boolean.TRUE, evaluate("true"));
+		assertEquals(Boolean.FALSE, evaluate("false"));
+		assertNull(evaluate("null"));
+	}
+	
+	public void testArithmetic() throws Throwable
+	{
+		assertEquals(7, evaluate("1 + 2 * 3"));
+		assertEquals(9, evaluate("(1 + 2) * 3"));
+		assertEquals(1, evaluate("7 % 3"));
+		assertEquals(3, evaluate("7 / 2"));
+		assertEquals(3.5, evaluate("7 / 2.0"));
+		assertEquals(-4, evaluate("-(2 + 2)"));
+		assertEquals("a12", evaluate("'a' + 1 + 2"));
+		assertEquals("3a", evaluate("1 + 2 + 'a'"));
+	}
+	
+	public void testComparisonsAndLogic() throws Throwable
+	{
+		Scope scope = Scope.EMPTY.plus("n", 3).plus("name", "AbLE");
+		assertEquals(Boolean.TRUE, evaluate("n > 2 && n <= 3", scope));
+		assertEquals(Boolean.FALSE, evaluate("n < 2 || n >= 4", scope));
+		assertEquals(Boolean.TRUE, evaluate("n == 3.0", scope));
+		assertEquals(Boolean.TRUE, evaluate("name != 'other' && !(n == 1)", scope));
+		assertEquals(Boolean.TRUE, evaluate("name == 'AbLE'", scope));
+	}
+	
+	public void testConditional() throws Throwable
+	{
+		BindingExpression expression = BindingExpression.compile("n == 1 ? 'one' : n == 2 ? 'two' : 'many'");
+		assertEquals("one", expression.evaluate(Scope.EMPTY.plus("n", 1)));
+		assertEquals("two", expression.evaluate(Scope.EMPTY.plus("n", 2)));
+		assertEquals("many", expression.evaluate(Scope.EMPTY.plus("n", 3)));
+	}
+	
+	public void testTruth() throws Throwable
+	{
+		assertFalse(BindingExpression.compile("missing").test(Scope.EMPTY));
+		assertFalse(BindingExpression.compile("0").test(Scope.EMPTY));
+		assertFalse(BindingExpression.compile("''").test(Scope.EMPTY));
+		assertTrue(BindingExpression.compile("'text'").test(Scope.EMPTY));
+		assertTrue(BindingExpression.compile("2.5").test(Scope.EMPTY));
+	}
+	
+	public void testMembers() throws Throwable
+	{
+		Scope scope = Scope.EMPTY.plus("item", new Item("milk", 2)).plus("items", new ArrayList<String>(Arrays.asList("a", "b", "c")));
+		assertEquals("milk", evaluate("item.name", scope));
+		assertEquals(2, evaluate("item.count", scope));
+		assertEquals(2, evaluate("item.getCount()", scope));
+		assertEquals(Boolean.FALSE, evaluate("item.done", scope));
+		assertEquals("2 milk", evaluate("item.describe(' ')", scope));
+		assertEquals(4, evaluate("item.name.length()", scope));
+		assertEquals(3, evaluate("items.size()", scope));
+		assertNull(evaluate("missing.name", scope));
+	}
+	
+	public void testUnknownMember() throws Throwable
+	{
+		try
+		{
+			evaluate("item.unknown", Scope.EMPTY.plus("item", new Item("milk", 2)));
+			fail();
+		} catch (NoSuchMethodException e)
+		{
+			//expected
+		}
+	}
+	
+	public void testDependencies()
+	{
+		BindingExpression expression = BindingExpression.compile("a + b.c(d) + 'e' + a");
+		assertEquals(Arrays.asList("a", "b", "d"), Arrays.asList(expression.getDependencies().toArray()));
+	}
+	
+	public void testObservables() throws Throwable
+	{
+		ObservableValue<Object> count = new ObservableValue<Object>(1);
+		Scope scope = Scope.EMPTY.plus("count", count).plus("step", 10);
+		BindingExpression expression = BindingExpression.compile("count * step");
+		List<ObservableValue<Object>> observables = expression.getObservables(scope);
+		assertEquals(1, observables.size());
+		assertSame(count, observables.get(0));
+		assertEquals(10, expression.evaluate(scope));
+		count.set(2);
+		assertEquals(20, expression.evaluate(scope));
+		assertTrue(BindingExpression.compile("step").getObservables(scope).isEmpty());
+	}
+	
+	public void testInvalidExpressions()
+	{
+		String[] invalid = {"", "1 +", "(1", "1 2", "a ? b", "'text", "a.", "a.b(", "1 = 2", "#"};
+		for (String source : invalid)
+		{
+			try
+			{
+				BindingExpression.compile(source);
+				fail(source);
+			} catch (IllegalArgumentException e)
+			{
+				//expected
+			}
+		}
+	}
+	
+	public void testCoerce()
+	{
+		assertEquals(3, BindingExpression.coerce(3.7, int.class));
+		assertEquals(2.5f, BindingExpression.coerce(2.5, float.class));
+		assertEquals(4L, BindingExpression.coerce(4, long.class));
+		assertEquals("5", BindingExpression.coerce(5, String.class));
+		assertEquals("true", BindingExpression.coerce(true, CharSequence.class));
+		assertEquals(Boolean.TRUE, BindingExpression.coerce(true, boolean.class));
+		assertNull(BindingExpression.coerce(null, int.class));
+	}
+	
+	private static Object evaluate(String source) throws Throwable
+	{
+		return evaluate(source, Scope.EMPTY);
+	}
+	
+	private static Object evaluate(String source, Scope scope) throws Throwable
+	{
+		BindingExpression expression = BindingExpression.compile(source);
+		assertEquals(source, expression.getSource());
+		return expression.evaluate(scope);
+	}
+	
+	/**
+	 * An item whose members are read by expressions
+	 */
+	public static class Item
+	{
+		public final String name;
+		private final int count;
+		
+		public Item(String name, int count)
+		{
+			this.name = name;
+			this.count = count;
+		}
+		
+		public int getCount()
+		{
+			return count;
+		}
+		
+		public boolean isDone()
+		{
+			return false;
+		}
+		
+		public String describe(String separator)
+		{
+			return count + separator + name;
+		}
+	}
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package self.philbrown.AbLE.annotations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link ListDiff}. Each item is a String of the form {@code key:value}, so that items can be
+ * changed without changing their keys.
+ * @author Phil Brown
+ */
+public class ListDiffTest extends TestCase
+{
+	public void testEqualListsHaveNoOperations()
+	{
+		ListDiff diff = diff(items("a:0", "b:0", "c:0"), items("a:0", "b:0", "c:0"));
+		assertEquals(0, diff.getOperationCount());
+		for (int i = 0; i < 3; i++)
+			assertEquals(i, diff.getNewPosition(i));
+	}
+	
+	public void testInsertAndRemove()
+	{
+		List<String> before = items("a:0", "b:0", "c:0");
+		List<String> after = items("a:0", "x:0", "c:0", "d:0");
+		ListDiff diff = diff(before, after);
+		assertFalse(diff.isReset());
+		assertEquals(0, diff.getNewPosition(0));
+		assertEquals(-1, diff.getNewPosition(1));
+		assertEquals(2, diff.getNewPosition(2));
+		assertEquals(-1, diff.getOldPosition(1));
+		assertEquals(-1, diff.getOldPosition(3));
+		
+		Counter counter = new Counter();
+		diff.dispatch(counter);
+		assertEquals(0, counter.moves);
+		assertEquals(0, counter.changes);
+		assertEquals(after, apply(diff, before, after));
+	}
+	
+	public void testMoveKeepsItem()
+	{
+		List<String> before = items("a:0", "b:0", "c:0", "d:0");
+		List<String> after = items("d:0", "a:0", "b:0", "c:0");
+		ListDiff diff = diff(before, after);
+		assertEquals(0, diff.getNewPosition(3));
+		assertEquals(3, diff.getOldPosition(0));
+		
+		Counter counter = new Counter();
+		diff.dispatch(counter);
+		assertEquals(1, counter.moves);
+		assertEquals(0, counter.inserted);
+		assertEquals(0, counter.removed);
+		assertEquals(after, apply(diff, before, after));
+	}
+	
+	public void testChangedItemKeepsPosition()
+	{
+		List<String> before = items("a:0", "b:0", "c:0");
+		List<String> after = items("a:0", "b:1", "c:0");
+		ListDiff diff = diff(before, after);
+		assertEquals(1, diff.getNewPosition(1));
+		
+		Counter counter = new Counter();
+		diff.dispatch(counter);
+		assertEquals(1, counter.changes);
+		assertEquals(1, counter.lastChanged);
+		assertEquals(0, counter.inserted + counter.removed + counter.moves);
+	}
+	
+	public void testRandomEditsTransformOldListIntoNewList()
+	{
+		Random random = new Random(1);
+		for (int iteration = 0; iteration < 2000; iteration++)
+		{
+			List<String> before = new ArrayList<String>();
+			int count = random.nextInt(30);
+			for (int i = 0; i < count; i++)
+				before.add("k" + i + ":" + random.nextInt(2));
+			List<String> after = new ArrayList<String>();
+			for (String item : before)
+			{
+				if (random.nextInt(4) == 0)
+					continue;
+				after.add(random.nextInt(5) == 0 ? key(item) + ":x" : item);
+			}
+			if (after.size() > 1)
+				Collections.swap(after, 0, random.nextInt(after.size()));
+			int inserted = random.nextInt(5);
+			for (int i = 0; i < inserted; i++)
+				after.add(random.nextInt(after.size() + 1), "n" + i + ":0");
+			
+			ListDiff diff = diff(before, after);
+			assertEquals(before + " -> " + after, after, apply(diff, before, after));
+			for (int i = 0; i < before.size(); i++)
+			{
+				int position = diff.getNewPosition(i);
+				if (position != -1)
+					assertEquals(key(before.get(i)), key(after.get(position)));
+			}
+		}
+	}
+	
+	public void testTooManyEditsIsReset()
+	{
+		List<String> before = new ArrayList<String>();
+		for (int i = 0; i < 3 * ListDiff.MAX_EDITS; i++)
+			before.add("k" + i + ":0");
+		List<String> after = new ArrayList<String>(before);
+		Collections.shuffle(after, new Random(1));
+		ListDiff diff = diff(before, after);
+		assertTrue(diff.isReset());
+		assertEquals(after, apply(diff, before, after));
+	}
+	
+	/**
+	 * @return a modifiable list of the given items
+	 */
+	private static List<String> items(String... items)
+	{
+		return new ArrayList<String>(Arrays.asList(items));
+	}
+	
+	private static String key(String item)
+	{
+		return item.substring(0, item.indexOf(':'));
+	}
+	
+	private static Object[] keys(List<String> items)
+	{
+		Object[] keys = new Object[items.size()];
+		for (int i = 0; i < keys.length; i++)
+			keys[i] = key(items.get(i));
+		return keys;
+	}
+	
+	private static ListDiff diff(List<String> before, List<String> after)
+	{
+		return ListDiff.compute(keys(before), before.toArray(), keys(after), after.toArray());
+	}
+	
+	/**
+	 * Applies the operations of a diff to a copy of the old list. Inserted and changed items are
+	 * taken from the new list once all operations have been applied.
+	 * @return the transformed list
+	 */
+	private static List<String> apply(ListDiff diff, List<String> before, List<String> after)
+	{
+		final List<String> work = new ArrayList<String>(before);
+		final String placeholder = new String("?");
+		diff.dispatch(new ListDiff.Receiver() {
+			
+			public void onInserted(int position, int count)
+			{
+				for (int i = 0; i < count; i++)
+					work.add(position + i, placeholder);
+			}
+			
+			public void onRemoved(int position, int count)
+			{
+				work.subList(position, position + count).clear();
+			}
+			
+			public void onMoved(int from, int to)
+			{
+				work.add(to, work.remove(from));
+			}
+			
+			public void onChanged(int position)
+			{
+				work.set(position, placeholder);
+			}
+		});
+		for (int i = 0; i < work.size() && i < after.size(); i++)
+		{
+			if (work.get(i) == placeholder)
+				work.set(i, after.get(i));
+		}
+		return work;
+	}
+	
+	/**
+	 * Counts the operations of a diff
+	 */
+	private static final class Counter implements ListDiff.Receiver
+	{
+		int inserted, removed, moves, changes;
+		int lastChanged = -1;
+		
+		public void onInserted(int position, int count)
+		{
+			inserted += count;
+		}
+		
+		public void onRemoved(int position, int count)
+		{
+			removed += count;
+		}
+		
+		public void onMoved(int from, int to)
+		{
+			moves++;
+		}
+		
+		public void onChanged(int position)
+		{
+			changes++;
+			lastChanged = position;
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2013 Phil Brown
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package self.philbrown.AbLE.annotations;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link Scope}
+ * @author Phil Brown
+ */
+public class ScopeTest extends TestCase
+{
+	public void testEmpty()
+	{
+		assertEquals(0, Scope.EMPTY.size());
+		assertNull(Scope.EMPTY.get("a"));
+	}
+	
+	public void testPlusDoesNotChangeParent()
+	{
+		Scope parent = Scope.EMPTY.plus("a", 1);
+		Scope child = parent.plus("b", 2);
+		assertEquals(1, parent.size());
+		assertNull(parent.get("b"));
+		assertEquals(2, child.size());
+		assertEquals(1, child.get("a"));
+		assertEquals(2, child.get("b"));
+	}
+	
+	public void testChildHidesParentVariable()
+	{
+		Scope parent = Scope.EMPTY.plus("a", 1);
+		Scope child = parent.plus("a", 2);
+		assertEquals(1, child.size());
+		assertEquals(2, child.get("a"));
+		assertEquals(1, parent.get("a"));
+	}
+	
+	public void testSameValueReturnsSameScope()
+	{
+		Object value = new Object();
+		Scope scope = Scope.EMPTY.plus("a", value);
+		assertSame(scope, scope.plus("a", value));
+	}
+	
+	public void testPlusAllSkipsNullValues()
+	{
+		Scope parent = Scope.EMPTY.plus("a", 1);
+		Map<String, Object> variables = new HashMap<String, Object>();
+		variables.put("a", null);
+		variables.put("b", 2);
+		Scope child = parent.plusAll(variables);
+		assertEquals(1, child.get("a"));
+		assertEquals(2, child.get("b"));
+		assertSame(parent, parent.plusAll(new HashMap<String, Object>()));
+	}
+	
+	public void testManyVariables()
+	{
+		Scope scope = Scope.EMPTY;
+		Scope half = null;
+		for (int i = 0; i < 2000; i++)
+		{
+			scope = scope.plus("v" + i, i);
+			if (i == 999)
+				half = scope;
+		}
+		assertEquals(2000, scope.size());
+		assertEquals(1000, half.size());
+		for (int i = 0; i < 2000; i++)
+		{
+			assertEquals(i, scope.get("v" + i));
+			assertEquals(i < 1000 ? Integer.valueOf(i) : null, half.get("v" + i));
+		}
+	}
+	
+	public void testHashCollisions()
+	{
+		//"Aa" and "BB" have the same hash code
+		assertEquals("Aa".hashCode(), "BB".hashCode());
+		Scope scope = Scope.EMPTY.plus("Aa", 1).plus("BB", 2);
+		assertEquals(2, scope.size());
+		assertEquals(1, scope.get("Aa"));
+		assertEquals(2, scope.get("BB"));
+		
+		Scope replaced = scope.plus("BB", 3).plus("AaBB", 4).plus("BBAa", 5);
+		assertEquals(4, replaced.size());
+		assertEquals(1, replaced.get("Aa"));
+		assertEquals(3, replaced.get("BB"));
+		assertEquals(4, replaced.get("AaBB"));
+		assertEquals(5, replaced.get("BBAa"));
+		assertEquals(2, scope.get("BB"));
+	}
+}